@@ -23,6 +23,7 @@ import me.armar.plugins.autorank.hooks.DependencyManager;
 import me.armar.plugins.autorank.language.LanguageHandler;
 import me.armar.plugins.autorank.leaderboard.LeaderboardHandler;
 import me.armar.plugins.autorank.listeners.PlayerJoinListener;
+import me.armar.plugins.autorank.listeners.PlayerQuitListener;
 import me.armar.plugins.autorank.pathbuilder.PathManager;
 import me.armar.plugins.autorank.pathbuilder.builders.RequirementBuilder;
 import me.armar.plugins.autorank.pathbuilder.builders.ResultBuilder;
@@ -84,6 +85,8 @@ import me.armar.plugins.autorank.statsmanager.handlers.FallbackHandler;
 import me.armar.plugins.autorank.updater.UpdateHandler;
 import me.armar.plugins.autorank.updater.Updater;
 import me.armar.plugins.autorank.util.AutorankTools;
+import me.armar.plugins.autorank.util.uuid.UUIDRefresher;
+import me.armar.plugins.autorank.util.uuid.UUIDResolver;
 import me.armar.plugins.autorank.util.uuid.storage.UUIDStorage;
 import me.armar.plugins.autorank.validations.ValidateHandler;
 import me.armar.plugins.autorank.warningmanager.WarningManager;
@@ -134,6 +137,8 @@ public class Autorank extends JavaPlugin {
 
     // UUID storage
     private UUIDStorage uuidStorage;
+    private UUIDResolver uuidResolver;
+    private UUIDRefresher uuidRefresher;
 
     // Validation & Warning
     private ValidateHandler validateHandler;
@@ -170,12 +175,21 @@ public class Autorank extends JavaPlugin {
 
         getUUIDStorage().saveAllFiles();
 
+        // Stop looking up uuids
+        getUUIDResolver().shutdown();
+
+        // Stop building leaderboards
+        getLeaderboardManager().shutdown();
+
         // Close database connection
         this.getMySQLManager().disconnectDatabase();
 
         // Save playerdata.yml
         this.getPlayerDataConfig().saveConfig();
 
+        // Save internalprops.yml (changes are normally saved async)
+        this.getInternalPropertiesConfig().saveConfig();
+
         // ------------- Say bye-bye -------------
 
         getLogger().info(String.format("Autorank %s has been disabled!", getDescription().getVersion()));
@@ -255,6 +269,12 @@ public class Autorank extends JavaPlugin {
         // Create uuid storage
         setUUIDStorage(new UUIDStorage(this));
 
+        // Create uuid resolver that looks up uuids at Mojang
+        setUUIDResolver(new UUIDResolver(getLogger()));
+
+        // Create uuid refresher that updates outdated uuids in the background
+        setUUIDRefresher(new UUIDRefresher(this));
+
         // ------------- Initialize others -------------
 
         // Create playtime class
@@ -287,9 +307,19 @@ public class Autorank extends JavaPlugin {
 
         // Register listeners
         getServer().getPluginManager().registerEvents(new PlayerJoinListener(this), this);
+        getServer().getPluginManager().registerEvents(new PlayerQuitListener(this), this);
+        getServer().getPluginManager().registerEvents(getPlayerChecker().getRequirementCache(), this);
+        getServer().getPluginManager().registerEvents(getPlayerChecker().getRecheckScheduler(), this);
+        getServer().getPluginManager().registerEvents(getPlayerChecker().getTimeSlicedScheduler(), this);
 
         // ------------- Schedule tasks -------------
 
+        // Check players whose requirements have changed
+        getPlayerChecker().getRecheckScheduler().start();
+
+        // Add play time to online players, spread over the interval
+        getPlayerChecker().getTimeSlicedScheduler().start();
+
         // Load all third party dependencies
         getServer().getScheduler().runTaskLater(this, new Runnable() {
             @Override
@@ -344,6 +374,10 @@ public class Autorank extends JavaPlugin {
             }
         }, 0, (long) AutorankTools.TICKS_PER_MINUTE*60*24);
 
+        // Refresh outdated uuids and names every hour
+        getServer().getScheduler().runTaskTimerAsynchronously(this, getUUIDRefresher(),
+                AutorankTools.TICKS_PER_MINUTE, (long) AutorankTools.TICKS_PER_MINUTE * 60);
+
         // ------------- Register commands -------------
 
         // Register command
@@ -567,6 +601,14 @@ public class Autorank extends JavaPlugin {
         return uuidStorage;
     }
 
+    public UUIDResolver getUUIDResolver() {
+        return uuidResolver;
+    }
+
+    public UUIDRefresher getUUIDRefresher() {
+        return uuidRefresher;
+    }
+
     public ValidateHandler getValidateHandler() {
         return validateHandler;
     }
@@ -666,6 +708,14 @@ public class Autorank extends JavaPlugin {
         this.uuidStorage = uuidStorage;
     }
 
+    public void setUUIDResolver(final UUIDResolver uuidResolver) {
+        this.uuidResolver = uuidResolver;
+    }
+
+    public void setUUIDRefresher(final UUIDRefresher uuidRefresher) {
+        this.uuidRefresher = uuidRefresher;
+    }
+
     public void setValidateHandler(final ValidateHandler validateHandler) {
         this.validateHandler = validateHandler;
     }
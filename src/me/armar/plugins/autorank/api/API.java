@@ -2,6 +2,7 @@ package me.armar.plugins.autorank.api;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.UUID;
 
 import org.bukkit.entity.Player;
@@ -107,6 +108,55 @@ public class API {
         return plugin.getFlatFileManager().getLocalTime(TimeType.TOTAL_TIME, uuid);
     }
 
+    /**
+     * Get the local play time of this player on this server in the previous
+     * day, week or month according to Autorank (in minutes).
+     * 
+     * @param uuid
+     *            UUID of the player
+     * @param type
+     *            Type of time (daily, weekly or monthly time)
+     * @return play time of this player in the previous period or 0 if not
+     *         found.
+     */
+    public int getPreviousLocalPlayTime(final UUID uuid, final TimeType type) {
+        return plugin.getFlatFileManager().getPreviousLocalTime(type, uuid);
+    }
+
+    /**
+     * Get the rank of a player on a leaderboard. Players with the same time
+     * share a rank. Ranks are only known when Autorank keeps track of the
+     * time.
+     * 
+     * @param uuid
+     *            UUID of the player
+     * @param type
+     *            Type of leaderboard
+     * @return rank of the player, starting at 1, or -1 if the player is not on
+     *         the leaderboard or the rank is not known.
+     */
+    public int getLeaderboardRank(final UUID uuid, final TimeType type) {
+        return plugin.getLeaderboardManager().getRank(uuid, type);
+    }
+
+    /**
+     * Get a part of a leaderboard. Players with the same time are ordered by
+     * UUID. Pages are only known when Autorank keeps track of the time.
+     * 
+     * @param type
+     *            Type of leaderboard
+     * @param offset
+     *            Number of players to skip, starting with the player with the
+     *            most time
+     * @param limit
+     *            Maximum number of players to get
+     * @return the players on the page with their time (in minutes), most time
+     *         first. The list is empty if the page is not known.
+     */
+    public List<Entry<UUID, Integer>> getLeaderboardPage(final TimeType type, final int offset, final int limit) {
+        return plugin.getLeaderboardManager().getPage(type, offset, limit);
+    }
+
     /**
      * Get the MySQL database name Autorank stores its global times in.
      * 
@@ -78,11 +78,17 @@ public class BackupManager {
                 if ((System.currentTimeMillis() - backupDataManager.getLatestBackup("data")) > 86400000) {
                     plugin.debugMessage(ChatColor.RED + "Making a backup of all data files!");
 
+                    // Data is stored in binary format, so export it as YAML.
                     for (TimeType type : TimeType.values()) {
                         String path = FlatFileManager.dataTypePaths.get(type);
 
-                        plugin.getBackupManager().backupFile(path, plugin.getDataFolder().getAbsolutePath()
-                                + File.separator + "backups" + File.separator + path.replace("/data/", ""));
+                        File backupFile = new File(plugin.getDataFolder().getAbsolutePath() + File.separator
+                                + "backups" + File.separator + path.replace("/data/", "").replace(".yml", "")
+                                + "-backup-" + System.currentTimeMillis() + ".yml");
+
+                        backupFile.getParentFile().mkdirs();
+
+                        plugin.getFlatFileManager().exportData(type, backupFile);
                     }
 
                     // Update latest backup time
@@ -20,6 +20,7 @@ import me.armar.plugins.autorank.pathbuilder.holders.RequirementsHolder;
 import me.armar.plugins.autorank.permissions.AutorankPermission;
 import me.armar.plugins.autorank.util.AutorankTools;
 import me.armar.plugins.autorank.util.AutorankTools.Time;
+import me.armar.plugins.autorank.util.Layout;
 
 /**
  * The command delegator for the '/ar check' command.
@@ -28,10 +29,34 @@ public class CheckCommand extends AutorankCommand {
 
     private final Autorank plugin;
 
+    // Placeholders of the layout, in the order their values are given.
+    private static final String[] LAYOUT_PLACEHOLDERS = { "&path", "&p", "&time", "&globaltime", "&reqs" };
+
+    // Layout of the check command, and the text it was created from.
+    private Layout layout;
+    private String layoutText;
+
     public CheckCommand(final Autorank instance) {
         plugin = instance;
     }
 
+    /**
+     * Get the layout of the check command. It is only split into text and
+     * placeholders again when it was changed in the config.
+     *
+     * @return the layout of the check command.
+     */
+    private synchronized Layout getLayout() {
+        final String text = plugin.getConfigHandler().getCheckCommandLayout();
+
+        if (!text.equals(layoutText)) {
+            layout = new Layout(text, LAYOUT_PLACEHOLDERS);
+            layoutText = text;
+        }
+
+        return layout;
+    }
+
     public void check(final CommandSender sender, final Player player) {
         // Call event to let other plugins know that a player wants to check
         // itself.
@@ -46,6 +71,22 @@ public class CheckCommand extends AutorankCommand {
         if (event.isCancelled())
             return;
 
+        // Every requirement is only evaluated once, even though it is used to
+        // show the progress and to check the player.
+        plugin.getPlayerChecker().getRequirementCache().startPass(player.getUniqueId());
+
+        try {
+            showProgress(sender, player, uuid);
+        } finally {
+            plugin.getPlayerChecker().getRequirementCache().endPass(player.getUniqueId());
+        }
+    }
+
+    /**
+     * Show the path of a player and the requirements (s)he completed, then
+     * check the player.
+     */
+    private void showProgress(final CommandSender sender, final Player player, final UUID uuid) {
         Path activePath = plugin.getPathManager().getCurrentPath(uuid);
 
         if (activePath == null) {
@@ -106,29 +147,30 @@ public class CheckCommand extends AutorankCommand {
 
         // Start building layout
 
-        String layout = plugin.getConfigHandler().getCheckCommandLayout();
+        final Layout layout = getLayout();
+
+        final String time = layout.contains("&time") ? AutorankTools
+                .timeToString(plugin.getPlaytimes().getTimeOfPlayer(player.getName(), true), Time.SECONDS) : "";
 
-        layout = layout.replace("&path", displayName);
-        layout = layout.replace("&p", player.getName());
-        layout = layout.replace("&time", AutorankTools
-                .timeToString(plugin.getPlaytimes().getTimeOfPlayer(player.getName(), true), Time.SECONDS));
-        layout = layout.replace("&globaltime",
-                AutorankTools.timeToString(plugin.getMySQLManager().getGlobalTime(uuid), Time.MINUTES));
+        // Only ask the database when the global time is shown.
+        final String globalTime = layout.contains("&globaltime")
+                ? AutorankTools.timeToString(plugin.getMySQLManager().getGlobalTime(uuid), Time.MINUTES) : "";
 
         boolean showReqs = false;
 
         List<RequirementsHolder> holders = activePath.getRequirements();
 
+        String reqs = "";
+
         if (holders == null || holders.size() == 0) {
-            layout = layout.replace("&reqs", Lang.NO_FURTHER_PATH_FOUND.getConfigValue());
+            reqs = Lang.NO_FURTHER_PATH_FOUND.getConfigValue();
         } else {
-            layout = layout.replace("&reqs", "");
             showReqs = true;
         }
 
         // Send layout to player
 
-        AutorankTools.sendColoredMessage(sender, layout);
+        AutorankTools.sendColoredMessage(sender, layout.render(displayName, player.getName(), time, globalTime, reqs));
 
         // Don't get requirements when the player has no new requirements
         if (!showReqs)
@@ -62,7 +62,7 @@ public class GlobalAddCommand extends AutorankCommand {
                 }
 
                 if (value >= 0) {
-                    if (!plugin.getMySQLManager().setGlobalTime(uuid, plugin.getMySQLManager().getFreshGlobalTime(uuid) + value)) {
+                    if (plugin.getMySQLManager().incrementGlobalTime(uuid, value) < 0) {
                         sender.sendMessage(Lang.MYSQL_IS_NOT_ENABLED.getConfigValue());
                         return;
                     }
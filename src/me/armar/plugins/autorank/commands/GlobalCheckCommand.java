@@ -58,7 +58,8 @@ public class GlobalCheckCommand extends AutorankCommand {
 
                     @Override
                     public void run() {
-                        final int minutes = plugin.getMySQLManager().getGlobalTime(uuid);
+                        // Gives -1 when the database could not be read.
+                        final int minutes = plugin.getMySQLManager().getGlobalTimeCache().get(uuid);
 
                         if (minutes < 0) {
                             sender.sendMessage(Lang.PLAYER_IS_INVALID.getConfigValue(args[1]));
@@ -90,7 +91,10 @@ public class GlobalCheckCommand extends AutorankCommand {
 
                     @Override
                     public void run() {
-                        final int minutes = plugin.getMySQLManager().getGlobalTime(uuid);
+                        // Online players are kept in the cache by the refresh task,
+                        // so this only reads the database on a miss. Gives -1 when
+                        // the database could not be read.
+                        final int minutes = plugin.getMySQLManager().getGlobalTimeCache().get(uuid);
 
                         if (minutes < 0) {
                             sender.sendMessage(Lang.PLAYER_IS_INVALID.getConfigValue(args[1]));
@@ -118,13 +122,23 @@ public class GlobalCheckCommand extends AutorankCommand {
 
             final UUID uuid = plugin.getUUIDStorage().getStoredUUID(player.getName());
 
+            if (uuid == null) {
+                sender.sendMessage(Lang.PLAYER_IS_INVALID.getConfigValue(player.getName()));
+                return true;
+            }
+
             plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
                 @Override
                 public void run() {
-                    AutorankTools.sendColoredMessage(sender,
-                            "You have played for " + AutorankTools
-                                    .timeToString(plugin.getMySQLManager().getGlobalTime(uuid), Time.MINUTES)
-                                    + " across all servers.");
+                    final int minutes = plugin.getMySQLManager().getGlobalTimeCache().get(uuid);
+
+                    if (minutes < 0) {
+                        sender.sendMessage(Lang.PLAYER_IS_INVALID.getConfigValue(player.getName()));
+                        return;
+                    }
+
+                    AutorankTools.sendColoredMessage(sender, "You have played for "
+                            + AutorankTools.timeToString(minutes, Time.MINUTES) + " across all servers.");
                 }
             });
 
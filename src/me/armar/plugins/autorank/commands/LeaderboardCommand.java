@@ -1,7 +1,10 @@
 package me.armar.plugins.autorank.commands;
 
+import java.util.UUID;
+
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
 
 import me.armar.plugins.autorank.Autorank;
 import me.armar.plugins.autorank.commands.manager.AutorankCommand;
@@ -32,6 +35,12 @@ public class LeaderboardCommand extends AutorankCommand {
         boolean broadcast = false;
         boolean force = false;
 
+        // Whether to show the rank of the sender
+        boolean rank = false;
+
+        // Page of the leaderboard to show, 0 for the cached leaderboard
+        int page = 0;
+
         for (final String arg : args) {
             if (arg.equalsIgnoreCase("force")) {
 
@@ -51,13 +60,18 @@ public class LeaderboardCommand extends AutorankCommand {
                 }
 
                 broadcast = true;
+            } else if (arg.equalsIgnoreCase("rank")) {
+                rank = true;
+            } else if (isPage(arg)) {
+                page = Integer.parseInt(arg);
             }
         }
 
         String leaderboardType = "total";
         TimeType type = null;
 
-        if (args.length > 1 && !args[1].equalsIgnoreCase("force") && !args[1].equalsIgnoreCase("broadcast")) {
+        if (args.length > 1 && !args[1].equalsIgnoreCase("force") && !args[1].equalsIgnoreCase("broadcast")
+                && !args[1].equalsIgnoreCase("rank") && !isPage(args[1])) {
             leaderboardType = args[1].toLowerCase();
         }
 
@@ -78,6 +92,37 @@ public class LeaderboardCommand extends AutorankCommand {
         
         final TimeType type2 = type;
 
+        if (rank) {
+            if (!(sender instanceof Player)) {
+                sender.sendMessage(Lang.YOU_ARE_A_ROBOT.getConfigValue("you don't have a rank, silly.."));
+                return true;
+            }
+
+            final UUID uuid = ((Player) sender).getUniqueId();
+
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+                public void run() {
+                    final int position = plugin.getLeaderboardManager().getRank(uuid, type2);
+
+                    if (position < 0) {
+                        sender.sendMessage(Lang.LEADERBOARD_NOT_RANKED.getConfigValue());
+                    } else {
+                        sender.sendMessage(Lang.LEADERBOARD_RANK.getConfigValue(position,
+                                plugin.getLeaderboardManager().getRankedPlayers(type2)));
+                    }
+                }
+            });
+
+            return true;
+        }
+
+        if (page > 1) {
+            // Later pages are read from the ranks, not from the cached
+            // leaderboard.
+            plugin.getLeaderboardManager().sendPage(sender, type, page);
+            return true;
+        }
+
         if (force) {
             // Forcely update leaderboard first.
             sender.sendMessage(ChatColor.GREEN + "Updating the leaderboard. This could take a while!");
@@ -118,6 +163,23 @@ public class LeaderboardCommand extends AutorankCommand {
 
     @Override
     public String getUsage() {
-        return "/ar leaderboard <type>";
+        return "/ar leaderboard <type> [page|rank]";
+    }
+
+    /**
+     * Check whether an argument is the number of a page.
+     */
+    private static boolean isPage(final String arg) {
+        if (arg.isEmpty() || arg.length() > 9) {
+            return false;
+        }
+
+        for (int i = 0; i < arg.length(); i++) {
+            if (!Character.isDigit(arg.charAt(i))) {
+                return false;
+            }
+        }
+
+        return Integer.parseInt(arg) > 0;
     }
 }
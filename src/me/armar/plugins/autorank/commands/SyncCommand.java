@@ -1,5 +1,6 @@
 package me.armar.plugins.autorank.commands;
 
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
 
@@ -10,6 +11,7 @@ import org.bukkit.command.CommandSender;
 import me.armar.plugins.autorank.Autorank;
 import me.armar.plugins.autorank.commands.manager.AutorankCommand;
 import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
+import me.armar.plugins.autorank.data.mysql.MySQLManager.GlobalTimeConsumer;
 import me.armar.plugins.autorank.language.Lang;
 import me.armar.plugins.autorank.permissions.AutorankPermission;
 
@@ -18,6 +20,9 @@ import me.armar.plugins.autorank.permissions.AutorankPermission;
  */
 public class SyncCommand extends AutorankCommand {
 
+    // Number of database records that are read at once.
+    private static final int CHUNK_SIZE = 1000;
+
     private final Autorank plugin;
 
     public SyncCommand(final Autorank instance) {
@@ -55,12 +60,40 @@ public class SyncCommand extends AutorankCommand {
 
                 @Override
                 public void run() {
-                    int count = 0;
-
-                    // Update all data.yml records
-                    for (Entry<UUID, Integer> entry : plugin.getMySQLManager().getAllPlayersFromDatabase().entrySet()) {
-                        plugin.getFlatFileManager().setLocalTime(TimeType.TOTAL_TIME, entry.getValue(), entry.getKey());
-                        count++;
+                    final int total = plugin.getMySQLManager().getPlayerCountOfDatabase();
+
+                    // Read the database in chunks, so the whole table is never
+                    // in memory.
+                    final int count = plugin.getMySQLManager().streamAllPlayersFromDatabase(CHUNK_SIZE,
+                            new GlobalTimeConsumer() {
+
+                                private int lastSentPercentage = 0;
+
+                                @Override
+                                public void accept(final Map<UUID, Integer> times, final int read) {
+                                    // Update all data.yml records
+                                    for (final Entry<UUID, Integer> entry : times.entrySet()) {
+                                        plugin.getFlatFileManager().setLocalTime(TimeType.TOTAL_TIME,
+                                                entry.getValue(), entry.getKey());
+                                    }
+
+                                    if (total <= 0) {
+                                        return;
+                                    }
+
+                                    final int percentage = (int) Math.floor((read * 100.0) / total);
+
+                                    if (percentage / 10 > lastSentPercentage / 10 && percentage < 100) {
+                                        lastSentPercentage = percentage;
+                                        sender.sendMessage(ChatColor.GRAY + "Updated " + read + " of " + total
+                                                + " MySQL database records (" + percentage + "%)...");
+                                    }
+                                }
+                            });
+
+                    if (count < 0) {
+                        sender.sendMessage(ChatColor.RED + "Could not read all MySQL database records!");
+                        return;
                     }
 
                     sender.sendMessage(ChatColor.GREEN + "Successfully updated Data.yml from " + count
@@ -80,10 +113,11 @@ public class SyncCommand extends AutorankCommand {
                         if (localTime <= 0)
                             continue;
 
-                        final int globalTime = plugin.getMySQLManager().getGlobalTime(uuid);
-
-                        plugin.getMySQLManager().setGlobalTime(uuid, localTime + globalTime);
+                        // Let the database add the local time to the global time.
+                        plugin.getMySQLManager().addGlobalTime(uuid, localTime);
                     }
+
+                    plugin.getMySQLManager().flushGlobalTime();
                     sender.sendMessage(ChatColor.GREEN + "Successfully updated MySQL records!");
                 }
             });
@@ -94,7 +94,7 @@ public class InternalPropertiesConfig {
     public void hasTransferredUUIDs(final boolean value) {
         config.set("has converted uuids", value);
 
-        config.saveFile();
+        config.saveFileAsync();
     }
 
     /**
@@ -143,7 +143,20 @@ public class InternalPropertiesConfig {
     }
 
     /**
-     * Set the cached leaderboard for a certain time type.
+     * Save the internalprops.yml file if it has unsaved changes.
+     */
+    public void saveConfig() {
+        if (config == null) {
+            return;
+        }
+
+        config.saveFile();
+    }
+
+    /**
+     * Set the cached leaderboard for a certain time type. Leaderboards are
+     * kept in memory while Autorank runs, so this is only saved along with the
+     * rest of the file.
      * 
      * @param type
      *            Type of time
@@ -152,20 +165,17 @@ public class InternalPropertiesConfig {
      */
     public void setCachedLeaderboard(final TimeType type, final List<String> cachedLeaderboard) {
         config.set("leaderboards." + type.toString().toLowerCase() + ".cached leaderboard", cachedLeaderboard);
-
-        config.saveFile();
     }
 
     /**
-     * Set the time any leaderboard was last updated.
+     * Set the time any leaderboard was last updated. This is only saved along
+     * with the rest of the file.
      * 
      * @param time
      *            Last update time (UNIX timestamp)
      */
     public void setLeaderboardLastUpdateTime(final TimeType type, final long time) {
         config.set("leaderboards." + type.toString().toLowerCase() + ".last updated", time);
-
-        config.saveFile();
     }
 
     /**
@@ -188,7 +198,7 @@ public class InternalPropertiesConfig {
             return;
         }
 
-        config.saveFile();
+        config.saveFileAsync();
     }
     
     /**
@@ -206,6 +216,26 @@ public class InternalPropertiesConfig {
     public void setConvertedToNewFormat(boolean value) {
         config.set("is converted to new format", value);
         
-        config.saveFile();
+        config.saveFileAsync();
+    }
+
+    /**
+     * Check whether the YAML time files have been imported into the binary
+     * play time store.
+     * @return true if they have been imported, false otherwise.
+     */
+    public boolean isPlaytimeStoreMigrated() {
+        return config.getBoolean("is playtime store migrated", false);
+    }
+
+    /**
+     * Set whether the YAML time files have been imported into the binary play
+     * time store.
+     * @param value either true or false
+     */
+    public void setPlaytimeStoreMigrated(boolean value) {
+        config.set("is playtime store migrated", value);
+
+        config.saveFileAsync();
     }
 }
@@ -1,9 +1,14 @@
 package me.armar.plugins.autorank.config;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
 
 import me.armar.plugins.autorank.Autorank;
 import me.armar.plugins.autorank.util.AutorankTools;
@@ -13,7 +18,9 @@ import me.armar.plugins.autorank.util.AutorankTools;
  * store which path a player has chosen and which requirements they already met.
  * 
  * PlayerDataConfig uses a file (/playerdata/Playerdata.yml) which keeps tracks
- * of these things.
+ * of these things. The progress of online players is also kept in memory (see
+ * {@link PlayerProgress}), so it is not read from the file on every check.
+ * Changes are written to the file right away.
  * 
  * @author Staartvin
  * 
@@ -28,6 +35,14 @@ public class PlayerDataConfig {
 
     private boolean convertingData = false;
 
+    // Players that are exempted from the leaderboard. Kept in memory, as it
+    // is checked for every player whenever a leaderboard is built.
+    private final Set<UUID> leaderboardExemptions = Collections
+            .newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+
+    // Progress of the players that are online.
+    private final Map<UUID, PlayerProgress> progress = new ConcurrentHashMap<UUID, PlayerProgress>();
+
     public PlayerDataConfig(final Autorank instance) {
         this.plugin = instance;
 
@@ -47,6 +62,13 @@ public class PlayerDataConfig {
     public void createNewFile() {
         config = new SimpleYamlConfiguration(plugin, "/playerdata/" + fileName, fileName);
 
+        loadLeaderboardExemptions();
+
+        // Players are already online when the plugin is reloaded.
+        for (final Player player : plugin.getServer().getOnlinePlayers()) {
+            loadProgress(player.getUniqueId());
+        }
+
         plugin.getLogger().info("PlayerData file loaded (" + fileName + ")");
     }
 
@@ -69,6 +91,58 @@ public class PlayerDataConfig {
     public void reloadConfig() {
         if (config != null) {
             config.reloadFile();
+
+            loadLeaderboardExemptions();
+
+            for (final UUID uuid : progress.keySet()) {
+                loadProgress(uuid);
+            }
+        }
+    }
+
+    /**
+     * Keep the progress of a player in memory. Call this when a player joins.
+     * 
+     * @param uuid
+     *            UUID of the player
+     */
+    public void loadProgress(final UUID uuid) {
+        final String key = uuid.toString();
+
+        progress.put(uuid,
+                new PlayerProgress(config.getString(key + ".chosen path", "unknown"),
+                        config.getIntegerList(key + ".completed requirements"),
+                        config.getIntegerList(key + ".completed prerequisites"),
+                        config.getStringList(key + ".completed paths"), config.getStringList(key + ".started paths")));
+    }
+
+    /**
+     * Stop keeping the progress of a player in memory. Call this when a player
+     * leaves. The progress is already in the file.
+     * 
+     * @param uuid
+     *            UUID of the player
+     */
+    public void unloadProgress(final UUID uuid) {
+        progress.remove(uuid);
+    }
+
+    /**
+     * Read which players are exempted from the leaderboard.
+     */
+    private void loadLeaderboardExemptions() {
+        leaderboardExemptions.clear();
+
+        for (final String key : config.getKeys(false)) {
+            if (!config.getBoolean(key + ".exempt leaderboard", false)) {
+                continue;
+            }
+
+            try {
+                leaderboardExemptions.add(UUID.fromString(key));
+            } catch (final IllegalArgumentException e) {
+                // Not converted to UUID yet.
+            }
         }
     }
 
@@ -112,6 +186,12 @@ public class PlayerDataConfig {
      */
     public void setCompletedRequirements(final UUID uuid, final List<Integer> requirements) {
         config.set(uuid.toString() + ".completed requirements", requirements);
+
+        final PlayerProgress playerProgress = progress.get(uuid);
+
+        if (playerProgress != null) {
+            playerProgress.setCompletedRequirements(requirements);
+        }
     }
 
     /**
@@ -123,6 +203,12 @@ public class PlayerDataConfig {
      * @return a list of requirements a player completed.
      */
     public List<Integer> getCompletedRequirements(final UUID uuid) {
+        final PlayerProgress playerProgress = progress.get(uuid);
+
+        if (playerProgress != null) {
+            return playerProgress.getCompletedRequirements();
+        }
+
         return config.getIntegerList(uuid.toString() + ".completed requirements");
     }
 
@@ -137,6 +223,12 @@ public class PlayerDataConfig {
      *         otherwise.
      */
     public boolean hasCompletedRequirement(final int reqID, final UUID uuid) {
+        final PlayerProgress playerProgress = progress.get(uuid);
+
+        if (playerProgress != null) {
+            return playerProgress.hasCompletedRequirement(reqID);
+        }
+
         final List<Integer> completedRequirement = getCompletedRequirements(uuid);
 
         return completedRequirement.contains(reqID);
@@ -171,6 +263,12 @@ public class PlayerDataConfig {
      */
     public void setCompletedPrerequisites(final UUID uuid, final List<Integer> prerequisites) {
         config.set(uuid.toString() + ".completed prerequisites", prerequisites);
+
+        final PlayerProgress playerProgress = progress.get(uuid);
+
+        if (playerProgress != null) {
+            playerProgress.setCompletedPrerequisites(prerequisites);
+        }
     }
 
     /**
@@ -182,6 +280,12 @@ public class PlayerDataConfig {
      * @return a list of prerequisites a player completed.
      */
     public List<Integer> getCompletedPrerequisites(final UUID uuid) {
+        final PlayerProgress playerProgress = progress.get(uuid);
+
+        if (playerProgress != null) {
+            return playerProgress.getCompletedPrerequisites();
+        }
+
         return config.getIntegerList(uuid.toString() + ".completed prerequisites");
     }
 
@@ -196,6 +300,12 @@ public class PlayerDataConfig {
      *         otherwise.
      */
     public boolean hasCompletedPrerequisite(final int preReqId, final UUID uuid) {
+        final PlayerProgress playerProgress = progress.get(uuid);
+
+        if (playerProgress != null) {
+            return playerProgress.hasCompletedPrerequisite(preReqId);
+        }
+
         final List<Integer> completedPrerequisites = getCompletedPrerequisites(uuid);
 
         return completedPrerequisites.contains(preReqId);
@@ -279,6 +389,12 @@ public class PlayerDataConfig {
      *         not choose a path (yet).
      */
     public String getChosenPath(final UUID uuid) {
+        final PlayerProgress playerProgress = progress.get(uuid);
+
+        if (playerProgress != null) {
+            return playerProgress.getChosenPath();
+        }
+
         return config.getString(uuid.toString() + ".chosen path", "unknown");
     }
 
@@ -290,6 +406,12 @@ public class PlayerDataConfig {
      * @return a list of path names that the given player completed.
      */
     public List<String> getCompletedPaths(final UUID uuid) {
+        final PlayerProgress playerProgress = progress.get(uuid);
+
+        if (playerProgress != null) {
+            return playerProgress.getCompletedPaths();
+        }
+
         final List<String> completed = config.getStringList(uuid.toString() + ".completed paths");
 
         return completed;
@@ -312,6 +434,12 @@ public class PlayerDataConfig {
             return false;
         }
 
+        final PlayerProgress playerProgress = progress.get(uuid);
+
+        if (playerProgress != null) {
+            return playerProgress.hasCompletedPath(pathName);
+        }
+
         return getCompletedPaths(uuid).contains(pathName);
     }
 
@@ -324,7 +452,7 @@ public class PlayerDataConfig {
      *         leaderboard. False otherwise.
      */
     public boolean hasLeaderboardExemption(final UUID uuid) {
-        return config.getBoolean(uuid.toString() + ".exempt leaderboard", false);
+        return leaderboardExemptions.contains(uuid);
     }
 
     /**
@@ -337,6 +465,12 @@ public class PlayerDataConfig {
      */
     public void hasLeaderboardExemption(final UUID uuid, final boolean value) {
         config.set(uuid.toString() + ".exempt leaderboard", value);
+
+        if (value) {
+            leaderboardExemptions.add(uuid);
+        } else {
+            leaderboardExemptions.remove(uuid);
+        }
     }
     
     /**
@@ -346,7 +480,7 @@ public class PlayerDataConfig {
      */
     public void addStartedPath(UUID uuid, String pathName) {
         // Don't add a path if it's already in there.
-        if (this.getStartedPaths(uuid).contains(pathName)) return;
+        if (this.hasStartedPath(uuid, pathName)) return;
         
         List<String> startedPaths = this.getStartedPaths(uuid);
         
@@ -362,7 +496,7 @@ public class PlayerDataConfig {
      */
     public void removeStartedPath(UUID uuid, String pathName) {
         // Don't remove a path if it's not in there.
-        if (!this.getStartedPaths(uuid).contains(pathName)) return;
+        if (!this.hasStartedPath(uuid, pathName)) return;
         
         List<String> startedPaths = this.getStartedPaths(uuid);
         
@@ -380,6 +514,12 @@ public class PlayerDataConfig {
      * @return a list of path names that the player started
      */
     public List<String> getStartedPaths(UUID uuid) {
+        final PlayerProgress playerProgress = progress.get(uuid);
+
+        if (playerProgress != null) {
+            return playerProgress.getStartedPaths();
+        }
+
         return config.getStringList(uuid + ".started paths");
     }
     
@@ -390,6 +530,12 @@ public class PlayerDataConfig {
      */
     public void setStartedPaths(UUID uuid, List<String> pathNames) {      
         config.set(uuid + ".started paths", pathNames);
+
+        final PlayerProgress playerProgress = progress.get(uuid);
+
+        if (playerProgress != null) {
+            playerProgress.setStartedPaths(pathNames);
+        }
     }
     
     /**
@@ -398,7 +544,13 @@ public class PlayerDataConfig {
      * @param pathName Name of the path
      * @return true if the player has started this path, false otherwise (if this path was completed or never started)
      */
-    public boolean hasStartedPath(UUID uuid, String pathName) {       
+    public boolean hasStartedPath(UUID uuid, String pathName) {
+        final PlayerProgress playerProgress = progress.get(uuid);
+
+        if (playerProgress != null) {
+            return playerProgress.hasStartedPath(pathName);
+        }
+
         return this.getStartedPaths(uuid).contains(pathName);
     }
 
@@ -412,6 +564,13 @@ public class PlayerDataConfig {
      */
     public void setChosenPath(final UUID uuid, final String path) {
         config.set(uuid.toString() + ".chosen path", path);
+
+        final PlayerProgress playerProgress = progress.get(uuid);
+
+        if (playerProgress != null) {
+            // Removing the path means the player did not choose a path.
+            playerProgress.setChosenPath(path == null ? "unknown" : path);
+        }
     }
 
     /**
@@ -424,5 +583,11 @@ public class PlayerDataConfig {
      */
     public void setCompletedPaths(final UUID uuid, final List<String> completedPaths) {
         config.set(uuid.toString() + ".completed paths", completedPaths);
+
+        final PlayerProgress playerProgress = progress.get(uuid);
+
+        if (playerProgress != null) {
+            playerProgress.setCompletedPaths(completedPaths);
+        }
     }
 }
@@ -0,0 +1,145 @@
+package me.armar.plugins.autorank.config;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The progress of a single player, as it is stored in the PlayerData.yml
+ * file. <br>
+ * The progress of online players is kept in memory by
+ * {@link PlayerDataConfig}, so checking whether a player completed a
+ * requirement does not have to read a list from the file every time. The IDs
+ * of completed requirements and prerequisites are kept as bits, so looking
+ * them up does not have to search a list either.
+ * <p>
+ * Lists that are returned are copies, so they can be changed by the caller.
+ */
+class PlayerProgress {
+
+    private String chosenPath;
+
+    private final BitSet completedRequirements = new BitSet();
+    private final BitSet completedPrerequisites = new BitSet();
+
+    // Sets keep the order of the paths, so they are written back in the same
+    // order.
+    private final Set<String> completedPaths = new LinkedHashSet<String>();
+    private final Set<String> startedPaths = new LinkedHashSet<String>();
+
+    /**
+     * Create the progress of a player.
+     *
+     * @param chosenPath
+     *            Name of the path the player has chosen
+     * @param completedRequirements
+     *            IDs of the requirements the player completed, can be null
+     * @param completedPrerequisites
+     *            IDs of the prerequisites the player completed, can be null
+     * @param completedPaths
+     *            Names of the paths the player completed, can be null
+     * @param startedPaths
+     *            Names of the paths the player started, can be null
+     */
+    PlayerProgress(final String chosenPath, final List<Integer> completedRequirements,
+            final List<Integer> completedPrerequisites, final List<String> completedPaths,
+            final List<String> startedPaths) {
+        this.chosenPath = chosenPath;
+
+        setCompletedRequirements(completedRequirements);
+        setCompletedPrerequisites(completedPrerequisites);
+        setCompletedPaths(completedPaths);
+        setStartedPaths(startedPaths);
+    }
+
+    synchronized String getChosenPath() {
+        return chosenPath;
+    }
+
+    synchronized void setChosenPath(final String chosenPath) {
+        this.chosenPath = chosenPath;
+    }
+
+    synchronized boolean hasCompletedRequirement(final int reqID) {
+        return reqID >= 0 && completedRequirements.get(reqID);
+    }
+
+    synchronized List<Integer> getCompletedRequirements() {
+        return toList(completedRequirements);
+    }
+
+    synchronized void setCompletedRequirements(final List<Integer> requirements) {
+        fill(completedRequirements, requirements);
+    }
+
+    synchronized boolean hasCompletedPrerequisite(final int preReqID) {
+        return preReqID >= 0 && completedPrerequisites.get(preReqID);
+    }
+
+    synchronized List<Integer> getCompletedPrerequisites() {
+        return toList(completedPrerequisites);
+    }
+
+    synchronized void setCompletedPrerequisites(final List<Integer> prerequisites) {
+        fill(completedPrerequisites, prerequisites);
+    }
+
+    synchronized boolean hasCompletedPath(final String pathName) {
+        return completedPaths.contains(pathName);
+    }
+
+    synchronized List<String> getCompletedPaths() {
+        return new ArrayList<String>(completedPaths);
+    }
+
+    synchronized void setCompletedPaths(final List<String> pathNames) {
+        fill(completedPaths, pathNames);
+    }
+
+    synchronized boolean hasStartedPath(final String pathName) {
+        return startedPaths.contains(pathName);
+    }
+
+    synchronized List<String> getStartedPaths() {
+        return new ArrayList<String>(startedPaths);
+    }
+
+    synchronized void setStartedPaths(final List<String> pathNames) {
+        fill(startedPaths, pathNames);
+    }
+
+    private static void fill(final BitSet ids, final List<Integer> values) {
+        ids.clear();
+
+        if (values == null) {
+            return;
+        }
+
+        for (final Integer id : values) {
+            // IDs are indices, so they are never negative.
+            if (id != null && id >= 0) {
+                ids.set(id);
+            }
+        }
+    }
+
+    private static void fill(final Set<String> names, final List<String> values) {
+        names.clear();
+
+        if (values != null) {
+            names.addAll(values);
+        }
+    }
+
+    private static List<Integer> toList(final BitSet ids) {
+        final List<Integer> list = new ArrayList<Integer>(ids.cardinality());
+
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            list.add(id);
+        }
+
+        return list;
+    }
+}
@@ -240,6 +240,25 @@ public class SettingsConfig {
         return this.getConfig().getBoolean("use global time in leaderboard", false);
     }
 
+    /**
+     * Get the maximum number of connections Autorank keeps open to the MySQL
+     * database.
+     * 
+     * @return number of connections. By default 4.
+     */
+    public int getMySQLPoolSize() {
+        return Math.max(1, this.getConfig().getInt("sql.pool size", 4));
+    }
+
+    /**
+     * Get the maximum number of players whose global time is cached.
+     * 
+     * @return number of players. By default 10000.
+     */
+    public int getMySQLCacheSize() {
+        return Math.max(1, this.getConfig().getInt("sql.cache size", 10000));
+    }
+
     /**
      * Check whether Autorank should use MySQL to store global times of players.
      */
@@ -2,24 +2,60 @@ package me.armar.plugins.autorank.config;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ConcurrentModificationException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
 /**
  * This represents any YAML file that Autorank uses. <br>
- * It is used for the data.yml, playerdata.yml and daily/monthly/weekly data
- * files.
+ * It is used for the playerdata.yml and internalprops.yml files.
+ * <p>
+ * Every change made via {@link #set(String, Object)} marks the file as dirty.
+ * {@link #saveFile()} skips files that did not change since the last save and
+ * writes the others from a copy that is taken while holding the lock, so other
+ * threads can keep changing the file while it is being written.
  *
  * @author Staartvin
  */
 public class SimpleYamlConfiguration extends YamlConfiguration {
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Statistics over all YAML files
+    private static final AtomicLong totalBytesWritten = new AtomicLong();
+    private static final AtomicLong totalFlushes = new AtomicLong();
+    private static final AtomicLong totalSkippedFlushes = new AtomicLong();
+
     File file;
 
+    private JavaPlugin plugin;
+
+    // Whether the file changed since it was last saved or loaded.
+    private volatile boolean dirty = false;
+
+    // Whether an async save has been scheduled but not run yet.
+    private final AtomicBoolean saveScheduled = new AtomicBoolean(false);
+
+    // Makes sure only one thread writes the file at a time.
+    private final Object writeLock = new Object();
+
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong skippedFlushes = new AtomicLong();
+
     /**
      * Create a new YAML file.
      *
@@ -32,6 +68,8 @@ public class SimpleYamlConfiguration extends YamlConfiguration {
          * accepts null as configDefaults -> check for resource and copies it if
          * found, makes an empty config if nothing is found
          */
+        this.plugin = plugin;
+
         final String folderPath = plugin.getDataFolder().getAbsolutePath() + File.separator;
         file = new File(folderPath + fileName);
 
@@ -56,6 +94,22 @@ public class SimpleYamlConfiguration extends YamlConfiguration {
 
     }
 
+    /**
+     * Load a YAML file without copying defaults from the jar or logging that
+     * it was loaded.
+     *
+     * @param plugin Plugin to create it for.
+     * @param file   File to load.
+     */
+    public SimpleYamlConfiguration(final JavaPlugin plugin, final File file) {
+        this.plugin = plugin;
+        this.file = file;
+
+        if (file.exists()) {
+            loadFile();
+        }
+    }
+
     /**
      * Get the internal YAML file.
      */
@@ -87,15 +141,236 @@ public class SimpleYamlConfiguration extends YamlConfiguration {
     }
 
     /**
-     * Save the YAML file.
+     * Save the YAML file. Nothing is written when the file did not change
+     * since it was last saved.
      */
     public void saveFile() {
-        try {
-            this.save(file);
-        } catch (final ConcurrentModificationException e) {
+        synchronized (writeLock) {
+            final YamlConfiguration snapshot;
+
+            synchronized (this) {
+                if (!dirty) {
+                    skippedFlushes.incrementAndGet();
+                    totalSkippedFlushes.incrementAndGet();
+                    return;
+                }
+
+                snapshot = createSnapshot();
+                dirty = false;
+            }
+
+            try {
+                writeSnapshot(snapshot);
+            } catch (final IOException e) {
+                // Try again next time.
+                dirty = true;
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Save the YAML file on another thread. Multiple calls before the save
+     * has run result in a single save.
+     */
+    public void saveFileAsync() {
+        if (!dirty) {
+            skippedFlushes.incrementAndGet();
+            totalSkippedFlushes.incrementAndGet();
+            return;
+        }
+
+        // Cannot schedule tasks while disabling, so save right away.
+        if (plugin == null || !plugin.isEnabled()) {
             saveFile();
-        } catch (final IOException e) {
-            e.printStackTrace();
+            return;
+        }
+
+        if (!saveScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+            @Override
+            public void run() {
+                saveScheduled.set(false);
+                saveFile();
+            }
+        });
+    }
+
+    /**
+     * Check whether this file has changes that were not saved yet.
+     *
+     * @return true if the file has unsaved changes.
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Get the number of bytes that were written to this file.
+     *
+     * @return bytes written since the file was created.
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Get the number of saves that were skipped because nothing changed.
+     *
+     * @return number of skipped saves.
+     */
+    public long getSkippedFlushes() {
+        return skippedFlushes.get();
+    }
+
+    /**
+     * Get the number of bytes written by all YAML files.
+     *
+     * @return bytes written by all YAML files.
+     */
+    public static long getTotalBytesWritten() {
+        return totalBytesWritten.get();
+    }
+
+    /**
+     * Get the number of times any YAML file was written.
+     *
+     * @return number of saves that were written to disk.
+     */
+    public static long getTotalFlushes() {
+        return totalFlushes.get();
+    }
+
+    /**
+     * Get the number of saves of all YAML files that were skipped because
+     * nothing changed.
+     *
+     * @return number of skipped saves.
+     */
+    public static long getTotalSkippedFlushes() {
+        return totalSkippedFlushes.get();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.bukkit.configuration.MemorySection#set(java.lang.String,
+     * java.lang.Object)
+     */
+    @Override
+    public synchronized void set(final String path, final Object value) {
+        super.set(path, value);
+
+        dirty = true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.bukkit.configuration.MemorySection#createSection(java.lang.String)
+     */
+    @Override
+    public synchronized ConfigurationSection createSection(final String path) {
+        dirty = true;
+
+        return super.createSection(path);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.bukkit.configuration.MemoryConfiguration#addDefault(java.lang.String,
+     * java.lang.Object)
+     */
+    @Override
+    public synchronized void addDefault(final String path, final Object value) {
+        super.addDefault(path, value);
+
+        dirty = true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.bukkit.configuration.file.YamlConfiguration#loadFromString(java.lang.
+     * String)
+     */
+    @Override
+    public synchronized void loadFromString(final String contents) throws InvalidConfigurationException {
+        super.loadFromString(contents);
+
+        // What we just loaded is what is on disk.
+        dirty = false;
+    }
+
+    /**
+     * Copy all values of this file into a new configuration. Must be called
+     * while holding the lock of this file.
+     */
+    private YamlConfiguration createSnapshot() {
+        final YamlConfiguration snapshot = new YamlConfiguration();
+
+        snapshot.options().pathSeparator(this.options().pathSeparator());
+        snapshot.options().header(this.options().header());
+        snapshot.options().copyHeader(this.options().copyHeader());
+        snapshot.options().indent(this.options().indent());
+
+        // Defaults end up in the values below when they are copied.
+        snapshot.options().copyDefaults(this.options().copyDefaults());
+
+        for (final Entry<String, Object> entry : this.getValues(true).entrySet()) {
+            final Object value = entry.getValue();
+
+            if (value instanceof ConfigurationSection) {
+                // Only empty sections have to be created, the others are
+                // created by setting their values.
+                if (((ConfigurationSection) value).getKeys(false).isEmpty()) {
+                    snapshot.createSection(entry.getKey());
+                }
+            } else {
+                snapshot.set(entry.getKey(), copyValue(value));
+            }
         }
+
+        return snapshot;
+    }
+
+    private Object copyValue(final Object value) {
+        if (value instanceof List) {
+            return new ArrayList<Object>((List<?>) value);
+        } else if (value instanceof Map) {
+            return new LinkedHashMap<Object, Object>((Map<?, ?>) value);
+        }
+
+        return value;
+    }
+
+    private void writeSnapshot(final YamlConfiguration snapshot) throws IOException {
+        final byte[] bytes = snapshot.saveToString().getBytes(UTF_8);
+
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+
+        // Write to a temporary file first, so a crash never leaves a half
+        // written file behind.
+        final File tempFile = new File(file.getPath() + ".tmp");
+        final FileOutputStream out = new FileOutputStream(tempFile);
+
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        bytesWritten.addAndGet(bytes.length);
+        totalBytesWritten.addAndGet(bytes.length);
+        totalFlushes.incrementAndGet();
     }
 }
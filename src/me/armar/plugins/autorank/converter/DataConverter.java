@@ -87,11 +87,12 @@ public class DataConverter {
 
         plugin.getInternalPropertiesConfig().setConvertedToNewFormat(true);
 
-        // Reload file
-        plugin.getFlatFileManager().getDataFile(TimeType.TOTAL_TIME).reloadFile();
-        plugin.getFlatFileManager().getDataFile(TimeType.WEEKLY_TIME).reloadFile();
-        plugin.getFlatFileManager().getDataFile(TimeType.MONTHLY_TIME).reloadFile();
-        plugin.getFlatFileManager().getDataFile(TimeType.DAILY_TIME).reloadFile();
+        // Import the renamed files
+        for (final TimeType type : TimeType.values()) {
+            plugin.getFlatFileManager().importData(type);
+        }
+
+        plugin.getFlatFileManager().saveFiles();
 
         return true;
     }
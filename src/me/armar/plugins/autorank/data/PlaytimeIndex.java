@@ -0,0 +1,893 @@
+package me.armar.plugins.autorank.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
+
+/**
+ * In-memory index of the local play time of every player. <br>
+ * Players are stored in an open-addressing hash table that is keyed on the two
+ * longs of their UUID, with one int per {@link TimeType}. Looking up or
+ * changing the time of a player does not create any objects.
+ * <p>
+ * Every time type has a current period, identified by an epoch number (see
+ * {@link #startPeriod(TimeType, int)}). The time of a player is stamped with
+ * the epoch it was played in. Times of an older epoch read as 0 and are only
+ * overwritten when the player gets new time, so starting a new period does not
+ * have to touch any player. The time of the period before the current one is
+ * kept and can be read with {@link #getPreviousTime(UUID, TimeType)}.
+ * <p>
+ * All methods are synchronized on the index itself. Code that needs a
+ * consistent view over multiple calls can synchronize on the index as well.
+ * <p>
+ * The index does not know anything about files. Changes are passed on to the
+ * registered {@link ChangeListener}s, which take care of persisting them.
+ */
+public class PlaytimeIndex {
+
+    /**
+     * Gets notified whenever the index changes. Listeners are called while the
+     * lock of the index is held, so they should return quickly.
+     */
+    public interface ChangeListener {
+
+        /**
+         * Called when the time of a player has changed.
+         *
+         * @param most
+         *            Most significant bits of the UUID
+         * @param least
+         *            Least significant bits of the UUID
+         * @param type
+         *            Type of time
+         * @param epoch
+         *            Period the time belongs to
+         * @param minutes
+         *            New time (in minutes)
+         * @param previousMinutes
+         *            Time (in minutes) of the period before it
+         * @param replacedMinutes
+         *            Time (in minutes) before the change, or -1 if the player
+         *            was not stored for this period yet
+         */
+        void timeChanged(long most, long least, TimeType type, int epoch, int minutes, int previousMinutes,
+                int replacedMinutes);
+
+        /**
+         * Called when a player was removed for a time type.
+         *
+         * @param most
+         *            Most significant bits of the UUID
+         * @param least
+         *            Least significant bits of the UUID
+         * @param type
+         *            Type of time
+         * @param epoch
+         *            Period the player was removed from
+         * @param previousMinutes
+         *            Time (in minutes) of the period before it, which is kept
+         * @param removedMinutes
+         *            Time (in minutes) the player had before it was removed
+         */
+        void timeRemoved(long most, long least, TimeType type, int epoch, int previousMinutes,
+                int removedMinutes);
+
+        /**
+         * Called when all players of a time type were removed.
+         *
+         * @param type
+         *            Type of time
+         */
+        void timesCleared(TimeType type);
+    }
+
+    /**
+     * Used to walk over all players of a time type.
+     */
+    public interface Visitor {
+
+        /**
+         * Called for every player that is stored for the visited time type.
+         *
+         * @param most
+         *            Most significant bits of the UUID
+         * @param least
+         *            Least significant bits of the UUID
+         * @param minutes
+         *            Time (in minutes)
+         */
+        void visit(long most, long least, int minutes);
+    }
+
+    /**
+     * Used to walk over everything that is stored for a time type, including
+     * the time of the previous period.
+     */
+    public interface StateVisitor {
+
+        /**
+         * Called for every player that has time in the current or the previous
+         * period.
+         *
+         * @param most
+         *            Most significant bits of the UUID
+         * @param least
+         *            Least significant bits of the UUID
+         * @param present
+         *            Whether the player is stored for the current period
+         * @param minutes
+         *            Time (in minutes) of the current period
+         * @param previousMinutes
+         *            Time (in minutes) of the previous period
+         */
+        void visit(long most, long least, boolean present, int minutes, int previousMinutes);
+    }
+
+    /**
+     * Used to walk over all players, with their time of every time type.
+     */
+    public interface PlayerVisitor {
+
+        /**
+         * Called for every player that is stored in the index.
+         *
+         * @param most
+         *            Most significant bits of the UUID
+         * @param least
+         *            Least significant bits of the UUID
+         * @param minutes
+         *            Time (in minutes) of the current period, per
+         *            TimeType.ordinal(), or -1 if the player is not stored for
+         *            that type. The array is reused for the next player.
+         */
+        void visit(long most, long least, int[] minutes);
+    }
+
+    private static final int TYPES = TimeType.values().length;
+
+    // Set on every slot that is in use.
+    private static final byte USED = (byte) (1 << TYPES);
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private static final float MAX_LOAD = 0.6f;
+
+    private long[] mosts, leasts;
+
+    // TYPES ints per slot, ordered by TimeType.ordinal(). previous holds the
+    // time of the period before the one in epochs.
+    private int[] times, epochs, previous;
+
+    // Bit i is set if the player is stored for the TimeType with ordinal i in
+    // the period of its epoch. A slot is empty when its mask is 0.
+    private byte[] masks;
+
+    private int size = 0;
+    private final int[] typeSizes = new int[TYPES];
+
+    private final int[] currentEpochs = new int[TYPES];
+
+    // Highest epoch that was stored per time type before the current one
+    // started.
+    private final int[] maxEpochs = new int[TYPES];
+
+    private ChangeListener[] listeners = new ChangeListener[0];
+
+    public PlaytimeIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PlaytimeIndex(final int expectedPlayers) {
+        int capacity = DEFAULT_CAPACITY;
+
+        while (capacity * MAX_LOAD < expectedPlayers) {
+            capacity <<= 1;
+        }
+
+        allocate(capacity);
+    }
+
+    /**
+     * Register a listener that is called on every change.
+     *
+     * @param listener
+     *            Listener to add
+     */
+    public synchronized void addChangeListener(final ChangeListener listener) {
+        final ChangeListener[] newListeners = new ChangeListener[listeners.length + 1];
+
+        System.arraycopy(listeners, 0, newListeners, 0, listeners.length);
+        newListeners[listeners.length] = listener;
+
+        listeners = newListeners;
+    }
+
+    /**
+     * Start a new period for a time type. Times of the current period become
+     * the times of the previous period. <br>
+     * Moving to a later epoch does not touch any player. Only when going back
+     * to an epoch that was already used (e.g. when the clock was turned back)
+     * the players of that period are counted again.
+     *
+     * @param type
+     *            Type of time
+     * @param epoch
+     *            Epoch of the new period
+     */
+    public synchronized void startPeriod(final TimeType type, final int epoch) {
+        final int column = type.ordinal();
+
+        if (currentEpochs[column] == epoch) {
+            return;
+        }
+
+        // Everything written so far is stamped with the old epoch at most.
+        maxEpochs[column] = Math.max(maxEpochs[column], currentEpochs[column]);
+        currentEpochs[column] = epoch;
+
+        if (maxEpochs[column] < epoch) {
+            // Nothing is stored for this period yet.
+            typeSizes[column] = 0;
+            return;
+        }
+
+        int count = 0;
+
+        for (int slot = 0; slot < masks.length; slot++) {
+            if (masks[slot] != 0 && isPresent(slot, column)) {
+                count++;
+            }
+        }
+
+        typeSizes[column] = count;
+    }
+
+    /**
+     * Get the epoch of the current period of a time type.
+     *
+     * @param type
+     *            Type of time
+     * @return current epoch.
+     */
+    public synchronized int getCurrentEpoch(final TimeType type) {
+        return currentEpochs[type.ordinal()];
+    }
+
+    /**
+     * Get the time of a player in the current period.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @param type
+     *            Type of time
+     * @return time (in minutes) or 0 if the player is not stored.
+     */
+    public int getTime(final UUID uuid, final TimeType type) {
+        return getTime(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), type);
+    }
+
+    /**
+     * See {@link #getTime(UUID, TimeType)}.
+     */
+    public synchronized int getTime(final long most, final long least, final TimeType type) {
+        final int slot = find(most, least);
+
+        if (slot < 0 || !isPresent(slot, type.ordinal())) {
+            return 0;
+        }
+
+        return times[slot * TYPES + type.ordinal()];
+    }
+
+    /**
+     * Get the time of a player in the period before the current one.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @param type
+     *            Type of time
+     * @return time (in minutes) or 0 if the player did not play in that
+     *         period.
+     */
+    public synchronized int getPreviousTime(final UUID uuid, final TimeType type) {
+        final int slot = find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+
+        if (slot < 0) {
+            return 0;
+        }
+
+        return getPrevious(slot, type.ordinal());
+    }
+
+    /**
+     * Check whether a player is stored for a time type in the current period.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @param type
+     *            Type of time
+     * @return true if the player is stored, false otherwise.
+     */
+    public synchronized boolean contains(final UUID uuid, final TimeType type) {
+        final int slot = find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+
+        return slot >= 0 && isPresent(slot, type.ordinal());
+    }
+
+    /**
+     * Set the time of a player in the current period.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @param type
+     *            Type of time
+     * @param minutes
+     *            Time (in minutes)
+     */
+    public void setTime(final UUID uuid, final TimeType type, final int minutes) {
+        setTime(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), type, minutes);
+    }
+
+    /**
+     * See {@link #setTime(UUID, TimeType, int)}.
+     */
+    public synchronized void setTime(final long most, final long least, final TimeType type, final int minutes) {
+        final int slot = findOrInsert(most, least);
+
+        write(slot, type, minutes);
+    }
+
+    /**
+     * Add time to the time of a player in the current period.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @param type
+     *            Type of time
+     * @param minutes
+     *            Time (in minutes) to add
+     * @return the new time of the player.
+     */
+    public synchronized int addTime(final UUID uuid, final TimeType type, final int minutes) {
+        final int slot = findOrInsert(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+
+        final int newTime = getCurrent(slot, type.ordinal()) + minutes;
+
+        write(slot, type, newTime);
+
+        return newTime;
+    }
+
+    /**
+     * Add time to every time type of a player.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @param minutes
+     *            Time (in minutes) to add
+     */
+    public synchronized void addTimeToAll(final UUID uuid, final int minutes) {
+        final int slot = findOrInsert(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+
+        for (final TimeType type : TimeType.values()) {
+            write(slot, type, getCurrent(slot, type.ordinal()) + minutes);
+        }
+    }
+
+    /**
+     * Remove a player from the current period of a time type. The time of the
+     * previous period is kept.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @param type
+     *            Type of time
+     */
+    public void removeTime(final UUID uuid, final TimeType type) {
+        removeTime(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), type);
+    }
+
+    /**
+     * See {@link #removeTime(UUID, TimeType)}.
+     */
+    public synchronized void removeTime(final long most, final long least, final TimeType type) {
+        final int slot = find(most, least);
+        final int column = type.ordinal();
+
+        if (slot < 0 || !isPresent(slot, column)) {
+            return;
+        }
+
+        final int index = slot * TYPES + column;
+        final int removedMinutes = times[index];
+
+        times[index] = 0;
+        masks[slot] &= ~bit(column);
+        typeSizes[column]--;
+
+        for (final ChangeListener listener : listeners) {
+            listener.timeRemoved(most, least, type, epochs[index], previous[index], removedMinutes);
+        }
+
+        if (isEmpty(slot)) {
+            deleteSlot(slot);
+        }
+    }
+
+    /**
+     * Put back the state of a player as it was stored on disk. This does not
+     * notify any listener and is meant for loading a {@link PlaytimeStore}.
+     *
+     * @param most
+     *            Most significant bits of the UUID
+     * @param least
+     *            Least significant bits of the UUID
+     * @param type
+     *            Type of time
+     * @param present
+     *            Whether the player is stored in the period of the epoch
+     * @param epoch
+     *            Period the time belongs to
+     * @param minutes
+     *            Time (in minutes)
+     * @param previousMinutes
+     *            Time (in minutes) of the period before it
+     */
+    public synchronized void restore(final long most, final long least, final TimeType type, final boolean present,
+            final int epoch, final int minutes, final int previousMinutes) {
+        final int slot = findOrInsert(most, least);
+        final int column = type.ordinal();
+        final int index = slot * TYPES + column;
+
+        if (isPresent(slot, column)) {
+            typeSizes[column]--;
+        }
+
+        times[index] = present ? minutes : 0;
+        epochs[index] = epoch;
+        previous[index] = previousMinutes;
+
+        if (present) {
+            masks[slot] |= bit(column);
+        } else {
+            masks[slot] &= ~bit(column);
+        }
+
+        maxEpochs[column] = Math.max(maxEpochs[column], epoch);
+
+        if (isPresent(slot, column)) {
+            typeSizes[column]++;
+        }
+
+        // Empty slots are not removed here, as the current period may still
+        // change while loading.
+    }
+
+    /**
+     * Remove all players from a time type, including the time of the previous
+     * period.
+     *
+     * @param type
+     *            Type of time
+     */
+    public synchronized void clear(final TimeType type) {
+        final int column = type.ordinal();
+        final byte bit = bit(column);
+
+        for (int slot = 0; slot < masks.length; slot++) {
+            if (masks[slot] == 0) {
+                continue;
+            }
+
+            final int index = slot * TYPES + column;
+
+            times[index] = 0;
+            previous[index] = 0;
+            epochs[index] = currentEpochs[column];
+            masks[slot] &= ~bit;
+        }
+
+        typeSizes[column] = 0;
+
+        // Players that are not stored for any type anymore have to go.
+        rehash(masks.length, true);
+
+        for (final ChangeListener listener : listeners) {
+            listener.timesCleared(type);
+        }
+    }
+
+    /**
+     * Get the UUIDs of all players that are stored for the current period of
+     * a time type.
+     *
+     * @param type
+     *            Type of time
+     * @return a new list of UUIDs.
+     */
+    public synchronized List<UUID> getUUIDs(final TimeType type) {
+        final List<UUID> uuids = new ArrayList<UUID>(typeSizes[type.ordinal()]);
+        final int column = type.ordinal();
+
+        for (int slot = 0; slot < masks.length; slot++) {
+            if (masks[slot] != 0 && isPresent(slot, column)) {
+                uuids.add(new UUID(mosts[slot], leasts[slot]));
+            }
+        }
+
+        return uuids;
+    }
+
+    /**
+     * Call the visitor for every player that is stored for the current period
+     * of a time type. The lock of the index is held while visiting.
+     *
+     * @param type
+     *            Type of time
+     * @param visitor
+     *            Visitor to call
+     */
+    public synchronized void forEach(final TimeType type, final Visitor visitor) {
+        final int column = type.ordinal();
+
+        for (int slot = 0; slot < masks.length; slot++) {
+            if (masks[slot] != 0 && isPresent(slot, column)) {
+                visitor.visit(mosts[slot], leasts[slot], times[slot * TYPES + column]);
+            }
+        }
+    }
+
+    /**
+     * Call the visitor for every player in one part of the index, with the
+     * time of every time type. Together, the parts 0 to parts - 1 cover every
+     * player once, so multiple threads can each visit a part. <br>
+     * This method does not take the lock of the index, so different parts can
+     * be visited at the same time. The lock must be held by the thread that
+     * hands out the parts, for as long as any part is visited.
+     *
+     * @param part
+     *            Part to visit, from 0 to parts - 1
+     * @param parts
+     *            Number of parts the index is divided in
+     * @param visitor
+     *            Visitor to call
+     */
+    public void forEachPlayer(final int part, final int parts, final PlayerVisitor visitor) {
+        final int from = (int) ((long) masks.length * part / parts);
+        final int to = (int) ((long) masks.length * (part + 1) / parts);
+
+        final int[] minutes = new int[TYPES];
+
+        for (int slot = from; slot < to; slot++) {
+            if (masks[slot] == 0) {
+                continue;
+            }
+
+            for (int column = 0; column < TYPES; column++) {
+                minutes[column] = isPresent(slot, column) ? times[slot * TYPES + column] : -1;
+            }
+
+            visitor.visit(mosts[slot], leasts[slot], minutes);
+        }
+    }
+
+    /**
+     * Call the visitor for every player that has played in the previous
+     * period of a time type. The lock of the index is held while visiting.
+     *
+     * @param type
+     *            Type of time
+     * @param visitor
+     *            Visitor to call
+     */
+    public synchronized void forEachPrevious(final TimeType type, final Visitor visitor) {
+        final int column = type.ordinal();
+
+        for (int slot = 0; slot < masks.length; slot++) {
+            if (masks[slot] == 0) {
+                continue;
+            }
+
+            final int previousTime = getPrevious(slot, column);
+
+            if (previousTime != 0) {
+                visitor.visit(mosts[slot], leasts[slot], previousTime);
+            }
+        }
+    }
+
+    /**
+     * Call the visitor for every player that has time in the current or
+     * previous period of a time type. This is used to write a snapshot of the
+     * index to disk. The lock of the index is held while visiting.
+     *
+     * @param type
+     *            Type of time
+     * @param visitor
+     *            Visitor to call
+     * @return number of visited players.
+     */
+    public synchronized int forEachState(final TimeType type, final StateVisitor visitor) {
+        final int column = type.ordinal();
+
+        int count = 0;
+
+        for (int slot = 0; slot < masks.length; slot++) {
+            if (masks[slot] == 0 || isEmpty(slot, column)) {
+                continue;
+            }
+
+            final boolean present = isPresent(slot, column);
+
+            visitor.visit(mosts[slot], leasts[slot], present, present ? times[slot * TYPES + column] : 0,
+                    getPrevious(slot, column));
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Get the number of players that are stored in the index.
+     *
+     * @return number of players.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of players that are stored for the current period of a
+     * time type.
+     *
+     * @param type
+     *            Type of time
+     * @return number of players.
+     */
+    public synchronized int size(final TimeType type) {
+        return typeSizes[type.ordinal()];
+    }
+
+    private void write(final int slot, final TimeType type, final int minutes) {
+        final int column = type.ordinal();
+        final int index = slot * TYPES + column;
+
+        rollOver(slot, column);
+
+        final byte bit = bit(column);
+        final int replacedMinutes;
+
+        if ((masks[slot] & bit) == 0) {
+            masks[slot] |= bit;
+            typeSizes[column]++;
+            replacedMinutes = -1;
+        } else if (times[index] == minutes) {
+            // Nothing changed
+            return;
+        } else {
+            replacedMinutes = times[index];
+        }
+
+        times[index] = minutes;
+
+        for (final ChangeListener listener : listeners) {
+            listener.timeChanged(mosts[slot], leasts[slot], type, epochs[index], minutes, previous[index],
+                    replacedMinutes);
+        }
+    }
+
+    /**
+     * Move the time of a player to the current period, if it belongs to an
+     * older one.
+     */
+    private void rollOver(final int slot, final int column) {
+        final int index = slot * TYPES + column;
+
+        if (epochs[index] == currentEpochs[column]) {
+            return;
+        }
+
+        previous[index] = getPrevious(slot, column);
+        times[index] = 0;
+        epochs[index] = currentEpochs[column];
+        masks[slot] &= ~bit(column);
+    }
+
+    private boolean isPresent(final int slot, final int column) {
+        return (masks[slot] & bit(column)) != 0 && epochs[slot * TYPES + column] == currentEpochs[column];
+    }
+
+    private int getCurrent(final int slot, final int column) {
+        return isPresent(slot, column) ? times[slot * TYPES + column] : 0;
+    }
+
+    private int getPrevious(final int slot, final int column) {
+        final int index = slot * TYPES + column;
+        final int current = currentEpochs[column];
+
+        if (epochs[index] == current) {
+            return previous[index];
+        }
+
+        if (epochs[index] == current - 1 && (masks[slot] & bit(column)) != 0) {
+            return times[index];
+        }
+
+        return 0;
+    }
+
+    private boolean isEmpty(final int slot, final int column) {
+        return !isPresent(slot, column) && getPrevious(slot, column) == 0;
+    }
+
+    private boolean isEmpty(final int slot) {
+        for (int column = 0; column < TYPES; column++) {
+            if (!isEmpty(slot, column)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static byte bit(final int column) {
+        return (byte) (1 << column);
+    }
+
+    private static int hash(final long most, final long least) {
+        // Finalizer of MurmurHash3
+        long h = most ^ least;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private int find(final long most, final long least) {
+        final int mask = masks.length - 1;
+
+        for (int slot = hash(most, least) & mask;; slot = (slot + 1) & mask) {
+            if (masks[slot] == 0) {
+                return -1;
+            }
+
+            if (mosts[slot] == most && leasts[slot] == least) {
+                return slot;
+            }
+        }
+    }
+
+    private int findOrInsert(final long most, final long least) {
+        int slot = find(most, least);
+
+        if (slot >= 0) {
+            return slot;
+        }
+
+        if (size + 1 > masks.length * MAX_LOAD) {
+            rehash(masks.length << 1, false);
+        }
+
+        final int mask = masks.length - 1;
+
+        slot = hash(most, least) & mask;
+
+        while (masks[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        mosts[slot] = most;
+        leasts[slot] = least;
+        masks[slot] = USED;
+
+        for (int column = 0; column < TYPES; column++) {
+            epochs[slot * TYPES + column] = currentEpochs[column];
+        }
+
+        size++;
+
+        return slot;
+    }
+
+    /**
+     * Remove a slot and shift back the entries that follow it, so lookups
+     * never have to skip over deleted slots.
+     */
+    private void deleteSlot(int gap) {
+        final int mask = masks.length - 1;
+
+        int slot = gap;
+
+        while (true) {
+            slot = (slot + 1) & mask;
+
+            if (masks[slot] == 0) {
+                break;
+            }
+
+            final int home = hash(mosts[slot], leasts[slot]) & mask;
+
+            // The entry can move into the gap if the gap lies between its home
+            // slot and its current slot.
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                copySlot(mosts, leasts, times, epochs, previous, masks, slot, gap);
+
+                gap = slot;
+            }
+        }
+
+        masks[gap] = 0;
+        mosts[gap] = 0;
+        leasts[gap] = 0;
+
+        for (int i = gap * TYPES; i < (gap + 1) * TYPES; i++) {
+            times[i] = 0;
+            epochs[i] = 0;
+            previous[i] = 0;
+        }
+
+        size--;
+    }
+
+    private void copySlot(final long[] fromMosts, final long[] fromLeasts, final int[] fromTimes,
+            final int[] fromEpochs, final int[] fromPrevious, final byte[] fromMasks, final int from, final int to) {
+        mosts[to] = fromMosts[from];
+        leasts[to] = fromLeasts[from];
+        masks[to] = fromMasks[from];
+        System.arraycopy(fromTimes, from * TYPES, times, to * TYPES, TYPES);
+        System.arraycopy(fromEpochs, from * TYPES, epochs, to * TYPES, TYPES);
+        System.arraycopy(fromPrevious, from * TYPES, previous, to * TYPES, TYPES);
+    }
+
+    private void allocate(final int capacity) {
+        mosts = new long[capacity];
+        leasts = new long[capacity];
+        times = new int[capacity * TYPES];
+        epochs = new int[capacity * TYPES];
+        previous = new int[capacity * TYPES];
+        masks = new byte[capacity];
+    }
+
+    /**
+     * Move all players to a new table.
+     *
+     * @param dropEmpty
+     *            Whether players without any time left should be dropped
+     */
+    private void rehash(final int capacity, final boolean dropEmpty) {
+        final long[] oldMosts = mosts, oldLeasts = leasts;
+        final int[] oldTimes = times, oldEpochs = epochs, oldPrevious = previous;
+        final byte[] oldMasks = masks;
+
+        // Find out which slots are empty while the old table is still in place.
+        final boolean[] keep = new boolean[oldMasks.length];
+
+        for (int oldSlot = 0; oldSlot < oldMasks.length; oldSlot++) {
+            keep[oldSlot] = oldMasks[oldSlot] != 0 && !(dropEmpty && isEmpty(oldSlot));
+        }
+
+        allocate(capacity);
+        size = 0;
+
+        final int mask = capacity - 1;
+
+        for (int oldSlot = 0; oldSlot < oldMasks.length; oldSlot++) {
+            if (!keep[oldSlot]) {
+                continue;
+            }
+
+            int slot = hash(oldMosts[oldSlot], oldLeasts[oldSlot]) & mask;
+
+            while (masks[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            copySlot(oldMosts, oldLeasts, oldTimes, oldEpochs, oldPrevious, oldMasks, oldSlot, slot);
+            size++;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package me.armar.plugins.autorank.data;
+
+import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
+
+/**
+ * A PlaytimeStore persists the local play time (in minutes) of players for
+ * every {@link TimeType}. <br>
+ * The play time itself lives in a {@link PlaytimeIndex}. A store fills the
+ * index when Autorank starts and is registered as a listener of the index, so
+ * it sees every change that has to be written to disk. This way the way the
+ * data is kept on disk can be swapped out without touching the rest of
+ * Autorank.
+ * <p>
+ * Implementations must be thread-safe: changes come in from the main thread
+ * (commands) as well as from async tasks (time updates), while saving is done
+ * async.
+ */
+public interface PlaytimeStore extends PlaytimeIndex.ChangeListener {
+
+    /**
+     * Load the store from disk into the given index. This is done before the
+     * store is registered as a listener of the index.
+     *
+     * @param index
+     *            Index to fill
+     */
+    void load(PlaytimeIndex index);
+
+    /**
+     * Write all changes that were made since the last save to disk. This may
+     * block, so it should not be called on the main thread.
+     *
+     * @param index
+     *            Index that holds the current play time
+     */
+    void save(PlaytimeIndex index);
+}
@@ -0,0 +1,62 @@
+package me.armar.plugins.autorank.data.flatfile;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.Map.Entry;
+
+import me.armar.plugins.autorank.Autorank;
+import me.armar.plugins.autorank.data.PlaytimeIndex;
+import me.armar.plugins.autorank.data.PlaytimeStore;
+import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
+
+/**
+ * {@link PlaytimeStore} that keeps the play time of every {@link TimeType} in
+ * its own {@link PlaytimeDataFile}. <br>
+ * Saving only writes the changes of players whose time changed, instead of
+ * rewriting the whole data set every minute.
+ */
+public class BinaryPlaytimeStore implements PlaytimeStore {
+
+    private final EnumMap<TimeType, PlaytimeDataFile> dataFiles = new EnumMap<TimeType, PlaytimeDataFile>(
+            TimeType.class);
+
+    public BinaryPlaytimeStore(final Autorank plugin) {
+        final File folder = new File(plugin.getDataFolder(), "data");
+
+        dataFiles.put(TimeType.TOTAL_TIME, new PlaytimeDataFile(folder, "Total_time", plugin.getLogger()));
+        dataFiles.put(TimeType.DAILY_TIME, new PlaytimeDataFile(folder, "Daily_time", plugin.getLogger()));
+        dataFiles.put(TimeType.WEEKLY_TIME, new PlaytimeDataFile(folder, "Weekly_time", plugin.getLogger()));
+        dataFiles.put(TimeType.MONTHLY_TIME, new PlaytimeDataFile(folder, "Monthly_time", plugin.getLogger()));
+    }
+
+    @Override
+    public void load(final PlaytimeIndex index) {
+        for (final Entry<TimeType, PlaytimeDataFile> entry : dataFiles.entrySet()) {
+            entry.getValue().load(index, entry.getKey());
+        }
+    }
+
+    @Override
+    public void save(final PlaytimeIndex index) {
+        for (final Entry<TimeType, PlaytimeDataFile> entry : dataFiles.entrySet()) {
+            entry.getValue().save(index, entry.getKey());
+        }
+    }
+
+    @Override
+    public void timeChanged(final long most, final long least, final TimeType type, final int epoch,
+            final int minutes, final int previousMinutes, final int replacedMinutes) {
+        dataFiles.get(type).recordSet(most, least, epoch, minutes, previousMinutes);
+    }
+
+    @Override
+    public void timeRemoved(final long most, final long least, final TimeType type, final int epoch,
+            final int previousMinutes, final int removedMinutes) {
+        dataFiles.get(type).recordRemove(most, least, epoch, previousMinutes);
+    }
+
+    @Override
+    public void timesCleared(final TimeType type) {
+        dataFiles.get(type).recordClear();
+    }
+}
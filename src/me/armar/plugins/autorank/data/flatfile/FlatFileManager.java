@@ -1,5 +1,7 @@
 package me.armar.plugins.autorank.data.flatfile;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
@@ -9,9 +11,11 @@ import java.util.Map.Entry;
 import java.util.UUID;
 
 import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.file.YamlConfiguration;
 
 import me.armar.plugins.autorank.Autorank;
-import me.armar.plugins.autorank.config.SimpleYamlConfiguration;
+import me.armar.plugins.autorank.data.PlaytimeIndex;
+import me.armar.plugins.autorank.data.PlaytimeStore;
 import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
 import me.armar.plugins.autorank.language.Lang;
 import me.armar.plugins.autorank.util.AutorankTools;
@@ -39,9 +43,11 @@ public class FlatFileManager {
         DAILY_TIME, MONTHLY_TIME, TOTAL_TIME, WEEKLY_TIME
     }
 
+    // Paths of the YAML files that are used to import and export data.
     public static HashMap<TimeType, String> dataTypePaths = new HashMap<>();
 
-    private final HashMap<TimeType, SimpleYamlConfiguration> dataFiles = new HashMap<TimeType, SimpleYamlConfiguration>();
+    private PlaytimeIndex playtimeIndex;
+    private PlaytimeStore playtimeStore;
 
     public FlatFileManager(Autorank instance) {
         this.plugin = instance;
@@ -53,7 +59,8 @@ public class FlatFileManager {
     }
 
     /**
-     * Load all the data files (daily time, weekly time, etc.).
+     * Load all the data files (daily time, weekly time, etc.). The first time
+     * the binary store is used, the old YAML files are imported into it.
      */
     public void loadDataFiles() {
 
@@ -62,14 +69,36 @@ public class FlatFileManager {
         dataTypePaths.put(TimeType.WEEKLY_TIME, "/data/Weekly_time.yml");
         dataTypePaths.put(TimeType.MONTHLY_TIME, "/data/Monthly_time.yml");
 
-        dataFiles.put(TimeType.TOTAL_TIME,
-                new SimpleYamlConfiguration(plugin, dataTypePaths.get(TimeType.TOTAL_TIME), "Total data"));
-        dataFiles.put(TimeType.DAILY_TIME,
-                new SimpleYamlConfiguration(plugin, dataTypePaths.get(TimeType.DAILY_TIME), "Daily data"));
-        dataFiles.put(TimeType.WEEKLY_TIME,
-                new SimpleYamlConfiguration(plugin, dataTypePaths.get(TimeType.WEEKLY_TIME), "Weekly data"));
-        dataFiles.put(TimeType.MONTHLY_TIME,
-                new SimpleYamlConfiguration(plugin, dataTypePaths.get(TimeType.MONTHLY_TIME), "Monthly data"));
+        playtimeIndex = new PlaytimeIndex();
+
+        // Data that was stored without a period belongs to the period that was
+        // tracked when Autorank was stopped.
+        for (final TimeType type : TimeType.values()) {
+            playtimeIndex.startPeriod(type, this.getTrackedEpoch(type));
+        }
+
+        playtimeStore = new BinaryPlaytimeStore(plugin);
+        playtimeStore.load(playtimeIndex);
+
+        // From now on, every change is recorded by the store.
+        playtimeIndex.addChangeListener(playtimeStore);
+
+        if (!plugin.getInternalPropertiesConfig().isPlaytimeStoreMigrated()) {
+            for (final TimeType type : TimeType.values()) {
+                final int imported = this.importData(type);
+
+                plugin.getLogger().info("Imported " + imported + " records from " + dataTypePaths.get(type));
+            }
+        }
+
+        this.updatePeriods();
+
+        if (!plugin.getInternalPropertiesConfig().isPlaytimeStoreMigrated()) {
+            // Write the imported data to disk right away.
+            saveFiles();
+
+            plugin.getInternalPropertiesConfig().setPlaytimeStoreMigrated(true);
+        }
     }
 
     /**
@@ -85,84 +114,147 @@ public class FlatFileManager {
     }
 
     /**
-     * Save all data files.
+     * Save all data files. Only the changes since the last save are written.
      */
     public void saveFiles() {
-        for (final Entry<TimeType, SimpleYamlConfiguration> entry : dataFiles.entrySet()) {
-            entry.getValue().saveFile();
-        }
+        playtimeStore.save(playtimeIndex);
     }
 
     /**
-     * Check whether all the data files are still correct or if they should be
-     * reset. Autorank stores what values were previously found for the day,
-     * week and month and compares these to the current values. If a new day has
-     * arrived, the daily time file has to be reset.
+     * Check whether a new day, week or month has arrived. Autorank stores the
+     * period that was tracked last and compares it to the current one. When a
+     * new period has started, the times of the old period are kept as the
+     * previous period and the leaderboard is refreshed.
      */
     public void doCalendarCheck() {
-        // Check if all data files are still up to date.
-        // Check if daily, weekly or monthly files should be reset.
-
-        final Calendar cal = Calendar.getInstance();
-        cal.setFirstDayOfWeek(Calendar.MONDAY);
+        // Starting a new period does not touch any data, so this is cheap.
+        this.updatePeriods();
 
         for (final TimeType type : TimeType.values()) {
-            if (this.shouldResetDatafile(type)) {
-
-                // We should reset it now, it has expired.
-                this.resetDatafile(type);
+            if (!this.shouldResetDatafile(type)) {
+                continue;
+            }
 
-                int value = 0;
+            if (plugin.getConfigHandler().shouldBroadcastDataReset()) {
+                // Should we broadcast the reset?
                 if (type == TimeType.DAILY_TIME) {
-                    value = cal.get(Calendar.DAY_OF_WEEK);
-
-                    if (plugin.getConfigHandler().shouldBroadcastDataReset()) {
-                        // Should we broadcast the reset?
-                        plugin.getServer().broadcastMessage(Lang.RESET_DAILY_TIME.getConfigValue());
-                    }
-
+                    plugin.getServer().broadcastMessage(Lang.RESET_DAILY_TIME.getConfigValue());
                 } else if (type == TimeType.WEEKLY_TIME) {
-                    value = cal.get(Calendar.WEEK_OF_YEAR);
-
-                    if (plugin.getConfigHandler().shouldBroadcastDataReset()) {
-                        // Should we broadcast the reset?
-
-                        plugin.getServer().broadcastMessage(Lang.RESET_WEEKLY_TIME.getConfigValue());
-                    }
+                    plugin.getServer().broadcastMessage(Lang.RESET_WEEKLY_TIME.getConfigValue());
                 } else if (type == TimeType.MONTHLY_TIME) {
-                    value = cal.get(Calendar.MONTH);
+                    plugin.getServer().broadcastMessage(Lang.RESET_MONTHLY_TIME.getConfigValue());
+                }
+            }
 
-                    if (plugin.getConfigHandler().shouldBroadcastDataReset()) {
-                        // Should we broadcast the reset?
+            // Update tracked data type
+            plugin.getInternalPropertiesConfig().setTrackedTimeType(type, getCurrentEpoch(type));
+            // We reset leaderboard time so it refreshes again.
+            plugin.getLeaderboardManager().invalidateLeaderboard(type);
 
-                        plugin.getServer().broadcastMessage(Lang.RESET_MONTHLY_TIME.getConfigValue());
-                    }
+            // Update leaderboard of reset time
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+                public void run() {
+                    plugin.getLeaderboardManager().updateLeaderboard(type);
                 }
+            });
+        }
+    }
 
-                // Update tracked data type
-                plugin.getInternalPropertiesConfig().setTrackedTimeType(type, value);
-                // We reset leaderboard time so it refreshes again.
-                plugin.getInternalPropertiesConfig().setLeaderboardLastUpdateTime(type, 0);
-
-                // Update leaderboard of reset time
-                plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
-                    public void run() {
-                        plugin.getLeaderboardManager().updateLeaderboard(type);
-                    }
-                });
-            }
+    /**
+     * Make sure the play time index uses the current day, week and month.
+     * Times of an older period are ignored from then on. This can be called
+     * from any thread.
+     */
+    public void updatePeriods() {
+        for (final TimeType type : TimeType.values()) {
+            playtimeIndex.startPeriod(type, getCurrentEpoch(type));
         }
     }
 
     /**
-     * Get a data file for a specific time type.
+     * Get the epoch of the current period of a time type. Epochs count the
+     * days, weeks (starting on monday) and months since 1970 in the time zone
+     * of the server, so the next period always has the next epoch.
      * 
      * @param type
      *            Type of time
-     * @return a data file where the given time type is stored.
+     * @return epoch of the current period, or 0 for the total time.
      */
-    public SimpleYamlConfiguration getDataFile(final TimeType type) {
-        return dataFiles.get(type);
+    public static int getCurrentEpoch(final TimeType type) {
+        final Calendar cal = Calendar.getInstance();
+
+        // Days since 1970-01-01 in the local time zone
+        final long localTime = cal.getTimeInMillis() + cal.get(Calendar.ZONE_OFFSET) + cal.get(Calendar.DST_OFFSET);
+        final int day = (int) (localTime / 86400000L);
+
+        if (type == TimeType.DAILY_TIME) {
+            return day;
+        } else if (type == TimeType.WEEKLY_TIME) {
+            // 1970-01-01 was a thursday
+            return (day + 3) / 7;
+        } else if (type == TimeType.MONTHLY_TIME) {
+            return cal.get(Calendar.YEAR) * 12 + cal.get(Calendar.MONTH);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Get the value older versions of Autorank tracked for a time type: the
+     * day of the week, the week of the year or the month.
+     */
+    private static int getLegacyTrackedValue(final TimeType type) {
+        final Calendar cal = Calendar.getInstance();
+        cal.setFirstDayOfWeek(Calendar.MONDAY);
+
+        if (type == TimeType.DAILY_TIME) {
+            return cal.get(Calendar.DAY_OF_WEEK);
+        } else if (type == TimeType.WEEKLY_TIME) {
+            return cal.get(Calendar.WEEK_OF_YEAR);
+        } else if (type == TimeType.MONTHLY_TIME) {
+            return cal.get(Calendar.MONTH);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Get the epoch of the period that Autorank tracked last.
+     */
+    private int getTrackedEpoch(final TimeType type) {
+        final int tracked = plugin.getInternalPropertiesConfig().getTrackedTimeType(type);
+        final int current = getCurrentEpoch(type);
+
+        if (tracked == current || tracked == getLegacyTrackedValue(type)) {
+            return current;
+        }
+
+        // Older versions never stored a value above 53 (the last week of a
+        // year), so this is an epoch.
+        if (tracked > 53) {
+            return tracked;
+        }
+
+        // A legacy value of another day, week or month.
+        return current - 1;
+    }
+
+    /**
+     * Get the index that holds the local play time of all players.
+     * 
+     * @return the {@link PlaytimeIndex} used by Autorank.
+     */
+    public PlaytimeIndex getPlaytimeIndex() {
+        return playtimeIndex;
+    }
+
+    /**
+     * Get the store that writes the play time of all players to disk.
+     * 
+     * @return the {@link PlaytimeStore} used by Autorank.
+     */
+    public PlaytimeStore getPlaytimeStore() {
+        return playtimeStore;
     }
 
     /**
@@ -177,40 +269,24 @@ public class FlatFileManager {
      */
     public void setLocalTime(final TimeType type, final int value, final UUID uuid) {
         // Set time of a player of a specific type
-
-        final SimpleYamlConfiguration data = this.getDataFile(type);
-
-        data.set(uuid.toString(), value);
+        playtimeIndex.setTime(uuid, type, value);
     }
 
     /**
-     * Check whether Autorank should reset a specific data file.
+     * Check whether a new period has started for a time type since Autorank
+     * last tracked it.
      * 
      * @param type
      *            Type of time
-     * @return true if Autorank should reset the file, false otherwise.
+     * @return true if a new day, week or month has arrived, false otherwise.
      */
     public boolean shouldResetDatafile(final TimeType type) {
-        // Should we reset a specific data file?
-        // Compare date to last date in internal properties
-        final Calendar cal = Calendar.getInstance();
-        cal.setFirstDayOfWeek(Calendar.MONDAY);
-
-        if (type == TimeType.DAILY_TIME) {
-            if (cal.get(Calendar.DAY_OF_WEEK) != plugin.getInternalPropertiesConfig().getTrackedTimeType(type)) {
-                return true;
-            }
-        } else if (type == TimeType.WEEKLY_TIME) {
-            if (cal.get(Calendar.WEEK_OF_YEAR) != plugin.getInternalPropertiesConfig().getTrackedTimeType(type)) {
-                return true;
-            }
-        } else if (type == TimeType.MONTHLY_TIME) {
-            if (cal.get(Calendar.MONTH) != plugin.getInternalPropertiesConfig().getTrackedTimeType(type)) {
-                return true;
-            }
+        if (type == TimeType.TOTAL_TIME) {
+            return false;
         }
 
-        return false;
+        // Compare the current period to the last one in internal properties
+        return this.getTrackedEpoch(type) != getCurrentEpoch(type);
     }
 
     /**
@@ -224,12 +300,20 @@ public class FlatFileManager {
      *            Type of time
      */
     public void addLocalTime(final UUID uuid, final int timeDifference, final TimeType type) {
+        playtimeIndex.addTime(uuid, type, timeDifference);
+    }
 
-        final int time = this.getLocalTime(type, uuid);
-
-        if (time >= 0) {
-            setLocalTime(type, time + timeDifference, uuid);
-        }
+    /**
+     * Add local play time of a player to the currently stored play time of
+     * every time type.
+     * 
+     * @param uuid
+     *            UUID of the player
+     * @param timeDifference
+     *            Time (in minutes) to add
+     */
+    public void addLocalTime(final UUID uuid, final int timeDifference) {
+        playtimeIndex.addTimeToAll(uuid, timeDifference);
     }
 
     /**
@@ -241,24 +325,28 @@ public class FlatFileManager {
      * @return Number of records that were removed
      */
     public int archive(final int minimum) {
-        // Keep a counter of archived items
-        int counter = 0;
+        // Only remember the records that are archived, instead of copying all
+        // of them.
+        final List<UUID> archived = new ArrayList<UUID>();
 
-        final SimpleYamlConfiguration data = this.getDataFile(TimeType.TOTAL_TIME);
+        playtimeIndex.forEach(TimeType.TOTAL_TIME, new PlaytimeIndex.Visitor() {
 
-        for (final UUID uuid : getUUIDKeys(TimeType.TOTAL_TIME)) {
-            final int time = this.getLocalTime(TimeType.TOTAL_TIME, uuid);
-
-            // Found a record to be archived
-            if (time < minimum) {
-                counter++;
-                // Remove record
-                data.set(uuid.toString(), null);
+            @Override
+            public void visit(final long most, final long least, final int minutes) {
+                // Found a record to be archived
+                if (minutes < minimum) {
+                    archived.add(new UUID(most, least));
+                }
             }
+        });
+
+        for (final UUID uuid : archived) {
+            // Remove record
+            playtimeIndex.removeTime(uuid, TimeType.TOTAL_TIME);
         }
 
         saveFiles();
-        return counter;
+        return archived.size();
     }
 
     /**
@@ -271,8 +359,6 @@ public class FlatFileManager {
         
         int daysThreshold = 60;
 
-        final SimpleYamlConfiguration data = this.getDataFile(TimeType.TOTAL_TIME);
-
         long currentTime = System.currentTimeMillis();
 
         for (final UUID uuid : getUUIDKeys(TimeType.TOTAL_TIME)) {
@@ -280,7 +366,7 @@ public class FlatFileManager {
             
             if (offPlayer.getName() == null) {
                 // Remove record
-                data.set(uuid.toString(), null);
+                playtimeIndex.removeTime(uuid, TimeType.TOTAL_TIME);
                 counter++;
                 continue;
             }
@@ -289,7 +375,7 @@ public class FlatFileManager {
 
             if (lastPlayed <= 0 || (currentTime - lastPlayed) / 86400000 >= daysThreshold) {
                 // Remove record
-                data.set(uuid.toString(), null);
+                playtimeIndex.removeTime(uuid, TimeType.TOTAL_TIME);
                 counter++;
             }
         }
@@ -330,45 +416,35 @@ public class FlatFileManager {
      */
     public int getLocalTime(final TimeType type, final UUID uuid) {
         // Get time of a player with specific type
-        final SimpleYamlConfiguration data = this.getDataFile(type);
-
-        return data.getInt(uuid.toString(), 0);
+        return playtimeIndex.getTime(uuid, type);
     }
 
     /**
-     * Reset the data file of certain time type.
+     * Remove all stored time of a certain time type, including the time of
+     * the previous period. New periods are started by
+     * {@link #doCalendarCheck()} and do not need this.
      * 
      * @param type
      *            Type of time
      */
     public void resetDatafile(final TimeType type) {
-        final SimpleYamlConfiguration data = this.getDataFile(type);
-
         plugin.debugMessage("Resetting data file '" + type + "'!");
 
-        // Delete file
-        final boolean deleted = data.getInternalFile().delete();
-
-        // Don't create a new file if it wasn't deleted in the first place.
-        if (!deleted) {
-            plugin.debugMessage("Tried deleting data file, but could not delete!");
-            return;
-        }
+        playtimeIndex.clear(type);
+    }
 
-        // Create a new file so it's empty
-        if (type == TimeType.DAILY_TIME) {
-            dataFiles.put(TimeType.DAILY_TIME,
-                    new SimpleYamlConfiguration(plugin, dataTypePaths.get(TimeType.DAILY_TIME), "Daily data"));
-        } else if (type == TimeType.WEEKLY_TIME) {
-            dataFiles.put(TimeType.WEEKLY_TIME,
-                    new SimpleYamlConfiguration(plugin, dataTypePaths.get(TimeType.WEEKLY_TIME), "Weekly data"));
-        } else if (type == TimeType.MONTHLY_TIME) {
-            dataFiles.put(TimeType.MONTHLY_TIME,
-                    new SimpleYamlConfiguration(plugin, dataTypePaths.get(TimeType.MONTHLY_TIME), "Monthly data"));
-        } else if (type == TimeType.TOTAL_TIME) {
-            dataFiles.put(TimeType.TOTAL_TIME,
-                    new SimpleYamlConfiguration(plugin, dataTypePaths.get(TimeType.TOTAL_TIME), "Total data"));
-        }
+    /**
+     * Get the local play time of a player in the previous day, week or month.
+     * 
+     * @param type
+     *            Type of time
+     * @param uuid
+     *            UUID of the player
+     * @return play time of that player in the previous period or 0 if not
+     *         found.
+     */
+    public int getPreviousLocalTime(final TimeType type, final UUID uuid) {
+        return playtimeIndex.getPreviousTime(uuid, type);
     }
 
     /**
@@ -380,10 +456,35 @@ public class FlatFileManager {
      *         file.
      */
     public List<UUID> getUUIDKeys(final TimeType type) {
+        return playtimeIndex.getUUIDs(type);
+    }
+
+    /**
+     * Import total play time from the {@link TimeType#TOTAL_TIME} YAML file.
+     */
+    public void importData() {
+        this.importData(TimeType.TOTAL_TIME);
+    }
+
+    /**
+     * Import the play time of a time type from its YAML file (see
+     * {@link #dataTypePaths}). Players that are in the YAML file will have
+     * their stored time overwritten.
+     * 
+     * @param type
+     *            Type of time
+     * @return number of records that were imported.
+     */
+    public int importData(final TimeType type) {
+        final File file = new File(plugin.getDataFolder(), dataTypePaths.get(type));
 
-        final List<UUID> uuids = new ArrayList<UUID>();
+        if (!file.exists()) {
+            return 0;
+        }
 
-        final SimpleYamlConfiguration data = this.getDataFile(type);
+        final YamlConfiguration data = YamlConfiguration.loadConfiguration(file);
+
+        int counter = 0;
 
         for (final String uuidString : data.getKeys(false)) {
             UUID uuid = null;
@@ -393,24 +494,41 @@ public class FlatFileManager {
                 continue;
             }
 
-            // Invalid uuid
-            if (uuid == null) {
-                continue;
-            }
-
-            uuids.add(uuid);
+            playtimeIndex.setTime(uuid, type, data.getInt(uuidString, 0));
+            counter++;
         }
 
-        return uuids;
+        return counter;
     }
 
     /**
-     * Import total play time from the current {@link TimeType.TOTAL_TIME} data
-     * file.
+     * Export the play time of a time type to a YAML file, using the same
+     * format as the files that can be imported with {@link #importData(TimeType)}.
+     * 
+     * @param type
+     *            Type of time
+     * @param file
+     *            File to write to
+     * @return true if the file was written, false otherwise.
      */
-    public void importData() {
-        final SimpleYamlConfiguration data = this.getDataFile(TimeType.TOTAL_TIME);
-        data.reloadFile();
+    public boolean exportData(final TimeType type, final File file) {
+        final YamlConfiguration data = new YamlConfiguration();
+
+        playtimeIndex.forEach(type, new PlaytimeIndex.Visitor() {
+            @Override
+            public void visit(final long most, final long least, final int minutes) {
+                data.set(new UUID(most, least).toString(), minutes);
+            }
+        });
+
+        try {
+            data.save(file);
+        } catch (final IOException e) {
+            plugin.getLogger().warning("Could not export " + type + " to " + file.getName() + ": " + e.getMessage());
+            return false;
+        }
+
+        return true;
     }
 
 }
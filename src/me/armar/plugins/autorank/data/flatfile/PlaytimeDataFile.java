@@ -0,0 +1,464 @@
+package me.armar.plugins.autorank.data.flatfile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import me.armar.plugins.autorank.data.PlaytimeIndex;
+import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
+
+/**
+ * Binary storage of the play time of a single {@link TimeType}. <br>
+ * The data is kept in two files:
+ * <ul>
+ * <li><i>name</i>.dat: a snapshot of fixed-width records (UUID, minutes of
+ * the current and previous period)</li>
+ * <li><i>name</i>.log: an append-only log of every change made after the
+ * snapshot was written</li>
+ * </ul>
+ * Saving only appends the changes of the last interval to the log. Once the
+ * log has grown larger than the snapshot, the two are compacted into a new
+ * snapshot. <br>
+ * The times themselves are kept in a {@link PlaytimeIndex}; this class only
+ * records the changes made to it.
+ */
+public class PlaytimeDataFile {
+
+    // Header of a snapshot file
+    private static final int MAGIC = 0x41525054; // "ARPT"
+
+    // Header of a log file. Version 1 logs do not have a header.
+    private static final int LOG_MAGIC = 0x4152504C; // "ARPL"
+    private static final int LOG_HEADER_SIZE = 4 + 4;
+
+    // Version 1 did not store periods.
+    private static final int VERSION = 2;
+
+    // Operations in the change log
+    private static final byte OP_SET = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_CLEAR = 3;
+
+    // op + uuid + epoch + minutes + previous minutes
+    private static final int LOG_RECORD_SIZE = 1 + 8 + 8 + 4 + 4 + 4;
+
+    // Never compact when the log holds fewer records than this.
+    private static final int MIN_COMPACT_RECORDS = 4096;
+
+    private final File snapshotFile, logFile;
+    private final Logger logger;
+
+    // Changes that still have to be appended to the log.
+    private final ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pending = new DataOutputStream(pendingBytes);
+
+    // Number of records in the log file on disk.
+    private int loggedRecords = 0;
+
+    // Whether the files on disk are still in the version 1 format.
+    private boolean outdatedFormat = false;
+
+    // Makes sure only one thread writes to disk at a time.
+    private final Object ioLock = new Object();
+
+    public PlaytimeDataFile(final File folder, final String name, final Logger logger) {
+        this.snapshotFile = new File(folder, name + ".dat");
+        this.logFile = new File(folder, name + ".log");
+        this.logger = logger;
+    }
+
+    /**
+     * Load the snapshot and replay the change log on top of it. Times that
+     * were stored by version 1 do not have a period, so they are put in the
+     * current period of the index.
+     *
+     * @param index
+     *            Index to load the times into
+     * @param type
+     *            Type of time that is stored in this file
+     */
+    public void load(final PlaytimeIndex index, final TimeType type) {
+        synchronized (ioLock) {
+            synchronized (this) {
+                pendingBytes.reset();
+                loggedRecords = 0;
+                outdatedFormat = false;
+
+                try {
+                    readSnapshot(index, type);
+                    loggedRecords = replayLog(index, type);
+                } catch (final IOException e) {
+                    logger.log(Level.SEVERE, "Could not load play time from " + snapshotFile.getName(), e);
+                }
+            }
+        }
+    }
+
+    public synchronized void recordSet(final long most, final long least, final int epoch, final int minutes,
+            final int previousMinutes) {
+        writePending(OP_SET, most, least, epoch, minutes, previousMinutes);
+    }
+
+    public synchronized void recordRemove(final long most, final long least, final int epoch,
+            final int previousMinutes) {
+        writePending(OP_REMOVE, most, least, epoch, 0, previousMinutes);
+    }
+
+    public synchronized void recordClear() {
+        writePending(OP_CLEAR, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Append all pending changes to the log and compact the log into a new
+     * snapshot if it has grown too large. This blocks, so run it async.
+     *
+     * @param index
+     *            Index that holds the current times
+     * @param type
+     *            Type of time that is stored in this file
+     */
+    public void save(final PlaytimeIndex index, final TimeType type) {
+        synchronized (ioLock) {
+            try {
+                final boolean outdated;
+
+                synchronized (this) {
+                    outdated = outdatedFormat;
+                }
+
+                // Never append new records to an old log, rewrite everything
+                // instead.
+                if (outdated) {
+                    compact(index, type);
+                    return;
+                }
+
+                appendPending();
+
+                final int records;
+
+                synchronized (this) {
+                    records = loggedRecords;
+                }
+
+                if (records >= MIN_COMPACT_RECORDS && records > index.size(type)) {
+                    compact(index, type);
+                }
+            } catch (final IOException e) {
+                logger.log(Level.SEVERE, "Could not save play time to " + logFile.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Write a new snapshot containing all current times and empty the change
+     * log.
+     *
+     * @throws IOException
+     *             when the snapshot could not be written.
+     */
+    private void compact(final PlaytimeIndex index, final TimeType type) throws IOException {
+        final long[] most, least;
+        final boolean[] present;
+        final int[] minutes, previousMinutes;
+        final int epoch;
+        final int covered;
+
+        // Copy the current state, so we don't block other threads while
+        // writing. Changes are recorded while the index is locked, so the
+        // pending changes are exactly those that end up in the copy. They are
+        // only dropped once the snapshot is in place, so they are not lost
+        // when writing fails.
+        synchronized (index) {
+            // Count first, the arrays are filled in the second pass.
+            final int size = index.forEachState(type, new PlaytimeIndex.StateVisitor() {
+                @Override
+                public void visit(final long mostBits, final long leastBits, final boolean isPresent,
+                        final int time, final int previousTime) {
+                }
+            });
+
+            most = new long[size];
+            least = new long[size];
+            present = new boolean[size];
+            minutes = new int[size];
+            previousMinutes = new int[size];
+            epoch = index.getCurrentEpoch(type);
+
+            index.forEachState(type, new PlaytimeIndex.StateVisitor() {
+
+                private int i = 0;
+
+                @Override
+                public void visit(final long mostBits, final long leastBits, final boolean isPresent,
+                        final int time, final int previousTime) {
+                    most[i] = mostBits;
+                    least[i] = leastBits;
+                    present[i] = isPresent;
+                    minutes[i] = time;
+                    previousMinutes[i] = previousTime;
+                    i++;
+                }
+            });
+
+            synchronized (this) {
+                covered = pendingBytes.size();
+            }
+        }
+
+        if (!snapshotFile.getParentFile().exists()) {
+            snapshotFile.getParentFile().mkdirs();
+        }
+
+        final File tempFile = new File(snapshotFile.getPath() + ".tmp");
+
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024));
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(epoch);
+            out.writeInt(minutes.length);
+
+            for (int i = 0; i < minutes.length; i++) {
+                out.writeLong(most[i]);
+                out.writeLong(least[i]);
+                out.writeBoolean(present[i]);
+                out.writeInt(minutes[i]);
+                out.writeInt(previousMinutes[i]);
+            }
+        } finally {
+            out.close();
+        }
+
+        Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        // Keep the changes that were recorded after the copy was made.
+        synchronized (this) {
+            final byte[] bytes = pendingBytes.toByteArray();
+
+            pendingBytes.reset();
+            pendingBytes.write(bytes, covered, bytes.length - covered);
+        }
+
+        // The snapshot holds everything the log contained, so start over.
+        new FileOutputStream(logFile, false).close();
+
+        synchronized (this) {
+            loggedRecords = 0;
+            outdatedFormat = false;
+        }
+    }
+
+    private void appendPending() throws IOException {
+        final byte[] bytes;
+
+        synchronized (this) {
+            if (pendingBytes.size() == 0) {
+                return;
+            }
+
+            bytes = pendingBytes.toByteArray();
+            pendingBytes.reset();
+        }
+
+        if (!logFile.getParentFile().exists()) {
+            logFile.getParentFile().mkdirs();
+        }
+
+        final boolean newLog = logFile.length() == 0;
+
+        final FileOutputStream fileOut = new FileOutputStream(logFile, true);
+        final DataOutputStream out = new DataOutputStream(fileOut);
+
+        try {
+            if (newLog) {
+                out.writeInt(LOG_MAGIC);
+                out.writeInt(VERSION);
+            }
+
+            out.write(bytes);
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        synchronized (this) {
+            loggedRecords += bytes.length / LOG_RECORD_SIZE;
+        }
+    }
+
+    private void writePending(final byte op, final long most, final long least, final int epoch, final int minutes,
+            final int previousMinutes) {
+        try {
+            pending.writeByte(op);
+            pending.writeLong(most);
+            pending.writeLong(least);
+            pending.writeInt(epoch);
+            pending.writeInt(minutes);
+            pending.writeInt(previousMinutes);
+        } catch (final IOException e) {
+            // Cannot happen for a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void readSnapshot(final PlaytimeIndex index, final TimeType type) throws IOException {
+        if (!snapshotFile.exists()) {
+            return;
+        }
+
+        final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(snapshotFile), 64 * 1024));
+
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(snapshotFile.getName() + " is not an Autorank data file!");
+            }
+
+            final int version = in.readInt();
+
+            if (version == 1) {
+                outdatedFormat = true;
+
+                final int count = in.readInt();
+
+                for (int i = 0; i < count; i++) {
+                    index.setTime(in.readLong(), in.readLong(), type, in.readInt());
+                }
+
+                return;
+            }
+
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of " + snapshotFile.getName());
+            }
+
+            final int epoch = in.readInt();
+            final int count = in.readInt();
+
+            for (int i = 0; i < count; i++) {
+                index.restore(in.readLong(), in.readLong(), type, in.readBoolean(), epoch, in.readInt(),
+                        in.readInt());
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private int replayLog(final PlaytimeIndex index, final TimeType type) throws IOException {
+        if (!logFile.exists() || logFile.length() == 0) {
+            return 0;
+        }
+
+        int records = 0;
+        boolean hasHeader = false;
+
+        final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(logFile), 64 * 1024));
+
+        try {
+            // Version 1 logs start with a record right away.
+            in.mark(LOG_HEADER_SIZE);
+
+            if (logFile.length() >= LOG_HEADER_SIZE && in.readInt() == LOG_MAGIC) {
+                final int version = in.readInt();
+
+                if (version != VERSION) {
+                    throw new IOException("Unsupported version " + version + " of " + logFile.getName());
+                }
+
+                hasHeader = true;
+            } else {
+                in.reset();
+                outdatedFormat = true;
+            }
+
+            while (true) {
+                final byte op;
+                final long most, least;
+                int epoch = 0, previousMinutes = 0;
+                final int minutes;
+
+                try {
+                    op = in.readByte();
+                    most = in.readLong();
+                    least = in.readLong();
+
+                    if (hasHeader) {
+                        epoch = in.readInt();
+                    }
+
+                    minutes = in.readInt();
+
+                    if (hasHeader) {
+                        previousMinutes = in.readInt();
+                    }
+                } catch (final EOFException e) {
+                    // End of the log, or a record that was only partly
+                    // written when the server went down.
+                    break;
+                }
+
+                if (op == OP_SET) {
+                    if (hasHeader) {
+                        index.restore(most, least, type, true, epoch, minutes, previousMinutes);
+                    } else {
+                        index.setTime(most, least, type, minutes);
+                    }
+                } else if (op == OP_REMOVE) {
+                    if (hasHeader) {
+                        index.restore(most, least, type, false, epoch, 0, previousMinutes);
+                    } else {
+                        index.removeTime(most, least, type);
+                    }
+                } else if (op == OP_CLEAR) {
+                    index.clear(type);
+                } else {
+                    logger.warning("Found invalid record in " + logFile.getName() + ", ignoring the rest of it.");
+                    break;
+                }
+
+                records++;
+            }
+        } finally {
+            in.close();
+        }
+
+        // An outdated log is rewritten on the next save anyway.
+        if (!hasHeader) {
+            return records;
+        }
+
+        // Cut off a partly written record, so new records are appended at the
+        // right position.
+        final long validLength = LOG_HEADER_SIZE + (long) records * LOG_RECORD_SIZE;
+
+        if (logFile.length() != validLength) {
+            final RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+
+            try {
+                file.setLength(validLength);
+            } finally {
+                file.close();
+            }
+        }
+
+        return records;
+    }
+}
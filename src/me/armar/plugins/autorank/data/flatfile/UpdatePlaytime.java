@@ -5,15 +5,16 @@ import java.util.UUID;
 import org.bukkit.entity.Player;
 
 import me.armar.plugins.autorank.Autorank;
-import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
 import me.armar.plugins.autorank.hooks.DependencyManager;
+import me.armar.plugins.autorank.pathbuilder.requirement.Requirement.Trigger;
 import me.armar.plugins.autorank.permissions.AutorankPermission;
 import me.armar.plugins.autorank.playtimes.PlaytimeManager;
 import me.armar.plugins.autorank.util.AutorankTools;
 
 /*
  * UpdatePlaytime does an update on all online players
- * every 5 minutes
+ * every 5 minutes. The players themselves are updated by the
+ * TimeSlicedScheduler, spread over the interval.
  * 
  */
 public class UpdatePlaytime implements Runnable {
@@ -45,24 +46,25 @@ public class UpdatePlaytime implements Runnable {
             }
         });
 
-        for (final Player player : plugin.getServer().getOnlinePlayers()) {
+        // Make sure time is added to the current day, week and month, even if
+        // the calendar check has not run yet.
+        flatFileManager.updatePeriods();
 
-            if (player.getPlayer() == null) {
-                plugin.debugMessage("Could not update play time of " + player.getName() + " as (s)he is not online!");
-                continue;
-            }
-
-            updateMinutesPlayed(player);
+        // Send the global time of the players of the last interval at once.
+        if (plugin.getMySQLManager().isMySQLEnabled()) {
+            plugin.getMySQLManager().flushGlobalTime();
         }
     }
 
     /**
-     * Check whether a user is now allowed to complete the path
+     * Add the time of an interval to a player and check whether the player
+     * is now allowed to complete the path. This is called once every
+     * interval for every online player.
      * 
      * @param player
      *            Player to check
      */
-    private void updateMinutesPlayed(final Player player) {
+    public void updateMinutesPlayed(final Player player) {
         // Changed this so it is readable ;)
         // OP's should also get time added.
         // When a player has a wildcard permission ('*') it should still update.
@@ -85,11 +87,16 @@ public class UpdatePlaytime implements Runnable {
 
         final UUID uuid = plugin.getUUIDStorage().getStoredUUID(player.getName());
 
-        // Modify local time
-        for (final TimeType type : TimeType.values()) {
-            flatFileManager.addLocalTime(uuid, PlaytimeManager.INTERVAL_MINUTES, type);
+        if (uuid == null) {
+            return;
         }
 
+        // Modify local time of every time type at once
+        flatFileManager.getPlaytimeIndex().addTimeToAll(uuid, PlaytimeManager.INTERVAL_MINUTES);
+
+        // Time requirements have to be evaluated again.
+        plugin.getPlayerChecker().getRequirementCache().invalidate(player.getUniqueId());
+
         // Modify global time
         if (plugin.getMySQLManager().isMySQLEnabled()) {
             plugin.getMySQLManager().addGlobalTime(uuid, PlaytimeManager.INTERVAL_MINUTES);
@@ -98,11 +105,11 @@ public class UpdatePlaytime implements Runnable {
         // Auto assign path (if possible)
         plugin.getPathManager().autoAssignPath(player);
 
-        // Only check a player if it is not disabled in the Settings.yml
-        if (!plugin.getConfigHandler().isAutomaticPathDisabled()) {
-            // Check if player meets requirements
-            plugin.getPlayerChecker().checkPlayer(player);
-        }
+        // Check on the next tick whether the player meets the requirements.
+        // Only paths that depend on play time are checked; requirements that
+        // can change without an event also depend on it. Checking is skipped
+        // when it is disabled in the Settings.yml.
+        plugin.getPlayerChecker().getRecheckScheduler().markDirty(player, Trigger.PLAYTIME);
 
     }
 }
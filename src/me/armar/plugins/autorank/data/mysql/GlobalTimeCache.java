@@ -0,0 +1,221 @@
+package me.armar.plugins.autorank.data.mysql;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Cache of the global times of players. <br>
+ * The cache can be used by multiple threads at the same time. It holds at
+ * most a fixed number of players, and a cached time expires after a fixed
+ * number of minutes, after which it is read from the database again.
+ * <p>
+ * When multiple threads ask for a player that is not cached, only one of
+ * them reads the database. The others wait for its result.
+ */
+public class GlobalTimeCache {
+
+    /**
+     * Reads global times from the database.
+     */
+    public interface Loader {
+
+        /**
+         * Read the global times of a group of players. This method is
+         * blocking.
+         *
+         * @param uuids
+         *            UUIDs of the players
+         * @return the global time of every player that is in the database.
+         * @throws Exception
+         *             when the database could not be read.
+         */
+        Map<UUID, Integer> load(Collection<UUID> uuids) throws Exception;
+    }
+
+    // The cached value is changed in place when time is added, so adding time
+    // does not reset its expiry time.
+    private final LoadingCache<UUID, AtomicInteger> cache;
+
+    /**
+     * Create a new cache.
+     *
+     * @param maximumSize
+     *            Maximum number of players that are cached
+     * @param expireMinutes
+     *            Number of minutes after which a cached time is read again
+     * @param loader
+     *            Reads the times that are not cached
+     */
+    public GlobalTimeCache(final long maximumSize, final long expireMinutes, final Loader loader) {
+        cache = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .recordStats().build(new CacheLoader<UUID, AtomicInteger>() {
+
+                    @Override
+                    public AtomicInteger load(final UUID uuid) throws Exception {
+                        return loadAll(Collections.singleton(uuid)).get(uuid);
+                    }
+
+                    @Override
+                    public Map<UUID, AtomicInteger> loadAll(final Iterable<? extends UUID> uuids) throws Exception {
+                        final Collection<UUID> keys = new ArrayList<UUID>();
+
+                        for (final UUID uuid : uuids) {
+                            keys.add(uuid);
+                        }
+
+                        final Map<UUID, Integer> times = loader.load(keys);
+                        final Map<UUID, AtomicInteger> result = new HashMap<UUID, AtomicInteger>();
+
+                        // Players that are not in the database have no global
+                        // time yet. Cache that as well, so they are not looked
+                        // up again.
+                        for (final UUID uuid : keys) {
+                            final Integer time = times.get(uuid);
+
+                            result.put(uuid, new AtomicInteger(time == null ? 0 : time));
+                        }
+
+                        return result;
+                    }
+                });
+    }
+
+    /**
+     * Get the global time of a player. If it is not cached, it is read from
+     * the database. This method is blocking.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @return global time of the player, or -1 if it could not be read.
+     */
+    public int get(final UUID uuid) {
+        try {
+            return cache.get(uuid).get();
+        } catch (final ExecutionException e) {
+            return -1;
+        } catch (final UncheckedExecutionException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Get the cached global time of a player. This never reads the database.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @return cached global time of the player, or 0 if it is not cached.
+     */
+    public int getIfPresent(final UUID uuid) {
+        final AtomicInteger time = cache.getIfPresent(uuid);
+
+        return time == null ? 0 : time.get();
+    }
+
+    /**
+     * Check whether the global time of a player is cached and not expired.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @return true if it is cached, false otherwise.
+     */
+    public boolean contains(final UUID uuid) {
+        return cache.asMap().containsKey(uuid);
+    }
+
+    /**
+     * Make sure the global times of a group of players are cached. The players
+     * that are not cached are read from the database at once. This method is
+     * blocking.
+     *
+     * @param uuids
+     *            UUIDs of the players
+     * @return true if all times are cached, false if the database could not be
+     *         read.
+     */
+    public boolean load(final Collection<UUID> uuids) {
+        try {
+            cache.getAll(uuids);
+            return true;
+        } catch (final ExecutionException e) {
+            return false;
+        } catch (final UncheckedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Store the global time of a player. The time expires after the same
+     * number of minutes as a time that was read from the database.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @param time
+     *            Global time of the player
+     */
+    public void put(final UUID uuid, final int time) {
+        cache.put(uuid, new AtomicInteger(time));
+    }
+
+    /**
+     * Store the global times of a group of players.
+     *
+     * @param times
+     *            Global time of every player
+     */
+    public void putAll(final Map<UUID, Integer> times) {
+        for (final Entry<UUID, Integer> entry : times.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Add minutes to the cached global time of a player. Nothing happens if the
+     * player is not cached.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @param minutes
+     *            Minutes to add
+     */
+    public void add(final UUID uuid, final int minutes) {
+        // Not a lookup, so do not count it as a hit or miss.
+        final AtomicInteger time = cache.asMap().get(uuid);
+
+        if (time != null) {
+            time.addAndGet(minutes);
+        }
+    }
+
+    /**
+     * Get the number of players that are cached.
+     *
+     * @return number of cached players.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Get the statistics of this cache, such as the number of hits, misses
+     * and evictions.
+     *
+     * @return statistics since the cache was created.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,366 @@
+package me.armar.plugins.autorank.data.mysql;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue of changes to global times that still have to be written to the
+ * database. <br>
+ * Changes are not written right away. Instead, they are collected and written
+ * in batches on a separate thread, either when enough changes were collected
+ * or after a fixed number of seconds. Multiple changes of the same player are
+ * combined into a single change.
+ * <p>
+ * Changes that could not be written are put back in the queue, so they are
+ * tried again with the next batch.
+ */
+public class GlobalTimeWriter {
+
+    /**
+     * Writes a batch of changes to the database.
+     */
+    public interface Sink {
+
+        /**
+         * Write a batch of changes. This method is blocking.
+         *
+         * @param setTimes
+         *            Players whose global time should be set, with their new
+         *            time
+         * @param addedTimes
+         *            Players whose global time should be increased, with the
+         *            minutes to add
+         * @return true if all changes were written, false otherwise.
+         */
+        boolean write(Map<UUID, Integer> setTimes, Map<UUID, Integer> addedTimes);
+
+        /**
+         * Called after a batch was written and is no longer part of the
+         * queue.
+         *
+         * @param uuids
+         *            Players whose changes were written
+         */
+        void written(Set<UUID> uuids);
+    }
+
+    /**
+     * A change to the global time of a player. The time is either set to a
+     * value or increased by a number of minutes.
+     */
+    private static class Change {
+
+        private final boolean set;
+        private final int minutes;
+
+        private Change(final boolean set, final int minutes) {
+            this.set = set;
+            this.minutes = minutes;
+        }
+
+        /**
+         * Combine this change with a change that was made after it.
+         */
+        private Change then(final Change next) {
+            if (next.set) {
+                return next;
+            }
+
+            return new Change(set, minutes + next.minutes);
+        }
+
+        /**
+         * Apply this change to a global time.
+         */
+        private int apply(final int time) {
+            return set ? minutes : time + minutes;
+        }
+    }
+
+    private final Sink sink;
+
+    private final int batchSize;
+    private final int maxPending;
+
+    // Changes that were not written yet, in the order they were made.
+    private final LinkedHashMap<UUID, Change> pending = new LinkedHashMap<UUID, Change>();
+
+    // Changes that are being written right now.
+    private final HashMap<UUID, Change> writing = new HashMap<UUID, Change>();
+
+    // Only one batch is written at a time, so changes are written in order.
+    private final Object flushLock = new Object();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private boolean flushScheduled = false;
+
+    private final Runnable flushTask = new Runnable() {
+
+        @Override
+        public void run() {
+            synchronized (pending) {
+                flushScheduled = false;
+            }
+
+            flush();
+        }
+    };
+
+    /**
+     * Create a new queue.
+     *
+     * @param sink
+     *            Writes the changes to the database
+     * @param batchSize
+     *            Maximum number of players that are written in one batch. A
+     *            batch is written as soon as this many players changed.
+     * @param maxPending
+     *            Number of players that can change before
+     *            {@link #awaitCapacity(long)} starts to wait
+     * @param flushSeconds
+     *            Number of seconds after which changes are written, even if
+     *            there are not enough to fill a batch
+     */
+    public GlobalTimeWriter(final Sink sink, final int batchSize, final int maxPending, final int flushSeconds) {
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+
+        scheduler.scheduleWithFixedDelay(flushTask, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Set the global time of a player. This overrides all earlier changes of
+     * the player that were not written yet.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @param time
+     *            New global time
+     */
+    public void set(final UUID uuid, final int time) {
+        enqueue(uuid, new Change(true, time));
+    }
+
+    /**
+     * Add minutes to the global time of a player.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @param minutes
+     *            Minutes to add
+     */
+    public void add(final UUID uuid, final int minutes) {
+        enqueue(uuid, new Change(false, minutes));
+    }
+
+    /**
+     * Get the global time of a player after all changes that were not written
+     * yet are applied.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @param databaseTime
+     *            Global time that was read from the database
+     * @return global time including the changes that are not written yet.
+     */
+    public int apply(final UUID uuid, final int databaseTime) {
+        synchronized (pending) {
+            int time = databaseTime;
+
+            final Change inProgress = writing.get(uuid);
+
+            if (inProgress != null) {
+                time = inProgress.apply(time);
+            }
+
+            final Change change = pending.get(uuid);
+
+            if (change != null) {
+                time = change.apply(time);
+            }
+
+            return time;
+        }
+    }
+
+    /**
+     * Check whether a player has changes that were not written yet.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @return true if the player has unwritten changes, false otherwise.
+     */
+    public boolean hasPending(final UUID uuid) {
+        synchronized (pending) {
+            return pending.containsKey(uuid) || writing.containsKey(uuid);
+        }
+    }
+
+    /**
+     * Get the number of players with changes that were not written yet.
+     *
+     * @return number of players.
+     */
+    public int size() {
+        synchronized (pending) {
+            return pending.size() + writing.size();
+        }
+    }
+
+    /**
+     * Wait until the queue has room for more changes. Call this before making
+     * a lot of changes, so they are not made faster than the database can
+     * write them. Never call this on the main thread.
+     *
+     * @param timeoutMillis
+     *            Maximum number of milliseconds to wait
+     * @return true if there is room, false if the queue is still full.
+     */
+    public boolean awaitCapacity(final long timeoutMillis) {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        synchronized (pending) {
+            while (pending.size() >= maxPending) {
+                final long remaining = deadline - System.currentTimeMillis();
+
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                scheduleFlush();
+
+                try {
+                    pending.wait(remaining);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Write the changes that are queued right now on the thread of this queue.
+     */
+    public void flushAsync() {
+        synchronized (pending) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Write all changes that are queued right now, in batches. This method is
+     * blocking.
+     *
+     * @return true if all changes were written, false if a batch could not be
+     *         written.
+     */
+    public boolean flush() {
+        synchronized (flushLock) {
+            while (true) {
+                final Map<UUID, Integer> setTimes = new HashMap<UUID, Integer>();
+                final Map<UUID, Integer> addedTimes = new HashMap<UUID, Integer>();
+
+                synchronized (pending) {
+                    final Iterator<Entry<UUID, Change>> iterator = pending.entrySet().iterator();
+
+                    while (iterator.hasNext() && writing.size() < batchSize) {
+                        final Entry<UUID, Change> entry = iterator.next();
+
+                        (entry.getValue().set ? setTimes : addedTimes).put(entry.getKey(),
+                                entry.getValue().minutes);
+                        writing.put(entry.getKey(), entry.getValue());
+                        iterator.remove();
+                    }
+
+                    // There is room in the queue again.
+                    pending.notifyAll();
+                }
+
+                if (setTimes.isEmpty() && addedTimes.isEmpty()) {
+                    return true;
+                }
+
+                final boolean written = sink.write(setTimes, addedTimes);
+
+                synchronized (pending) {
+                    if (!written) {
+                        // Put the changes back in front of the changes that
+                        // were made in the meantime.
+                        final LinkedHashMap<UUID, Change> queue = new LinkedHashMap<UUID, Change>(writing);
+
+                        for (final Entry<UUID, Change> entry : pending.entrySet()) {
+                            final Change earlier = queue.get(entry.getKey());
+
+                            queue.put(entry.getKey(),
+                                    earlier == null ? entry.getValue() : earlier.then(entry.getValue()));
+                        }
+
+                        pending.clear();
+                        pending.putAll(queue);
+                    }
+
+                    writing.clear();
+                }
+
+                if (!written) {
+                    return false;
+                }
+
+                final Set<UUID> uuids = new HashSet<UUID>(setTimes.keySet());
+                uuids.addAll(addedTimes.keySet());
+
+                sink.written(uuids);
+            }
+        }
+    }
+
+    /**
+     * Stop writing in the background and write all remaining changes on the
+     * calling thread. This method is blocking.
+     *
+     * @return number of players whose changes could not be written.
+     */
+    public int close() {
+        scheduler.shutdown();
+
+        flush();
+
+        return size();
+    }
+
+    private void enqueue(final UUID uuid, final Change change) {
+        synchronized (pending) {
+            final Change earlier = pending.get(uuid);
+
+            pending.put(uuid, earlier == null ? change : earlier.then(change));
+
+            if (pending.size() >= batchSize) {
+                scheduleFlush();
+            }
+        }
+    }
+
+    // Must be called while holding the lock on pending.
+    private void scheduleFlush() {
+        if (flushScheduled || scheduler.isShutdown()) {
+            return;
+        }
+
+        flushScheduled = true;
+        scheduler.execute(flushTask);
+    }
+}
@@ -36,26 +36,20 @@ public class GrabPlayerTimeTask implements Callable<Integer> {
         if (mysql == null)
             return -1;
 
-        int time = -1;
-
-        final String statement = "SELECT * FROM " + table + " WHERE uuid='" + uuid.toString() + "'";
-        final ResultSet rs = mysql.executeQuery(statement);
-
-        if (rs == null)
-            return time;
-
-        try {
-            if (rs.next()) {
-                time = rs.getInt(2);
-            } else {
-                return time;
-            }
-
-        } catch (final SQLException e) {
-            System.out.println("SQLException: " + e.getMessage());
-            System.out.println("SQLState: " + e.getSQLState());
-            System.out.println("VendorError: " + e.getErrorCode());
-        }
+        final Integer time = mysql.executeQuery("SELECT time FROM " + table + " WHERE uuid = ?",
+                new SQLDataStorage.ResultHandler<Integer>() {
+                    @Override
+                    public Integer handle(final ResultSet rs) throws SQLException {
+                        if (rs.next()) {
+                            return rs.getInt(1);
+                        }
+
+                        return -1;
+                    }
+                }, uuid.toString());
+
+        if (time == null)
+            return -1;
 
         return time;
     }
@@ -1,7 +1,14 @@
 package me.armar.plugins.autorank.data.mysql;
 
 import java.sql.SQLException;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -31,13 +38,47 @@ import me.armar.plugins.autorank.util.AutorankTools;
  */
 public class MySQLManager {
 
+    /**
+     * Receives the global times of players, a chunk at a time.
+     */
+    public interface GlobalTimeConsumer {
+
+        /**
+         * Process a chunk of global times.
+         * 
+         * @param times
+         *            Global time of every player in this chunk
+         * @param read
+         *            Number of players that were read so far, including this
+         *            chunk
+         */
+        void accept(Map<UUID, Integer> times, int read);
+    }
+
     // Thread pool for saving and retrieving data.
-    private ExecutorService executor = Executors.newSingleThreadExecutor();
+    private ExecutorService executor;
     String hostname, username, password, database, table;
-    // Keeps track of when a call to the database was for this player
-    private final HashMap<UUID, Long> lastChecked = new HashMap<UUID, Long>();
-    // Stores the last received global time for a player
-    private final HashMap<UUID, Integer> lastReceivedTime = new HashMap<UUID, Integer>();
+
+    // Maximum number of players that are read or written in one query.
+    private static final int MAX_PLAYERS_PER_QUERY = 500;
+
+    // Number of players with unwritten changes before threads that change the
+    // global time have to wait for the database.
+    private static final int MAX_PENDING_PLAYERS = 10000;
+
+    // Seconds after which changes to global times are written.
+    private static final int FLUSH_SECONDS = 10;
+
+    // Milliseconds a thread waits for the database before it queues its
+    // changes anyway.
+    private static final long BACKPRESSURE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    // Prepared statements, created once the table name is known.
+    private String setTimeStatement, addTimeStatement, incrementTimeStatement;
+    // Global times that were read from the database recently.
+    private final GlobalTimeCache globalTimeCache;
+    // Changes to global times that still have to be written to the database.
+    private final GlobalTimeWriter globalTimeWriter;
 
     private SQLDataStorage mysql;
     private final Autorank plugin;
@@ -45,6 +86,60 @@ public class MySQLManager {
     public MySQLManager(final Autorank instance) {
         plugin = instance;
 
+        // One thread per connection, so no thread has to wait for a
+        // connection.
+        executor = Executors.newFixedThreadPool(plugin.getSettingsConfig().getMySQLPoolSize());
+
+        // The refresh task reads online players again every interval. Keep a
+        // cached time for two intervals and a minute, so a refresh that runs a
+        // bit late (or fails once) does not leave online players uncached.
+        // PlaytimeManager is not created yet, so read the interval from the
+        // settings.
+        globalTimeCache = new GlobalTimeCache(plugin.getSettingsConfig().getMySQLCacheSize(),
+                2 * plugin.getSettingsConfig().getIntervalTime() + 1, new GlobalTimeCache.Loader() {
+
+                    @Override
+                    public Map<UUID, Integer> load(final Collection<UUID> uuids) throws SQLException {
+                        final SQLDataStorage storage = mysql;
+
+                        if (storage == null) {
+                            throw new SQLException("MySQL database is not enabled!");
+                        }
+
+                        final Map<UUID, Integer> times = readGlobalTimes(storage, uuids);
+
+                        if (times == null) {
+                            throw new SQLException("Could not read global time of " + uuids.size() + " players");
+                        }
+
+                        return times;
+                    }
+                });
+
+        globalTimeWriter = new GlobalTimeWriter(new GlobalTimeWriter.Sink() {
+
+            @Override
+            public boolean write(final Map<UUID, Integer> setTimes, final Map<UUID, Integer> addedTimes) {
+                return writeGlobalTimes(setTimes, addedTimes);
+            }
+
+            @Override
+            public void written(final Set<UUID> uuids) {
+                final SQLDataStorage storage = mysql;
+
+                if (storage == null)
+                    return;
+
+                // Read back the new times, which include the time that other
+                // servers added.
+                final Map<UUID, Integer> times = readGlobalTimes(storage, uuids);
+
+                if (times != null) {
+                    globalTimeCache.putAll(times);
+                }
+            }
+        }, MAX_PLAYERS_PER_QUERY, MAX_PENDING_PLAYERS, FLUSH_SECONDS);
+
         sqlSetup();
     }
 
@@ -52,56 +147,123 @@ public class MySQLManager {
      * Disconnect from database manually.
      */
     public void disconnectDatabase() {
-        executor.shutdown();
-        plugin.debugMessage(ChatColor.RED + "Awaiting termination of MySQL thread...");
-        try {
-            executor.awaitTermination(10, TimeUnit.MINUTES);
-        } catch (InterruptedException e) {
-            plugin.getLogger().warning("Failed to await termination of thread pool. Interrupted.");
+        // Write the changes that were not written yet.
+        plugin.debugMessage(ChatColor.RED + "Writing remaining global times to the database...");
+
+        final int unwritten = globalTimeWriter.close();
+
+        if (unwritten > 0) {
+            plugin.getLogger().warning("Could not write global time of " + unwritten + " players!");
         }
 
+        // Only reads are left, so there is no need to wait for them.
+        executor.shutdown();
+
         if (mysql != null) {
             mysql.closeConnection();
         }
     }
 
     /**
-     * Get all the times of the players in the MySQL database
+     * Get all the times of the players in the MySQL database. <br>
+     * This keeps the whole table in memory, so use
+     * {@link #streamAllPlayersFromDatabase(int, GlobalTimeConsumer)} for large
+     * tables. This method is blocking.
      * 
      * @return A hashmap containing all uuids that are in the database, or an
      *         empty one if MySQL is disabled
      */
     public HashMap<UUID, Integer> getAllPlayersFromDatabase() {
-        HashMap<UUID, Integer> times = new HashMap<>();
+        final HashMap<UUID, Integer> times = new HashMap<>();
 
-        if (!this.isMySQLEnabled())
-            return times;
+        // On an error, the times that were read so far are returned.
+        streamAllPlayersFromDatabase(MAX_PLAYERS_PER_QUERY, new GlobalTimeConsumer() {
 
-        // Check if connection is still alive
-        if (mysql.isClosed()) {
-            mysql.connect();
-        }
+            @Override
+            public void accept(final Map<UUID, Integer> chunk, final int read) {
+                times.putAll(chunk);
+            }
+        });
 
-        // Retrieve database time
+        return times;
+    }
 
-        // Initialise new callable class
-        final Callable<HashMap<UUID, Integer>> callable = new GrabAllTimesTask(mysql, table);
+    /**
+     * Read the times of all players in the MySQL database, without loading the
+     * whole table in memory. The times are given to the consumer in chunks,
+     * while the table is being read. This method is blocking.
+     * <p>
+     * Changes that were not written to the database yet are included.
+     * 
+     * @param chunkSize
+     *            Maximum number of players that are given to the consumer at
+     *            once
+     * @param consumer
+     *            Receives the times
+     * @return number of players that were read, or -1 if the table could not
+     *         be read (completely).
+     */
+    public int streamAllPlayersFromDatabase(final int chunkSize, final GlobalTimeConsumer consumer) {
+        final SQLDataStorage storage = mysql;
 
-        // Sumbit callable
-        final Future<HashMap<UUID, Integer>> futureValue = executor.submit(callable);
+        if (storage == null)
+            return -1;
 
-        try {
-            plugin.debugMessage("Fresh AllCheck performed "
-                    + (Thread.currentThread().getName().contains("Server thread") ? "not ASYNC" : "ASYNC") + " ("
-                    + Thread.currentThread().getName() + ")");
-            times = futureValue.get();
-        } catch (final InterruptedException e) {
-            e.printStackTrace();
-        } catch (final ExecutionException e) {
-            e.printStackTrace();
-        }
+        plugin.debugMessage("Reading all global times from the database");
 
-        return times;
+        final Integer read = storage.executeStreamingQuery("SELECT uuid, time FROM " + table, chunkSize,
+                new SQLDataStorage.ResultHandler<Integer>() {
+
+                    @Override
+                    public Integer handle(final ResultSet rs) throws SQLException {
+                        Map<UUID, Integer> chunk = new HashMap<UUID, Integer>();
+                        int count = 0;
+
+                        while (rs.next()) {
+                            final UUID uuid = UUID.fromString(rs.getString(1));
+
+                            chunk.put(uuid, globalTimeWriter.apply(uuid, rs.getInt(2)));
+                            count++;
+
+                            if (chunk.size() == chunkSize) {
+                                consumer.accept(chunk, count);
+                                chunk = new HashMap<UUID, Integer>();
+                            }
+                        }
+
+                        if (!chunk.isEmpty()) {
+                            consumer.accept(chunk, count);
+                        }
+
+                        return count;
+                    }
+                });
+
+        return read == null ? -1 : read;
+    }
+
+    /**
+     * Get the number of players in the MySQL database. This method is
+     * blocking.
+     * 
+     * @return number of players, or -1 if it could not be read.
+     */
+    public int getPlayerCountOfDatabase() {
+        final SQLDataStorage storage = mysql;
+
+        if (storage == null)
+            return -1;
+
+        final Integer count = storage.executeQuery("SELECT COUNT(*) FROM " + table,
+                new SQLDataStorage.ResultHandler<Integer>() {
+
+                    @Override
+                    public Integer handle(final ResultSet rs) throws SQLException {
+                        return rs.next() ? rs.getInt(1) : 0;
+                    }
+                });
+
+        return count == null ? -1 : count;
     }
 
     /**
@@ -112,18 +274,19 @@ public class MySQLManager {
      * @return cached global time or 0 if nothing was cached.
      */
     public Integer getCachedGlobalTime(final UUID uuid) {
-        if (!lastReceivedTime.containsKey(uuid)) {
+        if (uuid == null)
             return 0;
-        }
 
-        final int cached = lastReceivedTime.get(uuid);
-
-        // Weird cached
-        if (cached <= 0) {
-            return 0;
-        }
+        return globalTimeCache.getIfPresent(uuid);
+    }
 
-        return cached;
+    /**
+     * Get the cache that holds the global times that were read recently.
+     * 
+     * @return cache of global times
+     */
+    public GlobalTimeCache getGlobalTimeCache() {
+        return globalTimeCache;
     }
 
     /**
@@ -136,7 +299,10 @@ public class MySQLManager {
     }
 
     /**
-     * Add minutes to the global time of a player.
+     * Add minutes to the global time of a player. The time is not sent right
+     * away, but queued and written in a batch together with the time of other
+     * players. When the queue is full, threads other than the main thread wait
+     * until the database has caught up.
      * 
      * @param uuid
      *            UUID of the player
@@ -156,14 +322,195 @@ public class MySQLManager {
             }
         }
 
-        final int time = getFreshGlobalTime(uuid);
+        if (!plugin.getServer().isPrimaryThread()) {
+            globalTimeWriter.awaitCapacity(BACKPRESSURE_TIMEOUT);
+        }
+
+        globalTimeWriter.add(uuid, timeDifference);
+
+        // Keep the cached value up to date as well.
+        globalTimeCache.add(uuid, timeDifference);
+    }
+
+    /**
+     * Add minutes to the global time of a player right away. The database adds
+     * the minutes itself in a single statement, so no time is lost when
+     * multiple servers change the time of a player at the same time. <br>
+     * This method is blocking, so run it async.
+     * 
+     * @param uuid
+     *            UUID of the player
+     * @param timeDifference
+     *            Minutes to add
+     * @return the new global time of the player, or -1 if it could not be
+     *         changed.
+     */
+    public int incrementGlobalTime(final UUID uuid, final int timeDifference) {
+        final SQLDataStorage storage = mysql;
+
+        if (storage == null)
+            return -1;
+
+        plugin.debugMessage("Adding " + timeDifference + " minutes to global time of '" + uuid.toString() + "'");
 
-        if (time >= 0) {
-            setGlobalTime(uuid, time + timeDifference);
-        } else {
-            setGlobalTime(uuid, timeDifference);
+        // Queued changes of this player have to be written first, otherwise
+        // they would override this change.
+        if (globalTimeWriter.hasPending(uuid) && !globalTimeWriter.flush())
+            return -1;
+
+        // The statement returns the new time as generated id.
+        final long newTime = storage.executeInsert(incrementTimeStatement, uuid.toString(), timeDifference,
+                timeDifference);
+
+        if (newTime < 0)
+            return -1;
+
+        globalTimeCache.put(uuid, globalTimeWriter.apply(uuid, (int) newTime));
+
+        return (int) newTime;
+    }
+
+    /**
+     * Write all changes to global times that are queued right now, instead of
+     * waiting for the next batch. The changes are written async.
+     */
+    public void flushGlobalTime() {
+        globalTimeWriter.flushAsync();
+    }
+
+    /**
+     * Write a batch of changes to global times. This method is blocking.
+     * 
+     * @param setTimes
+     *            Players whose global time is set, with their new time
+     * @param addedTimes
+     *            Players whose global time is increased, with the minutes to
+     *            add
+     * @return true if all changes were written, false otherwise.
+     */
+    private boolean writeGlobalTimes(final Map<UUID, Integer> setTimes, final Map<UUID, Integer> addedTimes) {
+        final SQLDataStorage storage = mysql;
+
+        if (storage == null)
+            return false;
+
+        plugin.debugMessage("Writing global time of " + (setTimes.size() + addedTimes.size()) + " players");
+
+        // Setting a time can safely be repeated if adding fails, so do that
+        // first.
+        return storage.executeBatch(setTimeStatement, toBatch(setTimes))
+                && storage.executeBatch(addTimeStatement, toBatch(addedTimes));
+    }
+
+    private static List<Object[]> toBatch(final Map<UUID, Integer> times) {
+        final List<Object[]> batch = new ArrayList<Object[]>(times.size());
+
+        for (final Entry<UUID, Integer> entry : times.entrySet()) {
+            batch.add(new Object[] { entry.getKey().toString(), entry.getValue(), entry.getValue() });
+        }
+
+        return batch;
+    }
+
+    /**
+     * Read the global times of a group of players. The players are read with
+     * as few queries as possible. Time that was added with
+     * {@link #addGlobalTime(UUID, int)}, but was not sent yet, is included.
+     * This method is blocking.
+     * 
+     * @param storage
+     *            Database to read from
+     * @param uuids
+     *            UUIDs of the players
+     * @return the global time of every player (0 if a player is not in the
+     *         database), or null if the database could not be read.
+     */
+    private Map<UUID, Integer> readGlobalTimes(final SQLDataStorage storage, final Collection<UUID> uuids) {
+        final Map<UUID, Integer> times = new HashMap<UUID, Integer>();
+        final List<UUID> chunk = new ArrayList<UUID>(Math.min(uuids.size(), MAX_PLAYERS_PER_QUERY));
+
+        for (final UUID uuid : uuids) {
+            chunk.add(uuid);
+
+            if (chunk.size() == MAX_PLAYERS_PER_QUERY) {
+                if (!readGlobalTimeChunk(storage, chunk, times))
+                    return null;
+                chunk.clear();
+            }
+        }
+
+        if (!chunk.isEmpty() && !readGlobalTimeChunk(storage, chunk, times))
+            return null;
+
+        for (final UUID uuid : uuids) {
+            // Players that are not in the database have no global time yet.
+            final Integer time = times.get(uuid);
+
+            // Changes that are queued are not in the database yet.
+            times.put(uuid, globalTimeWriter.apply(uuid, time == null ? 0 : time));
+        }
+
+        return times;
+    }
+
+    private boolean readGlobalTimeChunk(final SQLDataStorage storage, final List<UUID> uuids,
+            final Map<UUID, Integer> times) {
+        final StringBuilder statement = new StringBuilder("SELECT uuid, time FROM ").append(table)
+                .append(" WHERE uuid IN (");
+        final Object[] parameters = new Object[uuids.size()];
+
+        for (int i = 0; i < uuids.size(); i++) {
+            statement.append(i == 0 ? "?" : ", ?");
+            parameters[i] = uuids.get(i).toString();
+        }
+
+        statement.append(")");
+
+        final Boolean read = storage.executeQuery(statement.toString(), new SQLDataStorage.ResultHandler<Boolean>() {
+            @Override
+            public Boolean handle(final ResultSet rs) throws SQLException {
+                while (rs.next()) {
+                    times.put(UUID.fromString(rs.getString(1)), rs.getInt(2));
+                }
+
+                return true;
+            }
+        }, parameters);
+
+        return read != null;
+    }
+
+    /**
+     * Make sure the cache holds an up-to-date global time of all given
+     * players. Only the players whose cached time is out of date are read from
+     * the database, with as few queries as possible. This method is blocking.
+     * <p>
+     * Use this before reading the global time of a lot of players at once,
+     * instead of looking up every player on its own.
+     * 
+     * @param uuids
+     *            UUIDs of the players
+     */
+    public void prefetchGlobalTimes(final Collection<UUID> uuids) {
+        if (!isMySQLEnabled())
+            return;
+
+        final List<UUID> outdated = new ArrayList<UUID>();
+
+        for (final UUID uuid : uuids) {
+            if (uuid != null && isOutOfDate(uuid)) {
+                outdated.add(uuid);
+            }
         }
 
+        if (outdated.isEmpty())
+            return;
+
+        plugin.debugMessage("Prefetching global time of " + outdated.size() + " players");
+
+        if (!globalTimeCache.load(outdated)) {
+            plugin.getLogger().warning("Could not read global time of " + outdated.size() + " players!");
+        }
     }
 
     /**
@@ -209,16 +556,13 @@ public class MySQLManager {
     public int getDatabaseTime(final UUID uuid) {
 
         // Do not make a call to the database every time.
-        // Instead, only call once every 5 minutes.
-        if (!isOutOfDate(uuid)) {
+        // Instead, only call once every interval. When multiple threads ask
+        // for the same player, only one of them reads the database.
+        final int time = globalTimeCache.get(uuid);
 
-            int cachedTime = getCachedGlobalTime(uuid);
-            plugin.debugMessage("Obtained cached global time of '" + uuid.toString() + "' with value " + cachedTime);
+        plugin.debugMessage("Obtained global time of '" + uuid.toString() + "' with value " + time);
 
-            return cachedTime;
-        }
-
-        return this.getFreshDatabaseTime(uuid);
+        return Math.max(0, time);
     }
 
     /**
@@ -241,11 +585,6 @@ public class MySQLManager {
         if (!isMySQLEnabled())
             return 0;
 
-        // Check if connection is still alive
-        if (mysql.isClosed()) {
-            mysql.connect();
-        }
-
         // Retrieve database time
 
         // Initialise new callable class
@@ -269,9 +608,10 @@ public class MySQLManager {
             e.printStackTrace();
         }
 
-        // Store last received time and last received value
-        lastChecked.put(uuid, System.currentTimeMillis());
-        lastReceivedTime.put(uuid, value);
+        // Store last received value
+        if (value >= 0) {
+            globalTimeCache.put(uuid, value);
+        }
 
         plugin.debugMessage("Obtained fresh global time of '" + uuid.toString() + "' with value " + value);
 
@@ -297,30 +637,8 @@ public class MySQLManager {
      *         False otherwise.
      */
     public boolean isOutOfDate(final UUID uuid) {
-        // Checks whether the last check was five minutes ago.
-        // When the last check was more than five minutes ago,
-        // the database time is 'outdated'
-
-        // Never checked
-        if (!lastChecked.containsKey(uuid)) {
-            return true;
-        }
-
-        final long currentTime = System.currentTimeMillis();
-
-        final long lastCheckedTime = lastChecked.get(uuid);
-
-        // Weird time received.
-        if (lastCheckedTime <= 0) {
-            return true;
-        }
-
-        // Get the difference in minutes
-        if ((currentTime - lastCheckedTime) / 60000 >= PlaytimeManager.INTERVAL_MINUTES) {
-            return true;
-        } else {
-            return false;
-        }
+        // A cached time expires after an interval.
+        return !globalTimeCache.contains(uuid);
     }
 
     /**
@@ -337,9 +655,22 @@ public class MySQLManager {
 
             @Override
             public void run() {
-                for (Player p : plugin.getServer().getOnlinePlayers()) {
-                    // Update fresh database time.
-                    getFreshDatabaseTime(p.getUniqueId());
+                final SQLDataStorage storage = mysql;
+
+                if (storage == null)
+                    return;
+
+                final List<UUID> uuids = new ArrayList<UUID>();
+
+                for (final Player p : plugin.getServer().getOnlinePlayers()) {
+                    uuids.add(p.getUniqueId());
+                }
+
+                // Update the fresh database time of all players at once.
+                final Map<UUID, Integer> times = readGlobalTimes(storage, uuids);
+
+                if (times != null) {
+                    globalTimeCache.putAll(times);
                 }
             }
 
@@ -362,48 +693,39 @@ public class MySQLManager {
         if (!isMySQLEnabled())
             return false;
 
-        // Check if connection is still alive
-        if (mysql.isClosed()) {
-            mysql.connect();
-        }
-
-        final String statement = "INSERT INTO " + table + " VALUES ('" + uuid.toString() + "', " + time
-                + ", CURRENT_TIMESTAMP) " + "ON DUPLICATE KEY UPDATE " + "time=" + time;
-
-        // Run async to prevent load issues.
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
-
-            @Override
-            public void run() {
-                mysql.execute(statement);
-            }
-        });
+        // The time is written in a batch with other changes.
+        globalTimeWriter.set(uuid, time);
 
         // Update cache records
-        this.lastChecked.put(uuid, System.currentTimeMillis());
-        this.lastReceivedTime.put(uuid, time);
+        globalTimeCache.put(uuid, time);
 
         return true;
     }
 
+    /**
+     * Get the queue of changes to global times that were not written yet.
+     * 
+     * @return queue of changes
+     */
+    public GlobalTimeWriter getGlobalTimeWriter() {
+        return globalTimeWriter;
+    }
+
     /**
      * Initialise the tables for the MySQL database.
      */
     public void setupTable() {
-        // Check if connection is still alive
-        if (mysql.isClosed()) {
-            mysql.connect();
-        }
-
         final String statement = "CREATE TABLE  IF NOT EXISTS " + table + " " + "(uuid VARCHAR(255) not NULL, "
                 + " time INTEGER not NULL, " + " modified TIMESTAMP not NULL, " + " PRIMARY KEY ( uuid ))";
 
+        final SQLDataStorage storage = mysql;
+
         // Run async to prevent load issues.
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+        executor.execute(new Runnable() {
 
             @Override
             public void run() {
-                mysql.execute(statement);
+                storage.execute(statement);
             }
         });
 
@@ -431,7 +753,17 @@ public class MySQLManager {
             database = configHandler.getMySQLCredentials(MySQLCredentials.DATABASE);
             table = configHandler.getMySQLCredentials(MySQLCredentials.TABLE);
 
-            mysql = new SQLDataStorage(hostname, username, password, database);
+            setTimeStatement = "INSERT INTO " + table + " (uuid, time, modified) VALUES (?, ?, CURRENT_TIMESTAMP) "
+                    + "ON DUPLICATE KEY UPDATE time = ?";
+            addTimeStatement = "INSERT INTO " + table + " (uuid, time, modified) VALUES (?, ?, CURRENT_TIMESTAMP) "
+                    + "ON DUPLICATE KEY UPDATE time = time + ?";
+            // LAST_INSERT_ID(expr) makes the statement return the new time.
+            incrementTimeStatement = "INSERT INTO " + table
+                    + " (uuid, time, modified) VALUES (?, LAST_INSERT_ID(?), CURRENT_TIMESTAMP) "
+                    + "ON DUPLICATE KEY UPDATE time = LAST_INSERT_ID(time + ?)";
+
+            mysql = new SQLDataStorage(hostname, username, password, database, configHandler.getMySQLPoolSize(),
+                    plugin.getLogger());
 
             plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
 
@@ -2,29 +2,76 @@ package me.armar.plugins.autorank.data.mysql;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * This class is used to create a connection between the MySQL database and
- * Autorank.
- * 
+ * This class is used to create connections between the MySQL database and
+ * Autorank. <br>
+ * It keeps a small pool of connections, so multiple threads can use the
+ * database at the same time. A connection is validated before it is handed
+ * out, so connections that were closed by the server are replaced
+ * automatically.
+ *
  * @author Staartvin
  *
  */
 public class SQLDataStorage {
 
-    private Connection conn = null;
-    private final String database;
-    private final String hostname;
-    private final String password;
+    /**
+     * Reads the result of a query. The result set is closed after this has
+     * been called.
+     *
+     * @param <T>
+     *            Type of the result
+     */
+    public interface ResultHandler<T> {
+
+        /**
+         * Read the result of a query.
+         *
+         * @param rs
+         *            Result of the query
+         * @return the value that is returned by the query method.
+         * @throws SQLException
+         *             when the result could not be read.
+         */
+        T handle(ResultSet rs) throws SQLException;
+    }
+
+    // Seconds to wait for the database to respond when validating a
+    // connection.
+    private static final int VALIDATION_TIMEOUT = 2;
+
+    // Seconds to wait for a connection to be returned when all are in use.
+    private static final int BORROW_TIMEOUT = 30;
 
+    private final String url;
+    private final String password;
     private final String username;
 
+    private final int poolSize;
+
+    private final Logger logger;
+
+    // Connections that are not in use right now.
+    private final LinkedBlockingQueue<Connection> idleConnections = new LinkedBlockingQueue<Connection>();
+
+    // Number of connections that are open (idle or in use).
+    private int openConnections = 0;
+
+    private volatile boolean closed = true;
+
     /**
      * Create a new MySQL Connection
-     * 
+     *
      * @param hostname
      *            Hostname (Ex. 127.0.0.1:3306)
      * @param username
@@ -33,133 +80,411 @@ public class SQLDataStorage {
      *            Password
      * @param database
      *            Database
+     * @param poolSize
+     *            Maximum number of connections that are open at the same time
+     * @param logger
+     *            Logger to report problems with the pool to
+     */
+    public SQLDataStorage(final String hostname, final String username, final String password, final String database,
+            final int poolSize, final Logger logger) {
+        // Let the driver send a batch as a single multi-row statement, and
+        // read large results in parts when a fetch size is given.
+        this("jdbc:mysql://" + hostname + "/" + database + "?rewriteBatchedStatements=true&useCursorFetch=true",
+                username, password, poolSize, logger);
+    }
+
+    /**
+     * Create a new connection to any database that is reachable with the given
+     * JDBC url. The queries of Autorank are written for MySQL, so the database
+     * should support its syntax (e.g. H2 in MySQL mode).
+     *
+     * @param url
+     *            JDBC url of the database
+     * @param username
+     *            Username
+     * @param password
+     *            Password
+     * @param poolSize
+     *            Maximum number of connections that are open at the same time
+     * @param logger
+     *            Logger to report problems with the pool to
      */
-    public SQLDataStorage(final String hostname, final String username, final String password, final String database) {
-        this.hostname = hostname;
+    public SQLDataStorage(final String url, final String username, final String password, final int poolSize,
+            final Logger logger) {
+        this.url = url;
         this.username = username;
         this.password = password;
-        this.database = database;
+        this.poolSize = Math.max(1, poolSize);
+        this.logger = logger;
     }
 
     /**
-     * Tries to close the MySQL connection. If already closed, nothing will
-     * happen.
+     * Close all connections. Connections that are in use are closed as soon
+     * as they are returned.
      */
     public void closeConnection() {
-        try {
-            if (conn != null) {
-                conn.close();
-            }
-        } catch (final SQLException e) {
-            e.printStackTrace();
+        closed = true;
+
+        Connection conn;
+
+        while ((conn = idleConnections.poll()) != null) {
+            discardConnection(conn);
         }
     }
 
     /**
-     * Open a new MySQL connection
-     * 
+     * Open the first connection, to check whether the database can be
+     * reached.
+     *
      * @return true if connection was successfully set up.
      */
     public boolean connect() {
-        try {
-            final String url = "jdbc:mysql://" + hostname + "/" + database;
-
-            conn = DriverManager.getConnection(url, username, password);
+        closed = false;
 
-        } catch (final SQLException ex) {
-            System.out.println("SQLDataStorage.connect");
-            System.out.println("SQLException: " + ex.getMessage());
-            System.out.println("SQLState: " + ex.getSQLState());
-            System.out.println("VendorError: " + ex.getErrorCode());
+        final Connection conn = borrowConnection();
 
+        if (conn == null) {
+            closed = true;
             return false;
-        } catch (final Exception e) {
-
-            e.printStackTrace();
         }
-        return conn != null;
+
+        returnConnection(conn);
+        return true;
     }
 
     /**
      * Execute a query. Query cannot be null. This query doesn't return
      * anything. (Good for updating tables)
-     * 
+     *
      * @param sql
      *            Query to execute
      */
     public void execute(final String sql) {
-        Statement stmt = null;
+        final Connection conn = borrowConnection();
 
-        if (conn != null) {
-            try {
+        if (conn == null) {
+            return;
+        }
 
-                stmt = conn.createStatement();
-                stmt.execute(sql);
+        Statement stmt = null;
 
-            } catch (final SQLException ex) {
-                System.out.println("SQLDataStorage.execute");
-                System.out.println("SQLException: " + ex.getMessage());
-                System.out.println("SQLState: " + ex.getSQLState());
-                System.out.println("VendorError: " + ex.getErrorCode());
-            } finally {
+        try {
+            stmt = conn.createStatement();
+            stmt.execute(sql);
+        } catch (final SQLException ex) {
+            printException("SQLDataStorage.execute", ex);
+        } finally {
+            closeQuietly(stmt);
+            returnConnection(conn);
+        }
+    }
 
-                if (stmt != null) {
-                    try {
-                        stmt.close();
-                    } catch (final SQLException sqlEx) {
-                    }
+    /**
+     * Execute a prepared statement that does not return anything.
+     *
+     * @param sql
+     *            Query to execute, with a ? for every parameter
+     * @param parameters
+     *            Values of the parameters
+     * @return number of updated rows, or -1 if an error occurred.
+     */
+    public int executeUpdate(final String sql, final Object... parameters) {
+        final Connection conn = borrowConnection();
 
-                    stmt = null;
-                }
-            }
+        if (conn == null) {
+            return -1;
         }
 
+        PreparedStatement stmt = null;
+
+        try {
+            stmt = conn.prepareStatement(sql);
+            setParameters(stmt, parameters);
+
+            return stmt.executeUpdate();
+        } catch (final SQLException ex) {
+            printException("SQLDataStorage.executeUpdate", ex);
+            return -1;
+        } finally {
+            closeQuietly(stmt);
+            returnConnection(conn);
+        }
     }
 
     /**
-     * Execute a query and returns a ResultSet. Query cannot be null.
-     * 
+     * Execute a prepared statement and return the id it generated. In MySQL,
+     * this is the value of <code>LAST_INSERT_ID(expr)</code> if the statement
+     * used it, which allows a statement to return a value it computed.
+     *
      * @param sql
-     *            Query to execute
-     * @return ResultSet if successfully performed, null if an error occured.
+     *            Query to execute, with a ? for every parameter
+     * @param parameters
+     *            Values of the parameters
+     * @return the generated id, 0 if there was none or -1 if an error
+     *         occurred.
      */
-    public ResultSet executeQuery(final String sql) {
-        Statement stmt = null;
+    public long executeInsert(final String sql, final Object... parameters) {
+        final Connection conn = borrowConnection();
+
+        if (conn == null) {
+            return -1;
+        }
+
+        PreparedStatement stmt = null;
         ResultSet rs = null;
 
-        if (conn != null) {
-            try {
+        try {
+            stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            setParameters(stmt, parameters);
 
-                stmt = conn.createStatement();
-                rs = stmt.executeQuery(sql);
+            stmt.executeUpdate();
 
-            } catch (final SQLException ex) {
-                System.out.println("SQLDataStorage.executeQuery");
-                System.out.println("SQLException: " + ex.getMessage());
-                System.out.println("SQLState: " + ex.getSQLState());
-                System.out.println("VendorError: " + ex.getErrorCode());
+            rs = stmt.getGeneratedKeys();
 
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (final SQLException ex) {
+            printException("SQLDataStorage.executeInsert", ex);
+            return -1;
+        } finally {
+            closeQuietly(rs);
+            closeQuietly(stmt);
+            returnConnection(conn);
+        }
+    }
+
+    /**
+     * Execute a prepared statement for every set of parameters, in a single
+     * batch. This only needs one round-trip to the database.
+     *
+     * @param sql
+     *            Query to execute, with a ? for every parameter
+     * @param batch
+     *            Values of the parameters, one array per execution
+     * @return true if the batch was executed, false otherwise.
+     */
+    public boolean executeBatch(final String sql, final List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        final Connection conn = borrowConnection();
+
+        if (conn == null) {
+            return false;
+        }
+
+        PreparedStatement stmt = null;
+
+        try {
+            stmt = conn.prepareStatement(sql);
+
+            for (final Object[] parameters : batch) {
+                setParameters(stmt, parameters);
+                stmt.addBatch();
             }
+
+            stmt.executeBatch();
+            return true;
+        } catch (final SQLException ex) {
+            printException("SQLDataStorage.executeBatch", ex);
+            return false;
+        } finally {
+            closeQuietly(stmt);
+            returnConnection(conn);
+        }
+    }
+
+    /**
+     * Execute a prepared query and read its result.
+     *
+     * @param sql
+     *            Query to execute, with a ? for every parameter
+     * @param handler
+     *            Reads the result of the query
+     * @param parameters
+     *            Values of the parameters
+     * @return the value returned by the handler, or null if an error occurred.
+     */
+    public <T> T executeQuery(final String sql, final ResultHandler<T> handler, final Object... parameters) {
+        return executeStreamingQuery(sql, 0, handler, parameters);
+    }
+
+    /**
+     * Execute a prepared query and read its result, without loading the whole
+     * result in memory. The database sends the rows in parts of the given
+     * size while the handler reads them, so a connection is in use until the
+     * handler is done.
+     *
+     * @param sql
+     *            Query to execute, with a ? for every parameter
+     * @param fetchSize
+     *            Number of rows that are received at once, or 0 to receive
+     *            all rows at once
+     * @param handler
+     *            Reads the result of the query
+     * @param parameters
+     *            Values of the parameters
+     * @return the value returned by the handler, or null if an error occurred.
+     */
+    public <T> T executeStreamingQuery(final String sql, final int fetchSize, final ResultHandler<T> handler,
+            final Object... parameters) {
+        final Connection conn = borrowConnection();
+
+        if (conn == null) {
+            return null;
+        }
+
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(fetchSize);
+            setParameters(stmt, parameters);
+
+            rs = stmt.executeQuery();
+
+            return handler.handle(rs);
+        } catch (final SQLException ex) {
+            printException("SQLDataStorage.executeStreamingQuery", ex);
+            return null;
+        } finally {
+            closeQuietly(rs);
+            closeQuietly(stmt);
+            returnConnection(conn);
         }
-        return rs;
     }
 
     /**
      * Returns state of MySQL connection
-     * 
+     *
      * @return true if closed, false if open.
      */
     public boolean isClosed() {
+        return closed;
+    }
 
-        if (conn == null)
-            return true;
+    /**
+     * Get a connection from the pool. A new connection is opened if there is
+     * no idle connection and the pool is not full yet. Otherwise, this waits
+     * until another thread returns a connection.
+     *
+     * @return a valid connection or null if no connection could be made.
+     */
+    private Connection borrowConnection() {
+        if (closed) {
+            return null;
+        }
+
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(BORROW_TIMEOUT);
+
+        while (System.currentTimeMillis() < deadline) {
+            Connection conn = idleConnections.poll();
+
+            if (conn == null && reserveConnection()) {
+                // A new connection does not have to be validated.
+                return openConnection();
+            }
+
+            if (conn == null) {
+                // The pool is full, so wait for another thread.
+                try {
+                    conn = idleConnections.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+
+                if (conn == null) {
+                    break;
+                }
+            }
+
+            if (isValid(conn)) {
+                return conn;
+            }
+
+            // The server closed it, try the next one.
+            discardConnection(conn);
+        }
+
+        logger.warning(
+                "Timed out after " + BORROW_TIMEOUT + " seconds waiting for a free connection to the database.");
+        return null;
+    }
 
+    private void returnConnection(final Connection conn) {
+        if (closed) {
+            discardConnection(conn);
+            return;
+        }
+
+        idleConnections.offer(conn);
+    }
+
+    private Connection openConnection() {
         try {
-            return conn.isClosed();
-        } catch (final SQLException e) {
+            return DriverManager.getConnection(url, username, password);
+        } catch (final SQLException ex) {
+            printException("SQLDataStorage.connect", ex);
+        } catch (final Exception e) {
             e.printStackTrace();
-            return true;
+        }
+
+        synchronized (this) {
+            openConnections--;
+        }
+
+        return null;
+    }
+
+    private boolean isValid(final Connection conn) {
+        try {
+            return conn.isValid(VALIDATION_TIMEOUT);
+        } catch (final SQLException e) {
+            return false;
         }
     }
 
+    private void discardConnection(final Connection conn) {
+        closeQuietly(conn);
+
+        synchronized (this) {
+            openConnections--;
+        }
+    }
+
+    /**
+     * Reserve a spot for a new connection, if the pool is not full yet.
+     */
+    private synchronized boolean reserveConnection() {
+        if (openConnections >= poolSize) {
+            return false;
+        }
+
+        openConnections++;
+        return true;
+    }
+
+    private static void setParameters(final PreparedStatement stmt, final Object... parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            stmt.setObject(i + 1, parameters[i]);
+        }
+    }
+
+    private static void closeQuietly(final AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+
+        try {
+            closeable.close();
+        } catch (final Exception e) {
+        }
+    }
+
+    private void printException(final String location, final SQLException ex) {
+        logger.log(Level.WARNING, location + " failed (SQLState: " + ex.getSQLState() + ", VendorError: "
+                + ex.getErrorCode() + "): " + ex.getMessage(), ex);
+    }
 }
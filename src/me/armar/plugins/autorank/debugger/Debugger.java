@@ -8,7 +8,13 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
+import com.google.common.cache.CacheStats;
+
 import me.armar.plugins.autorank.Autorank;
+import me.armar.plugins.autorank.config.SimpleYamlConfiguration;
+import me.armar.plugins.autorank.pathbuilder.EvaluationOrder;
+import me.armar.plugins.autorank.pathbuilder.Path;
+import me.armar.plugins.autorank.pathbuilder.holders.RequirementsHolder;
 
 /**
  * This class is used to debug stuff when Autorank is running. <br>
@@ -107,11 +113,47 @@ public class Debugger {
             out.write("");
             out.newLine();
 
+            out.write("Requirement checks: ");
+            out.newLine();
+
+            for (final Path path : plugin.getPathManager().getPaths()) {
+                final EvaluationOrder<RequirementsHolder> order = path.getEvaluationOrder();
+
+                out.write(path.getInternalName() + ": " + order.getPasses() + " checks, "
+                        + order.getEvaluations() + " requirements evaluated, " + order.getAvoidedEvaluations()
+                        + " evaluations avoided");
+                out.newLine();
+            }
+
+            out.write("");
+            out.newLine();
+
+            out.write("Players with play time updates: "
+                    + plugin.getPlayerChecker().getTimeSlicedScheduler().getScheduledCount() + ", behind: "
+                    + plugin.getPlayerChecker().getTimeSlicedScheduler().getBacklog());
+            out.newLine();
+            out.write("");
+            out.newLine();
+
             out.write("Using MySQL: " + plugin.getConfigHandler().useMySQL());
             out.newLine();
             out.write("");
             out.newLine();
 
+            if (plugin.getMySQLManager().isMySQLEnabled()) {
+                final CacheStats stats = plugin.getMySQLManager().getGlobalTimeCache().getStats();
+
+                out.write("Global time cache: " + plugin.getMySQLManager().getGlobalTimeCache().size()
+                        + " players, " + stats.hitCount() + " hits, " + stats.missCount() + " misses, "
+                        + stats.evictionCount() + " evictions");
+                out.newLine();
+                out.write("Global time changes not written yet: "
+                        + plugin.getMySQLManager().getGlobalTimeWriter().size() + " players");
+                out.newLine();
+                out.write("");
+                out.newLine();
+            }
+
             out.write("Java version: " + System.getProperty("java.version"));
             out.newLine();
             out.write("");
@@ -137,6 +179,20 @@ public class Debugger {
             out.write("");
             out.newLine();
 
+            out.write("UUID lookups: " + plugin.getUUIDResolver().getQueueSize() + " queued, "
+                    + plugin.getUUIDRefresher().getQueueSize() + " refreshing, "
+                    + plugin.getUUIDResolver().getBackoffSize() + " failed recently");
+            out.newLine();
+            out.write("");
+            out.newLine();
+
+            out.write("YAML saves: " + SimpleYamlConfiguration.getTotalFlushes() + " written ("
+                    + SimpleYamlConfiguration.getTotalBytesWritten() + " bytes), "
+                    + SimpleYamlConfiguration.getTotalSkippedFlushes() + " skipped (unchanged)");
+            out.newLine();
+            out.write("");
+            out.newLine();
+
         } catch (final IOException e) {
             e.printStackTrace();
             try {
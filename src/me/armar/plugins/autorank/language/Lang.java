@@ -241,6 +241,14 @@ public enum Lang {
      * &a-------- Leaderboard (Weekly time) --------
      */
     LEADERBOARD_HEADER_WEEKLY("leaderboard-header-weekly", "&a-------- Leaderboard (Weekly time) --------"),
+    /**
+     * &cYou are not on this leaderboard.
+     */
+    LEADERBOARD_NOT_RANKED("leaderboard-not-ranked", "&cYou are not on this leaderboard."),
+    /**
+     * &aYou are ranked &6#{0}&a of &6{1}&a players.
+     */
+    LEADERBOARD_RANK("leaderboard-rank", "&aYou are ranked &6#{0}&a of &6{1}&a players."),
     /**
      * Be at {0}.
      */
@@ -467,10 +475,19 @@ public enum Lang {
      */
     public static void setFile(final FileConfiguration config) {
         LANG = config;
+
+        // Values are read again from the new file.
+        for (final Lang lang : values()) {
+            lang.value = null;
+        }
     }
 
     private String path, def;
 
+    // Value in the config with translated colors, or null if it was not read
+    // yet.
+    private volatile String value;
+
     /**
      * Lang enum constructor.
      * 
@@ -492,7 +509,12 @@ public enum Lang {
      * @return value in config or otherwise default value
      */
     public String getConfigValue(final Object... args) {
-        String value = ChatColor.translateAlternateColorCodes('&', LANG.getString(this.path, this.def));
+        String value = this.value;
+
+        if (value == null) {
+            value = ChatColor.translateAlternateColorCodes('&', LANG.getString(this.path, this.def));
+            this.value = value;
+        }
 
         if (args == null)
             return value;
@@ -0,0 +1,200 @@
+package me.armar.plugins.autorank.leaderboard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.google.common.base.Predicate;
+
+import me.armar.plugins.autorank.data.PlaytimeIndex;
+import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
+
+/**
+ * Finds the players with the most time for multiple time types at once. <br>
+ * Every player of the {@link PlaytimeIndex} is read once, and its time is
+ * offered to a {@link TopTimes} of every requested time type. Whether a player
+ * is exempted is only checked once, and only if it has enough time to be kept
+ * for at least one type.
+ * <p>
+ * When there are many players, the index is divided in parts that are read
+ * by the threads of a fork-join pool. Every part has its own top players,
+ * which are merged when the parts are joined.
+ */
+public class LeaderboardBuilder {
+
+    // Below this number of players, all players are read by a single thread.
+    private static final int PARALLEL_PLAYERS = 10000;
+
+    // Parts per thread, so a thread that finishes early can take over work.
+    private static final int PARTS_PER_THREAD = 4;
+
+    private static final int TYPES = TimeType.values().length;
+
+    private final PlaytimeIndex index;
+
+    private final Predicate<UUID> exempted;
+
+    // Created when it is first needed. Guarded by the lock on this builder.
+    private ForkJoinPool pool;
+
+    /**
+     * Create a new builder.
+     *
+     * @param index
+     *            Index with the times of all players
+     * @param exempted
+     *            Decides which players may not appear on the leaderboard. It
+     *            may be called by multiple threads at the same time.
+     */
+    public LeaderboardBuilder(final PlaytimeIndex index, final Predicate<UUID> exempted) {
+        this.index = index;
+        this.exempted = exempted;
+    }
+
+    /**
+     * Find the players with the most time for the given time types.
+     *
+     * @param types
+     *            Types of time to find the top players of
+     * @param capacity
+     *            Number of players to find per type
+     * @return the top players of every requested type.
+     */
+    public Map<TimeType, TopTimes<UUID>> build(final Collection<TimeType> types, final int capacity) {
+        final boolean[] requested = new boolean[TYPES];
+
+        for (final TimeType type : types) {
+            requested[type.ordinal()] = true;
+        }
+
+        final List<TopTimes<UUID>> tops;
+
+        // The index may not change while its parts are read.
+        synchronized (index) {
+            if (index.size() < PARALLEL_PLAYERS) {
+                tops = scan(requested, capacity, 0, 1);
+            } else {
+                final ForkJoinPool pool = getPool();
+                final int parts = pool.getParallelism() * PARTS_PER_THREAD;
+
+                tops = pool.invoke(new Part(requested, capacity, 0, parts, parts));
+            }
+        }
+
+        final Map<TimeType, TopTimes<UUID>> result = new EnumMap<TimeType, TopTimes<UUID>>(TimeType.class);
+
+        for (final TimeType type : types) {
+            result.put(type, tops.get(type.ordinal()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Stop the threads that are used to read the index.
+     */
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    private synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool();
+        }
+
+        return pool;
+    }
+
+    /**
+     * Read one part of the index.
+     */
+    private List<TopTimes<UUID>> scan(final boolean[] requested, final int capacity, final int part,
+            final int parts) {
+        final List<TopTimes<UUID>> tops = new ArrayList<TopTimes<UUID>>(TYPES);
+
+        for (int column = 0; column < TYPES; column++) {
+            tops.add(requested[column] ? new TopTimes<UUID>(capacity) : null);
+        }
+
+        index.forEachPlayer(part, parts, new PlaytimeIndex.PlayerVisitor() {
+
+            @Override
+            public void visit(final long most, final long least, final int[] minutes) {
+                UUID uuid = null;
+
+                for (int column = 0; column < TYPES; column++) {
+                    final TopTimes<UUID> top = tops.get(column);
+
+                    if (top == null || minutes[column] < 0 || minutes[column] <= top.getThreshold()) {
+                        continue;
+                    }
+
+                    if (uuid == null) {
+                        uuid = new UUID(most, least);
+
+                        if (exempted.apply(uuid)) {
+                            return;
+                        }
+                    }
+
+                    top.offer(uuid, minutes[column]);
+                }
+            }
+        });
+
+        return tops;
+    }
+
+    /**
+     * Reads a range of parts, by splitting it in two until a single part is
+     * left.
+     */
+    private class Part extends RecursiveTask<List<TopTimes<UUID>>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final boolean[] requested;
+        private final int capacity;
+        private final int from, to, parts;
+
+        private Part(final boolean[] requested, final int capacity, final int from, final int to,
+                final int parts) {
+            this.requested = requested;
+            this.capacity = capacity;
+            this.from = from;
+            this.to = to;
+            this.parts = parts;
+        }
+
+        @Override
+        protected List<TopTimes<UUID>> compute() {
+            if (to - from == 1) {
+                return scan(requested, capacity, from, parts);
+            }
+
+            final int middle = (from + to) / 2;
+
+            final Part left = new Part(requested, capacity, from, middle, parts);
+            left.fork();
+
+            final List<TopTimes<UUID>> tops = new Part(requested, capacity, middle, to, parts).compute();
+            final List<TopTimes<UUID>> leftTops = left.join();
+
+            for (int column = 0; column < TYPES; column++) {
+                if (tops.get(column) != null) {
+                    tops.get(column).offerAll(leftTops.get(column));
+                }
+            }
+
+            return tops;
+        }
+    }
+}
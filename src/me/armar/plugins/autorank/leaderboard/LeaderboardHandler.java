@@ -1,26 +1,31 @@
 package me.armar.plugins.autorank.leaderboard;
 
-import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 
+import com.google.common.base.Predicate;
+
 import me.armar.plugins.autorank.Autorank;
+import me.armar.plugins.autorank.data.PlaytimeIndex;
 import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
+import me.armar.plugins.autorank.data.mysql.MySQLManager.GlobalTimeConsumer;
 import me.armar.plugins.autorank.hooks.DependencyManager.AutorankDependency;
 import me.armar.plugins.autorank.language.Lang;
 import me.armar.plugins.autorank.util.AutorankTools;
+import me.armar.plugins.autorank.util.Layout;
 
 /**
  * This class is used to handle all leaderboard things. <br>
@@ -31,6 +36,12 @@ import me.armar.plugins.autorank.util.AutorankTools;
  * <i>/ar leaderboard broadcast</i> can be used to broadcast the leaderboard
  * over the entire server.
  * <p>
+ * When Autorank keeps track of the time, the top players are kept up to date
+ * by a {@link LeaderboardTracker}, so the leaderboard is always current. It is
+ * only made again when the top players changed. All players are only read
+ * every {@link #LEADERBOARD_TIME_VALID} minutes, to check that the tracked
+ * players are correct.
+ * <p>
  * Date created: 21:03:23 15 mrt. 2014
  *
  * @author Staartvin
@@ -38,44 +49,72 @@ import me.armar.plugins.autorank.util.AutorankTools;
 public class LeaderboardHandler {
 
     private static final double LEADERBOARD_TIME_VALID = 30;
+
+    // Number of global times that are read from the database at once.
+    private static final int GLOBAL_TIME_CHUNK_SIZE = 1000;
+
+    // Placeholders of the layout, in the order their values are given.
+    private static final String[] LAYOUT_PLACEHOLDERS = { "&p", "&r", "&tm", "&th", "&d", "&h", "&m", "%day%",
+            "%hour%", "%minute%" };
+
     private final Autorank plugin;
-    private String layout = "&6&r | &b&p - &7&d %day%, &h %hour% and &m %minute%.";
+
+    private final LeaderboardTracker tracker;
+
+    private final LeaderboardRanks ranks;
+
+    // Last time the tracked players were compared to all players, per type.
+    private final AtomicLongArray lastVerified = new AtomicLongArray(TimeType.values().length);
+
+    // Version of the tracked players every leaderboard was made from, or -1
+    // if it was not made from tracked players.
+    private final AtomicLongArray trackerVersions = new AtomicLongArray(TimeType.values().length);
+
+    // Latest leaderboard of every time type. Snapshots are replaced as a
+    // whole, so they can be read without locking.
+    private final AtomicReferenceArray<LeaderboardSnapshot> snapshots = new AtomicReferenceArray<LeaderboardSnapshot>(
+            TimeType.values().length);
+
+    private final Layout layout;
     private int leaderboardLength = 10;
 
     public LeaderboardHandler(final Autorank plugin) {
         this.plugin = plugin;
 
         leaderboardLength = plugin.getConfigHandler().getLeaderboardLength();
-        layout = plugin.getConfigHandler().getLeaderboardLayout();
-    }
-    // LeaderboardHandler
-    // is valid
-    // for 30
-    // minutes.
+        layout = new Layout(plugin.getConfigHandler().getLeaderboardLayout(), LAYOUT_PLACEHOLDERS).translateColors();
+
+        final PlaytimeIndex playtimeIndex = plugin.getFlatFileManager().getPlaytimeIndex();
+
+        final Predicate<UUID> exempted = new Predicate<UUID>() {
 
-    /**
-     * Sort a map by its values.
-     *
-     * @param map Map to sort.
-     * @param <K> KeyType
-     * @param <V> ValueType
-     * @return a sorted map.
-     */
-    public static <K, V extends Comparable<? super V>> Map<K, V> sortByValue(Map<K, V> map) {
-        List<Map.Entry<K, V>> list = new LinkedList<>(map.entrySet());
-        Collections.sort(list, new Comparator<Map.Entry<K, V>>() {
             @Override
-            public int compare(Map.Entry<K, V> o1, Map.Entry<K, V> o2) {
-                return (o2.getValue()).compareTo(o1.getValue());
+            public boolean apply(final UUID uuid) {
+                return plugin.getPlayerDataConfig().hasLeaderboardExemption(uuid);
             }
-        });
-
-        Map<K, V> result = new LinkedHashMap<>();
-        for (Map.Entry<K, V> entry : list) {
-            result.put(entry.getKey(), entry.getValue());
+        };
+
+        tracker = new LeaderboardTracker(playtimeIndex, leaderboardLength, exempted);
+        ranks = new LeaderboardRanks(playtimeIndex, exempted);
+
+        // Every change of a local time is passed on to the tracker and the
+        // ranks.
+        playtimeIndex.addChangeListener(tracker);
+        playtimeIndex.addChangeListener(ranks);
+
+        // Start with the leaderboards that were shown before the server
+        // stopped.
+        for (final TimeType type : TimeType.values()) {
+            trackerVersions.set(type.ordinal(), -1);
+            snapshots.set(type.ordinal(),
+                    new LeaderboardSnapshot(type, plugin.getInternalPropertiesConfig().getCachedLeaderboard(type),
+                            plugin.getInternalPropertiesConfig().getLeaderboardLastUpdateTime(type), 0));
         }
-        return result;
     }
+    // LeaderboardHandler
+    // is valid
+    // for 30
+    // minutes.
 
     /**
      * Broadcast a leaderboard to all online players.
@@ -83,23 +122,27 @@ public class LeaderboardHandler {
      * @param type Type of leaderboard
      */
     public void broadcastLeaderboard(final TimeType type) {
-        if (shouldUpdateLeaderboard(type)) {
-            // Update leaderboard because it is not valid anymore.
+        // The tracker may be reading all players, so tracked leaderboards are
+        // always checked async.
+        if (isTracked(type) || shouldUpdateLeaderboard(type)) {
+            // Update leaderboard if it is not valid anymore.
             // Run async because it uses UUID lookup
             plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
                 @Override
                 public void run() {
-                    updateLeaderboard(type);
+                    if (shouldUpdateLeaderboard(type)) {
+                        updateLeaderboard(type);
+                    }
 
                     // Send them afterwards, not at the same time.
-                    for (final String msg : plugin.getInternalPropertiesConfig().getCachedLeaderboard(type)) {
+                    for (final String msg : getSnapshot(type).getLines()) {
                         plugin.getServer().broadcastMessage(ChatColor.translateAlternateColorCodes('&', msg));
                     }
                 }
             });
         } else {
             // send them instantly
-            for (final String msg : plugin.getInternalPropertiesConfig().getCachedLeaderboard(type)) {
+            for (final String msg : getSnapshot(type).getLines()) {
                 plugin.getServer().broadcastMessage(ChatColor.translateAlternateColorCodes('&', msg));
             }
         }
@@ -108,93 +151,258 @@ public class LeaderboardHandler {
     /**
      * Get a hashmap, the key is the UUID of a player and the value is time that
      * player has played. <br>
-     * This map is sorted on player time.
+     * This map is sorted on player time. Only the players with the most time
+     * are returned, so not all players have to be sorted.
      *
      * @param type TimeType to get the sort for.
      * @return a sorted map.
      */
     private Map<UUID, Integer> getSortedTimesByUUID(final TimeType type) {
 
-        final List<UUID> uuids = plugin.getFlatFileManager().getUUIDKeys(type);
+        // Keep some spare players, in case the name of a top player is not
+        // known.
+        if (type == TimeType.TOTAL_TIME && plugin.getConfigHandler().useGlobalTimeInLeaderboard()) {
+            return readTopGlobalTimes(2 * leaderboardLength).toMap();
+        }
 
-        final HashMap<UUID, Integer> times = new HashMap<UUID, Integer>();
+        // Only used when Autorank keeps track of the time, so every other
+        // leaderboard is tracked.
+        return getTrackedTimes(type);
+    }
 
-        int size = uuids.size();
+    /**
+     * Check whether the top players of a leaderboard are kept up to date by
+     * the {@link LeaderboardTracker}. This is only possible when the
+     * leaderboard shows the local time that is kept by Autorank.
+     *
+     * @param type Type of leaderboard
+     * @return true if the leaderboard is tracked, false otherwise.
+     */
+    private boolean isTracked(final TimeType type) {
+        if (!plugin.getSettingsConfig().useTimeOf().equals(AutorankDependency.AUTORANK)) {
+            return false;
+        }
 
-        int lastSentPercentage = 0;
+        return type != TimeType.TOTAL_TIME || !plugin.getConfigHandler().useGlobalTimeInLeaderboard();
+    }
 
-        // Fill unsorted lists
-        for (int i = 0; i < uuids.size(); i++) {
+    /**
+     * Get the top players of a tracked leaderboard. Every
+     * {@link #LEADERBOARD_TIME_VALID} minutes, the tracked players are
+     * compared with all players first.
+     *
+     * @param type Type of leaderboard
+     * @return a map with the time of every top player, sorted on time.
+     */
+    private Map<UUID, Integer> getTrackedTimes(final TimeType type) {
+        verifyTrackedTimes(Collections.singletonList(type));
 
-            UUID uuid = uuids.get(i);
+        final Map<UUID, Integer> times = new LinkedHashMap<UUID, Integer>();
 
-            // If UUID is null, we can't do anything with it.
-            if (uuid == null) {
-                continue;
-            }
+        for (final Entry<UUID, Integer> entry : tracker.getTop(type)) {
+            times.put(entry.getKey(), entry.getValue());
+        }
 
-            // If player is exempted
-            if (plugin.getPlayerDataConfig().hasLeaderboardExemption(uuid)) {
-                continue;
-            }
+        return times;
+    }
 
-            DecimalFormat df = new DecimalFormat("#.#");
-            double percentage = ((i * 1.0) / size) * 100;
-            int floored = (int) Math.floor(percentage);
+    /**
+     * Compare the tracked players with all players, for every tracked
+     * leaderboard that was not checked in the last
+     * {@link #LEADERBOARD_TIME_VALID} minutes. All players are read only once,
+     * no matter how many leaderboards are checked.
+     *
+     * @param types Types of leaderboard
+     */
+    private void verifyTrackedTimes(final Collection<TimeType> types) {
+        final long now = System.currentTimeMillis();
+
+        final List<TimeType> outdated = new ArrayList<TimeType>();
 
-            if (lastSentPercentage != floored && floored % 10 == 0) {
-                lastSentPercentage = floored;
-                plugin.debugMessage("Autorank leaderboard update is at " + df.format(percentage) + "%.");
+        for (final TimeType type : types) {
+            final long last = lastVerified.get(type.ordinal());
+
+            // Only one thread checks a leaderboard.
+            if (isTracked(type) && now - last > 60000 * LEADERBOARD_TIME_VALID
+                    && lastVerified.compareAndSet(type.ordinal(), last, now)) {
+                outdated.add(type);
             }
+        }
 
-            // Use cache on .getTimeOfPlayer() so that we don't refresh all
-            // uuids in existence.
-            if (type == TimeType.TOTAL_TIME) {
+        if (outdated.isEmpty()) {
+            return;
+        }
 
-                if (plugin.getConfigHandler().useGlobalTimeInLeaderboard()) {
-                    times.put(uuid, plugin.getMySQLManager().getGlobalTime(uuid));
-                } else {
+        for (final TimeType type : tracker.verify(outdated)) {
+            plugin.debugMessage("Tracked leaderboard '" + type + "' did not match all players and was rebuilt.");
+        }
+    }
 
-                    // If we are using Autorank, we do not need the player name.
-                    if (plugin.getPlaytimes().getUsedTimePlugin().equals(AutorankDependency.AUTORANK)) {
-                        times.put(uuid, plugin.getFlatFileManager().getLocalTime(type, uuid));
-                    } else {
-                        // Get the cached value of this uuid
-                        final String playerName = plugin.getUUIDStorage().getCachedPlayerName(uuid);
+    /**
+     * Stop the threads that are used to build the leaderboards. The latest
+     * leaderboards are put in the internal properties file, so they can be
+     * shown right away after a restart.
+     */
+    public void shutdown() {
+        tracker.shutdown();
 
-                        if (playerName == null) {
-                            plugin.debugMessage("Could not get cached player name of uuid '" + uuid + "'!");
-                            continue;
-                        }
+        for (final TimeType type : TimeType.values()) {
+            final LeaderboardSnapshot snapshot = getSnapshot(type);
 
-                        times.put(uuid, (plugin.getPlaytimes().getTimeOfPlayer(playerName, true) / 60));
-                    }
+            plugin.getInternalPropertiesConfig().setCachedLeaderboard(type, snapshot.getLines());
+            plugin.getInternalPropertiesConfig().setLeaderboardLastUpdateTime(type, snapshot.getUpdateTime());
+        }
+    }
+
+    /**
+     * Check again whether a player may appear on the leaderboard. Call this
+     * when the leaderboard exemption of a player has changed.
+     *
+     * @param uuid UUID of the player
+     */
+    public void updateExemption(final UUID uuid) {
+        tracker.updateExemption(uuid);
+        ranks.invalidate();
+    }
+
+    /**
+     * Get the rank of a player on a leaderboard. Players with the same time
+     * share a rank. Ranks are only known for leaderboards that show the local
+     * time kept by Autorank.
+     *
+     * @param uuid UUID of the player
+     * @param type Type of leaderboard
+     * @return the rank of the player, starting at 1, or -1 if the player is
+     *         not on the leaderboard or the rank is not known.
+     */
+    public int getRank(final UUID uuid, final TimeType type) {
+        if (!isTracked(type)) {
+            return -1;
+        }
+
+        return ranks.getRank(uuid, type);
+    }
+
+    /**
+     * Get the number of players on a leaderboard. Only known for leaderboards
+     * that show the local time kept by Autorank.
+     *
+     * @param type Type of leaderboard
+     * @return number of ranked players, or 0 if it is not known.
+     */
+    public int getRankedPlayers(final TimeType type) {
+        if (!isTracked(type)) {
+            return 0;
+        }
+
+        return ranks.getSize(type);
+    }
+
+    /**
+     * Get a part of a leaderboard. Only possible for leaderboards that show
+     * the local time kept by Autorank.
+     *
+     * @param type   Type of leaderboard
+     * @param offset Number of players to skip, starting with the player with
+     *               the most time
+     * @param limit  Maximum number of players to get
+     * @return the players on the page with their time (in minutes), most time
+     *         first. The list is empty if the page is not known.
+     */
+    public List<Entry<UUID, Integer>> getPage(final TimeType type, final int offset, final int limit) {
+        if (!isTracked(type)) {
+            return new ArrayList<Entry<UUID, Integer>>();
+        }
+
+        return ranks.getPage(type, offset, limit);
+    }
+
+    /**
+     * Send a page of a leaderboard to a {@linkplain CommandSender}. A page is
+     * as long as the leaderboard. The first page is the leaderboard itself.
+     *
+     * @param sender Sender to send it to.
+     * @param type   Type of leaderboard to send.
+     * @param page   Number of the page, starting at 1.
+     */
+    public void sendPage(final CommandSender sender, final TimeType type, final int page) {
+        // Run async because it uses UUID lookup
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+            @Override
+            public void run() {
+                final int offset = (page - 1) * leaderboardLength;
+
+                final Map<String, Integer> times = new LinkedHashMap<String, Integer>();
+
+                for (final Entry<UUID, Integer> entry : getPage(type, offset, leaderboardLength)) {
+                    final String name = getPlayerName(entry.getKey());
+
+                    // Keep the ranks right, even without a name.
+                    times.put(name == null ? entry.getKey().toString() : name, entry.getValue());
+                }
+
+                final List<String> lines = new ArrayList<String>();
+
+                lines.add(getHeader(type));
+                addLines(lines, times.entrySet().iterator(), offset + 1, leaderboardLength);
+                lines.add(Lang.LEADERBOARD_FOOTER.getConfigValue());
+
+                for (final String line : lines) {
+                    AutorankTools.sendColoredMessage(sender, line);
                 }
-            } else {
-                times.put(uuid, plugin.getFlatFileManager().getLocalTime(type, uuid));
             }
-        }
+        });
+    }
+
+    /**
+     * Get the players with the most global time. The table is read in chunks
+     * and every player is offered to the top times right away, so only the
+     * top players are kept in memory. Players that are exempted or that never
+     * played on this server are skipped.
+     *
+     * @param count Number of players to keep
+     * @return the top players and their global time.
+     */
+    private TopTimes<UUID> readTopGlobalTimes(final int count) {
+        final PlaytimeIndex playtimeIndex = plugin.getFlatFileManager().getPlaytimeIndex();
+        final TopTimes<UUID> times = new TopTimes<UUID>(count);
 
-        // Sort all values
-        final Map<UUID, Integer> sortedMap = LeaderboardHandler.sortByValue(times);
+        plugin.getMySQLManager().streamAllPlayersFromDatabase(GLOBAL_TIME_CHUNK_SIZE, new GlobalTimeConsumer() {
 
-        return sortedMap;
+            @Override
+            public void accept(final Map<UUID, Integer> chunk, final int read) {
+                for (final Entry<UUID, Integer> entry : chunk.entrySet()) {
+                    final UUID uuid = entry.getKey();
+
+                    if (!playtimeIndex.contains(uuid, TimeType.TOTAL_TIME)
+                            || plugin.getPlayerDataConfig().hasLeaderboardExemption(uuid)) {
+                        continue;
+                    }
+
+                    times.offer(uuid, entry.getValue());
+                }
+
+                plugin.debugMessage("Autorank leaderboard read " + read + " global times.");
+            }
+        });
+
+        return times;
     }
 
     private Map<String, Integer> getSortedTimesByNames(final TimeType type) {
 
-        final List<String> playerNames = plugin.getUUIDStorage().getStoredPlayerNames();
+        if (type == TimeType.TOTAL_TIME && plugin.getConfigHandler().useGlobalTimeInLeaderboard()) {
+            return getTopGlobalTimesByNames();
+        }
 
-        final Map<String, Integer> times = new HashMap<String, Integer>();
+        final PlaytimeIndex playtimeIndex = plugin.getFlatFileManager().getPlaytimeIndex();
 
-        int size = playerNames.size();
+        final List<String> playerNames = plugin.getUUIDStorage().getStoredPlayerNames();
 
-        int lastSentPercentage = 0;
+        final TopTimes<String> times = new TopTimes<String>(leaderboardLength);
 
         // Fill unsorted lists
-        for (int i = 0; i < playerNames.size(); i++) {
-
-            String playerName = playerNames.get(i);
+        for (final String playerName : playerNames) {
 
             if (playerName == null) {
                 continue;
@@ -211,41 +419,44 @@ public class LeaderboardHandler {
                 continue;
             }
 
-            DecimalFormat df = new DecimalFormat("#.#");
-            double percentage = ((i * 1.0) / size) * 100;
-            int floored = (int) Math.floor(percentage);
-
-            if (lastSentPercentage != floored) {
-                lastSentPercentage = floored;
-                plugin.debugMessage("Autorank leaderboard update is at " + df.format(percentage) + "%.");
-            }
-
             // Use cache on .getTimeOfPlayer() so that we don't refresh all
             // uuids in existence.
             if (type == TimeType.TOTAL_TIME) {
 
-                if (plugin.getConfigHandler().useGlobalTimeInLeaderboard()) {
-                    times.put(playerName, plugin.getMySQLManager().getGlobalTime(uuid));
+                // If we are using Autorank, we do not need the player name.
+                if (plugin.getPlaytimes().getUsedTimePlugin().equals(AutorankDependency.AUTORANK)) {
+                    times.offer(playerName, playtimeIndex.getTime(uuid, type));
                 } else {
-
-                    // If we are using Autorank, we do not need the player name.
-                    if (plugin.getPlaytimes().getUsedTimePlugin().equals(AutorankDependency.AUTORANK)) {
-                        times.put(playerName, plugin.getFlatFileManager().getLocalTime(type, uuid));
-                    } else {
-                        times.put(playerName, (plugin.getPlaytimes().getTimeOfPlayer(playerName, true) / 60));
-                    }
+                    times.offer(playerName, (plugin.getPlaytimes().getTimeOfPlayer(playerName, true) / 60));
                 }
             } else {
-                times.put(playerName, plugin.getFlatFileManager().getLocalTime(type, uuid));
+                times.offer(playerName, playtimeIndex.getTime(uuid, type));
             }
         }
 
-        // Sort all values
-        // final Map<String, Integer> sortedMap = sortByComparatorString(times,
-        // false);
-        final Map<String, Integer> sortedMap = LeaderboardHandler.sortByValue(times);
+        return times.toMap();
+    }
+
+    /**
+     * Get the names of the players with the most global time.
+     *
+     * @return a map with the global time of every top player that has a
+     *         known name, sorted on time.
+     */
+    private Map<String, Integer> getTopGlobalTimesByNames() {
+        final Map<String, Integer> times = new LinkedHashMap<String, Integer>();
 
-        return sortedMap;
+        // Keep some spare players, in case the name of a top player is not
+        // known.
+        for (final Entry<UUID, Integer> entry : readTopGlobalTimes(2 * leaderboardLength).toList()) {
+            final String playerName = plugin.getUUIDStorage().getCachedPlayerName(entry.getKey());
+
+            if (playerName != null && times.size() < leaderboardLength) {
+                times.put(playerName, entry.getValue());
+            }
+        }
+
+        return times;
     }
 
     /**
@@ -255,13 +466,17 @@ public class LeaderboardHandler {
      * @param type   Type of leaderboard to send.
      */
     public void sendLeaderboard(final CommandSender sender, final TimeType type) {
-        if (shouldUpdateLeaderboard(type)) {
-            // Update leaderboard because it is not valid anymore.
+        // The tracker may be reading all players, so tracked leaderboards are
+        // always checked async.
+        if (isTracked(type) || shouldUpdateLeaderboard(type)) {
+            // Update leaderboard if it is not valid anymore.
             // Run async because it uses UUID lookup
             plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
                 @Override
                 public void run() {
-                    updateLeaderboard(type);
+                    if (shouldUpdateLeaderboard(type)) {
+                        updateLeaderboard(type);
+                    }
 
                     // Send them afterwards, not at the same time.
                     sendMessages(sender, type);
@@ -280,7 +495,7 @@ public class LeaderboardHandler {
      * @param type   Type of leaderboard to send
      */
     public void sendMessages(final CommandSender sender, final TimeType type) {
-        for (final String msg : plugin.getInternalPropertiesConfig().getCachedLeaderboard(type)) {
+        for (final String msg : getSnapshot(type).getLines()) {
             AutorankTools.sendColoredMessage(sender, msg);
         }
     }
@@ -292,10 +507,16 @@ public class LeaderboardHandler {
      * @return true if we should update the leaderboard
      */
     private boolean shouldUpdateLeaderboard(TimeType type) {
-        if (System.currentTimeMillis() - plugin.getInternalPropertiesConfig().getLeaderboardLastUpdateTime(type) > (60000
-                * LEADERBOARD_TIME_VALID)) {
+        if (isTracked(type) && tracker.getVersion(type) != trackerVersions.get(type.ordinal())) {
+            // The top players changed since the leaderboard was made.
+            return true;
+        }
+
+        final LeaderboardSnapshot snapshot = getSnapshot(type);
+
+        if (System.currentTimeMillis() - snapshot.getUpdateTime() > (60000 * LEADERBOARD_TIME_VALID)) {
             return true;
-        } else if (plugin.getInternalPropertiesConfig().getCachedLeaderboard(type).size() <= 2) {
+        } else if (snapshot.getLines().size() <= 2) {
             return true;
         } else {
             return false;
@@ -310,6 +531,10 @@ public class LeaderboardHandler {
         plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
             @Override
             public void run() {
+                // Check all tracked leaderboards in a single pass over all
+                // players, before they are updated one by one.
+                verifyTrackedTimes(Arrays.asList(TimeType.values()));
+
                 for (final TimeType type : TimeType.values()) {
                     if (!shouldUpdateLeaderboard(type))
                         continue;
@@ -328,81 +553,122 @@ public class LeaderboardHandler {
     public void updateLeaderboard(final TimeType type) {
         plugin.debugMessage(ChatColor.BLUE + "Updating leaderboard '" + type.toString() + "'!");
 
+        long trackerVersion = -1;
+
+        if (isTracked(type)) {
+            // Check the tracked players first, so the version that is
+            // remembered is the one the leaderboard is made from.
+            verifyTrackedTimes(Collections.singletonList(type));
+
+            trackerVersion = tracker.getVersion(type);
+        }
+
         // Store messages to make leaderboard
         final List<String> stringList = new ArrayList<String>();
 
         // Only store the users that should appear on the leaderboard, along with their time.
         Map<String, Integer> finalLeaderboard = getAccurateLeaderboard(type);
 
-        if (type == TimeType.TOTAL_TIME) {
-            stringList.add(Lang.LEADERBOARD_HEADER_ALL_TIME.getConfigValue());
-        } else if (type == TimeType.DAILY_TIME) {
-            stringList.add(Lang.LEADERBOARD_HEADER_DAILY.getConfigValue());
-        } else if (type == TimeType.WEEKLY_TIME) {
-            stringList.add(Lang.LEADERBOARD_HEADER_WEEKLY.getConfigValue());
-        } else if (type == TimeType.MONTHLY_TIME) {
-            stringList.add(Lang.LEADERBOARD_HEADER_MONTHLY.getConfigValue());
-        }
+        stringList.add(getHeader(type));
 
-        Iterator<Entry<String, Integer>> iterator = finalLeaderboard.entrySet().iterator();
+        addLines(stringList, finalLeaderboard.entrySet().iterator(), 1, leaderboardLength);
 
-        for (int i = 0; i < leaderboardLength && iterator.hasNext(); i++) {
+        stringList.add(Lang.LEADERBOARD_FOOTER.getConfigValue());
 
-            final Entry<String, Integer> entry = iterator.next();
+        // Cache this leaderboard
+        publishSnapshot(type, stringList, System.currentTimeMillis());
+        trackerVersions.set(type.ordinal(), trackerVersion);
+    }
 
-            Integer time = entry.getValue().intValue();
+    /**
+     * Get the header of a leaderboard.
+     *
+     * @param type Type of leaderboard
+     * @return the header, as configured in the language file.
+     */
+    private String getHeader(final TimeType type) {
+        if (type == TimeType.DAILY_TIME) {
+            return Lang.LEADERBOARD_HEADER_DAILY.getConfigValue();
+        } else if (type == TimeType.WEEKLY_TIME) {
+            return Lang.LEADERBOARD_HEADER_WEEKLY.getConfigValue();
+        } else if (type == TimeType.MONTHLY_TIME) {
+            return Lang.LEADERBOARD_HEADER_MONTHLY.getConfigValue();
+        }
 
-            String message = layout.replace("&p", entry.getKey());
+        return Lang.LEADERBOARD_HEADER_ALL_TIME.getConfigValue();
+    }
 
-            // divided by 1440
-            final int days = (time / 1440);
+    /**
+     * Add a line for every player to a leaderboard, using the layout of the
+     * leaderboard.
+     *
+     * @param lines     Lines of the leaderboard
+     * @param iterator  Names of the players with their time, most time first
+     * @param firstRank Rank of the first player
+     * @param count     Maximum number of players to add
+     */
+    private void addLines(final List<String> lines, final Iterator<Entry<String, Integer>> iterator,
+            final int firstRank, final int count) {
+        final String day = Lang.DAY_SINGULAR.getConfigValue(), days = Lang.DAY_PLURAL.getConfigValue();
+        final String hour = Lang.HOUR_SINGULAR.getConfigValue(), hours = Lang.HOUR_PLURAL.getConfigValue();
+        final String minute = Lang.MINUTE_SINGULAR.getConfigValue(), minutes = Lang.MINUTE_PLURAL.getConfigValue();
 
-            // (time - days) / 60
-            final int hours = (time - (days * 1440)) / 60;
+        final StringBuilder message = new StringBuilder();
 
-            // (time - days - hours)
-            final int minutes = time - (days * 1440) - (hours * 60);
+        for (int i = 0; i < count && iterator.hasNext(); i++) {
 
-            message = message.replace("&r", Integer.toString(i + 1));
-            message = message.replace("&tm", Integer.toString(time));
-            message = message.replace("&th", Integer.toString(time / 60));
-            message = message.replace("&d", Integer.toString(days));
-            time = time - ((time / 1440) * 1440);
-            message = message.replace("&h", Integer.toString(hours));
-            time = time - ((time / 60) * 60);
+            final Entry<String, Integer> entry = iterator.next();
 
-            message = message.replace("&m", Integer.toString(minutes));
-            message = ChatColor.translateAlternateColorCodes('&', message);
+            final int time = entry.getValue();
 
-            // Correctly show plural or singular format.
-            if (days > 1 || days == 0) {
-                message = message.replace("%day%", Lang.DAY_PLURAL.getConfigValue());
-            } else {
-                message = message.replace("%day%", Lang.DAY_SINGULAR.getConfigValue());
-            }
+            final int dayCount = time / 1440;
+            final int hourCount = (time - (dayCount * 1440)) / 60;
+            final int minuteCount = time - (dayCount * 1440) - (hourCount * 60);
 
-            if (hours > 1 || hours == 0) {
-                message = message.replace("%hour%", Lang.HOUR_PLURAL.getConfigValue());
-            } else {
-                message = message.replace("%hour%", Lang.HOUR_SINGULAR.getConfigValue());
-            }
+            message.setLength(0);
 
-            if (minutes > 1 || minutes == 0) {
-                message = message.replace("%minute%", Lang.MINUTE_PLURAL.getConfigValue());
-            } else {
-                message = message.replace("%minute%", Lang.MINUTE_SINGULAR.getConfigValue());
-            }
+            // Correctly show plural or singular format.
+            layout.appendTo(message, entry.getKey(), firstRank + i, time, time / 60, dayCount, hourCount, minuteCount,
+                    dayCount == 1 ? day : days, hourCount == 1 ? hour : hours, minuteCount == 1 ? minute : minutes);
 
-            stringList.add(message);
+            lines.add(message.toString());
         }
+    }
 
-        stringList.add(Lang.LEADERBOARD_FOOTER.getConfigValue());
+    /**
+     * Get the latest leaderboard of a time type. This does not update the
+     * leaderboard and can be called from any thread.
+     *
+     * @param type Type of leaderboard
+     * @return the latest snapshot of the leaderboard.
+     */
+    public LeaderboardSnapshot getSnapshot(final TimeType type) {
+        return snapshots.get(type.ordinal());
+    }
 
-        // Cache this leaderboard
-        plugin.getInternalPropertiesConfig().setCachedLeaderboard(type, stringList);
+    /**
+     * Mark a leaderboard as outdated, so it is made again the next time it is
+     * shown. The old lines are shown until then.
+     *
+     * @param type Type of leaderboard
+     */
+    public void invalidateLeaderboard(final TimeType type) {
+        publishSnapshot(type, getSnapshot(type).getLines(), 0);
+    }
 
-        // Update latest update-time
-        plugin.getInternalPropertiesConfig().setLeaderboardLastUpdateTime(type, System.currentTimeMillis());
+    /**
+     * Replace the snapshot of a leaderboard with a new version.
+     */
+    private void publishSnapshot(final TimeType type, final List<String> lines, final long updateTime) {
+        while (true) {
+            final LeaderboardSnapshot previous = snapshots.get(type.ordinal());
+            final LeaderboardSnapshot next = new LeaderboardSnapshot(type, lines, updateTime,
+                    previous.getVersion() + 1);
+
+            if (snapshots.compareAndSet(type.ordinal(), previous, next)) {
+                return;
+            }
+        }
     }
 
     /**
@@ -422,22 +688,16 @@ public class LeaderboardHandler {
 
             plugin.debugMessage("Size leaderboard: " + sortedPlaytimes.size());
 
-            for (int i = 0; i < leaderboardLength && itr.hasNext(); i++) {
+            // Players without a known name are skipped, the spare players
+            // take their place.
+            while (finalLeaderboard.size() < leaderboardLength && itr.hasNext()) {
                 final Entry<UUID, Integer> entry = itr.next();
 
                 final UUID uuid = entry.getKey();
 
                 // Grab playername from here so it doesn't load all player names
                 // ever.
-                // Get the cached value of this uuid to improve performance
-                String name = plugin.getUUIDStorage().getRealName(uuid);
-
-                // UUIDManager.getPlayerFromUUID(uuid);
-
-                // There was no real name found, use cached player name
-                if (name == null) {
-                    name = plugin.getUUIDStorage().getCachedPlayerName(uuid);
-                }
+                final String name = getPlayerName(uuid);
 
                 // No cached name found, don't use this name.
                 if (name == null)
@@ -457,7 +717,7 @@ public class LeaderboardHandler {
 
             plugin.debugMessage("Size leaderboard: " + sortedPlaytimes.size());
 
-            for (int i = 0; i < leaderboardLength && itr.hasNext(); i++) {
+            while (finalLeaderboard.size() < leaderboardLength && itr.hasNext()) {
 
                 final Entry<String, Integer> entry = itr.next();
 
@@ -468,4 +728,23 @@ public class LeaderboardHandler {
         return finalLeaderboard;
     }
 
+    /**
+     * Get the name of a player that is shown on the leaderboard.
+     *
+     * @param uuid UUID of the player
+     * @return the real name of the player, the cached name if there is no real
+     *         name, or null if neither is known.
+     */
+    private String getPlayerName(final UUID uuid) {
+        // Get the cached value of this uuid to improve performance
+        final String name = plugin.getUUIDStorage().getRealName(uuid);
+
+        // There was no real name found, use cached player name
+        if (name == null) {
+            return plugin.getUUIDStorage().getCachedPlayerName(uuid);
+        }
+
+        return name;
+    }
+
 }
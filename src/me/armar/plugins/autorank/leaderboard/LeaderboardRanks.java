@@ -0,0 +1,388 @@
+package me.armar.plugins.autorank.leaderboard;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import com.google.common.base.Predicate;
+
+import me.armar.plugins.autorank.data.PlaytimeIndex;
+import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
+
+/**
+ * Knows the rank of every player on the leaderboard of every
+ * {@link TimeType}. <br>
+ * For every time type, the number of players per minute of play time is kept
+ * in a Fenwick tree. The rank of a player is one more than the number of
+ * players with more time, which is found in O(log t), where t is the highest
+ * time of any player. The tree is kept up to date by listening to the changes
+ * of the {@link PlaytimeIndex}.
+ * <p>
+ * Players with a lot of time (see {@link #MAX_EXACT_MINUTES}) are rare, so
+ * they are counted in a sorted map instead, to keep the tree small.
+ * <p>
+ * Players that are exempted from the leaderboard are not ranked.
+ */
+public class LeaderboardRanks implements PlaytimeIndex.ChangeListener {
+
+    // Times below this are counted in the tree, which grows up to this size.
+    public static final int MAX_EXACT_MINUTES = 1 << 21;
+
+    private static final int INITIAL_SIZE = 1024;
+
+    private static final Comparator<Entry<UUID, Integer>> RANKING = new Comparator<Entry<UUID, Integer>>() {
+
+        @Override
+        public int compare(final Entry<UUID, Integer> first, final Entry<UUID, Integer> second) {
+            if (!first.getValue().equals(second.getValue())) {
+                return first.getValue() > second.getValue() ? -1 : 1;
+            }
+
+            return first.getKey().compareTo(second.getKey());
+        }
+    };
+
+    /**
+     * The number of players per time, for a single time type.
+     */
+    private static class Counts {
+
+        // Fenwick tree over the times 0 to size - 1, 1-based. size is a power
+        // of two.
+        private int size;
+        private int[] tree;
+
+        // Number of players per time, for times of MAX_EXACT_MINUTES or more.
+        private final TreeMap<Integer, Integer> large = new TreeMap<Integer, Integer>();
+
+        private int exactCount, largeCount;
+
+        // Period the players belong to.
+        private int epoch;
+
+        // Whether the counts have to be read from the index again.
+        private boolean outdated = true;
+
+        private void reset(final int epoch) {
+            size = INITIAL_SIZE;
+            tree = new int[size + 1];
+            large.clear();
+            exactCount = 0;
+            largeCount = 0;
+
+            this.epoch = epoch;
+            outdated = false;
+        }
+
+        private void add(final int time, final int delta) {
+            // Negative times count as no time at all.
+            final int minutes = Math.max(0, time);
+
+            if (minutes >= MAX_EXACT_MINUTES) {
+                final Integer count = large.get(minutes);
+                final int newCount = (count == null ? 0 : count) + delta;
+
+                if (newCount == 0) {
+                    large.remove(minutes);
+                } else {
+                    large.put(minutes, newCount);
+                }
+
+                largeCount += delta;
+                return;
+            }
+
+            while (minutes >= size) {
+                grow();
+            }
+
+            for (int i = minutes + 1; i <= size; i += i & -i) {
+                tree[i] += delta;
+            }
+
+            exactCount += delta;
+        }
+
+        /**
+         * Double the size of the tree. The node at the old size covers all old
+         * times, so it is also the sum of the new top node.
+         */
+        private void grow() {
+            final int[] newTree = new int[2 * size + 1];
+
+            System.arraycopy(tree, 0, newTree, 0, tree.length);
+            newTree[2 * size] = tree[size];
+
+            tree = newTree;
+            size *= 2;
+        }
+
+        /**
+         * Get the number of players with a time of at most the given time, for
+         * times that are counted in the tree.
+         */
+        private int countAtMost(final int minutes) {
+            int count = 0;
+
+            for (int i = Math.min(minutes + 1, size); i > 0; i -= i & -i) {
+                count += tree[i];
+            }
+
+            return count;
+        }
+
+        private int countAbove(final int time) {
+            final int minutes = Math.max(0, time);
+
+            if (minutes >= MAX_EXACT_MINUTES) {
+                int count = 0;
+
+                for (final int players : large.tailMap(minutes, false).values()) {
+                    count += players;
+                }
+
+                return count;
+            }
+
+            return exactCount - countAtMost(minutes) + largeCount;
+        }
+
+        /**
+         * Get the time of the player at a position, where position 0 has the
+         * most time.
+         */
+        private int getTime(final int position) {
+            if (position < largeCount) {
+                int skipped = 0;
+
+                for (final Entry<Integer, Integer> entry : large.descendingMap().entrySet()) {
+                    skipped += entry.getValue();
+
+                    if (position < skipped) {
+                        return entry.getKey();
+                    }
+                }
+            }
+
+            // Find the lowest time with more players at or below it than the
+            // position counted from the bottom.
+            int remaining = exactCount - 1 - (position - largeCount);
+            int node = 0;
+
+            for (int step = size; step > 0; step >>= 1) {
+                if (node + step <= size && tree[node + step] <= remaining) {
+                    node += step;
+                    remaining -= tree[node];
+                }
+            }
+
+            return node;
+        }
+
+        private int count() {
+            return exactCount + largeCount;
+        }
+    }
+
+    private final PlaytimeIndex index;
+
+    private final Predicate<UUID> exempted;
+
+    // Guarded by the lock on these ranks. The lock of the index is always
+    // taken first.
+    private final Counts[] counts = new Counts[TimeType.values().length];
+
+    /**
+     * Create new ranks. Register them as listener of the index, so they see
+     * every change.
+     *
+     * @param index
+     *            Index with the times of all players
+     * @param exempted
+     *            Decides which players may not appear on the leaderboard
+     */
+    public LeaderboardRanks(final PlaytimeIndex index, final Predicate<UUID> exempted) {
+        this.index = index;
+        this.exempted = exempted;
+
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new Counts();
+        }
+    }
+
+    /**
+     * Get the rank of a player. Players with the same time share a rank.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @param type
+     *            Type of time
+     * @return the rank of the player, starting at 1, or -1 if the player is
+     *         not on the leaderboard.
+     */
+    public int getRank(final UUID uuid, final TimeType type) {
+        synchronized (index) {
+            if (!index.contains(uuid, type) || exempted.apply(uuid)) {
+                return -1;
+            }
+
+            final int minutes = index.getTime(uuid, type);
+
+            synchronized (this) {
+                return getCounts(type).countAbove(minutes) + 1;
+            }
+        }
+    }
+
+    /**
+     * Get the number of players on the leaderboard.
+     *
+     * @param type
+     *            Type of time
+     * @return number of ranked players.
+     */
+    public int getSize(final TimeType type) {
+        synchronized (index) {
+            synchronized (this) {
+                return getCounts(type).count();
+            }
+        }
+    }
+
+    /**
+     * Get a part of the leaderboard. Players with the same time are ordered
+     * by UUID. <br>
+     * The ranks tell which times are on the page, so only the players with
+     * those times are kept while reading the index.
+     *
+     * @param type
+     *            Type of time
+     * @param offset
+     *            Number of players to skip, starting with the player with the
+     *            most time
+     * @param limit
+     *            Maximum number of players to get
+     * @return the players on the page with their time (in minutes), most time
+     *         first.
+     */
+    public List<Entry<UUID, Integer>> getPage(final TimeType type, final int offset, final int limit) {
+        final List<Entry<UUID, Integer>> players = new ArrayList<Entry<UUID, Integer>>();
+
+        final int highest, lowest, above;
+
+        synchronized (index) {
+            synchronized (this) {
+                final Counts counts = getCounts(type);
+
+                if (offset < 0 || limit <= 0 || offset >= counts.count()) {
+                    return players;
+                }
+
+                highest = counts.getTime(offset);
+                lowest = counts.getTime(Math.min(offset + limit, counts.count()) - 1);
+                above = counts.countAbove(highest);
+            }
+
+            index.forEach(type, new PlaytimeIndex.Visitor() {
+
+                @Override
+                public void visit(final long most, final long least, final int minutes) {
+                    if (Math.max(0, minutes) < lowest || Math.max(0, minutes) > highest) {
+                        return;
+                    }
+
+                    final UUID uuid = new UUID(most, least);
+
+                    if (!exempted.apply(uuid)) {
+                        players.add(new SimpleImmutableEntry<UUID, Integer>(uuid, minutes));
+                    }
+                }
+            });
+        }
+
+        Collections.sort(players, RANKING);
+
+        // Players with the highest time may start on an earlier page.
+        final int from = Math.min(offset - above, players.size());
+
+        return new ArrayList<Entry<UUID, Integer>>(players.subList(from, Math.min(from + limit, players.size())));
+    }
+
+    /**
+     * Count all players again, for instance when the exemption of a player
+     * has changed.
+     */
+    public synchronized void invalidate() {
+        for (final Counts typeCounts : counts) {
+            typeCounts.outdated = true;
+        }
+    }
+
+    @Override
+    public synchronized void timeChanged(final long most, final long least, final TimeType type, final int epoch,
+            final int minutes, final int previousMinutes, final int replacedMinutes) {
+        final Counts typeCounts = counts[type.ordinal()];
+
+        if (typeCounts.epoch != epoch) {
+            typeCounts.outdated = true;
+        }
+
+        if (typeCounts.outdated || exempted.apply(new UUID(most, least))) {
+            return;
+        }
+
+        if (replacedMinutes >= 0) {
+            typeCounts.add(replacedMinutes, -1);
+        }
+
+        typeCounts.add(minutes, 1);
+    }
+
+    @Override
+    public synchronized void timeRemoved(final long most, final long least, final TimeType type, final int epoch,
+            final int previousMinutes, final int removedMinutes) {
+        final Counts typeCounts = counts[type.ordinal()];
+
+        if (typeCounts.epoch != epoch) {
+            typeCounts.outdated = true;
+        }
+
+        if (typeCounts.outdated || exempted.apply(new UUID(most, least))) {
+            return;
+        }
+
+        typeCounts.add(removedMinutes, -1);
+    }
+
+    @Override
+    public synchronized void timesCleared(final TimeType type) {
+        counts[type.ordinal()].reset(index.getCurrentEpoch(type));
+    }
+
+    // Must be called while holding the lock on the index and these ranks.
+    private Counts getCounts(final TimeType type) {
+        final Counts typeCounts = counts[type.ordinal()];
+        final int epoch = index.getCurrentEpoch(type);
+
+        if (typeCounts.outdated || typeCounts.epoch != epoch) {
+            typeCounts.reset(epoch);
+
+            index.forEach(type, new PlaytimeIndex.Visitor() {
+
+                @Override
+                public void visit(final long most, final long least, final int minutes) {
+                    if (!exempted.apply(new UUID(most, least))) {
+                        typeCounts.add(minutes, 1);
+                    }
+                }
+            });
+        }
+
+        return typeCounts;
+    }
+}
@@ -0,0 +1,79 @@
+package me.armar.plugins.autorank.leaderboard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
+
+/**
+ * The formatted lines of a leaderboard, as they are sent to players. <br>
+ * A snapshot never changes. When a leaderboard is updated, a new snapshot
+ * replaces the old one, so a snapshot can be read from any thread without
+ * locking.
+ */
+public final class LeaderboardSnapshot {
+
+    private final TimeType type;
+    private final List<String> lines;
+    private final long updateTime;
+    private final long version;
+
+    /**
+     * Create a new snapshot.
+     *
+     * @param type
+     *            Type of time of the leaderboard
+     * @param lines
+     *            Lines of the leaderboard. They are copied.
+     * @param updateTime
+     *            Time the leaderboard was made (UNIX timestamp), or 0 if it
+     *            should be made again
+     * @param version
+     *            Number of snapshots of this leaderboard before this one
+     */
+    public LeaderboardSnapshot(final TimeType type, final List<String> lines, final long updateTime,
+            final long version) {
+        this.type = type;
+        this.lines = Collections.unmodifiableList(new ArrayList<String>(lines));
+        this.updateTime = updateTime;
+        this.version = version;
+    }
+
+    /**
+     * Get the type of time of the leaderboard.
+     *
+     * @return type of time.
+     */
+    public TimeType getType() {
+        return type;
+    }
+
+    /**
+     * Get the lines of the leaderboard, including its header and footer.
+     *
+     * @return an unmodifiable list of lines.
+     */
+    public List<String> getLines() {
+        return lines;
+    }
+
+    /**
+     * Get the time the leaderboard was made.
+     *
+     * @return a UNIX timestamp, or 0 if the leaderboard should be made again.
+     */
+    public long getUpdateTime() {
+        return updateTime;
+    }
+
+    /**
+     * Get the version of this snapshot. Every new snapshot of a leaderboard
+     * has a higher version than the one it replaces.
+     *
+     * @return version of the snapshot.
+     */
+    public long getVersion() {
+        return version;
+    }
+}
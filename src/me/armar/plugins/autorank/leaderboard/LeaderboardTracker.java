@@ -0,0 +1,437 @@
+package me.armar.plugins.autorank.leaderboard;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import com.google.common.base.Predicate;
+
+import me.armar.plugins.autorank.data.PlaytimeIndex;
+import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
+
+/**
+ * Keeps track of the players with the most local time, for every
+ * {@link TimeType}. <br>
+ * The tracker listens to the changes of the {@link PlaytimeIndex}, so the top
+ * players are always current. Every change costs O(log n), where n is the
+ * number of tracked players, which is twice the length of the leaderboard.
+ * <p>
+ * The tracker also remembers the highest time of all players that are not
+ * tracked. A tracked player whose time drops below that could have been
+ * passed by a player that is not tracked. Only when there are not enough
+ * players left above it to fill the leaderboard, or a new period has
+ * started, are all players of the index read again.
+ */
+public class LeaderboardTracker implements PlaytimeIndex.ChangeListener {
+
+    /**
+     * A player and its time.
+     */
+    private static class Ranked {
+
+        private final UUID uuid;
+        private final int minutes;
+
+        private Ranked(final UUID uuid, final int minutes) {
+            this.uuid = uuid;
+            this.minutes = minutes;
+        }
+    }
+
+    // Most time first. Players with the same time are ordered by UUID, so
+    // every player has a fixed spot.
+    private static final Comparator<Ranked> RANKING = new Comparator<Ranked>() {
+
+        @Override
+        public int compare(final Ranked first, final Ranked second) {
+            if (first.minutes != second.minutes) {
+                return first.minutes > second.minutes ? -1 : 1;
+            }
+
+            return first.uuid.compareTo(second.uuid);
+        }
+    };
+
+    /**
+     * The top players of a single time type.
+     */
+    private static class Board {
+
+        private final int capacity;
+
+        private final TreeSet<Ranked> ranking = new TreeSet<Ranked>(RANKING);
+        private final Map<UUID, Ranked> players = new HashMap<UUID, Ranked>();
+
+        // Highest time of a player that is not tracked, or -1 if every player
+        // is tracked.
+        private int untrackedMax = -1;
+
+        // Period the players belong to.
+        private int epoch;
+
+        // Whether the board has to be read from the index again.
+        private boolean outdated = true;
+
+        // Raised on every change that could change the top players.
+        private long version;
+
+        private Board(final int capacity) {
+            this.capacity = capacity;
+        }
+
+        private void reset(final int epoch) {
+            ranking.clear();
+            players.clear();
+            untrackedMax = -1;
+
+            this.epoch = epoch;
+            outdated = false;
+            version++;
+        }
+
+        private void update(final UUID uuid, final int minutes) {
+            final Ranked previous = players.remove(uuid);
+
+            if (previous != null) {
+                ranking.remove(previous);
+                version++;
+            }
+
+            final Ranked player = new Ranked(uuid, minutes);
+
+            if (ranking.size() < capacity) {
+                add(player);
+                return;
+            }
+
+            final Ranked last = ranking.last();
+
+            if (RANKING.compare(player, last) < 0) {
+                // The player pushes the last one off the board.
+                ranking.pollLast();
+                players.remove(last.uuid);
+
+                untrackedMax = Math.max(untrackedMax, last.minutes);
+
+                add(player);
+            } else if (minutes > untrackedMax) {
+                // Not on the board, but it could push a tracked player off.
+                untrackedMax = minutes;
+                version++;
+            }
+        }
+
+        private void remove(final UUID uuid) {
+            final Ranked previous = players.remove(uuid);
+
+            if (previous != null) {
+                ranking.remove(previous);
+                version++;
+            }
+        }
+
+        private void markOutdated() {
+            if (!outdated) {
+                outdated = true;
+                version++;
+            }
+        }
+
+        private void add(final Ranked player) {
+            ranking.add(player);
+            players.put(player.uuid, player);
+            version++;
+        }
+
+        /**
+         * Get the top players of this board.
+         *
+         * @return the players, or null if there are not enough players that
+         *         are known to be on top.
+         */
+        private List<Entry<UUID, Integer>> getTop(final int length) {
+            final List<Entry<UUID, Integer>> top = new ArrayList<Entry<UUID, Integer>>(length);
+
+            final Iterator<Ranked> iterator = ranking.iterator();
+
+            while (top.size() < length && iterator.hasNext()) {
+                final Ranked player = iterator.next();
+
+                // A player that is not tracked could have more time.
+                if (player.minutes < untrackedMax) {
+                    return null;
+                }
+
+                top.add(new SimpleImmutableEntry<UUID, Integer>(player.uuid, player.minutes));
+            }
+
+            if (top.size() < length && untrackedMax >= 0) {
+                return null;
+            }
+
+            return top;
+        }
+    }
+
+    private final PlaytimeIndex index;
+
+    private final int length;
+
+    private final Predicate<UUID> exempted;
+
+    private final LeaderboardBuilder builder;
+
+    // Guarded by the lock on this tracker. The lock of the index is always
+    // taken first.
+    private final Board[] boards = new Board[TimeType.values().length];
+
+    /**
+     * Create a new tracker. Register it as listener of the index, so it sees
+     * every change.
+     *
+     * @param index
+     *            Index with the times of all players
+     * @param length
+     *            Number of players on the leaderboard
+     * @param exempted
+     *            Decides which players may not appear on the leaderboard
+     */
+    public LeaderboardTracker(final PlaytimeIndex index, final int length, final Predicate<UUID> exempted) {
+        this.index = index;
+        this.length = Math.max(1, length);
+        this.exempted = exempted;
+        this.builder = new LeaderboardBuilder(index, exempted);
+
+        for (int i = 0; i < boards.length; i++) {
+            // Keep some spare players, so a tracked player that loses time
+            // does not force a rescan right away.
+            boards[i] = new Board(2 * this.length);
+        }
+    }
+
+    /**
+     * Get the players with the most time, most time first. Exempted players
+     * are left out.
+     *
+     * @param type
+     *            Type of time
+     * @return the top players with their time (in minutes).
+     */
+    public List<Entry<UUID, Integer>> getTop(final TimeType type) {
+        // Read outside of the lock on this tracker, to keep the lock order.
+        final int epoch = index.getCurrentEpoch(type);
+
+        synchronized (this) {
+            final Board board = boards[type.ordinal()];
+
+            if (!board.outdated && board.epoch == epoch) {
+                final List<Entry<UUID, Integer>> top = board.getTop(length);
+
+                if (top != null) {
+                    return top;
+                }
+            }
+        }
+
+        synchronized (index) {
+            synchronized (this) {
+                rebuild(Collections.singleton(type));
+
+                return boards[type.ordinal()].getTop(length);
+            }
+        }
+    }
+
+    /**
+     * Get the version of the top players of a time type. The version is raised
+     * whenever the top players may have changed, so a leaderboard that was
+     * made at an older version is out of date.
+     *
+     * @param type
+     *            Type of time
+     * @return version of the top players.
+     */
+    public long getVersion(final TimeType type) {
+        // Read outside of the lock on this tracker, to keep the lock order.
+        final int epoch = index.getCurrentEpoch(type);
+
+        synchronized (this) {
+            final Board board = boards[type.ordinal()];
+
+            // A new period started, so the players are not on top anymore.
+            if (board.epoch != epoch) {
+                board.markOutdated();
+            }
+
+            return board.version;
+        }
+    }
+
+    /**
+     * Read all players of the index and compare the top players with the ones
+     * that are tracked. If they differ, the tracked players are replaced.
+     *
+     * @param type
+     *            Type of time
+     * @return true if the tracked players were correct, false otherwise.
+     */
+    public boolean verify(final TimeType type) {
+        return verify(Collections.singleton(type)).isEmpty();
+    }
+
+    /**
+     * Read all players of the index once and compare the top players of every
+     * given time type with the ones that are tracked. Time types whose tracked
+     * players differ are replaced.
+     *
+     * @param types
+     *            Types of time
+     * @return the types of time whose tracked players were not correct.
+     */
+    public List<TimeType> verify(final Collection<TimeType> types) {
+        final List<TimeType> incorrect = new ArrayList<TimeType>();
+
+        synchronized (index) {
+            final Map<TimeType, TopTimes<UUID>> tops = builder.build(types, 2 * length);
+
+            synchronized (this) {
+                for (final TimeType type : types) {
+                    final Board board = boards[type.ordinal()];
+                    final TopTimes<UUID> top = tops.get(type);
+
+                    if (board.outdated || board.epoch != index.getCurrentEpoch(type)) {
+                        // Not tracked yet, so there is nothing to compare.
+                        fill(type, top);
+                        continue;
+                    }
+
+                    final List<Entry<UUID, Integer>> tracked = board.getTop(length);
+
+                    if (tracked == null) {
+                        fill(type, top);
+                    } else if (!matches(top.toList(), tracked)) {
+                        incorrect.add(type);
+                        fill(type, top);
+                    }
+                }
+            }
+        }
+
+        return incorrect;
+    }
+
+    /**
+     * Stop the threads that are used to read all players.
+     */
+    public void shutdown() {
+        builder.shutdown();
+    }
+
+    /**
+     * Check again whether a player is exempted from the leaderboard. Call this
+     * when the exemption of a player has changed.
+     *
+     * @param uuid
+     *            UUID of the player
+     */
+    public void updateExemption(final UUID uuid) {
+        synchronized (index) {
+            synchronized (this) {
+                for (final TimeType type : TimeType.values()) {
+                    if (index.contains(uuid, type)) {
+                        update(uuid, type, index.getTime(uuid, type));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void timeChanged(final long most, final long least, final TimeType type, final int epoch,
+            final int minutes, final int previousMinutes, final int replacedMinutes) {
+        final Board board = boards[type.ordinal()];
+
+        if (board.epoch != epoch) {
+            board.markOutdated();
+        }
+
+        if (!board.outdated) {
+            update(new UUID(most, least), type, minutes);
+        }
+    }
+
+    @Override
+    public synchronized void timeRemoved(final long most, final long least, final TimeType type, final int epoch,
+            final int previousMinutes, final int removedMinutes) {
+        boards[type.ordinal()].remove(new UUID(most, least));
+    }
+
+    @Override
+    public synchronized void timesCleared(final TimeType type) {
+        boards[type.ordinal()].reset(index.getCurrentEpoch(type));
+    }
+
+    // Must be called while holding the lock on this tracker.
+    private void update(final UUID uuid, final TimeType type, final int minutes) {
+        final Board board = boards[type.ordinal()];
+
+        if (exempted.apply(uuid)) {
+            board.remove(uuid);
+        } else {
+            board.update(uuid, minutes);
+        }
+    }
+
+    // Must be called while holding the lock on the index and this tracker.
+    private void rebuild(final Collection<TimeType> types) {
+        final Map<TimeType, TopTimes<UUID>> tops = builder.build(types, 2 * length);
+
+        for (final TimeType type : types) {
+            fill(type, tops.get(type));
+        }
+    }
+
+    // Must be called while holding the lock on the index and this tracker.
+    private void fill(final TimeType type, final TopTimes<UUID> top) {
+        final Board board = boards[type.ordinal()];
+
+        board.reset(index.getCurrentEpoch(type));
+
+        for (final Entry<UUID, Integer> player : top.toList()) {
+            board.update(player.getKey(), player.getValue());
+        }
+
+        // Players that did not make it have at most the least time of the
+        // players that did.
+        board.untrackedMax = top.getThreshold();
+    }
+
+    /**
+     * Compare the top players of a full scan with the tracked ones.
+     */
+    private boolean matches(final List<Entry<UUID, Integer>> scanned, final List<Entry<UUID, Integer>> tracked) {
+        final List<Entry<UUID, Integer>> expected = scanned.subList(0, Math.min(length, scanned.size()));
+
+        if (expected.size() != tracked.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < expected.size(); i++) {
+            // Players with the same time may be ordered differently.
+            if (!expected.get(i).getValue().equals(tracked.get(i).getValue())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,192 @@
+package me.armar.plugins.autorank.leaderboard;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Collects the players with the most time out of a stream of players. <br>
+ * The players are kept in a min-heap of a fixed size, so the player with the
+ * least time is always on top and is the one to make room for a new player.
+ * Offering n players costs O(n log k) and only the k best players are kept in
+ * memory, where k is the size of the heap. The times are stored as ints, so
+ * offering a player does not create any objects.
+ *
+ * @param <K>
+ *            Type that identifies a player, like a UUID or a name
+ */
+public class TopTimes<K> {
+
+    private final Object[] keys;
+    private final int[] minutes;
+
+    private int size = 0;
+
+    /**
+     * Create a new collection of top players.
+     *
+     * @param capacity
+     *            Maximum number of players to keep
+     */
+    public TopTimes(final int capacity) {
+        keys = new Object[Math.max(1, capacity)];
+        minutes = new int[keys.length];
+    }
+
+    /**
+     * Offer a player. The player is kept if there is room left, or if it has
+     * more time than the player with the least time. Of two players with the
+     * same time, the one that was offered first is kept.
+     *
+     * @param key
+     *            Player to offer
+     * @param time
+     *            Time of the player (in minutes)
+     */
+    public void offer(final K key, final int time) {
+        if (size < keys.length) {
+            keys[size] = key;
+            minutes[size] = time;
+
+            siftUp(size++);
+        } else if (time > minutes[0]) {
+            keys[0] = key;
+            minutes[0] = time;
+
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Offer all players of another collection, for instance one that was
+     * filled by another thread.
+     *
+     * @param other
+     *            Players to offer
+     */
+    @SuppressWarnings("unchecked")
+    public void offerAll(final TopTimes<K> other) {
+        for (int i = 0; i < other.size; i++) {
+            offer((K) other.keys[i], other.minutes[i]);
+        }
+    }
+
+    /**
+     * Get the number of players that are kept.
+     *
+     * @return number of players.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the least time a player needs to be kept, once the collection is
+     * full.
+     *
+     * @return the least time of all kept players, or -1 if there is still
+     *         room left.
+     */
+    public int getThreshold() {
+        return size < keys.length ? -1 : minutes[0];
+    }
+
+    /**
+     * Get the kept players, most time first.
+     *
+     * @return a list of the players with their time (in minutes).
+     */
+    @SuppressWarnings("unchecked")
+    public List<Entry<K, Integer>> toList() {
+        final Integer[] order = new Integer[size];
+
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+
+        // Only k players are left, so sorting them is cheap.
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(final Integer first, final Integer second) {
+                if (minutes[first] != minutes[second]) {
+                    return minutes[first] > minutes[second] ? -1 : 1;
+                }
+
+                return 0;
+            }
+        });
+
+        final List<Entry<K, Integer>> list = new ArrayList<Entry<K, Integer>>(size);
+
+        for (final int i : order) {
+            list.add(new SimpleImmutableEntry<K, Integer>((K) keys[i], minutes[i]));
+        }
+
+        return list;
+    }
+
+    /**
+     * Get the kept players, most time first.
+     *
+     * @return a map of the players with their time (in minutes), sorted on
+     *         time.
+     */
+    public Map<K, Integer> toMap() {
+        final Map<K, Integer> map = new LinkedHashMap<K, Integer>();
+
+        for (final Entry<K, Integer> entry : toList()) {
+            map.put(entry.getKey(), entry.getValue());
+        }
+
+        return map;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            final int parent = (i - 1) / 2;
+
+            if (minutes[parent] <= minutes[i]) {
+                return;
+            }
+
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            final int left = 2 * i + 1;
+
+            if (left >= size) {
+                return;
+            }
+
+            final int right = left + 1;
+            final int least = right < size && minutes[right] < minutes[left] ? right : left;
+
+            if (minutes[i] <= minutes[least]) {
+                return;
+            }
+
+            swap(i, least);
+            i = least;
+        }
+    }
+
+    private void swap(final int first, final int second) {
+        final Object key = keys[first];
+        keys[first] = keys[second];
+        keys[second] = key;
+
+        final int time = minutes[first];
+        minutes[first] = minutes[second];
+        minutes[second] = time;
+    }
+}
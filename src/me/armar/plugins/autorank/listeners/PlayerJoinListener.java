@@ -1,5 +1,7 @@
 package me.armar.plugins.autorank.listeners;
 
+import java.util.Collections;
+
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -29,6 +31,9 @@ public class PlayerJoinListener implements Listener {
     public void onPlayerJoin(final PlayerJoinEvent event) {
         final Player player = event.getPlayer();
 
+        // Keep the progress of the player in memory while (s)he is online.
+        plugin.getPlayerDataConfig().loadProgress(player.getUniqueId());
+
         // Refresh uuid of the player if it is outdated
         if (plugin.getUUIDStorage().isOutdated(player.getName())) {
             plugin.getUUIDStorage().storeUUID(player.getName(), player.getUniqueId(), player.getName());
@@ -41,6 +46,13 @@ public class PlayerJoinListener implements Listener {
         // Try to automatically assign a path to a player.
         plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
             public void run() {
+
+                // Read the global time of the player before it is checked, so
+                // requirements can use the cached value.
+                if (plugin.getMySQLManager().isMySQLEnabled()) {
+                    plugin.getMySQLManager()
+                            .prefetchGlobalTimes(Collections.singletonList(player.getUniqueId()));
+                }
                 
                 // Try to auto assign path to a player
                 plugin.getPathManager().autoAssignPath(player);
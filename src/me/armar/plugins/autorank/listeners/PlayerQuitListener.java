@@ -0,0 +1,28 @@
+package me.armar.plugins.autorank.listeners;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import me.armar.plugins.autorank.Autorank;
+
+/**
+ * This listener will listen to players leaving and forget the progress that
+ * was kept in memory while they were online.
+ */
+public class PlayerQuitListener implements Listener {
+
+    private final Autorank plugin;
+
+    public PlayerQuitListener(final Autorank instance) {
+        plugin = instance;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(final PlayerQuitEvent event) {
+        // The progress is written to the file whenever it changes, so it can
+        // be dropped right away.
+        plugin.getPlayerDataConfig().unloadProgress(event.getPlayer().getUniqueId());
+    }
+}
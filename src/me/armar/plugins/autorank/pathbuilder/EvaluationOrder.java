@@ -0,0 +1,175 @@
+package me.armar.plugins.autorank.pathbuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides in which order the checks of a path (its requirements) are done.
+ * A path is only completed when all checks pass, so checking stops at the
+ * first check that fails. <br>
+ * Checks are done in order of their cost divided by how often they fail. At
+ * first, this is the order of their cost: cheap checks go first. When a check
+ * often fails, it moves to the front, as it saves the other checks. The order
+ * is computed again every {@link #REORDER_INTERVAL} times the path is checked.
+ * <p>
+ * The number of checks that were skipped, because an earlier check failed,
+ * is counted for the debug file.
+ *
+ * @param <T>
+ *            Type of check
+ */
+public class EvaluationOrder<T> {
+
+    // Number of times a path is checked before the order is computed again.
+    public static final int REORDER_INTERVAL = 50;
+
+    private final List<T> checks;
+    private final int[] weights;
+
+    private final Map<T, Integer> indices = new IdentityHashMap<T, Integer>();
+
+    // Guarded by this.
+    private final long[] evaluations, failures;
+    private int sinceReorder;
+    private long passes, evaluated, avoided;
+
+    private volatile List<T> order;
+
+    /**
+     * Create the order of a list of checks.
+     *
+     * @param checks
+     *            Checks in the order they were configured
+     * @param weights
+     *            Relative cost of every check
+     */
+    public EvaluationOrder(final List<T> checks, final int[] weights) {
+        this.checks = new ArrayList<T>(checks);
+        this.weights = weights.clone();
+
+        for (int i = 0; i < checks.size(); i++) {
+            indices.put(checks.get(i), i);
+        }
+
+        evaluations = new long[checks.size()];
+        failures = new long[checks.size()];
+
+        reorder();
+    }
+
+    /**
+     * Get the order in which the checks should be done.
+     *
+     * @return an unmodifiable list of all checks.
+     */
+    public List<T> getOrder() {
+        return order;
+    }
+
+    /**
+     * Remember the outcome of a check.
+     *
+     * @param check
+     *            Check that was done
+     * @param passed
+     *            Whether the check passed
+     */
+    public synchronized void record(final T check, final boolean passed) {
+        final Integer index = indices.get(check);
+
+        if (index == null) {
+            return;
+        }
+
+        evaluations[index]++;
+        evaluated++;
+
+        if (!passed) {
+            failures[index]++;
+        }
+    }
+
+    /**
+     * Remember that all checks of a path were done, or that checking stopped
+     * early.
+     *
+     * @param skipped
+     *            Number of checks that were not done, because a check failed
+     */
+    public synchronized void finish(final int skipped) {
+        passes++;
+        avoided += skipped;
+
+        if (++sinceReorder >= REORDER_INTERVAL) {
+            reorder();
+        }
+    }
+
+    /**
+     * Get the number of times the path was checked.
+     *
+     * @return number of passes.
+     */
+    public synchronized long getPasses() {
+        return passes;
+    }
+
+    /**
+     * Get the number of checks that were done.
+     *
+     * @return number of evaluations.
+     */
+    public synchronized long getEvaluations() {
+        return evaluated;
+    }
+
+    /**
+     * Get the number of checks that were skipped, because an earlier check
+     * failed.
+     *
+     * @return number of avoided evaluations.
+     */
+    public synchronized long getAvoidedEvaluations() {
+        return avoided;
+    }
+
+    // Must be called while holding the lock on this order, or from the
+    // constructor.
+    private void reorder() {
+        sinceReorder = 0;
+
+        final double[] scores = new double[checks.size()];
+        final Integer[] sorted = new Integer[checks.size()];
+
+        for (int i = 0; i < scores.length; i++) {
+            // Estimate the chance of failing, without data it is one half.
+            final double failureRate = (failures[i] + 1.0) / (evaluations[i] + 2.0);
+
+            scores[i] = weights[i] / failureRate;
+            sorted[i] = i;
+        }
+
+        // The sort is stable, so checks with the same score keep their
+        // configured order.
+        Arrays.sort(sorted, new Comparator<Integer>() {
+
+            @Override
+            public int compare(final Integer first, final Integer second) {
+                return Double.compare(scores[first], scores[second]);
+            }
+        });
+
+        final List<T> newOrder = new ArrayList<T>(sorted.length);
+
+        for (final int index : sorted) {
+            newOrder.add(checks.get(index));
+        }
+
+        order = Collections.unmodifiableList(newOrder);
+    }
+}
@@ -1,13 +1,19 @@
 package me.armar.plugins.autorank.pathbuilder;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import org.bukkit.entity.Player;
 
 import me.armar.plugins.autorank.Autorank;
 import me.armar.plugins.autorank.pathbuilder.holders.RequirementsHolder;
+import me.armar.plugins.autorank.pathbuilder.requirement.Requirement;
 import me.armar.plugins.autorank.pathbuilder.result.Result;
 
 /**
@@ -32,6 +38,14 @@ public class Path {
 
     private List<RequirementsHolder> requirements = new ArrayList<RequirementsHolder>();
 
+    // Order in which the requirements are checked. Made again when the
+    // requirements change.
+    private EvaluationOrder<RequirementsHolder> evaluationOrder;
+
+    // Things the requirements depend on. Made again when the requirements
+    // change.
+    private Set<Requirement.Trigger> triggers;
+
     // Results that are performed when all requirements are met.
     private List<Result> results = new ArrayList<Result>();
 
@@ -74,6 +88,11 @@ public class Path {
         }
 
         requirements.add(requirement);
+
+        synchronized (this) {
+            evaluationOrder = null;
+            triggers = null;
+        }
     }
 
     /**
@@ -126,6 +145,9 @@ public class Path {
                 }
             }
 
+            // Results may change whether requirements are met.
+            plugin.getPlayerChecker().getRequirementCache().invalidate(player.getUniqueId());
+
             // After getting results, chosen path is reset.
             plugin.getPlayerDataConfig().setChosenPath(uuid, null);
 
@@ -216,30 +238,107 @@ public class Path {
             return false;
         }
 
+        // Check the cheapest requirements, and the ones that fail most
+        // often, first. This only checks, it does not complete anything.
+        final EvaluationOrder<RequirementsHolder> order = this.getEvaluationOrder();
+        final List<RequirementsHolder> holders = order.getOrder();
+
+        // Outcome of every requirement that was evaluated.
+        final Map<RequirementsHolder, Boolean> outcomes = new IdentityHashMap<>();
+
+        boolean met = true;
+
+        for (final RequirementsHolder holder : holders) {
+            if (holder == null) {
+                met = false;
+                break;
+            }
+
+            final boolean holderMet = holder.isMet(player);
+
+            order.record(holder, holderMet);
+            outcomes.put(holder, holderMet);
+
+            if (!holderMet) {
+                met = false;
+                break;
+            }
+        }
+
+        // Complete requirements in the order they were configured, up to the
+        // first one that is not met. Only requirements with a known outcome are
+        // completed: the ones evaluated above, whose results are remembered
+        // during this check. Requirements that were skipped above are not
+        // evaluated here either; completion stops at the first one, unless it
+        // is optional or completed already.
         for (final RequirementsHolder holder : this.getRequirements()) {
-            if (holder == null)
-                return false;
+            if (holder == null) {
+                break;
+            }
 
-            // We don't do partial completion so we only need to check if a
-            // player passes all requirements holders.
-            if (!plugin.getConfigHandler().usePartialCompletion()) {
-                if (!holder.meetsRequirement(player, false)) {
-                    return false;
-                } else {
+            final Boolean holderMet = outcomes.get(holder);
+
+            if (holderMet == null) {
+                if (holder.isOptional() || holder.hasCompleted(uuid)) {
                     continue;
                 }
+
+                break;
             }
 
-            // Holder does not meet requirements, so not all requirements are
-            // met!
-            if (!holder.meetsRequirement(player, false)) {
-                return false;
+            if (!holderMet || !holder.meetsRequirement(player, false)) {
+                break;
+            }
+        }
+
+        // Requirements that were never evaluated are the ones that were
+        // avoided.
+        order.finish(holders.size() - outcomes.size());
+
+        return met;
+    }
+
+    /**
+     * Get the things the requirements of this path depend on. A player on
+     * this path is checked again when one of them changes.
+     *
+     * @return an unmodifiable set of triggers.
+     */
+    public synchronized Set<Requirement.Trigger> getTriggers() {
+        if (triggers == null) {
+            final Set<Requirement.Trigger> pathTriggers = EnumSet.noneOf(Requirement.Trigger.class);
+
+            for (final RequirementsHolder holder : this.getRequirements()) {
+                if (holder != null) {
+                    pathTriggers.addAll(holder.getTriggers());
+                }
             }
 
+            triggers = Collections.unmodifiableSet(pathTriggers);
         }
 
-        // When never returning false, return true at last!
-        return true;
+        return triggers;
+    }
+
+    /**
+     * Get the order in which the requirements of this path are checked.
+     *
+     * @return the evaluation order of the requirements.
+     */
+    public synchronized EvaluationOrder<RequirementsHolder> getEvaluationOrder() {
+        if (evaluationOrder == null) {
+            final List<RequirementsHolder> holders = this.getRequirements();
+            final int[] weights = new int[holders.size()];
+
+            for (int i = 0; i < weights.length; i++) {
+                // A missing holder fails right away.
+                weights[i] = holders.get(i) == null ? 0 : holders.get(i).getCost().getWeight();
+            }
+
+            evaluationOrder = new EvaluationOrder<RequirementsHolder>(holders, weights);
+        }
+
+        return evaluationOrder;
     }
 
     public boolean meetsPrerequisites(Player player) {
@@ -281,6 +380,11 @@ public class Path {
 
     public void setRequirements(final List<RequirementsHolder> holders) {
         this.requirements = holders;
+
+        synchronized (this) {
+            evaluationOrder = null;
+            triggers = null;
+        }
     }
 
     public void setResults(final List<Result> results) {
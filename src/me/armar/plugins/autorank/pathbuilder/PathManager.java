@@ -243,6 +243,10 @@ public class PathManager {
             // Add path to started path list
             plugin.getPlayerDataConfig().addStartedPath(player.getUniqueId(), pathName);
         }
+
+        // The player may already meet the requirements of the new path, and
+        // no event may follow that the path depends on.
+        plugin.getPlayerChecker().getRecheckScheduler().markDirty(player);
     }
 
     /**
@@ -1,7 +1,9 @@
 package me.armar.plugins.autorank.pathbuilder.holders;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import org.bukkit.Bukkit;
@@ -139,15 +141,15 @@ public class RequirementsHolder {
         if (size == 0) {
             return "";
         } else if (size == 1) {
-            return reqs.get(0).getProgress(player);
+            return plugin.getPlayerChecker().getRequirementCache().getProgress(reqs.get(0), player);
         }
 
-        final String original = reqs.get(0).getProgress(player);
+        final String original = plugin.getPlayerChecker().getRequirementCache().getProgress(reqs.get(0), player);
 
         for (int i = 0; i < size; i++) {
             final Requirement r = reqs.get(i);
 
-            String progress = r.getProgress(player);
+            String progress = plugin.getPlayerChecker().getRequirementCache().getProgress(r, player);
 
             if (i == 0) {
                 // First index
@@ -189,6 +191,43 @@ public class RequirementsHolder {
         return this.requirements;
     }
 
+    /**
+     * Get the things that the requirements of this requirementsholder depend
+     * on. World specific requirements also depend on the world of the player.
+     * @return the triggers of all requirements.
+     */
+    public Set<Requirement.Trigger> getTriggers() {
+        final Set<Requirement.Trigger> triggers = EnumSet.noneOf(Requirement.Trigger.class);
+
+        for (final Requirement r : this.getRequirements()) {
+            triggers.addAll(r.getTriggers());
+
+            if (r.isWorldSpecific()) {
+                triggers.add(Requirement.Trigger.WORLD);
+            }
+        }
+
+        return triggers;
+    }
+
+    /**
+     * Get how expensive it is to check this requirementsholder. When a player
+     * does not meet any of the requirements, all of them are checked, so this
+     * is the cost of the most expensive requirement.
+     * @return the highest cost class of the requirements.
+     */
+    public Requirement.Cost getCost() {
+        Requirement.Cost cost = Requirement.Cost.CHEAP;
+
+        for (final Requirement r : this.getRequirements()) {
+            if (r.getCost().compareTo(cost) > 0) {
+                cost = r.getCost();
+            }
+        }
+
+        return cost;
+    }
+
     public List<Result> getResults() {
         for (final Requirement r : this.getRequirements()) {
             return r.getResults();
@@ -207,6 +246,21 @@ public class RequirementsHolder {
         return false;
     }
 
+    /**
+     * Check whether a player has already completed any of the requirements in
+     * this RequirementsHolder. The requirements are not evaluated.
+     * @param uuid UUID of the player
+     * @return true if any of the requirements was completed.
+     */
+    public boolean hasCompleted(final UUID uuid) {
+        for (final Requirement r : this.getRequirements()) {
+            if (r.isCompleted(uuid))
+                return true;
+        }
+
+        return false;
+    }
+
     /**
      * Check whether a player has completed any of the requirements in this RequirementsHolder.
      * @param player Player to check.
@@ -219,67 +273,99 @@ public class RequirementsHolder {
     // OR logic.
     public boolean meetsRequirement(final Player player, boolean forceCommand) {
 
+        final Requirement r = getMetRequirement(player, forceCommand);
+
+        if (r == null) {
+            return false;
+        }
+
+        // Optional and completed requirements have nothing left to do.
+        if (r.isOptional() || r.isCompleted(player.getUniqueId())) {
+            return true;
+        }
+
+        // Player meets requirement, thus perform results of
+        // requirement
+        // Perform results of a requirement as well
+
+        // Player has not completed this requirement -> perform
+        // results
+        if (this.isPrerequisite()) {
+            // Do nothing for now, must be implemented in some future
+        } else {
+            plugin.getPlayerDataConfig().addCompletedRequirement(player.getUniqueId(), r.getId());
+        }
+
+        if (!this.isPrerequisite()) {
+            // Let player know he completed a requirement
+            player.sendMessage(Lang.COMPLETED_REQUIREMENT.getConfigValue(r.getId() + 1, r.getDescription()));
+        }
+
+        this.runResults(player);
+        return true;
+    }
+
+    /**
+     * Check whether a player meets any of the requirements in this
+     * RequirementsHolder, like {@link #meetsRequirement(Player, boolean)},
+     * but without completing the requirement or performing its results.
+     * @param player Player to check.
+     * @return true if the player meets any of the requirements.
+     */
+    public boolean isMet(final Player player) {
+        return getMetRequirement(player, false) != null;
+    }
+
+    /**
+     * Get the requirement that a player meets, is optional or has completed.
+     * @param player Player to check.
+     * @param forceCommand whether this command is forced.
+     * @return the first requirement that is met, or null if none is met.
+     */
+    private Requirement getMetRequirement(final Player player, final boolean forceCommand) {
+
         UUID uuid = player.getUniqueId();
 
         for (final Requirement r : this.getRequirements()) {
 
-            final int reqID = r.getId();
-
             // When optional, always true
             if (r.isOptional()) {
-                return true;
+                return r;
             }
 
+            // Only look up once whether the requirement was completed.
+            final boolean completed = r.isCompleted(uuid);
+
             if (this.isPrerequisite()) {
                 // If this requirement doesn't auto complete and hasn't already
                 // been completed, continue to next requirement.
-                if (!r.useAutoCompletion() && !r.isCompleted(uuid)) {
+                if (!r.useAutoCompletion() && !completed) {
                     continue;
                 }
             } else {
                 // If this requirement doesn't auto complete and hasn't already
                 // been completed, continue to next requirement.
-                if (!r.useAutoCompletion() && !r.isCompleted(uuid)) {
+                if (!r.useAutoCompletion() && !completed) {
                     // If not forcing via /ar complete command, we return false.
                     if (!forceCommand) {
-                        return false;
+                        return null;
                     }
 
                     continue;
                 }
             }
 
-            // Player has completed it already, so we return true.
-            if (r.isCompleted(uuid)) {
-                return true;
+            // Player has completed it already, so it is met.
+            if (completed) {
+                return r;
             }
 
-            if (!r.meetsRequirement(player)) {
-                continue;
-            } else {
-                // Player meets requirement, thus perform results of
-                // requirement
-                // Perform results of a requirement as well
-
-                // Player has not completed this requirement -> perform
-                // results
-                if (this.isPrerequisite()) {
-                    // Do nothing for now, must be implemented in some future
-                } else {
-                    plugin.getPlayerDataConfig().addCompletedRequirement(uuid, reqID);
-                }
-
-                if (!this.isPrerequisite()) {
-                    // Let player know he completed a requirement
-                    player.sendMessage(Lang.COMPLETED_REQUIREMENT.getConfigValue(r.getId() + 1, r.getDescription()));
-                }
-
-                this.runResults(player);
-                return true;
+            if (plugin.getPlayerChecker().getRequirementCache().meetsRequirement(r, player)) {
+                return r;
             }
         }
 
-        return false;
+        return null;
     }
 
     public void setRequirements(final List<Requirement> requirements) {
@@ -315,6 +401,9 @@ public class RequirementsHolder {
         for (final Result realResult : this.getResults()) {
             realResult.applyResult(player);
         }
+
+        // Results may change whether other requirements are met.
+        plugin.getPlayerChecker().getRequirementCache().invalidate(player.getUniqueId());
     }
 
     /**
@@ -1,5 +1,8 @@
 package me.armar.plugins.autorank.pathbuilder.requirement;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import org.bukkit.Achievement;
 import org.bukkit.entity.Player;
 
@@ -11,6 +14,11 @@ public class AchievementRequirement extends Requirement {
     Achievement achievement = null;
     int achievementCount = -1;
 
+    @Override
+    public Set<Trigger> getTriggers() {
+        return EnumSet.of(Trigger.ACHIEVEMENT);
+    }
+
     @Override
     public String getDescription() {
 
@@ -12,6 +12,11 @@ public class BlocksBrokenRequirement extends Requirement {
 
     BlocksWrapper wrapper = null;
 
+    @Override
+    public Cost getCost() {
+        return Cost.EXPENSIVE;
+    }
+
     @Override
     public String getDescription() {
         final ItemStack item = wrapper.getItem();
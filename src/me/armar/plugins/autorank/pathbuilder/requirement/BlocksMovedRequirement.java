@@ -10,6 +10,11 @@ public class BlocksMovedRequirement extends Requirement {
 
     BlocksMovedWrapper wrapper = null;
 
+    @Override
+    public Cost getCost() {
+        return Cost.EXPENSIVE;
+    }
+
     @Override
     public String getDescription() {
 
@@ -12,6 +12,11 @@ public class BlocksPlacedRequirement extends Requirement {
 
     BlocksPlacedWrapper wrapper = null;
 
+    @Override
+    public Cost getCost() {
+        return Cost.EXPENSIVE;
+    }
+
     @Override
     public String getDescription() {
         final ItemStack item = wrapper.getItem();
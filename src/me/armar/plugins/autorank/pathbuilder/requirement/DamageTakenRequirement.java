@@ -10,6 +10,11 @@ public class DamageTakenRequirement extends Requirement {
 
     int damageTaken = -1;
 
+    @Override
+    public Cost getCost() {
+        return Cost.EXPENSIVE;
+    }
+
     @Override
     public String getDescription() {
 
@@ -1,5 +1,8 @@
 package me.armar.plugins.autorank.pathbuilder.requirement;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import org.bukkit.entity.Player;
 
 import me.armar.plugins.autorank.language.Lang;
@@ -9,6 +12,16 @@ public class ExpRequirement extends Requirement {
 
     int minExp = -1;
 
+    @Override
+    public Cost getCost() {
+        return Cost.CHEAP;
+    }
+
+    @Override
+    public Set<Trigger> getTriggers() {
+        return EnumSet.of(Trigger.EXPERIENCE);
+    }
+
     @Override
     public String getDescription() {
 
@@ -10,6 +10,11 @@ public class FishCaughtRequirement extends Requirement {
 
     int fishCaught = -1;
 
+    @Override
+    public Cost getCost() {
+        return Cost.EXPENSIVE;
+    }
+
     @Override
     public String getDescription() {
 
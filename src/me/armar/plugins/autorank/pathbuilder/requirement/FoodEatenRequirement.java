@@ -11,6 +11,11 @@ public class FoodEatenRequirement extends Requirement {
     
     FoodWrapper foodEaten = null;
 
+    @Override
+    public Cost getCost() {
+        return Cost.EXPENSIVE;
+    }
+
     @Override
     public String getDescription() {
 
@@ -19,6 +19,11 @@ public class GlobalTimeRequirement extends Requirement {
 
     int globalTime = -1;
 
+    @Override
+    public Cost getCost() {
+        return Cost.CHEAP;
+    }
+
     @Override
     public String getDescription() {
         return Lang.GLOBAL_TIME_REQUIREMENT.getConfigValue(AutorankTools.timeToString(globalTime, Time.MINUTES));
@@ -27,7 +32,7 @@ public class GlobalTimeRequirement extends Requirement {
     @Override
     public String getProgress(final Player player) {
 
-        final int playtime = getAutorank().getMySQLManager().getGlobalTime(player.getUniqueId());
+        final int playtime = getAutorank().getMySQLManager().getCachedGlobalTime(player.getUniqueId());
 
         return playtime + "/" + globalTime;
     }
@@ -36,7 +41,9 @@ public class GlobalTimeRequirement extends Requirement {
     public boolean meetsRequirement(final Player player) {
         final UUID uuid = player.getUniqueId();
 
-        final double playtime = this.getAutorank().getMySQLManager().getGlobalTime(uuid);
+        // The global time of online players is refreshed in bulk, so only read
+        // the cache here.
+        final double playtime = this.getAutorank().getMySQLManager().getCachedGlobalTime(uuid);
 
         return globalTime != -1 && playtime >= globalTime;
     }
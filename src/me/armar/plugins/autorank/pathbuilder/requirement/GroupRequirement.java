@@ -16,6 +16,11 @@ public class GroupRequirement extends Requirement {
 
     String group = null;
 
+    @Override
+    public Cost getCost() {
+        return Cost.CHEAP;
+    }
+
     @Override
     public String getDescription() {
         return Lang.GROUP_REQUIREMENT.getConfigValue(group);
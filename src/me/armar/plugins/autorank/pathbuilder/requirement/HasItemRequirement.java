@@ -1,5 +1,8 @@
 package me.armar.plugins.autorank.pathbuilder.requirement;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
@@ -10,6 +13,13 @@ public class HasItemRequirement extends Requirement {
 
     ItemWrapper neededItem = null;
 
+    @Override
+    public Set<Trigger> getTriggers() {
+        // Other plugins can give or take items without an event, so also
+        // check every interval.
+        return EnumSet.of(Trigger.INVENTORY, Trigger.PLAYTIME);
+    }
+
     @Override
     public String getDescription() {
 
@@ -1,5 +1,8 @@
 package me.armar.plugins.autorank.pathbuilder.requirement;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
 
@@ -9,6 +12,16 @@ public class InBiomeRequirement extends Requirement {
 
     String biome = null;
 
+    @Override
+    public Cost getCost() {
+        return Cost.CHEAP;
+    }
+
+    @Override
+    public Set<Trigger> getTriggers() {
+        return EnumSet.of(Trigger.LOCATION);
+    }
+
     @Override
     public String getDescription() {
         String lang = Lang.IN_BIOME_REQUIREMENT.getConfigValue(biome);
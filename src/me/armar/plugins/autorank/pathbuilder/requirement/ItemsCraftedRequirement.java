@@ -10,6 +10,11 @@ public class ItemsCraftedRequirement extends Requirement {
 
     int itemsCrafted = -1;
 
+    @Override
+    public Cost getCost() {
+        return Cost.EXPENSIVE;
+    }
+
     @Override
     public String getDescription() {
 
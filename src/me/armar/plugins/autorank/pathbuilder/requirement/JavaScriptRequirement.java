@@ -22,6 +22,11 @@ public class JavaScriptRequirement extends Requirement {
 
     private ScriptEngine engine = null;
 
+    @Override
+    public Cost getCost() {
+        return Cost.EXPENSIVE;
+    }
+
     @Override
     public String getDescription() {
         return description;
@@ -1,5 +1,8 @@
 package me.armar.plugins.autorank.pathbuilder.requirement;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -16,6 +19,16 @@ public class LocationRequirement extends Requirement {
     // Store positive and negative values to create a boundary box.
     int xRadiusP, yRadiusP, zRadiusP, xRadiusN, yRadiusN, zRadiusN;
 
+    @Override
+    public Cost getCost() {
+        return Cost.CHEAP;
+    }
+
+    @Override
+    public Set<Trigger> getTriggers() {
+        return EnumSet.of(Trigger.LOCATION);
+    }
+
     @Override
     public String getDescription() {
         return Lang.LOCATION_REQUIREMENT
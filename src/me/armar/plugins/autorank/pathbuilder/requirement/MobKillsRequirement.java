@@ -12,6 +12,11 @@ public class MobKillsRequirement extends Requirement {
     private String mobType = null;
     private int totalMobsKilled = -1;
 
+    @Override
+    public Cost getCost() {
+        return Cost.EXPENSIVE;
+    }
+
     @Override
     public String getDescription() {
 
@@ -1,5 +1,8 @@
 package me.armar.plugins.autorank.pathbuilder.requirement;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import org.bukkit.entity.Player;
 
 import me.armar.plugins.autorank.hooks.vaultapi.VaultHandler;
@@ -9,6 +12,11 @@ public class MoneyRequirement extends Requirement {
 
     double minMoney = -1;
 
+    @Override
+    public Set<Trigger> getTriggers() {
+        return EnumSet.of(Trigger.ECONOMY, Trigger.PLAYTIME);
+    }
+
     @Override
     public String getDescription() {
 
@@ -8,6 +8,11 @@ public class PermissionRequirement extends Requirement {
 
     String permission = null;
 
+    @Override
+    public Cost getCost() {
+        return Cost.CHEAP;
+    }
+
     @Override
     public String getDescription() {
 
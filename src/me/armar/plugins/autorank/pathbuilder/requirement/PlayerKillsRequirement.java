@@ -10,6 +10,11 @@ public class PlayerKillsRequirement extends Requirement {
 
     int totalPlayersKilled = -1;
 
+    @Override
+    public Cost getCost() {
+        return Cost.EXPENSIVE;
+    }
+
     @Override
     public String getDescription() {
         String lang = Lang.PLAYER_KILLS_REQUIREMENT.getConfigValue(totalPlayersKilled + "");
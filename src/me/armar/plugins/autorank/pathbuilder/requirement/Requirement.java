@@ -1,7 +1,9 @@
 package me.armar.plugins.autorank.pathbuilder.requirement;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import org.bukkit.entity.Player;
@@ -22,6 +24,84 @@ import me.armar.plugins.autorank.statsmanager.StatsPlugin;
  */
 public abstract class Requirement {
 
+    /**
+     * How expensive it is to check whether a player meets a requirement.
+     * Cheaper requirements are checked first, so expensive requirements are
+     * not checked when a cheap requirement already fails.
+     */
+    public static enum Cost {
+        /**
+         * Only looks at the player itself, like its world or permissions.
+         */
+        CHEAP(1),
+        /**
+         * Asks another plugin or looks through the inventory of the player.
+         */
+        MODERATE(10),
+        /**
+         * Reads statistics of the player or runs a script.
+         */
+        EXPENSIVE(100);
+
+        private final int weight;
+
+        private Cost(final int weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * Get the relative cost of checking a requirement.
+         * 
+         * @return weight of this cost class.
+         */
+        public int getWeight() {
+            return weight;
+        }
+    }
+
+    /**
+     * Something a requirement depends on. When it changes for a player, the
+     * player is checked again on the next tick, instead of waiting for the
+     * next interval.
+     */
+    public static enum Trigger {
+        /**
+         * Play time, which changes every interval. Also used for things that
+         * have no event, like statistics and permissions, or that other
+         * plugins can change without an event, like items.
+         */
+        PLAYTIME,
+        /**
+         * Items in the inventory of the player.
+         */
+        INVENTORY,
+        /**
+         * The world the player is in.
+         */
+        WORLD,
+        /**
+         * The block the player is standing on.
+         */
+        LOCATION,
+        /**
+         * The gamemode of the player.
+         */
+        GAMEMODE,
+        /**
+         * The experience level of the player.
+         */
+        EXPERIENCE,
+        /**
+         * The achievements of the player.
+         */
+        ACHIEVEMENT,
+        /**
+         * The balance of the player. Economy plugins have no event, so this
+         * changes when the player uses a command or closes an inventory.
+         */
+        ECONOMY
+    }
+
     private boolean optional = false, autoComplete = false, isPreRequisite = false;
     private int reqId;
     private List<Result> results = new ArrayList<Result>();
@@ -42,6 +122,28 @@ public abstract class Requirement {
         return getAutorank().getDependencyManager();
     }
 
+    /**
+     * Get how expensive it is to check this requirement. Override this when
+     * checking the requirement is cheaper or more expensive than asking
+     * another plugin.
+     * 
+     * @return the cost class of this requirement.
+     */
+    public Cost getCost() {
+        return Cost.MODERATE;
+    }
+
+    /**
+     * Get the things this requirement depends on. A player is only checked
+     * again when one of them changes. By default, a requirement is checked
+     * every interval.
+     * 
+     * @return the triggers of this requirement.
+     */
+    public Set<Trigger> getTriggers() {
+        return EnumSet.of(Trigger.PLAYTIME);
+    }
+
     /**
      * Get the description of the requirement. Make sure this is always a
      * translatable message.
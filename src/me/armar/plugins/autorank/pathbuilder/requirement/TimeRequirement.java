@@ -18,6 +18,11 @@ public class TimeRequirement extends Requirement {
 
     int timeNeeded = -1;
 
+    @Override
+    public Cost getCost() {
+        return Cost.CHEAP;
+    }
+
     @Override
     public String getDescription() {
         return Lang.TIME_REQUIREMENT.getConfigValue(AutorankTools.timeToString(timeNeeded, Time.MINUTES));
@@ -10,6 +10,11 @@ public class TimesShearedRequirement extends Requirement {
 
     int timesShorn = -1;
 
+    @Override
+    public Cost getCost() {
+        return Cost.EXPENSIVE;
+    }
+
     @Override
     public String getDescription() {
         String lang = Lang.TIMES_SHEARED_REQUIREMENT.getConfigValue(timesShorn + "");
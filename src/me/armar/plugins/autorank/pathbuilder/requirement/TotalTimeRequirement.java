@@ -19,6 +19,11 @@ public class TotalTimeRequirement extends Requirement {
 
     int totalTime = -1;
 
+    @Override
+    public Cost getCost() {
+        return Cost.CHEAP;
+    }
+
     @Override
     public String getDescription() {
         return Lang.TOTAL_TIME_REQUIREMENT.getConfigValue(AutorankTools.timeToString(totalTime, Time.MINUTES));
@@ -10,6 +10,11 @@ public class TotalVotesRequirement extends Requirement {
 
     int totalVotes = -1;
 
+    @Override
+    public Cost getCost() {
+        return Cost.EXPENSIVE;
+    }
+
     @Override
     public String getDescription() {
 
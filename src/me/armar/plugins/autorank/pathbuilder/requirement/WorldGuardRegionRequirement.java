@@ -1,5 +1,8 @@
 package me.armar.plugins.autorank.pathbuilder.requirement;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import org.bukkit.entity.Player;
 
 import me.armar.plugins.autorank.language.Lang;
@@ -18,6 +21,11 @@ public class WorldGuardRegionRequirement extends Requirement {
     private WorldGuardHandler handler;
     String regionName = null;
 
+    @Override
+    public Set<Trigger> getTriggers() {
+        return EnumSet.of(Trigger.LOCATION);
+    }
+
     @Override
     public String getDescription() {
 
@@ -1,5 +1,8 @@
 package me.armar.plugins.autorank.pathbuilder.requirement;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import org.bukkit.entity.Player;
 
 import me.armar.plugins.autorank.language.Lang;
@@ -8,6 +11,16 @@ public class WorldRequirement extends Requirement {
 
     String worldName = null;
 
+    @Override
+    public Cost getCost() {
+        return Cost.CHEAP;
+    }
+
+    @Override
+    public Set<Trigger> getTriggers() {
+        return EnumSet.of(Trigger.WORLD);
+    }
+
     @Override
     public String getDescription() {
         return Lang.WORLD_REQUIREMENT.getConfigValue(worldName);
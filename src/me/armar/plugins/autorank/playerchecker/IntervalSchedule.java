@@ -0,0 +1,176 @@
+package me.armar.plugins.autorank.playerchecker;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Keeps track of when every online player is due for the next interval. <br>
+ * Players are not all due on the same tick: a player that joins is due one
+ * interval after joining, and players that are already online when the
+ * schedule starts are spread evenly over the first interval. When a player is
+ * taken from the schedule, the player is due again exactly one interval after
+ * the tick (s)he was due on (not after the tick (s)he was taken), so a player
+ * that is taken late is not credited less often.
+ * <p>
+ * Time is counted in ticks, by the caller. All methods can be called from any
+ * thread.
+ */
+public class IntervalSchedule {
+
+    /**
+     * A player and the tick (s)he is due on.
+     */
+    private static class Entry {
+
+        private final UUID uuid;
+        private final long due;
+
+        // Order in which entries were made, for players that are due on the
+        // same tick.
+        private final long sequence;
+
+        private Entry(final UUID uuid, final long due, final long sequence) {
+            this.uuid = uuid;
+            this.due = due;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Entry> BY_DUE = new Comparator<Entry>() {
+
+        @Override
+        public int compare(final Entry first, final Entry second) {
+            if (first.due != second.due) {
+                return first.due < second.due ? -1 : 1;
+            }
+
+            return first.sequence < second.sequence ? -1 : (first.sequence == second.sequence ? 0 : 1);
+        }
+    };
+
+    private final long interval;
+
+    // Guarded by this.
+    private final TreeSet<Entry> queue = new TreeSet<Entry>(BY_DUE);
+    private final Map<UUID, Entry> entries = new HashMap<UUID, Entry>();
+    private long sequence;
+
+    /**
+     * Create an empty schedule.
+     *
+     * @param interval
+     *            Number of ticks between two intervals of a player
+     */
+    public IntervalSchedule(final long interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be at least one tick, not " + interval);
+        }
+
+        this.interval = interval;
+    }
+
+    /**
+     * Add a player that just joined. The player is due one interval from now.
+     * Nothing is changed when the player is already in the schedule.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @param now
+     *            Current tick
+     */
+    public synchronized void add(final UUID uuid, final long now) {
+        if (!entries.containsKey(uuid)) {
+            put(uuid, now + interval);
+        }
+    }
+
+    /**
+     * Add players that are already online. They are spread evenly over the
+     * next interval, so they are not all due on the same tick. Players that
+     * are already in the schedule are skipped.
+     *
+     * @param uuids
+     *            UUIDs of the players
+     * @param now
+     *            Current tick
+     */
+    public synchronized void addSpread(final Collection<UUID> uuids, final long now) {
+        final int count = uuids.size();
+        int index = 0;
+
+        for (final UUID uuid : uuids) {
+            index++;
+
+            if (!entries.containsKey(uuid)) {
+                put(uuid, now + interval * index / count);
+            }
+        }
+    }
+
+    /**
+     * Remove a player, for instance because (s)he left. The player is not
+     * credited for the part of the interval (s)he was online.
+     *
+     * @param uuid
+     *            UUID of the player
+     */
+    public synchronized void remove(final UUID uuid) {
+        final Entry entry = entries.remove(uuid);
+
+        if (entry != null) {
+            queue.remove(entry);
+        }
+    }
+
+    /**
+     * Take the player that is due first, if (s)he is due. The player is due
+     * again one interval after the tick (s)he was due on.
+     *
+     * @param now
+     *            Current tick
+     * @return the UUID of the player, or null if no player is due.
+     */
+    public synchronized UUID poll(final long now) {
+        if (queue.isEmpty() || queue.first().due > now) {
+            return null;
+        }
+
+        final Entry entry = queue.pollFirst();
+
+        put(entry.uuid, entry.due + interval);
+
+        return entry.uuid;
+    }
+
+    /**
+     * Get the number of players that are due, but were not taken yet.
+     *
+     * @param now
+     *            Current tick
+     * @return number of players that are due.
+     */
+    public synchronized int getBacklog(final long now) {
+        return queue.headSet(new Entry(null, now, Long.MAX_VALUE), true).size();
+    }
+
+    /**
+     * Get the number of players in the schedule.
+     *
+     * @return number of players.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Must be called while holding the lock on this schedule.
+    private void put(final UUID uuid, final long due) {
+        final Entry entry = new Entry(uuid, due, sequence++);
+
+        entries.put(uuid, entry);
+        queue.add(entry);
+    }
+}
@@ -30,8 +30,17 @@ public class PlayerChecker {
 
     private final Autorank plugin;
 
+    private final RequirementCache requirementCache;
+
+    private final RecheckScheduler recheckScheduler;
+
+    private final TimeSlicedScheduler timeSlicedScheduler;
+
     public PlayerChecker(final Autorank plugin) {
         this.plugin = plugin;
+        this.requirementCache = new RequirementCache(plugin);
+        this.recheckScheduler = new RecheckScheduler(plugin);
+        this.timeSlicedScheduler = new TimeSlicedScheduler(plugin);
     }
 
     public boolean checkPlayer(final Player player) {
@@ -46,12 +55,57 @@ public class PlayerChecker {
         if (chosenPath == null)
             return false;
 
-        return chosenPath.applyChange(player);
+        // Every requirement is only evaluated once during the check.
+        requirementCache.startPass(player.getUniqueId());
+
+        try {
+            return chosenPath.applyChange(player);
+        } finally {
+            requirementCache.endPass(player.getUniqueId());
+        }
+    }
+
+    /**
+     * Get the cache that remembers whether players meet requirements during a
+     * check.
+     *
+     * @return the requirement cache.
+     */
+    public RequirementCache getRequirementCache() {
+        return requirementCache;
+    }
+
+    /**
+     * Get the scheduler that checks players again when something changed that
+     * their requirements depend on.
+     *
+     * @return the recheck scheduler.
+     */
+    public RecheckScheduler getRecheckScheduler() {
+        return recheckScheduler;
+    }
+
+    /**
+     * Get the scheduler that adds play time to online players, spread over
+     * the interval.
+     *
+     * @return the time sliced scheduler.
+     */
+    public TimeSlicedScheduler getTimeSlicedScheduler() {
+        return timeSlicedScheduler;
     }
 
     public void doLeaderboardExemptCheck(final Player player) {
-        plugin.getPlayerDataConfig().hasLeaderboardExemption(player.getUniqueId(),
-                player.hasPermission(AutorankPermission.EXCLUDE_FROM_LEADERBOARD));
+        final boolean exempted = player.hasPermission(AutorankPermission.EXCLUDE_FROM_LEADERBOARD);
+
+        if (plugin.getPlayerDataConfig().hasLeaderboardExemption(player.getUniqueId()) == exempted) {
+            return;
+        }
+
+        plugin.getPlayerDataConfig().hasLeaderboardExemption(player.getUniqueId(), exempted);
+
+        // Add or remove the player from the leaderboard.
+        plugin.getLeaderboardManager().updateExemption(player.getUniqueId());
     }
 
     public List<String> formatRequirementsToList(final List<RequirementsHolder> holders,
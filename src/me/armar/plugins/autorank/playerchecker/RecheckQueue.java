@@ -0,0 +1,97 @@
+package me.armar.plugins.autorank.playerchecker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+
+/**
+ * Keeps track of the players that have to be checked again, and when. <br>
+ * A player that was checked is not checked again until a minimum gap has
+ * passed, so a player that keeps changing something (for instance walking
+ * around) is not checked on every change. A player that is marked a few times
+ * before being checked is only checked once.
+ * <p>
+ * Time is given by the caller, in milliseconds. All methods can be called
+ * from any thread.
+ */
+public class RecheckQueue {
+
+    // Guarded by this.
+    private final Map<UUID, Long> dirty = new HashMap<UUID, Long>();
+    private final Map<UUID, Long> lastChecks = new HashMap<UUID, Long>();
+
+    /**
+     * Mark a player to be checked again.
+     *
+     * @param uuid
+     *            UUID of the player
+     * @param now
+     *            Current time
+     * @param gap
+     *            Minimum time between the last check of the player and the
+     *            next one
+     */
+    public synchronized void mark(final UUID uuid, final long now, final long gap) {
+        final Long lastCheck = lastChecks.get(uuid);
+        final long notBefore = lastCheck == null ? now : Math.max(now, lastCheck + gap);
+
+        final Long current = dirty.get(uuid);
+
+        if (current == null || notBefore < current) {
+            dirty.put(uuid, notBefore);
+        }
+    }
+
+    /**
+     * Take the players that may be checked now. They are remembered as
+     * checked now.
+     *
+     * @param now
+     *            Current time
+     * @return the UUIDs of the players to check.
+     */
+    public synchronized List<UUID> poll(final long now) {
+        if (dirty.isEmpty()) {
+            return new ArrayList<UUID>();
+        }
+
+        final List<UUID> due = new ArrayList<UUID>();
+
+        for (final Iterator<Entry<UUID, Long>> iterator = dirty.entrySet().iterator(); iterator.hasNext();) {
+            final Entry<UUID, Long> entry = iterator.next();
+
+            if (entry.getValue() <= now) {
+                iterator.remove();
+
+                lastChecks.put(entry.getKey(), now);
+                due.add(entry.getKey());
+            }
+        }
+
+        return due;
+    }
+
+    /**
+     * Forget a player, for instance because (s)he left.
+     *
+     * @param uuid
+     *            UUID of the player
+     */
+    public synchronized void remove(final UUID uuid) {
+        dirty.remove(uuid);
+        lastChecks.remove(uuid);
+    }
+
+    /**
+     * Get the number of players that wait to be checked.
+     *
+     * @return number of marked players.
+     */
+    public synchronized int size() {
+        return dirty.size();
+    }
+}
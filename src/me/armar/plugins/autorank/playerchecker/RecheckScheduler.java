@@ -0,0 +1,266 @@
+package me.armar.plugins.autorank.playerchecker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.player.PlayerAchievementAwardedEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerGameModeChangeEvent;
+import org.bukkit.event.player.PlayerLevelChangeEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerPickupItemEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+
+import me.armar.plugins.autorank.Autorank;
+import me.armar.plugins.autorank.pathbuilder.Path;
+import me.armar.plugins.autorank.pathbuilder.requirement.Requirement.Trigger;
+
+/**
+ * Checks players again when something changes that the requirements of their
+ * path depend on (see {@link Trigger}). <br>
+ * Events only mark a player as dirty when the path of the player depends on
+ * what changed. Most events are fired before the change is made, so these
+ * mark the player on the next tick, once the change is done. Every tick, the
+ * dirty players are checked once, no matter how many events happened. A
+ * player is not checked again within a minimum gap after the last check (see
+ * {@link RecheckQueue}), so a player that keeps walking around is not checked
+ * on every block. Players that finish a requirement like having an item are
+ * promoted right away.
+ */
+public class RecheckScheduler implements Listener, Runnable {
+
+    // Minimum time between two checks of a player, in milliseconds.
+    public static final long MIN_CHECK_GAP = 1000;
+
+    // Players keep moving, so location changes are checked less often.
+    public static final long MIN_LOCATION_CHECK_GAP = 5000;
+
+    private final Autorank plugin;
+
+    private final RecheckQueue queue = new RecheckQueue();
+
+    // Players that are marked on the next tick, with the smallest gap of the
+    // triggers that changed. Only used on the main thread.
+    private final Map<UUID, Long> deferred = new HashMap<UUID, Long>();
+
+    // Whether dirty players are being checked, so a slow check is not
+    // started again on the next tick.
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public RecheckScheduler(final Autorank plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Check the dirty players every tick. Checks run async, like the interval
+     * check.
+     */
+    public void start() {
+        plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this, 1, 1);
+    }
+
+    /**
+     * Mark a player as dirty, when the path of the player depends on what
+     * has changed. The player is checked on the next tick, or when the
+     * minimum gap since the last check has passed.
+     *
+     * @param player
+     *            Player to check again
+     * @param trigger
+     *            What has changed
+     * @return true if the player will be checked, false otherwise.
+     */
+    public boolean markDirty(final Player player, final Trigger trigger) {
+        if (!dependsOn(player, trigger)) {
+            return false;
+        }
+
+        queue.mark(player.getUniqueId(), System.currentTimeMillis(), getMinimumGap(trigger));
+        return true;
+    }
+
+    /**
+     * Mark a player as dirty, no matter what the path of the player depends
+     * on. This is used when the player got a new path.
+     *
+     * @param player
+     *            Player to check again
+     * @return true if the player will be checked, false otherwise.
+     */
+    public boolean markDirty(final Player player) {
+        if (plugin.getConfigHandler().isAutomaticPathDisabled()) {
+            return false;
+        }
+
+        queue.mark(player.getUniqueId(), System.currentTimeMillis(), 0);
+        return true;
+    }
+
+    /**
+     * Get the number of players that wait to be checked.
+     *
+     * @return number of dirty players.
+     */
+    public int getDirtyCount() {
+        return queue.size();
+    }
+
+    @Override
+    public void run() {
+        if (queue.size() == 0 || !running.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            for (final UUID uuid : queue.poll(System.currentTimeMillis())) {
+                final Player player = plugin.getServer().getPlayer(uuid);
+
+                if (player != null) {
+                    plugin.getPlayerChecker().checkPlayer(player);
+                }
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Get the minimum time between the last check of a player and a check
+     * because of a change.
+     *
+     * @param trigger
+     *            What has changed
+     * @return the minimum gap, in milliseconds.
+     */
+    public static long getMinimumGap(final Trigger trigger) {
+        return trigger == Trigger.LOCATION ? MIN_LOCATION_CHECK_GAP : MIN_CHECK_GAP;
+    }
+
+    private boolean dependsOn(final Player player, final Trigger trigger) {
+        if (plugin.getConfigHandler().isAutomaticPathDisabled()) {
+            return false;
+        }
+
+        final Path path = plugin.getPathManager().getCurrentPath(player.getUniqueId());
+
+        return path != null && path.getTriggers().contains(trigger);
+    }
+
+    // Mark a player as dirty on the next tick, for events that are fired
+    // before the change is made. Must be called on the main thread.
+    private void markDirtyLater(final Player player, final Trigger trigger) {
+        if (!dependsOn(player, trigger)) {
+            return;
+        }
+
+        final UUID uuid = player.getUniqueId();
+        final long gap = getMinimumGap(trigger);
+        final Long pending = deferred.get(uuid);
+
+        if (pending != null) {
+            // Already scheduled for the next tick.
+            if (gap < pending) {
+                deferred.put(uuid, gap);
+            }
+
+            return;
+        }
+
+        deferred.put(uuid, gap);
+
+        plugin.getServer().getScheduler().runTask(plugin, new Runnable() {
+
+            @Override
+            public void run() {
+                final Long pendingGap = deferred.remove(uuid);
+
+                if (pendingGap != null) {
+                    queue.mark(uuid, System.currentTimeMillis(), pendingGap);
+                }
+            }
+        });
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryClose(final InventoryCloseEvent event) {
+        if (event.getPlayer() instanceof Player) {
+            // The item on the cursor is only put back after the event.
+            markDirtyLater((Player) event.getPlayer(), Trigger.INVENTORY);
+
+            // Shops are often inventories.
+            markDirtyLater((Player) event.getPlayer(), Trigger.ECONOMY);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemPickup(final PlayerPickupItemEvent event) {
+        markDirtyLater(event.getPlayer(), Trigger.INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemDrop(final PlayerDropItemEvent event) {
+        markDirtyLater(event.getPlayer(), Trigger.INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChange(final PlayerChangedWorldEvent event) {
+        markDirty(event.getPlayer(), Trigger.WORLD);
+        markDirty(event.getPlayer(), Trigger.LOCATION);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTeleport(final PlayerTeleportEvent event) {
+        markDirtyLater(event.getPlayer(), Trigger.LOCATION);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMove(final PlayerMoveEvent event) {
+        final Location from = event.getFrom(), to = event.getTo();
+
+        // Most moves stay on the same block.
+        if (to == null || (from.getBlockX() == to.getBlockX() && from.getBlockY() == to.getBlockY()
+                && from.getBlockZ() == to.getBlockZ())) {
+            return;
+        }
+
+        markDirtyLater(event.getPlayer(), Trigger.LOCATION);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onGameModeChange(final PlayerGameModeChangeEvent event) {
+        markDirtyLater(event.getPlayer(), Trigger.GAMEMODE);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLevelChange(final PlayerLevelChangeEvent event) {
+        markDirty(event.getPlayer(), Trigger.EXPERIENCE);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onAchievement(final PlayerAchievementAwardedEvent event) {
+        markDirtyLater(event.getPlayer(), Trigger.ACHIEVEMENT);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onCommand(final PlayerCommandPreprocessEvent event) {
+        // Commands like /pay or /sell change the balance of the player.
+        markDirtyLater(event.getPlayer(), Trigger.ECONOMY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(final PlayerQuitEvent event) {
+        queue.remove(event.getPlayer().getUniqueId());
+        deferred.remove(event.getPlayer().getUniqueId());
+    }
+}
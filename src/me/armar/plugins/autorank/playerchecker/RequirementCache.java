@@ -0,0 +1,221 @@
+package me.armar.plugins.autorank.playerchecker;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import me.armar.plugins.autorank.Autorank;
+import me.armar.plugins.autorank.pathbuilder.requirement.Requirement;
+
+/**
+ * Remembers whether a player meets a requirement, and the progress of the
+ * player, during a single check of that player. <br>
+ * Checking a player (for instance with /ar check) looks at the same
+ * requirements a few times: to show which requirements are met, to see
+ * whether the path is completed and to complete single requirements. Some
+ * requirements ask another plugin, so they are only evaluated once per check.
+ * <p>
+ * A check is started with {@link #startPass(UUID)} and ended with
+ * {@link #endPass(UUID)}. Passes can be nested; the results are kept until
+ * the outer pass ends. Outside a pass, nothing is remembered. Results are
+ * forgotten during a pass when something that requirements depend on changes:
+ * time was added, results were performed, or the player changed world,
+ * closed an inventory or left.
+ */
+public class RequirementCache implements Listener {
+
+    /**
+     * Results of a single player during a pass.
+     */
+    private static class Pass {
+
+        // Number of passes that were started and not ended yet.
+        private int depth;
+
+        // Increased whenever the results are forgotten, so a result that was
+        // evaluated before is not stored afterwards.
+        private int generation;
+
+        private final Map<Requirement, Boolean> met = new IdentityHashMap<Requirement, Boolean>();
+        private final Map<Requirement, String> progress = new IdentityHashMap<Requirement, String>();
+
+        private int evaluations, hits;
+    }
+
+    private final Autorank plugin;
+
+    private final Map<UUID, Pass> passes = new ConcurrentHashMap<UUID, Pass>();
+
+    public RequirementCache(final Autorank plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Start a check of a player. Every call must be followed by a call to
+     * {@link #endPass(UUID)}, preferably in a finally block.
+     *
+     * @param uuid
+     *            UUID of the player
+     */
+    public synchronized void startPass(final UUID uuid) {
+        Pass pass = passes.get(uuid);
+
+        if (pass == null) {
+            pass = new Pass();
+            passes.put(uuid, pass);
+        }
+
+        pass.depth++;
+    }
+
+    /**
+     * End a check of a player. The results are forgotten when this ends the
+     * outer pass.
+     *
+     * @param uuid
+     *            UUID of the player
+     */
+    public synchronized void endPass(final UUID uuid) {
+        final Pass pass = passes.get(uuid);
+
+        if (pass == null || --pass.depth > 0) {
+            return;
+        }
+
+        passes.remove(uuid);
+
+        plugin.debugMessage("Check of " + uuid + " evaluated " + pass.evaluations + " requirement(s), "
+                + pass.hits + " evaluation(s) were remembered.");
+    }
+
+    /**
+     * Check whether a player meets a requirement. During a pass, the
+     * requirement is only evaluated the first time.
+     *
+     * @param requirement
+     *            Requirement to check
+     * @param player
+     *            Player to check for
+     * @return true if the player meets the requirement; false otherwise.
+     */
+    public boolean meetsRequirement(final Requirement requirement, final Player player) {
+        final Pass pass = passes.get(player.getUniqueId());
+
+        if (pass == null) {
+            return requirement.meetsRequirement(player);
+        }
+
+        final int generation;
+
+        synchronized (pass) {
+            final Boolean met = pass.met.get(requirement);
+
+            if (met != null) {
+                pass.hits++;
+                return met;
+            }
+
+            generation = pass.generation;
+        }
+
+        // Do not hold the lock while evaluating, it may take a while.
+        final boolean met = requirement.meetsRequirement(player);
+
+        synchronized (pass) {
+            pass.evaluations++;
+
+            if (pass.generation == generation) {
+                pass.met.put(requirement, met);
+            }
+        }
+
+        return met;
+    }
+
+    /**
+     * Get the progress of a player on a requirement. During a pass, the
+     * progress is only asked the first time.
+     *
+     * @param requirement
+     *            Requirement to get the progress of
+     * @param player
+     *            Player to get the progress for
+     * @return the progress, as given by the requirement.
+     */
+    public String getProgress(final Requirement requirement, final Player player) {
+        final Pass pass = passes.get(player.getUniqueId());
+
+        if (pass == null) {
+            return requirement.getProgress(player);
+        }
+
+        final int generation;
+
+        synchronized (pass) {
+            final String progress = pass.progress.get(requirement);
+
+            if (progress != null) {
+                pass.hits++;
+                return progress;
+            }
+
+            generation = pass.generation;
+        }
+
+        final String progress = requirement.getProgress(player);
+
+        synchronized (pass) {
+            if (pass.generation == generation && progress != null) {
+                pass.progress.put(requirement, progress);
+            }
+        }
+
+        return progress;
+    }
+
+    /**
+     * Forget the results of a player, because something has changed that
+     * requirements may depend on. A pass that is running evaluates the
+     * requirements again.
+     *
+     * @param uuid
+     *            UUID of the player
+     */
+    public void invalidate(final UUID uuid) {
+        final Pass pass = passes.get(uuid);
+
+        if (pass == null) {
+            return;
+        }
+
+        synchronized (pass) {
+            pass.generation++;
+            pass.met.clear();
+            pass.progress.clear();
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChange(final PlayerChangedWorldEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryClose(final InventoryCloseEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(final PlayerQuitEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+}
@@ -0,0 +1,150 @@
+package me.armar.plugins.autorank.playerchecker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import me.armar.plugins.autorank.Autorank;
+import me.armar.plugins.autorank.playtimes.PlaytimeManager;
+import me.armar.plugins.autorank.util.AutorankTools;
+
+/**
+ * Adds the play time of online players and checks them, spread over the
+ * interval instead of all players at once. <br>
+ * Every player is due once every interval (see {@link IntervalSchedule}).
+ * Every tick, the players that are due are updated until
+ * {@link #TICK_BUDGET_NANOS} has passed. Players that did not fit in the tick
+ * are the backlog; they are updated on the next ticks and are still credited
+ * exactly {@link PlaytimeManager#INTERVAL_MINUTES} for every interval.
+ */
+public class TimeSlicedScheduler implements Listener, Runnable {
+
+    // Time that players may be updated for during a single tick.
+    public static final long TICK_BUDGET_NANOS = 2000000L;
+
+    private final Autorank plugin;
+
+    private volatile IntervalSchedule schedule;
+
+    // Number of ticks since the scheduler was started. Only changed by the
+    // task, but read when players join.
+    private volatile long tick;
+
+    // Whether players are being updated, so a slow tick does not overlap with
+    // the next one.
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public TimeSlicedScheduler(final Autorank plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Spread the players that are online over the first interval and update
+     * the players that are due every tick. Updates run async, like the
+     * interval check.
+     */
+    public void start() {
+        schedule = new IntervalSchedule((long) PlaytimeManager.INTERVAL_MINUTES * AutorankTools.TICKS_PER_MINUTE);
+
+        final List<UUID> online = new ArrayList<UUID>();
+
+        for (final Player player : plugin.getServer().getOnlinePlayers()) {
+            online.add(player.getUniqueId());
+        }
+
+        schedule.addSpread(online, tick);
+
+        plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this, 1, 1);
+    }
+
+    /**
+     * Get the number of players that are due, but could not be updated yet
+     * because the time of the tick was used up.
+     *
+     * @return number of players that are behind, or 0 if the scheduler has
+     *         not started.
+     */
+    public int getBacklog() {
+        return schedule == null ? 0 : schedule.getBacklog(tick);
+    }
+
+    /**
+     * Get the number of players that are updated by this scheduler.
+     *
+     * @return number of scheduled players.
+     */
+    public int getScheduledCount() {
+        return schedule == null ? 0 : schedule.size();
+    }
+
+    @Override
+    public void run() {
+        final long now = ++tick;
+
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            final long start = System.nanoTime();
+            int updated = 0;
+
+            while (System.nanoTime() - start < TICK_BUDGET_NANOS) {
+                final UUID uuid = schedule.poll(now);
+
+                if (uuid == null) {
+                    break;
+                }
+
+                final Player player = plugin.getServer().getPlayer(uuid);
+
+                if (player == null) {
+                    schedule.remove(uuid);
+                    continue;
+                }
+
+                if (updated++ == 0) {
+                    // Make sure time is added to the current day, week and
+                    // month, even if the calendar check has not run yet.
+                    plugin.getFlatFileManager().updatePeriods();
+                }
+
+                plugin.getPlaytimes().getUpdatePlaytime().updateMinutesPlayed(player);
+            }
+
+            // Report once a minute when players are behind.
+            if (now % AutorankTools.TICKS_PER_MINUTE == 0) {
+                final int backlog = schedule.getBacklog(now);
+
+                if (backlog > 0) {
+                    plugin.debugMessage(backlog + " of " + schedule.size()
+                            + " player(s) are behind on their play time update.");
+                }
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(final PlayerJoinEvent event) {
+        if (schedule != null) {
+            schedule.add(event.getPlayer().getUniqueId(), tick);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(final PlayerQuitEvent event) {
+        if (schedule != null) {
+            schedule.remove(event.getPlayer().getUniqueId());
+        }
+    }
+}
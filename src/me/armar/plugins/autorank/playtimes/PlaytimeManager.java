@@ -26,6 +26,8 @@ public class PlaytimeManager {
 
     private final Autorank plugin;
 
+    private final UpdatePlaytime updatePlaytime;
+
     // What plugin should Autorank use to check time?
     private final AutorankDependency timePlugin;
 
@@ -36,12 +38,23 @@ public class PlaytimeManager {
 
         plugin.getLogger().info("Interval check every " + INTERVAL_MINUTES + " minutes.");
         
-        plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, new UpdatePlaytime(plugin.getFlatFileManager(), plugin),
+        updatePlaytime = new UpdatePlaytime(plugin.getFlatFileManager(), plugin);
+
+        plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, updatePlaytime,
                 PlaytimeManager.INTERVAL_MINUTES * AutorankTools.TICKS_PER_MINUTE, PlaytimeManager.INTERVAL_MINUTES * AutorankTools.TICKS_PER_MINUTE);
 
         timePlugin = plugin.getConfigHandler().useTimeOf();
     }
 
+    /**
+     * Get the task that adds the time of an interval to online players.
+     * 
+     * @return the play time updater.
+     */
+    public UpdatePlaytime getUpdatePlaytime() {
+        return updatePlaytime;
+    }
+
     /**
      * Get the time of a player. <br>
      * This depends on what plugin is used to get the time from. <br>
@@ -80,7 +93,7 @@ public class PlaytimeManager {
                     return playTime;
 
                 // Stats not found, using Autorank's system.
-                playTime = plugin.getFlatFileManager().getLocalTime(TimeType.TOTAL_TIME, uuid) * 60;
+                playTime = plugin.getFlatFileManager().getPlaytimeIndex().getTime(uuid, TimeType.TOTAL_TIME) * 60;
             }
         } else if (timePlugin.equals(AutorankDependency.ONTIME)) {
             playTime = ((OnTimeHandler) plugin.getDependencyManager().getDependencyHandler(Dependency.ON_TIME))
@@ -97,7 +110,7 @@ public class PlaytimeManager {
                 return playTime;
 
             // Use internal system of Autorank.
-            playTime = plugin.getFlatFileManager().getLocalTime(TimeType.TOTAL_TIME, uuid) * 60;
+            playTime = plugin.getFlatFileManager().getPlaytimeIndex().getTime(uuid, TimeType.TOTAL_TIME) * 60;
         }
 
         return playTime;
@@ -0,0 +1,159 @@
+package me.armar.plugins.autorank.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.bukkit.ChatColor;
+
+/**
+ * A message layout with placeholders, like the layout of the leaderboard or
+ * of the /ar check command. <br>
+ * The layout is split into text and placeholders once, when it is created.
+ * Rendering it only appends the text and the values of the placeholders, so
+ * the layout does not have to be searched for every placeholder over and over
+ * again.
+ * <p>
+ * Placeholders are matched longest first, so a layout can use both
+ * <i>&p</i> and <i>&path</i>.
+ */
+public class Layout {
+
+    private final String[] placeholders;
+
+    // parts[i] is the text before the placeholder with index slots[i]. The
+    // last part is the text after the last placeholder.
+    private final String[] parts;
+    private final int[] slots;
+
+    /**
+     * Split a layout into text and placeholders.
+     *
+     * @param layout
+     *            Layout to split
+     * @param placeholders
+     *            Placeholders that can be used in the layout. The values of
+     *            the placeholders are given in the same order when rendering.
+     */
+    public Layout(final String layout, final String... placeholders) {
+        this.placeholders = placeholders;
+
+        // Try longer placeholders first.
+        final Integer[] order = new Integer[placeholders.length];
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(final Integer first, final Integer second) {
+                return placeholders[second].length() - placeholders[first].length();
+            }
+        });
+
+        final List<String> parts = new ArrayList<String>();
+        final List<Integer> slots = new ArrayList<Integer>();
+
+        final StringBuilder text = new StringBuilder();
+
+        int position = 0;
+
+        search: while (position < layout.length()) {
+            for (final int slot : order) {
+                if (layout.startsWith(placeholders[slot], position)) {
+                    parts.add(text.toString());
+                    slots.add(slot);
+
+                    text.setLength(0);
+                    position += placeholders[slot].length();
+                    continue search;
+                }
+            }
+
+            text.append(layout.charAt(position++));
+        }
+
+        parts.add(text.toString());
+
+        this.parts = parts.toArray(new String[parts.size()]);
+        this.slots = new int[slots.size()];
+
+        for (int i = 0; i < this.slots.length; i++) {
+            this.slots[i] = slots.get(i);
+        }
+    }
+
+    private Layout(final String[] placeholders, final String[] parts, final int[] slots) {
+        this.placeholders = placeholders;
+        this.parts = parts;
+        this.slots = slots;
+    }
+
+    /**
+     * Get a copy of this layout in which the color codes (using &amp;) in the
+     * text are translated. Values of placeholders are not translated.
+     *
+     * @return a new layout with translated colors.
+     */
+    public Layout translateColors() {
+        final String[] translated = new String[parts.length];
+
+        for (int i = 0; i < parts.length; i++) {
+            translated[i] = ChatColor.translateAlternateColorCodes('&', parts[i]);
+        }
+
+        return new Layout(placeholders, translated, slots);
+    }
+
+    /**
+     * Check whether a placeholder is used in this layout. Use this to skip
+     * values that are expensive to get.
+     *
+     * @param placeholder
+     *            Placeholder to check
+     * @return true if the layout contains the placeholder, false otherwise.
+     */
+    public boolean contains(final String placeholder) {
+        for (final int slot : slots) {
+            if (placeholders[slot].equals(placeholder)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Append the layout to a builder, with the placeholders replaced by their
+     * values.
+     *
+     * @param builder
+     *            Builder to append to
+     * @param values
+     *            Values of the placeholders, in the order they were given when
+     *            the layout was created
+     * @return the given builder.
+     */
+    public StringBuilder appendTo(final StringBuilder builder, final Object... values) {
+        for (int i = 0; i < slots.length; i++) {
+            builder.append(parts[i]).append(values[slots[i]]);
+        }
+
+        return builder.append(parts[slots.length]);
+    }
+
+    /**
+     * Render the layout, with the placeholders replaced by their values.
+     *
+     * @param values
+     *            Values of the placeholders, in the order they were given when
+     *            the layout was created
+     * @return the rendered layout.
+     */
+    public String render(final Object... values) {
+        return appendTo(new StringBuilder(), values).toString();
+    }
+}
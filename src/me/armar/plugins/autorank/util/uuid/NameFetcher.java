@@ -27,7 +27,7 @@ import com.google.common.collect.ImmutableList;
  * 
  */
 public class NameFetcher implements Callable<Map<UUID, String>> {
-    private static final String PROFILE_URL = "https://sessionserver.mojang.com/session/minecraft/profile/";
+    public static final String PROFILE_URL = "https://sessionserver.mojang.com/session/minecraft/profile/";
 
     public static String fromStream(final InputStream in) throws IOException {
         final BufferedReader reader = new BufferedReader(new InputStreamReader(in));
@@ -43,6 +43,45 @@ public class NameFetcher implements Callable<Map<UUID, String>> {
         return out.toString();
     }
 
+    /**
+     * Look up the name of a single player.
+     *
+     * @param profileUrl
+     *            URL of the Mojang session server, to which the UUID is
+     *            appended
+     * @param uuid
+     *            UUID of the player
+     * @return the name of the player, or null if there is no account with
+     *         this UUID.
+     * @throws Exception
+     *             when the request failed or the response could not be read.
+     */
+    static String fetch(final String profileUrl, final UUID uuid) throws Exception {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(
+                profileUrl + uuid.toString().replace("-", "")).openConnection();
+
+        final int responseCode = connection.getResponseCode();
+
+        // Mojang answers without content when the account does not exist.
+        if (responseCode == HttpURLConnection.HTTP_NO_CONTENT || responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+            return null;
+        }
+
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            throw new IOException("Mojang answered with HTTP " + responseCode + " for uuid " + uuid);
+        }
+
+        final InputStreamReader reader = new InputStreamReader(connection.getInputStream());
+
+        try {
+            final JSONObject response = (JSONObject) new JSONParser().parse(reader);
+
+            return (String) response.get("name");
+        } finally {
+            reader.close();
+        }
+    }
+
     private final JSONParser jsonParser = new JSONParser();
 
     private final List<UUID> uuids;
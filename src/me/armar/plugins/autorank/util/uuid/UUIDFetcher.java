@@ -28,11 +28,11 @@ import com.google.common.collect.ImmutableList;
  * 
  */
 public class UUIDFetcher implements Callable<Map<String, UUID>> {
-    private static final String PROFILE_URL = "https://api.mojang.com/profiles/minecraft";
-    private static final double PROFILES_PER_REQUEST = 100;
+    public static final String PROFILE_URL = "https://api.mojang.com/profiles/minecraft";
+    public static final int PROFILES_PER_REQUEST = 100;
 
-    private static HttpURLConnection createConnection() throws Exception {
-        final URL url = new URL(PROFILE_URL);
+    private static HttpURLConnection createConnection(final String profileUrl) throws Exception {
+        final URL url = new URL(profileUrl);
         final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
         connection.setRequestMethod("POST");
         connection.setRequestProperty("Content-Type", "application/json");
@@ -52,6 +52,45 @@ public class UUIDFetcher implements Callable<Map<String, UUID>> {
         return new UUID(mostSignificant, leastSignificant);
     }
 
+    /**
+     * Look up the UUIDs of at most {@link #PROFILES_PER_REQUEST} players with
+     * a single request.
+     *
+     * @param profileUrl
+     *            URL of the Mojang profile API
+     * @param names
+     *            Names of the players
+     * @return the UUID of every player that exists, by the name as Mojang
+     *         spells it.
+     * @throws Exception
+     *             when the request failed or the response could not be read.
+     */
+    static Map<String, UUID> fetch(final String profileUrl, final List<String> names) throws Exception {
+        final HttpURLConnection connection = createConnection(profileUrl);
+        writeBody(connection, JSONArray.toJSONString(names));
+
+        final JSONArray array;
+        final InputStreamReader reader = new InputStreamReader(connection.getInputStream());
+
+        try {
+            array = (JSONArray) new JSONParser().parse(reader);
+        } finally {
+            reader.close();
+        }
+
+        final Map<String, UUID> uuidMap = new HashMap<String, UUID>();
+
+        for (final Object profile : array) {
+            final JSONObject jsonProfile = (JSONObject) profile;
+            final String id = (String) jsonProfile.get("id");
+            final String name = (String) jsonProfile.get("name");
+
+            uuidMap.put(name, UUIDFetcher.getUUID(id));
+        }
+
+        return uuidMap;
+    }
+
     private static UUID getUUID(final String id) {
         return UUID.fromString(id.substring(0, 8) + "-" + id.substring(8, 12) + "-" + id.substring(12, 16) + "-"
                 + id.substring(16, 20) + "-" + id.substring(20, 32));
@@ -75,8 +114,6 @@ public class UUIDFetcher implements Callable<Map<String, UUID>> {
         stream.close();
     }
 
-    private final JSONParser jsonParser = new JSONParser();
-
     private final List<String> names;
 
     private final boolean rateLimiting;
@@ -93,30 +130,19 @@ public class UUIDFetcher implements Callable<Map<String, UUID>> {
     @Override
     public Map<String, UUID> call() throws Exception {
         final Map<String, UUID> uuidMap = new HashMap<String, UUID>();
-        final int requests = (int) Math.ceil(names.size() / PROFILES_PER_REQUEST);
+        final int requests = (int) Math.ceil(names.size() / (double) PROFILES_PER_REQUEST);
         for (int i = 0; i < requests; i++) {
-            final HttpURLConnection connection = createConnection();
-            final String body = JSONArray.toJSONString(names.subList(i * 100, Math.min((i + 1) * 100, names.size())));
-            writeBody(connection, body);
-            JSONArray array;
+            final List<String> batch = names.subList(i * PROFILES_PER_REQUEST,
+                    Math.min((i + 1) * PROFILES_PER_REQUEST, names.size()));
 
             try {
-                array = (JSONArray) jsonParser.parse(new InputStreamReader(connection.getInputStream()));
+                uuidMap.putAll(fetch(PROFILE_URL, batch));
             } catch (final Exception e) {
 
-                System.out.print("[Autorank] Could not fetch UUID of player '" + names.get(i) + "'!");
+                System.out.print("[Autorank] Could not fetch UUID of player '" + batch.get(0) + "'!");
                 continue;
             }
 
-            for (final Object profile : array) {
-                final JSONObject jsonProfile = (JSONObject) profile;
-                final String id = (String) jsonProfile.get("id");
-                final String name = (String) jsonProfile.get("name");
-
-                final UUID uuid = UUIDFetcher.getUUID(id);
-
-                uuidMap.put(name, uuid);
-            }
             if (rateLimiting && i != requests - 1) {
                 // Sleep for 10 minutes
                 Bukkit.getServer().getLogger().info("[Autorank] Waiting for 10 minutes");
@@ -1,15 +1,18 @@
 package me.armar.plugins.autorank.util.uuid;
 
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 
 import org.bukkit.Bukkit;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 import me.armar.plugins.autorank.Autorank;
 
 /**
@@ -17,7 +20,7 @@ import me.armar.plugins.autorank.Autorank;
  * or to do the reverse. <br>
  * It has an implemented cache system, which makes sure it doesn't do a lookup
  * <br>
- * when not needed.
+ * when not needed. Lookups are done by the {@link UUIDResolver} of Autorank.
  * <p>
  * Date created: 17:13:57 2 apr. 2014
  * 
@@ -26,10 +29,6 @@ import me.armar.plugins.autorank.Autorank;
  */
 public class UUIDManager {
 
-    private static Map<UUID, String> foundPlayers = new HashMap<UUID, String>();
-
-    private static Map<String, UUID> foundUUIDs = new HashMap<String, UUID>();
-
     private static Autorank plugin;
 
     // Whether to use cache or not
@@ -82,30 +81,30 @@ public class UUIDManager {
 
     /**
      * Get the player names associated with this UUID. <br>
-     * This method has to run async, because it will use the lookup from the
+     * This method has to run async, because it waits for the lookup from the
      * Mojang API. <br>
-     * It also takes care of already cached values. It doesn't lookup new
-     * players when it still has old, valid ones stored.
+     * It also takes care of already cached values. It only waits for the
+     * lookup of players that have no stored name at all. Outdated names are
+     * returned right away and refreshed in the background by the
+     * {@link UUIDRefresher}.
      * 
      * @param uuids
      *            A list of uuids to get the player names of.
      * @return A map containing every player name per UUID.
      */
     public static Map<UUID, String> getPlayers(final List<UUID> uuids) {
-        // Clear names first
-        foundPlayers.clear();
-
         // A new map to store cached values
         final HashMap<UUID, String> players = new HashMap<UUID, String>();
 
-        // This is used to check if we need to use the lookup from the mojang
-        // website.
-        boolean useInternetLookup = true;
+        // Players that we don't have a cached value of.
+        final List<UUID> lookups = new ArrayList<UUID>();
 
-        if (useCache) {
-            // Check if we have cached values
-            for (final UUID uuid : uuids) {
+        // Players that have an outdated cached value.
+        final List<UUID> outdated = new ArrayList<UUID>();
 
+        for (final UUID uuid : uuids) {
+
+            if (useCache) {
                 String playerName = plugin.getUUIDStorage().getRealName(uuid);
 
                 if (playerName == null) {
@@ -113,75 +112,33 @@ public class UUIDManager {
                     playerName = plugin.getUUIDStorage().getCachedPlayerName(uuid);
                 }
 
-                // No cached value
+                // Use the cached value, even when it is outdated.
                 if (playerName != null) {
-                    // If cached value is still valid, use it.
-                    if (!plugin.getUUIDStorage().isOutdated(playerName)) {
-                        players.put(uuid, playerName);
-                    }
-                }
-            }
+                    players.put(uuid, playerName);
 
-            // All names were retrieved from cached values
-            // So we don't need to do a lookup to the Mojang website.
-            if (players.entrySet().size() == uuids.size()) {
-                useInternetLookup = false;
-            }
+                    if (plugin.getUUIDStorage().isOutdated(playerName)) {
+                        outdated.add(uuid);
+                    }
 
-            // No internet lookup needed.
-            if (!useInternetLookup) {
-                // Return all cached values.
-                return players;
+                    continue;
+                }
             }
 
-            // From here on we know that didn't have all uuids as cached values.
-            // So we need to do a lookup.
-            // We have to make sure we only lookup the players that we haven't
-            // got cached values of yet.
+            lookups.add(uuid);
+        }
 
-            // Remove uuids that don't need to be looked up anymore.
-            // Just for performance sake.
-            for (final UUID entry : players.keySet()) {
-                uuids.remove(entry);
-            }
+        if (!outdated.isEmpty()) {
+            plugin.getUUIDRefresher().refreshPlayers(outdated);
+        }
 
+        // All names were retrieved from cached values
+        // So we don't need to wait for a lookup to the Mojang website.
+        if (lookups.isEmpty()) {
+            return players;
         }
 
         // Now we need to lookup the other players
-
-        final Thread fetcherThread = new Thread(new Runnable() {
-
-            @Override
-            public void run() {
-                final NameFetcher fetcher = new NameFetcher(uuids);
-
-                Map<UUID, String> response = null;
-
-                try {
-                    response = fetcher.call();
-                } catch (final Exception e) {
-                    if (e instanceof IOException) {
-                        Bukkit.getLogger().warning("Tried to contact Mojang page for UUID lookup but failed.");
-                        return;
-                    }
-                    e.printStackTrace();
-                }
-
-                if (response != null) {
-                    foundPlayers = response;
-                }
-            }
-        });
-
-        fetcherThread.start();
-
-        if (fetcherThread.isAlive()) {
-            try {
-                fetcherThread.join();
-            } catch (final InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
+        final Map<UUID, String> foundPlayers = waitFor(plugin.getUUIDResolver().resolveNames(lookups));
 
         // Update cached entries
         for (final Entry<UUID, String> entry : foundPlayers.entrySet()) {
@@ -194,13 +151,9 @@ public class UUIDManager {
             if (plugin.getUUIDStorage().isOutdated(playerName)) {
                 // Update cached values
                 addCachedPlayer(playerName, uuid, playerName);
-            } else {
-                // Do not update if it is not needed.
-                continue;
             }
         }
 
-        // Thread stopped now, collect results
         return players;
     }
 
@@ -239,98 +192,58 @@ public class UUIDManager {
 
     /**
      * Get the UUIDs of a list of players. <br>
-     * This method has to run async, because it will use the lookup from the
+     * This method has to run async, because it waits for the lookup from the
      * Mojang API. <br>
-     * It also takes care of already cached values. It doesn't lookup new
-     * players when it still has old, valid ones stored.
+     * It also takes care of already cached values. It only waits for the
+     * lookup of players that have no stored UUID at all. Outdated UUIDs are
+     * returned right away and refreshed in the background by the
+     * {@link UUIDRefresher}.
      * 
      * @param names
      *            A list of playernames that you want the UUIDs of.
      * @return A map containing every UUID per player name.
      */
     public static Map<String, UUID> getUUIDs(final List<String> names) {
-
-        // Clear maps first
-        foundUUIDs.clear();
-
         // A new map to store cached values
         final HashMap<String, UUID> uuids = new HashMap<String, UUID>();
 
-        // This is used to check if we need to use the lookup from the mojang
-        // website.
-        boolean useInternetLookup = true;
+        // Players that we don't have a cached value of.
+        final List<String> lookups = new ArrayList<String>();
 
-        if (useCache) {
-            // Check if we have cached values
-            for (final String playerName : names) {
+        // Players that have an outdated cached value.
+        final List<String> outdated = new ArrayList<String>();
 
-                // If cached value is still valid, use it.
-                if (!plugin.getUUIDStorage().isOutdated(playerName)) {
-                    uuids.put(playerName, getCachedUUID(playerName));
-                }
-            }
+        for (final String playerName : names) {
 
-            // All names were retrieved from cached values
-            // So we don't need to do a lookup to the Mojang website.
-            if (uuids.entrySet().size() == names.size()) {
-                useInternetLookup = false;
-            }
+            final UUID uuid = useCache ? getCachedUUID(playerName) : null;
 
-            // No internet lookup needed.
-            if (!useInternetLookup) {
-                // Return all cached values.
-                return uuids;
-            }
+            // Use the cached value, even when it is outdated.
+            if (uuid != null) {
+                uuids.put(playerName, uuid);
 
-            // From here on we know that didn't have all uuids as cached values.
-            // So we need to do a lookup.
-            // We have to make sure we only lookup the players that we haven't
-            // got cached values of yet.
+                if (plugin.getUUIDStorage().isOutdated(playerName)) {
+                    outdated.add(playerName);
+                }
 
-            // Remove players that don't need to be looked up anymore.
-            // Just for performance sake.
-            for (final Entry<String, UUID> entry : uuids.entrySet()) {
-                names.remove(entry.getKey());
+                continue;
             }
 
+            lookups.add(playerName);
         }
 
-        // Now we need to lookup the other players
-
-        final Thread fetcherThread = new Thread(new Runnable() {
-
-            @Override
-            public void run() {
-                final UUIDFetcher fetcher = new UUIDFetcher(names);
-
-                Map<String, UUID> response = null;
-
-                try {
-                    response = fetcher.call();
-                } catch (final Exception e) {
-                    if (e instanceof IOException) {
-                        Bukkit.getLogger().warning("Tried to contact Mojang page for UUID lookup but failed.");
-                        return;
-                    }
-                    e.printStackTrace();
-                }
-
-                if (response != null) {
-                    foundUUIDs = response;
-                }
-            }
-        });
-
-        fetcherThread.start();
+        if (!outdated.isEmpty()) {
+            plugin.getUUIDRefresher().refreshNames(outdated);
+        }
 
-        if (fetcherThread.isAlive()) {
-            try {
-                fetcherThread.join();
-            } catch (final InterruptedException e) {
-                e.printStackTrace();
-            }
+        // All uuids were retrieved from cached values
+        // So we don't need to wait for a lookup to the Mojang website.
+        if (lookups.isEmpty()) {
+            return uuids;
         }
 
+        // Now we need to lookup the other players
+        final Map<String, UUID> foundUUIDs = waitFor(plugin.getUUIDResolver().resolveUUIDs(lookups));
+
         // Update cached entries
         for (final Entry<String, UUID> entry : foundUUIDs.entrySet()) {
             final String playerName = entry.getKey();
@@ -342,15 +255,28 @@ public class UUIDManager {
             if (plugin.getUUIDStorage().isOutdated(playerName)) {
                 // Update cached values
                 addCachedPlayer(playerName, uuid, playerName);
-            } else {
-                // Do not update if it is not needed.
-                continue;
             }
         }
 
-        // Thread stopped now, collect results
         return uuids;
     }
-    
- 
+
+    /**
+     * Wait for a lookup of the {@link UUIDResolver} to finish.
+     * 
+     * @param lookup
+     *            Lookup to wait for
+     * @return the result of the lookup, or an empty map if it failed.
+     */
+    private static <K, V> Map<K, V> waitFor(final ListenableFuture<Map<K, V>> lookup) {
+        try {
+            return lookup.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException e) {
+            Bukkit.getLogger().warning("Tried to contact Mojang page for UUID lookup but failed.");
+        }
+
+        return new HashMap<K, V>();
+    }
 }
@@ -1,129 +1,181 @@
 package me.armar.plugins.autorank.util.uuid;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+
 import me.armar.plugins.autorank.Autorank;
 import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
-import me.armar.plugins.autorank.util.AutorankTools;
-import me.armar.plugins.autorank.util.AutorankTools.Time;
 
 /**
- * This class is run on startup of the server to refresh all users (if they are
- * outdated). <br>
- * It will run a task that is async that will update all users.
+ * This class refreshes stored uuids and names that are outdated. <br>
+ * Outdated values are still used while they are refreshed, so nobody has to
+ * wait for the Mojang API. The refresh is done in the background by the
+ * {@link UUIDResolver}, which also makes sure that players that could not be
+ * looked up are not requested over and over again.
+ * <p>
+ * When run, it refreshes all stored players that are outdated. Autorank runs
+ * it every hour, async.
  * <p>
  * Date created: 20:02:53 2 sep. 2015
- * 
+ *
  * @author Staartvin
- * 
+ *
  */
 public class UUIDRefresher implements Runnable {
 
-    // Whether this task is running
-    public static boolean isRunning = false;
-
     private final Autorank plugin;
 
+    // Players whose refresh was queued and did not finish yet. Both are
+    // guarded by the lock on refreshingPlayers.
+    private final Set<UUID> refreshingPlayers = new HashSet<UUID>();
+    private final Set<String> refreshingNames = new HashSet<String>();
+
     public UUIDRefresher(final Autorank plugin) {
         this.plugin = plugin;
     }
 
-    /*
-     * (non-Javadoc)
-     * 
-     * @see java.lang.Runnable#run()
+    /**
+     * Look up the names of a group of players in the background and store
+     * them. Players that are already being refreshed are skipped.
+     *
+     * @param uuids
+     *            UUIDs of the players
      */
-    @Override
-    public void run() {
-        isRunning = true;
-
-        // Get a list of all uuid keys.
-        final List<UUID> uuids = plugin.getFlatFileManager().getUUIDKeys(TimeType.TOTAL_TIME);
+    public void refreshPlayers(final Collection<UUID> uuids) {
+        final List<UUID> queued = new ArrayList<UUID>();
+
+        synchronized (refreshingPlayers) {
+            for (final UUID uuid : uuids) {
+                if (refreshingPlayers.add(uuid)) {
+                    queued.add(uuid);
+                }
+            }
+        }
 
-        final List<UUID> notOutdated = new ArrayList<UUID>();
+        if (queued.isEmpty()) {
+            return;
+        }
 
-        plugin.debugMessage("Starting up refreshing uuids...");
-        plugin.debugMessage("Setup will take " + AutorankTools.timeToString(uuids.size() / 110, Time.SECONDS));
+        Futures.addCallback(plugin.getUUIDResolver().resolveNames(queued), new FutureCallback<Map<UUID, String>>() {
 
-        for (int i = 0; i < uuids.size(); i++) {
+            @Override
+            public void onSuccess(final Map<UUID, String> names) {
+                for (final Entry<UUID, String> entry : names.entrySet()) {
+                    plugin.getUUIDStorage().storeUUID(entry.getValue(), entry.getKey(), entry.getValue());
+                }
 
-            // Show progress every 1000
-            if (i % 1000 == 0) {
-                plugin.debugMessage("Setup progress: " + i + "/" + uuids.size());
+                finish();
             }
 
-            final UUID uuid = uuids.get(i);
-
-            final String playerName = plugin.getUUIDStorage().getCachedPlayerName(uuid);
+            @Override
+            public void onFailure(final Throwable t) {
+                finish();
+            }
 
-            if (playerName == null) {
-                continue;
+            private void finish() {
+                synchronized (refreshingPlayers) {
+                    refreshingPlayers.removeAll(queued);
+                }
             }
+        });
+    }
 
-            if (!plugin.getUUIDStorage().isOutdated(playerName)) {
-                // Not outdated, so we don't have to check it.
-                notOutdated.add(uuid);
+    /**
+     * Look up the UUIDs of a group of player names in the background and
+     * store them. Names that are already being refreshed are skipped.
+     *
+     * @param names
+     *            Names of the players
+     */
+    public void refreshNames(final Collection<String> names) {
+        final List<String> queued = new ArrayList<String>();
+
+        synchronized (refreshingPlayers) {
+            for (final String name : names) {
+                if (refreshingNames.add(name.toLowerCase())) {
+                    queued.add(name.toLowerCase());
+                }
             }
         }
 
-        // Remove all not outdated uuids from the list to check.
-        for (final UUID uuid : notOutdated) {
-            uuids.remove(uuid);
+        if (queued.isEmpty()) {
+            return;
         }
 
-        plugin.debugMessage("Setup finished!");
-
-        final int size = uuids.size();
+        Futures.addCallback(plugin.getUUIDResolver().resolveUUIDs(queued), new FutureCallback<Map<String, UUID>>() {
 
-        // This will take longer than an hour, abort the refreshing and let it
-        // only update the value requested.
-        if (size > 1500) {
-            plugin.debugMessage("Tried refreshing uuids, but this will take over an hour. Aborting instead.");
-            plugin.debugMessage("Autorank will manually update a UUID when a player logs in.");
-            return;
-        }
+            @Override
+            public void onSuccess(final Map<String, UUID> uuids) {
+                for (final Entry<String, UUID> entry : uuids.entrySet()) {
+                    plugin.getUUIDStorage().storeUUID(entry.getKey(), entry.getValue(), entry.getKey());
+                }
 
-        // Time spent in seconds to refresh all.
-        int timeSpent = 0;
-        double count = 0;
+                finish();
+            }
 
-        if (size < 600) {
-            // Rougly one second per item
-            timeSpent = size;
-        }
+            @Override
+            public void onFailure(final Throwable t) {
+                finish();
+            }
 
-        // Can only request 600 per 10 minutes.
-        if (size > 600) {
-            count = size / 500.0;
+            private void finish() {
+                synchronized (refreshingPlayers) {
+                    refreshingNames.removeAll(queued);
+                }
+            }
+        });
+    }
 
-            final int countFloored = (int) Math.floor(count);
+    /**
+     * Get the number of players that are being refreshed.
+     *
+     * @return number of queued refreshes.
+     */
+    public int getQueueSize() {
+        synchronized (refreshingPlayers) {
+            return refreshingPlayers.size() + refreshingNames.size();
+        }
+    }
 
-            // First 10 minutes + 20 minutes for each extra loop
-            timeSpent = 600 + (countFloored - 1) * AutorankTools.TICKS_PER_MINUTE;
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+        // Get a list of all uuid keys.
+        final List<UUID> uuids = plugin.getFlatFileManager().getUUIDKeys(TimeType.TOTAL_TIME);
 
-            final double dif = count - countFloored;
+        final List<UUID> outdated = new ArrayList<UUID>();
 
-            // Add remaining stuff.
-            timeSpent += 600 + dif * 500;
-        }
+        plugin.debugMessage("Starting up refreshing uuids...");
 
-        plugin.debugMessage(
-                "Refreshing " + size + " uuids, assuming all uuids are outdated, this will take at max. about");
-        plugin.debugMessage(AutorankTools.timeToString(timeSpent, Time.SECONDS));
+        for (final UUID uuid : uuids) {
 
-        final Map<UUID, String> names = UUIDManager.getPlayers(uuids);
+            final String playerName = plugin.getUUIDStorage().getCachedPlayerName(uuid);
 
-        for (final Entry<UUID, String> entry : names.entrySet()) {
-            final String name = entry.getValue();
-            final UUID uuid = entry.getKey();
+            if (playerName == null) {
+                continue;
+            }
 
-            plugin.getUUIDStorage().storeUUID(name, uuid, name);
+            if (plugin.getUUIDStorage().isOutdated(playerName)) {
+                outdated.add(uuid);
+            }
         }
 
+        plugin.debugMessage("Refreshing " + outdated.size() + " outdated uuids in the background.");
+
+        refreshPlayers(outdated);
     }
 
 }
@@ -0,0 +1,533 @@
+package me.armar.plugins.autorank.util.uuid;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.google.common.base.Function;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Looks up the UUIDs of player names and the names of UUIDs with the Mojang
+ * API. <br>
+ * Lookups run on a small pool of threads and return a future, so the caller
+ * decides whether to wait for the result or not.
+ * <p>
+ * Names that are requested while another request is on its way are sent
+ * together, with at most {@link UUIDFetcher#PROFILES_PER_REQUEST} names per
+ * request. A player that is already being looked up is not requested twice.
+ * Requests are spread out so the rate limit of the API is not exceeded.
+ * <p>
+ * Names and UUIDs without an account, and names and UUIDs whose request
+ * failed, are not requested again for a while. Every time this happens again,
+ * the player is left alone twice as long, up to {@link #MAX_BACKOFF_HOURS}.
+ */
+public class UUIDResolver {
+
+    // Mojang allows 600 requests per 10 minutes.
+    public static final double REQUESTS_PER_SECOND = 1;
+
+    // Minutes to wait before a name or UUID without an account is requested
+    // again.
+    public static final int NOT_FOUND_MINUTES = 60;
+
+    // Minutes to wait before a name or UUID whose request failed is requested
+    // again.
+    public static final int FAILED_MINUTES = 1;
+
+    // Maximum number of hours to wait before a player is requested again.
+    public static final int MAX_BACKOFF_HOURS = 24;
+
+    /**
+     * Remembers the players that could not be looked up, and when they may be
+     * requested again.
+     */
+    private static class Backoff<K> {
+
+        private static class Failure {
+
+            private final int attempts;
+            private final long retryAt;
+
+            private Failure(final int attempts, final long retryAt) {
+                this.attempts = attempts;
+                this.retryAt = retryAt;
+            }
+        }
+
+        private final Ticker ticker;
+
+        // Players are forgotten when they were left alone long enough, so the
+        // waiting time starts over.
+        private final Cache<K, Failure> failures;
+
+        private Backoff(final Ticker ticker) {
+            this.ticker = ticker;
+
+            failures = CacheBuilder.newBuilder().ticker(ticker).maximumSize(10000)
+                    .expireAfterWrite(2 * MAX_BACKOFF_HOURS, TimeUnit.HOURS).build();
+        }
+
+        private boolean isWaiting(final K key) {
+            final Failure failure = failures.getIfPresent(key);
+
+            return failure != null && ticker.read() < failure.retryAt;
+        }
+
+        private void failed(final K key, final int minutes) {
+            final Failure previous = failures.getIfPresent(key);
+            final int attempts = previous == null ? 1 : previous.attempts + 1;
+
+            // Double the waiting time for every failure in a row.
+            final long delay = Math.min(TimeUnit.MINUTES.toNanos(minutes) << Math.min(attempts - 1, 16),
+                    TimeUnit.HOURS.toNanos(MAX_BACKOFF_HOURS));
+
+            failures.put(key, new Failure(attempts, ticker.read() + delay));
+        }
+
+        private void succeeded(final K key) {
+            failures.invalidate(key);
+        }
+
+        private long size() {
+            return failures.size();
+        }
+    }
+
+    private final String profileUrl;
+    private final String sessionUrl;
+
+    private final Logger logger;
+
+    private final RateLimiter rateLimiter;
+
+    // One thread looks up names, the other looks up UUIDs.
+    private final ThreadPoolExecutor executor;
+
+    // Names (in lower case) that are queued or being requested. The queue and
+    // the flag below are guarded by the lock on this map.
+    private final Map<String, SettableFuture<Entry<String, UUID>>> nameLookups =
+            new HashMap<String, SettableFuture<Entry<String, UUID>>>();
+    private final ArrayDeque<String> nameQueue = new ArrayDeque<String>();
+    private boolean resolvingNames = false;
+
+    // UUIDs that are queued or being requested. The queue and the flag below
+    // are guarded by the lock on this map.
+    private final Map<UUID, SettableFuture<String>> uuidLookups = new HashMap<UUID, SettableFuture<String>>();
+    private final ArrayDeque<UUID> uuidQueue = new ArrayDeque<UUID>();
+    private boolean resolvingUUIDs = false;
+
+    // Both are only used while holding the lock on their lookup map.
+    private final Backoff<String> nameBackoff;
+    private final Backoff<UUID> uuidBackoff;
+
+    private volatile boolean shutdown = false;
+
+    private final Runnable nameTask = new Runnable() {
+
+        @Override
+        public void run() {
+            while (true) {
+                synchronized (nameLookups) {
+                    if (nameQueue.isEmpty()) {
+                        resolvingNames = false;
+                        return;
+                    }
+                }
+
+                // Names that are requested while waiting are sent along.
+                rateLimiter.acquire();
+
+                final List<String> batch = new ArrayList<String>();
+
+                synchronized (nameLookups) {
+                    while (batch.size() < UUIDFetcher.PROFILES_PER_REQUEST && !nameQueue.isEmpty()) {
+                        batch.add(nameQueue.poll());
+                    }
+                }
+
+                if (!batch.isEmpty()) {
+                    requestUUIDs(batch);
+                }
+            }
+        }
+    };
+
+    private final Runnable uuidTask = new Runnable() {
+
+        @Override
+        public void run() {
+            while (true) {
+                synchronized (uuidLookups) {
+                    if (uuidQueue.isEmpty()) {
+                        resolvingUUIDs = false;
+                        return;
+                    }
+                }
+
+                rateLimiter.acquire();
+
+                final UUID uuid;
+
+                synchronized (uuidLookups) {
+                    uuid = uuidQueue.poll();
+                }
+
+                if (uuid != null) {
+                    requestName(uuid);
+                }
+            }
+        }
+    };
+
+    /**
+     * Create a resolver that uses the Mojang API.
+     *
+     * @param logger
+     *            Logger to report failed requests to
+     */
+    public UUIDResolver(final Logger logger) {
+        this(logger, UUIDFetcher.PROFILE_URL, NameFetcher.PROFILE_URL, REQUESTS_PER_SECOND);
+    }
+
+    /**
+     * Create a resolver that uses the given API, for instance a local server
+     * that answers like the Mojang API.
+     *
+     * @param logger
+     *            Logger to report failed requests to
+     * @param profileUrl
+     *            URL that the names to look up are posted to
+     * @param sessionUrl
+     *            URL that a UUID is appended to, to look up its name
+     * @param requestsPerSecond
+     *            Maximum number of requests per second
+     */
+    public UUIDResolver(final Logger logger, final String profileUrl, final String sessionUrl,
+            final double requestsPerSecond) {
+        this(logger, profileUrl, sessionUrl, requestsPerSecond, Ticker.systemTicker());
+    }
+
+    /**
+     * Create a resolver that uses the given API and clock.
+     *
+     * @param logger
+     *            Logger to report failed requests to
+     * @param profileUrl
+     *            URL that the names to look up are posted to
+     * @param sessionUrl
+     *            URL that a UUID is appended to, to look up its name
+     * @param requestsPerSecond
+     *            Maximum number of requests per second
+     * @param ticker
+     *            Clock that decides when a player that could not be looked up
+     *            may be requested again
+     */
+    public UUIDResolver(final Logger logger, final String profileUrl, final String sessionUrl,
+            final double requestsPerSecond, final Ticker ticker) {
+        this.logger = logger;
+        this.profileUrl = profileUrl;
+        this.sessionUrl = sessionUrl;
+
+        rateLimiter = RateLimiter.create(requestsPerSecond);
+
+        executor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setNameFormat("Autorank UUID resolver %d").setDaemon(true).build());
+
+        // Threads are only kept while there is something to look up.
+        executor.allowCoreThreadTimeOut(true);
+
+        nameBackoff = new Backoff<String>(ticker);
+        uuidBackoff = new Backoff<UUID>(ticker);
+    }
+
+    /**
+     * Look up the UUIDs of a group of players.
+     *
+     * @param names
+     *            Names of the players, in any case
+     * @return a future of the UUID of every player that has an account, by
+     *         the name as Mojang spells it. Players that could not be looked
+     *         up, now or recently, are left out.
+     */
+    public ListenableFuture<Map<String, UUID>> resolveUUIDs(final Collection<String> names) {
+        final List<ListenableFuture<Entry<String, UUID>>> lookups =
+                new ArrayList<ListenableFuture<Entry<String, UUID>>>();
+
+        synchronized (nameLookups) {
+            if (shutdown) {
+                return Futures.immediateFailedFuture(new CancellationException("UUID resolver was shut down"));
+            }
+
+            for (final String name : names) {
+                final String key = name.toLowerCase();
+
+                if (nameBackoff.isWaiting(key)) {
+                    continue;
+                }
+
+                SettableFuture<Entry<String, UUID>> lookup = nameLookups.get(key);
+
+                if (lookup == null) {
+                    lookup = SettableFuture.create();
+
+                    nameLookups.put(key, lookup);
+                    nameQueue.add(key);
+                }
+
+                lookups.add(lookup);
+            }
+
+            if (!resolvingNames && !nameQueue.isEmpty()) {
+                resolvingNames = true;
+                executor.execute(nameTask);
+            }
+        }
+
+        return Futures.transform(Futures.successfulAsList(lookups),
+                new Function<List<Entry<String, UUID>>, Map<String, UUID>>() {
+
+                    @Override
+                    public Map<String, UUID> apply(final List<Entry<String, UUID>> profiles) {
+                        final Map<String, UUID> uuids = new HashMap<String, UUID>();
+
+                        for (final Entry<String, UUID> profile : profiles) {
+                            if (profile != null) {
+                                uuids.put(profile.getKey(), profile.getValue());
+                            }
+                        }
+
+                        return uuids;
+                    }
+                });
+    }
+
+    /**
+     * Look up the names of a group of players.
+     *
+     * @param uuids
+     *            UUIDs of the players
+     * @return a future of the name of every player that has an account.
+     *         Players that could not be looked up, now or recently, are left
+     *         out.
+     */
+    public ListenableFuture<Map<UUID, String>> resolveNames(final Collection<UUID> uuids) {
+        final List<UUID> requested = new ArrayList<UUID>();
+        final List<ListenableFuture<String>> lookups = new ArrayList<ListenableFuture<String>>();
+
+        synchronized (uuidLookups) {
+            if (shutdown) {
+                return Futures.immediateFailedFuture(new CancellationException("UUID resolver was shut down"));
+            }
+
+            for (final UUID uuid : uuids) {
+                if (uuidBackoff.isWaiting(uuid)) {
+                    continue;
+                }
+
+                SettableFuture<String> lookup = uuidLookups.get(uuid);
+
+                if (lookup == null) {
+                    lookup = SettableFuture.create();
+
+                    uuidLookups.put(uuid, lookup);
+                    uuidQueue.add(uuid);
+                }
+
+                requested.add(uuid);
+                lookups.add(lookup);
+            }
+
+            if (!resolvingUUIDs && !uuidQueue.isEmpty()) {
+                resolvingUUIDs = true;
+                executor.execute(uuidTask);
+            }
+        }
+
+        return Futures.transform(Futures.successfulAsList(lookups), new Function<List<String>, Map<UUID, String>>() {
+
+            @Override
+            public Map<UUID, String> apply(final List<String> names) {
+                final Map<UUID, String> players = new HashMap<UUID, String>();
+
+                for (int i = 0; i < names.size(); i++) {
+                    if (names.get(i) != null) {
+                        players.put(requested.get(i), names.get(i));
+                    }
+                }
+
+                return players;
+            }
+        });
+    }
+
+    /**
+     * Get the number of names and UUIDs that are waiting to be looked up.
+     *
+     * @return number of queued lookups.
+     */
+    public int getQueueSize() {
+        int size;
+
+        synchronized (nameLookups) {
+            size = nameQueue.size();
+        }
+
+        synchronized (uuidLookups) {
+            size += uuidQueue.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * Get the number of names and UUIDs that recently could not be looked up.
+     *
+     * @return number of players that could not be looked up.
+     */
+    public long getBackoffSize() {
+        long size;
+
+        synchronized (nameLookups) {
+            size = nameBackoff.size();
+        }
+
+        synchronized (uuidLookups) {
+            size += uuidBackoff.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * Stop looking up players. Lookups that did not finish yet are cancelled.
+     */
+    public void shutdown() {
+        final List<SettableFuture<?>> cancelled = new ArrayList<SettableFuture<?>>();
+
+        synchronized (nameLookups) {
+            synchronized (uuidLookups) {
+                shutdown = true;
+                executor.shutdownNow();
+
+                cancelled.addAll(nameLookups.values());
+                cancelled.addAll(uuidLookups.values());
+
+                nameLookups.clear();
+                nameQueue.clear();
+                uuidLookups.clear();
+                uuidQueue.clear();
+            }
+        }
+
+        for (final SettableFuture<?> lookup : cancelled) {
+            lookup.cancel(false);
+        }
+    }
+
+    private void requestUUIDs(final List<String> batch) {
+        Map<String, UUID> found = null;
+        Exception error = null;
+
+        try {
+            found = UUIDFetcher.fetch(profileUrl, batch);
+        } catch (final Exception e) {
+            error = e;
+            logger.warning("Tried to contact Mojang page for UUID lookup but failed: " + e.getMessage());
+        }
+
+        final Map<String, Entry<String, UUID>> profiles = new HashMap<String, Entry<String, UUID>>();
+
+        if (found != null) {
+            for (final Entry<String, UUID> entry : found.entrySet()) {
+                profiles.put(entry.getKey().toLowerCase(),
+                        new SimpleImmutableEntry<String, UUID>(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        final Map<String, SettableFuture<Entry<String, UUID>>> finished =
+                new HashMap<String, SettableFuture<Entry<String, UUID>>>();
+
+        synchronized (nameLookups) {
+            for (final String key : batch) {
+                final SettableFuture<Entry<String, UUID>> lookup = nameLookups.remove(key);
+
+                if (lookup != null) {
+                    finished.put(key, lookup);
+                }
+
+                if (error != null) {
+                    nameBackoff.failed(key, FAILED_MINUTES);
+                } else if (!profiles.containsKey(key)) {
+                    nameBackoff.failed(key, NOT_FOUND_MINUTES);
+                } else {
+                    nameBackoff.succeeded(key);
+                }
+            }
+        }
+
+        // Complete the lookups outside of the lock, as this runs their
+        // listeners.
+        for (final Entry<String, SettableFuture<Entry<String, UUID>>> entry : finished.entrySet()) {
+            if (error != null) {
+                entry.getValue().setException(error);
+            } else {
+                entry.getValue().set(profiles.get(entry.getKey()));
+            }
+        }
+    }
+
+    private void requestName(final UUID uuid) {
+        String name = null;
+        Exception error = null;
+
+        try {
+            name = NameFetcher.fetch(sessionUrl, uuid);
+        } catch (final Exception e) {
+            error = e;
+            logger.warning("Tried to contact Mojang page for name lookup but failed: " + e.getMessage());
+        }
+
+        final SettableFuture<String> lookup;
+
+        synchronized (uuidLookups) {
+            lookup = uuidLookups.remove(uuid);
+
+            if (error != null) {
+                uuidBackoff.failed(uuid, FAILED_MINUTES);
+            } else if (name == null) {
+                uuidBackoff.failed(uuid, NOT_FOUND_MINUTES);
+            } else {
+                uuidBackoff.succeeded(uuid);
+            }
+        }
+
+        if (lookup == null) {
+            return;
+        }
+
+        if (error != null) {
+            lookup.setException(error);
+        } else {
+            lookup.set(name);
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package me.armar.plugins.autorank.util.uuid.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Binary storage of the uuids that Autorank has looked up. <br>
+ * The data is kept in two files:
+ * <ul>
+ * <li><i>name</i>.dat: a snapshot of all stored players</li>
+ * <li><i>name</i>.log: an append-only log of every change made after the
+ * snapshot was written</li>
+ * </ul>
+ * Saving only appends the changes since the last save to the log. Once the
+ * log holds more records than there are players, the two are compacted into a
+ * new snapshot.
+ */
+public class UUIDDataFile {
+
+    /**
+     * A player whose uuid is stored.
+     */
+    public static class Record {
+
+        private final UUID uuid;
+        private final String name;
+        private final String realName;
+        private final long updateTime;
+
+        /**
+         * Create a new record.
+         *
+         * @param uuid
+         *            UUID of the player
+         * @param name
+         *            Lower case name of the player
+         * @param realName
+         *            Name of the player with proper capitalisation, can be
+         *            null
+         * @param updateTime
+         *            Time (in milliseconds) the uuid was last stored
+         */
+        public Record(final UUID uuid, final String name, final String realName, final long updateTime) {
+            this.uuid = uuid;
+            this.name = name;
+            this.realName = realName;
+            this.updateTime = updateTime;
+        }
+
+        public UUID getUUID() {
+            return uuid;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getRealName() {
+            return realName;
+        }
+
+        public long getUpdateTime() {
+            return updateTime;
+        }
+    }
+
+    // Header of a snapshot file
+    private static final int MAGIC = 0x41525555; // "ARUU"
+
+    // Header of a log file
+    private static final int LOG_MAGIC = 0x4152554C; // "ARUL"
+    private static final int LOG_HEADER_SIZE = 4 + 4;
+
+    private static final int VERSION = 1;
+
+    // Operations in the change log
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    // A record holds two names of at most 65535 bytes each, anything larger
+    // was only partly written.
+    private static final int MAX_RECORD_SIZE = 256 * 1024;
+
+    // Never compact when the log holds fewer records than this.
+    private static final int MIN_COMPACT_RECORDS = 4096;
+
+    private final File snapshotFile, logFile;
+    private final Logger logger;
+
+    // Changes that still have to be appended to the log.
+    private final ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pending = new DataOutputStream(pendingBytes);
+
+    // Buffer for a single record, records are prefixed with their length.
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+
+    // Number of records in the log file on disk.
+    private int loggedRecords = 0;
+
+    // Makes sure only one thread writes to disk at a time.
+    private final Object ioLock = new Object();
+
+    public UUIDDataFile(final File folder, final String name, final Logger logger) {
+        this.snapshotFile = new File(folder, name + ".dat");
+        this.logFile = new File(folder, name + ".log");
+        this.logger = logger;
+    }
+
+    /**
+     * Check whether anything was stored in this file before.
+     *
+     * @return true if the snapshot or the log exists, false otherwise.
+     */
+    public boolean exists() {
+        return snapshotFile.exists() || logFile.exists();
+    }
+
+    /**
+     * Load the snapshot and replay the change log on top of it.
+     *
+     * @return every stored player, by lower case name.
+     */
+    public Map<String, Record> load() {
+        final Map<String, Record> records = new HashMap<String, Record>();
+
+        synchronized (ioLock) {
+            synchronized (this) {
+                pendingBytes.reset();
+                loggedRecords = 0;
+
+                try {
+                    readSnapshot(records);
+                    loggedRecords = replayLog(records);
+                } catch (final IOException e) {
+                    logger.log(Level.SEVERE, "Could not load uuids from " + snapshotFile.getName(), e);
+                }
+            }
+        }
+
+        return records;
+    }
+
+    public synchronized void recordPut(final Record player) {
+        try {
+            record.writeByte(OP_PUT);
+            writeRecord(record, player);
+        } catch (final IOException e) {
+            // Cannot happen for a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+
+        flushRecord();
+    }
+
+    public synchronized void recordRemove(final String name) {
+        try {
+            record.writeByte(OP_REMOVE);
+            record.writeUTF(name);
+        } catch (final IOException e) {
+            // Cannot happen for a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+
+        flushRecord();
+    }
+
+    /**
+     * Append all pending changes to the log and compact the log into a new
+     * snapshot if it has grown too large. This blocks, so run it async.
+     *
+     * @param records
+     *            All stored players. Changes to it have to be recorded while
+     *            holding its lock.
+     */
+    public void save(final Map<String, Record> records) {
+        synchronized (ioLock) {
+            try {
+                appendPending();
+
+                final int logged;
+                final int size;
+
+                synchronized (this) {
+                    logged = loggedRecords;
+                }
+
+                synchronized (records) {
+                    size = records.size();
+                }
+
+                if (logged >= MIN_COMPACT_RECORDS && logged > size) {
+                    compact(records);
+                }
+            } catch (final IOException e) {
+                logger.log(Level.SEVERE, "Could not save uuids to " + logFile.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Write a new snapshot containing all stored players and empty the change
+     * log. This blocks, so run it async.
+     *
+     * @param records
+     *            All stored players. Changes to it have to be recorded while
+     *            holding its lock.
+     */
+    public void compact(final Map<String, Record> records) {
+        synchronized (ioLock) {
+            try {
+                writeSnapshot(records);
+            } catch (final IOException e) {
+                logger.log(Level.SEVERE, "Could not save uuids to " + snapshotFile.getName(), e);
+            }
+        }
+    }
+
+    private void writeSnapshot(final Map<String, Record> records) throws IOException {
+        final List<Record> copy;
+        final int covered;
+
+        // Changes are recorded while the map is locked, so the pending changes
+        // are exactly those that end up in the copy. They are only dropped
+        // once the snapshot is in place, so they are not lost when writing
+        // fails.
+        synchronized (records) {
+            copy = new ArrayList<Record>(records.values());
+
+            synchronized (this) {
+                covered = pendingBytes.size();
+            }
+        }
+
+        if (!snapshotFile.getParentFile().exists()) {
+            snapshotFile.getParentFile().mkdirs();
+        }
+
+        final File tempFile = new File(snapshotFile.getPath() + ".tmp");
+
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024));
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(copy.size());
+
+            for (final Record player : copy) {
+                writeRecord(out, player);
+            }
+        } finally {
+            out.close();
+        }
+
+        Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        // Keep the changes that were recorded after the copy was made.
+        synchronized (this) {
+            final byte[] bytes = pendingBytes.toByteArray();
+
+            pendingBytes.reset();
+            pendingBytes.write(bytes, covered, bytes.length - covered);
+        }
+
+        // The snapshot holds everything the log contained, so start over.
+        new FileOutputStream(logFile, false).close();
+
+        synchronized (this) {
+            loggedRecords = 0;
+        }
+    }
+
+    private void appendPending() throws IOException {
+        final byte[] bytes;
+        final int records;
+
+        synchronized (this) {
+            if (pendingBytes.size() == 0) {
+                return;
+            }
+
+            bytes = pendingBytes.toByteArray();
+            records = countRecords(bytes);
+            pendingBytes.reset();
+        }
+
+        if (!logFile.getParentFile().exists()) {
+            logFile.getParentFile().mkdirs();
+        }
+
+        final boolean newLog = logFile.length() == 0;
+
+        final FileOutputStream fileOut = new FileOutputStream(logFile, true);
+        final DataOutputStream out = new DataOutputStream(fileOut);
+
+        try {
+            if (newLog) {
+                out.writeInt(LOG_MAGIC);
+                out.writeInt(VERSION);
+            }
+
+            out.write(bytes);
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        synchronized (this) {
+            loggedRecords += records;
+        }
+    }
+
+    // Must be called while holding the lock on this.
+    private void flushRecord() {
+        try {
+            pending.writeInt(recordBytes.size());
+            recordBytes.writeTo(pending);
+        } catch (final IOException e) {
+            // Cannot happen for a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+
+        recordBytes.reset();
+    }
+
+    private static int countRecords(final byte[] bytes) {
+        int count = 0;
+        int position = 0;
+
+        while (position < bytes.length) {
+            final int length = ((bytes[position] & 0xFF) << 24) | ((bytes[position + 1] & 0xFF) << 16)
+                    | ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+
+            position += 4 + length;
+            count++;
+        }
+
+        return count;
+    }
+
+    private static void writeRecord(final DataOutput out, final Record player) throws IOException {
+        out.writeLong(player.uuid.getMostSignificantBits());
+        out.writeLong(player.uuid.getLeastSignificantBits());
+        out.writeUTF(player.name);
+        out.writeBoolean(player.realName != null);
+
+        if (player.realName != null) {
+            out.writeUTF(player.realName);
+        }
+
+        out.writeLong(player.updateTime);
+    }
+
+    private static Record readRecord(final DataInput in) throws IOException {
+        final UUID uuid = new UUID(in.readLong(), in.readLong());
+        final String name = in.readUTF();
+        final String realName = in.readBoolean() ? in.readUTF() : null;
+
+        return new Record(uuid, name, realName, in.readLong());
+    }
+
+    private void readSnapshot(final Map<String, Record> records) throws IOException {
+        if (!snapshotFile.exists()) {
+            return;
+        }
+
+        final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(snapshotFile), 64 * 1024));
+
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(snapshotFile.getName() + " is not an Autorank uuid file!");
+            }
+
+            final int version = in.readInt();
+
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of " + snapshotFile.getName());
+            }
+
+            final int count = in.readInt();
+
+            for (int i = 0; i < count; i++) {
+                final Record player = readRecord(in);
+
+                records.put(player.name, player);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private int replayLog(final Map<String, Record> records) throws IOException {
+        if (!logFile.exists() || logFile.length() == 0) {
+            return 0;
+        }
+
+        // The header was only partly written, so there are no records yet.
+        if (logFile.length() < LOG_HEADER_SIZE) {
+            new FileOutputStream(logFile, false).close();
+            return 0;
+        }
+
+        int count = 0;
+        long validLength = LOG_HEADER_SIZE;
+
+        final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(logFile), 64 * 1024));
+
+        try {
+            if (in.readInt() != LOG_MAGIC) {
+                throw new IOException(logFile.getName() + " is not an Autorank uuid file!");
+            }
+
+            final int version = in.readInt();
+
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of " + logFile.getName());
+            }
+
+            while (true) {
+                final byte[] bytes;
+
+                try {
+                    final int length = in.readInt();
+
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        logger.warning("Found invalid record in " + logFile.getName() + ", ignoring the rest of it.");
+                        break;
+                    }
+
+                    bytes = new byte[length];
+                    in.readFully(bytes);
+                } catch (final EOFException e) {
+                    // End of the log, or a record that was only partly
+                    // written when the server went down.
+                    break;
+                }
+
+                final DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(bytes));
+                final byte op = recordIn.readByte();
+
+                if (op == OP_PUT) {
+                    final Record player = readRecord(recordIn);
+
+                    records.put(player.name, player);
+                } else if (op == OP_REMOVE) {
+                    records.remove(recordIn.readUTF());
+                } else {
+                    logger.warning("Found invalid record in " + logFile.getName() + ", ignoring the rest of it.");
+                    break;
+                }
+
+                validLength += 4 + bytes.length;
+                count++;
+            }
+        } finally {
+            in.close();
+        }
+
+        // Cut off a partly written record, so new records are appended at the
+        // right position.
+        if (logFile.length() != validLength) {
+            final RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+
+            try {
+                file.setLength(validLength);
+            } finally {
+                file.close();
+            }
+        }
+
+        return count;
+    }
+}
@@ -1,15 +1,12 @@
 package me.armar.plugins.autorank.util.uuid.storage;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.Map;
 import java.util.UUID;
-import java.util.logging.Level;
 
 import org.bukkit.ChatColor;
 import org.bukkit.configuration.file.FileConfiguration;
@@ -17,28 +14,40 @@ import org.bukkit.configuration.file.YamlConfiguration;
 
 import me.armar.plugins.autorank.Autorank;
 import me.armar.plugins.autorank.util.AutorankTools;
+import me.armar.plugins.autorank.util.uuid.storage.UUIDDataFile.Record;
 
 /**
- * This class represents a multitude of files where are looked up uuids are
- * stored. </br>
+ * This class represents the storage of all uuids that were looked up. </br>
  * Every player has its own uuid, which is stored with the time it was last
  * stored.
  * <p>
+ * All uuids are kept in memory and stored in a single {@link UUIDDataFile}.
+ * Saving only writes the uuids that changed since the last save.
+ * <p>
  * Date created: 15:35:30 13 okt. 2014
- * 
+ *
  * @author Staartvin
- * 
+ *
  */
 public class UUIDStorage {
 
-    private final HashMap<String, File> configFiles = new HashMap<String, File>();
-    private final HashMap<String, FileConfiguration> configs = new HashMap<String, FileConfiguration>();
+    // Every stored player, by lower case name. Changes are made while holding
+    // the lock on this map.
+    private final Map<String, Record> players = new HashMap<String, Record>();
+
+    // Lower case name of every stored uuid, so lookups do not have to search
+    // through all players.
+    private final Map<UUID, String> namesByUUID = new HashMap<UUID, String>();
 
     private final String desFolder;
 
+    private final UUIDDataFile dataFile;
+
     // Expiration date in hours
     private final int expirationDate = 24;
 
+    // Suffixes of the YAML files that were used before all uuids were stored
+    // in a single file.
     private final List<String> fileSuffixes = Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l",
             "m", "n", "o", "p", "q", "r", "s", "t", "u", "v", "w", "x", "y", "z", "other");
 
@@ -49,6 +58,8 @@ public class UUIDStorage {
 
         desFolder = plugin.getDataFolder() + "/uuids";
 
+        dataFile = new UUIDDataFile(new File(desFolder), "uuids", plugin.getLogger());
+
         // Run save task every 2 minutes
         plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, new Runnable() {
             @Override
@@ -59,53 +70,48 @@ public class UUIDStorage {
     }
 
     public void createNewFiles() {
+        plugin.debugMessage("Loading uuids ...");
 
-        for (final String suffix : fileSuffixes) {
-            plugin.debugMessage("Loading uuids_" + suffix + " ...");
-
-            reloadConfig(suffix);
-            loadConfig(suffix);
-        }
+        final boolean migrate = !dataFile.exists();
 
-        // Convert old format to new UUID storage format
-        // convertNamesToUUIDs();
+        final Map<String, Record> loaded = dataFile.load();
 
-        plugin.debugMessage(ChatColor.RED + "Loaded stored uuids.");
-    }
+        synchronized (players) {
+            players.clear();
+            namesByUUID.clear();
 
-    public FileConfiguration findCorrectConfig(String playerName) {
+            for (final Record player : loaded.values()) {
+                addToIndex(player);
+            }
+        }
 
-        // Everything is now stored in lowercase.
-        playerName = playerName.toLowerCase();
+        // Convert old YAML files to the new UUID storage format
+        if (migrate) {
+            migrateYamlFiles();
+        }
 
-        final String key = findMatchingKey(playerName);
+        plugin.debugMessage(ChatColor.RED + "Loaded " + players.size() + " stored uuids.");
+    }
 
-        final FileConfiguration config = configs.get(key);
+    /**
+     * Import the uuids of the YAML files that were used before, write them to
+     * the new file and rename the old files so they are not imported again.
+     */
+    private void migrateYamlFiles() {
+        int imported = 0;
 
-        return config;
-    }
+        final List<File> oldFiles = new ArrayList<File>();
 
-    public String findMatchingKey(String text) {
-        text = text.toLowerCase();
+        for (final String suffix : fileSuffixes) {
+            final File file = new File(desFolder, "uuids_" + suffix + ".yml");
 
-        for (final String key : fileSuffixes) {
-            // Don't check for that one.
-            if (key.equals("other"))
+            if (!file.exists()) {
                 continue;
-
-            // Check if name starts with letter
-            if (text.startsWith(key)) {
-                return key;
             }
-        }
 
-        // return 'uuids_other.yml'
-        return "other";
-    }
+            oldFiles.add(file);
 
-    public String getCachedPlayerName(final UUID uuid) {
-        for (final String suffix : fileSuffixes) {
-            final FileConfiguration config = getConfig(suffix);
+            final FileConfiguration config = YamlConfiguration.loadConfiguration(file);
 
             for (final String fPlayerName : config.getKeys(false)) {
                 final String fuuid = config.getString(fPlayerName + ".uuid");
@@ -114,37 +120,52 @@ public class UUIDStorage {
                 if (fuuid == null)
                     continue;
 
-                if (fuuid.equals(uuid.toString())) {
-                    return fPlayerName;
+                final UUID uuid;
+
+                try {
+                    uuid = UUID.fromString(fuuid);
+                } catch (final IllegalArgumentException e) {
+                    continue;
+                }
+
+                final Object realName = config.get(fPlayerName + ".realName", null);
+
+                // Names are stored in lower case since 3.7.1.
+                final Record player = new Record(uuid, fPlayerName.toLowerCase(),
+                        realName != null ? realName.toString() : null, config.getLong(fPlayerName + ".updateTime", 0));
+
+                synchronized (players) {
+                    if (!players.containsKey(player.getName())) {
+                        addToIndex(player);
+                        imported++;
+                    }
                 }
             }
         }
 
-        return null;
-    }
-
-    public String getCachedPlayerName(final UUID uuid, final String key) {
-        final FileConfiguration config = configs.get(key);
+        if (oldFiles.isEmpty()) {
+            return;
+        }
 
-        for (final String fPlayerName : config.getKeys(false)) {
-            final String fuuid = config.getString(fPlayerName + ".uuid");
+        dataFile.compact(players);
 
-            if (fuuid.equals(uuid.toString())) {
-                return fPlayerName;
+        for (final File file : oldFiles) {
+            if (!file.renameTo(new File(file.getPath() + ".old"))) {
+                plugin.getLogger().warning("Could not rename " + file.getName() + ", please remove it yourself.");
             }
         }
 
-        return null;
+        plugin.getLogger().info("Moved " + imported + " uuids from " + oldFiles.size() + " YAML files to "
+                + desFolder + File.separator + "uuids.dat");
     }
 
-    public FileConfiguration getConfig(final String key) {
-        final FileConfiguration config = configs.get(key);
+    public String getCachedPlayerName(final UUID uuid) {
+        if (uuid == null)
+            return null;
 
-        if (config == null) {
-            this.reloadConfig(key);
+        synchronized (players) {
+            return namesByUUID.get(uuid);
         }
-
-        return config;
     }
 
     public int getLastUpdateTime(String playerName) {
@@ -152,13 +173,17 @@ public class UUIDStorage {
         // Everything is now stored in lowercase.
         playerName = playerName.toLowerCase();
 
-        final long lastUpdateTime = findCorrectConfig(playerName).getLong(playerName + ".updateTime", -1);
+        final Record player;
+
+        synchronized (players) {
+            player = players.get(playerName);
+        }
 
-        if (lastUpdateTime < 0) {
+        if (player == null || player.getUpdateTime() < 0) {
             return -1;
         }
 
-        final long difference = System.currentTimeMillis() - lastUpdateTime;
+        final long difference = System.currentTimeMillis() - player.getUpdateTime();
 
         final int timeDifference = Math.round(difference / 3600000);
 
@@ -166,35 +191,32 @@ public class UUIDStorage {
     }
 
     public String getRealName(final UUID uuid) {
-        // Returns the real name of the player, or the cached lower case name if
-        // no real name exists.
-        final String cachedName = this.getCachedPlayerName(uuid);
-
-        if (cachedName == null)
+        // Returns the real name of the player, or null if no real name
+        // exists.
+        if (uuid == null)
             return null;
 
-        final FileConfiguration config = this.findCorrectConfig(cachedName);
+        synchronized (players) {
+            final String cachedName = namesByUUID.get(uuid);
 
-        if (config == null)
-            return null;
+            if (cachedName == null)
+                return null;
 
-        final Object realNameObject = config.get(cachedName + ".realName", null);
+            final Record player = players.get(cachedName);
 
-        return (realNameObject != null ? realNameObject.toString() : null);
+            return player == null ? null : player.getRealName();
+        }
     }
 
-    public UUID getStoredUUID(String playerName) {
+    public UUID getStoredUUID(final String playerName) {
+        final Record player;
 
         // Everything is now stored in lowercase.
-        playerName = playerName.toLowerCase();
-
-        final String uuidString = findCorrectConfig(playerName).getString(playerName + ".uuid", null);
-
-        if (uuidString == null) {
-            return null;
+        synchronized (players) {
+            player = players.get(playerName.toLowerCase());
         }
 
-        return UUID.fromString(uuidString);
+        return player == null ? null : player.getUUID();
     }
 
     public boolean hasRealName(final UUID uuid) {
@@ -205,10 +227,6 @@ public class UUIDStorage {
         return getCachedPlayerName(uuid) != null;
     }
 
-    public boolean isAlreadyStored(final UUID uuid, final String key) {
-        return getCachedPlayerName(uuid, key) != null;
-    }
-
     public boolean isOutdated(String playerName) {
 
         // Everything is now stored in lowercase.
@@ -218,160 +236,90 @@ public class UUIDStorage {
         return (time > expirationDate || time < 0);
     }
 
-    public void loadConfig(final String key) {
-
-        final FileConfiguration config = configs.get(key);
-
-        config.options().header("This file stores all uuids of players that Autorank has looked up before."
-                + "\nEach file stores accounts with the starting letter of the player's name.");
-
-        config.options().copyDefaults(true);
-        saveConfig(key);
-    }
-
-    public void reloadConfig(final String key) {
-        File configFile = null;
-        FileConfiguration config = null;
-
-        if (!configFiles.containsKey(key) || configFiles.get(key) == null) {
-            configFile = new File(desFolder, "uuids_" + key + ".yml");
-        }
-        config = YamlConfiguration.loadConfiguration(configFile);
-
-        // Store new configs
-        configs.put(key, config);
-        configFiles.put(key, configFile);
-    }
-
     public void saveAllFiles() {
-        for (final String suffix : fileSuffixes) {
-            saveConfig(suffix);
-        }
-    }
-
-    public void saveConfig(final String key) {
-        final File configFile = configFiles.get(key);
-        final FileConfiguration config = configs.get(key);
-
-        if (config == null || configFile == null) {
-            return;
-        }
-
-        try {
-            getConfig(key).save(configFile);
-        } catch (final IOException ex) {
-            plugin.getLogger().log(Level.SEVERE, "Could not save config to " + configFile, ex);
-        }
+        // Only the uuids that changed are written.
+        dataFile.save(players);
     }
 
     public void storeUUID(String playerName, final UUID uuid, final String realName) {
-        FileConfiguration config;
-
         // Everything is now stored in lowercase.
         playerName = playerName.toLowerCase();
 
-        // Remove old name and uuid because apparently name was changed.
-        if (isAlreadyStored(uuid)) {
-            // Change name to new name
-            final String oldUser = getCachedPlayerName(uuid);
+        synchronized (players) {
+            final String oldUser = namesByUUID.get(uuid);
 
-            // Change config pointer to correct config
-            config = findCorrectConfig(oldUser);
+            // Remove old name and uuid because apparently name was changed.
+            if (oldUser != null) {
+                final Record oldPlayer = players.get(oldUser);
 
-            // If this player does not have a real name yet, go add it.
-            if (this.getRealName(uuid) == null) {
-                config.set(playerName + ".realName", realName);
-            }
-
-            // Name didn't change, it was just out of date.
-            if (oldUser.equals(playerName)) {
-                // Don't do anything besides updating updateTime.
-                config.set(playerName + ".updateTime", System.currentTimeMillis());
+                // Name didn't change, it was just out of date.
+                if (oldUser.equals(playerName)) {
+                    // If this player does not have a real name yet, go add it.
+                    put(new Record(uuid, playerName,
+                            oldPlayer.getRealName() != null ? oldPlayer.getRealName() : realName,
+                            System.currentTimeMillis()));
+                    return;
+                }
 
-                // plugin.debugMessage("Refreshed user '" + playerName
-                // + "' with uuid " + uuid + "!");
-                return;
+                remove(oldUser);
             }
 
-            config.set(oldUser, null);
-
-            // plugin.debugMessage("Deleting old user '" + oldUser + "'!");
-        }
-
-        config = findCorrectConfig(playerName);
-
-        config.set(playerName + ".uuid", uuid.toString());
-        config.set(playerName + ".updateTime", System.currentTimeMillis());
-
-        if (realName != null) {
-            config.set(playerName + ".realName", realName);
             // The real name is the name of the player with proper
             // capitalisation.
             // The real name is useful for leaderboards.
+            put(new Record(uuid, playerName, realName, System.currentTimeMillis()));
         }
-
-        // plugin.debugMessage("Stored user '" + playerName + "' with uuid "
-        // + uuid + "!");
     }
 
     public void transferUUIDs() {
         // Since Autorank 3.7.1, all names of players are stored lowercase. For
-        // version that update from pre-3.7.1, all names should be converted to
-        // lowercase as well.
-        // This method checks every uuid and converts it to lowercase. It
-        // returns how many uuids it changed.
+        // version that update from pre-3.7.1, all names are converted to
+        // lowercase when the old YAML files are imported.
 
         if (plugin.getInternalPropertiesConfig().hasTransferredUUIDs())
             return; // UUIDs were already successfully converted.
 
-        plugin.getServer().getConsoleSender().sendMessage("[Autorank] " + ChatColor.RED
-                + "Since this is the first time running Autorank 3.7.1, I need to convert your UUID files to a new format.");
-        plugin.getServer().getConsoleSender().sendMessage(
-                "[Autorank] " + ChatColor.RED + "Converting UUID files to new format (3.7.1), this may take a while.");
+        // Changed all names, now update boolean in internal properties.
+        plugin.getInternalPropertiesConfig().hasTransferredUUIDs(true);
+    }
 
-        // Get every name in every file and change it to lowercase.
-        for (final String suffix : fileSuffixes) {
-            final FileConfiguration config = getConfig(suffix);
+    public List<String> getStoredPlayerNames() {
+        // Return all playernames that are stored
+        synchronized (players) {
+            return new ArrayList<>(players.keySet());
+        }
+    }
 
-            // All names that are in this config
-            final Set<String> names = config.getKeys(false);
+    // Must be called while holding the lock on players.
+    private void put(final Record player) {
+        addToIndex(player);
+        dataFile.recordPut(player);
+    }
 
-            for (final String name : names) {
-                // Get old values
-                final String uuidString = config.getString(name + ".uuid");
-                final long updateTime = config.getLong(name + ".updateTime", 0);
+    // Must be called while holding the lock on players.
+    private void remove(final String playerName) {
+        final Record player = players.remove(playerName);
 
-                // Delete old name
-                config.set(name, null);
+        if (player == null)
+            return;
 
-                // Add new (lowercase) name
-                config.set(name.toLowerCase() + ".uuid", uuidString);
-                config.set(name.toLowerCase() + ".updateTime", updateTime);
-            }
+        if (playerName.equals(namesByUUID.get(player.getUUID()))) {
+            namesByUUID.remove(player.getUUID());
         }
 
-        plugin.getServer().getConsoleSender().sendMessage("[Autorank] " + ChatColor.GREEN
-                + "All UUID files were properly converted. Please restart your server!");
-
-        // Changed all names, now update boolean in internal properties.
-        plugin.getInternalPropertiesConfig().hasTransferredUUIDs(true);
+        dataFile.recordRemove(playerName);
     }
-    
-    public List<String> getStoredPlayerNames() {
-        // Return all playernames that are stored in the UUID folders
-        
-        List<String> playerNames = new ArrayList<>();
-        
-        for (Entry<String, FileConfiguration> entry: this.configs.entrySet()) {
-            FileConfiguration config = entry.getValue();
-            
-            for (String playerName : config.getKeys(false)) {
-                playerNames.add(playerName);
-            }
+
+    // Must be called while holding the lock on players.
+    private void addToIndex(final Record player) {
+        final Record previous = players.put(player.getName(), player);
+
+        // Another player used this name before.
+        if (previous != null && !previous.getUUID().equals(player.getUUID())
+                && player.getName().equals(namesByUUID.get(previous.getUUID()))) {
+            namesByUUID.remove(previous.getUUID());
         }
-        
-        return playerNames;
-        
-    }
 
+        namesByUUID.put(player.getUUID(), player.getName());
+    }
 }
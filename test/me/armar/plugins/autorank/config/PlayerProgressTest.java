@@ -0,0 +1,62 @@
+package me.armar.plugins.autorank.config;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link PlayerProgress}.
+ */
+public class PlayerProgressTest {
+
+    @Test
+    public void shouldKnowCompletedRequirements() {
+        // given
+        PlayerProgress progress = new PlayerProgress("Default", Arrays.asList(3, 0, 70), null, null, null);
+
+        // when / then
+        assertThat(progress.hasCompletedRequirement(0), equalTo(true));
+        assertThat(progress.hasCompletedRequirement(70), equalTo(true));
+        assertThat(progress.hasCompletedRequirement(1), equalTo(false));
+        assertThat(progress.hasCompletedRequirement(-1), equalTo(false));
+        assertThat(progress.getCompletedRequirements(), equalTo(Arrays.asList(0, 3, 70)));
+    }
+
+    @Test
+    public void shouldReplaceCompletedRequirements() {
+        // given
+        PlayerProgress progress = new PlayerProgress("Default", Arrays.asList(1, 2), Arrays.asList(4), null, null);
+
+        // when
+        progress.setCompletedRequirements(null);
+
+        // then
+        assertThat(progress.hasCompletedRequirement(1), equalTo(false));
+        assertThat(progress.getCompletedRequirements().isEmpty(), equalTo(true));
+        assertThat(progress.hasCompletedPrerequisite(4), equalTo(true));
+    }
+
+    @Test
+    public void shouldKeepOrderOfPaths() {
+        // given
+        PlayerProgress progress = new PlayerProgress("unknown", null, null, Arrays.asList("B", "A"),
+                Arrays.asList("C"));
+
+        // when
+        List<String> completed = progress.getCompletedPaths();
+        completed.add("D");
+
+        // then
+        assertThat(progress.getCompletedPaths(), equalTo(Arrays.asList("B", "A")));
+        assertThat(progress.hasCompletedPath("A"), equalTo(true));
+        assertThat(progress.hasStartedPath("C"), equalTo(true));
+
+        progress.setStartedPaths(new ArrayList<String>());
+        assertThat(progress.hasStartedPath("C"), equalTo(false));
+    }
+}
@@ -0,0 +1,124 @@
+package me.armar.plugins.autorank.data;
+
+import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link PlaytimeIndex}.
+ */
+public class PlaytimeIndexTest {
+
+    @Test
+    public void shouldReturnZeroForUnknownPlayer() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+
+        // when / then
+        assertThat(index.getTime(UUID.randomUUID(), TimeType.TOTAL_TIME), equalTo(0));
+        assertThat(index.size(), equalTo(0));
+    }
+
+    @Test
+    public void shouldKeepTimeTypesApart() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        UUID uuid = UUID.randomUUID();
+
+        // when
+        index.setTime(uuid, TimeType.TOTAL_TIME, 100);
+        index.addTimeToAll(uuid, 5);
+        index.removeTime(uuid, TimeType.MONTHLY_TIME);
+
+        // then
+        assertThat(index.getTime(uuid, TimeType.TOTAL_TIME), equalTo(105));
+        assertThat(index.getTime(uuid, TimeType.DAILY_TIME), equalTo(5));
+        assertThat(index.contains(uuid, TimeType.MONTHLY_TIME), equalTo(false));
+        assertThat(index.size(TimeType.MONTHLY_TIME), equalTo(0));
+        assertThat(index.size(TimeType.WEEKLY_TIME), equalTo(1));
+    }
+
+    @Test
+    public void shouldFindPlayersAfterGrowingAndRemoving() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        int players = 10000;
+
+        for (int i = 0; i < players; i++) {
+            index.setTime(new UUID(i % 7, i), TimeType.TOTAL_TIME, i);
+        }
+
+        // when
+        for (int i = 0; i < players; i += 2) {
+            index.removeTime(new UUID(i % 7, i), TimeType.TOTAL_TIME);
+        }
+
+        // then
+        assertThat(index.size(), equalTo(players / 2));
+
+        for (int i = 1; i < players; i += 2) {
+            assertThat(index.getTime(new UUID(i % 7, i), TimeType.TOTAL_TIME), equalTo(i));
+        }
+    }
+
+    @Test
+    public void shouldClearSingleTimeType() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        index.setTime(first, TimeType.DAILY_TIME, 10);
+        index.setTime(second, TimeType.DAILY_TIME, 20);
+        index.setTime(second, TimeType.TOTAL_TIME, 30);
+
+        // when
+        index.clear(TimeType.DAILY_TIME);
+
+        // then
+        assertThat(index.size(), equalTo(1));
+        assertThat(index.getTime(first, TimeType.DAILY_TIME), equalTo(0));
+        assertThat(index.getTime(second, TimeType.TOTAL_TIME), equalTo(30));
+    }
+
+    @Test
+    public void shouldKeepPreviousPeriodWhenNewPeriodStarts() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        UUID uuid = UUID.randomUUID();
+
+        index.startPeriod(TimeType.DAILY_TIME, 100);
+        index.addTimeToAll(uuid, 30);
+
+        // when
+        index.startPeriod(TimeType.DAILY_TIME, 101);
+        index.addTimeToAll(uuid, 5);
+
+        // then
+        assertThat(index.getTime(uuid, TimeType.DAILY_TIME), equalTo(5));
+        assertThat(index.getPreviousTime(uuid, TimeType.DAILY_TIME), equalTo(30));
+        assertThat(index.getTime(uuid, TimeType.TOTAL_TIME), equalTo(35));
+    }
+
+    @Test
+    public void shouldReadStaleTimeAsZero() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        UUID uuid = UUID.randomUUID();
+
+        index.startPeriod(TimeType.WEEKLY_TIME, 10);
+        index.setTime(uuid, TimeType.WEEKLY_TIME, 60);
+
+        // when
+        index.startPeriod(TimeType.WEEKLY_TIME, 12);
+
+        // then
+        assertThat(index.getTime(uuid, TimeType.WEEKLY_TIME), equalTo(0));
+        assertThat(index.getPreviousTime(uuid, TimeType.WEEKLY_TIME), equalTo(0));
+        assertThat(index.size(TimeType.WEEKLY_TIME), equalTo(0));
+    }
+}
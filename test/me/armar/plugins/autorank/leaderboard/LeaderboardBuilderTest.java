@@ -0,0 +1,109 @@
+package me.armar.plugins.autorank.leaderboard;
+
+import me.armar.plugins.autorank.data.PlaytimeIndex;
+import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.UUID;
+
+import static me.armar.plugins.autorank.leaderboard.TestPlayers.EVEN_EXEMPTED;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link LeaderboardBuilder}.
+ */
+public class LeaderboardBuilderTest {
+
+    private LeaderboardBuilder builder;
+
+    @After
+    public void stopBuilder() {
+        if (builder != null) {
+            builder.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldFindTopPlayersOfAllTypesWithFewPlayers() {
+        shouldFindTopPlayersOfAllTypes(500);
+    }
+
+    @Test
+    public void shouldFindTopPlayersOfAllTypesWithManyPlayers() {
+        // Enough players to be read by multiple threads.
+        shouldFindTopPlayersOfAllTypes(50000);
+    }
+
+    @Test
+    public void shouldOnlyBuildRequestedTypes() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        index.setTime(new UUID(0, 1), TimeType.DAILY_TIME, 10);
+        builder = new LeaderboardBuilder(index, EVEN_EXEMPTED);
+
+        // when
+        Map<TimeType, TopTimes<UUID>> tops = builder.build(Collections.singleton(TimeType.DAILY_TIME), 5);
+
+        // then
+        assertThat(tops.keySet().size(), equalTo(1));
+        assertThat(tops.get(TimeType.DAILY_TIME).size(), equalTo(1));
+    }
+
+    private void shouldFindTopPlayersOfAllTypes(int players) {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        Random random = new Random(players);
+
+        for (int i = 0; i < players; i++) {
+            for (TimeType type : TimeType.values()) {
+                // Not every player has time for every type.
+                if (random.nextInt(4) != 0) {
+                    index.setTime(new UUID(0, i), type, random.nextInt(100000));
+                }
+            }
+        }
+
+        builder = new LeaderboardBuilder(index, EVEN_EXEMPTED);
+
+        // when
+        Map<TimeType, TopTimes<UUID>> tops = builder.build(Arrays.asList(TimeType.values()), 20);
+
+        // then
+        for (TimeType type : TimeType.values()) {
+            assertThat(times(tops.get(type).toList()), equalTo(sortedTimes(index, type, 20)));
+        }
+    }
+
+    private static List<Integer> sortedTimes(PlaytimeIndex index, TimeType type, int length) {
+        List<Integer> times = new ArrayList<Integer>();
+
+        for (UUID uuid : index.getUUIDs(type)) {
+            if (!EVEN_EXEMPTED.apply(uuid)) {
+                times.add(index.getTime(uuid, type));
+            }
+        }
+
+        Collections.sort(times, Collections.reverseOrder());
+
+        return times.subList(0, Math.min(length, times.size()));
+    }
+
+    private static List<Integer> times(List<Entry<UUID, Integer>> entries) {
+        List<Integer> times = new ArrayList<Integer>();
+
+        for (Entry<UUID, Integer> entry : entries) {
+            times.add(entry.getValue());
+        }
+
+        return times;
+    }
+}
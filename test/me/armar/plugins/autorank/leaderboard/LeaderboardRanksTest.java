@@ -0,0 +1,165 @@
+package me.armar.plugins.autorank.leaderboard;
+
+import me.armar.plugins.autorank.data.PlaytimeIndex;
+import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
+import org.junit.Test;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.UUID;
+
+import static me.armar.plugins.autorank.leaderboard.TestPlayers.EVEN_EXEMPTED;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link LeaderboardRanks}.
+ */
+public class LeaderboardRanksTest {
+
+    @Test
+    public void shouldRankPlayersWithSameTimeEqually() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        LeaderboardRanks ranks = new LeaderboardRanks(index, EVEN_EXEMPTED);
+        index.addChangeListener(ranks);
+
+        index.setTime(new UUID(0, 1), TimeType.TOTAL_TIME, 50);
+        index.setTime(new UUID(0, 3), TimeType.TOTAL_TIME, 50);
+        index.setTime(new UUID(0, 5), TimeType.TOTAL_TIME, 20);
+        index.setTime(new UUID(0, 2), TimeType.TOTAL_TIME, 80);
+
+        // when / then
+        assertThat(ranks.getRank(new UUID(0, 1), TimeType.TOTAL_TIME), equalTo(1));
+        assertThat(ranks.getRank(new UUID(0, 3), TimeType.TOTAL_TIME), equalTo(1));
+        assertThat(ranks.getRank(new UUID(0, 5), TimeType.TOTAL_TIME), equalTo(3));
+        assertThat(ranks.getSize(TimeType.TOTAL_TIME), equalTo(3));
+    }
+
+    @Test
+    public void shouldNotRankExemptedOrUnknownPlayers() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        LeaderboardRanks ranks = new LeaderboardRanks(index, EVEN_EXEMPTED);
+        index.addChangeListener(ranks);
+
+        index.setTime(new UUID(0, 2), TimeType.DAILY_TIME, 80);
+
+        // when / then
+        assertThat(ranks.getRank(new UUID(0, 2), TimeType.DAILY_TIME), equalTo(-1));
+        assertThat(ranks.getRank(new UUID(0, 7), TimeType.DAILY_TIME), equalTo(-1));
+    }
+
+    @Test
+    public void shouldReturnEmptyPageBeyondLastPlayer() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        LeaderboardRanks ranks = new LeaderboardRanks(index, EVEN_EXEMPTED);
+        index.addChangeListener(ranks);
+
+        index.setTime(new UUID(0, 1), TimeType.WEEKLY_TIME, 10);
+
+        // when / then
+        assertThat(ranks.getPage(TimeType.WEEKLY_TIME, 1, 10), empty());
+    }
+
+    @Test
+    public void shouldMatchSortedTimesAfterRandomChanges() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        Random random = new Random(20);
+
+        // Some players are already known before the ranks are made.
+        for (int i = 0; i < 200; i++) {
+            index.setTime(new UUID(0, i), TimeType.TOTAL_TIME, random.nextInt(5000));
+        }
+
+        LeaderboardRanks ranks = new LeaderboardRanks(index, EVEN_EXEMPTED);
+        index.addChangeListener(ranks);
+
+        for (int step = 0; step < 5000; step++) {
+            UUID uuid = new UUID(0, random.nextInt(400));
+            TimeType type = TimeType.values()[random.nextInt(TimeType.values().length)];
+
+            // when
+            int action = random.nextInt(10);
+
+            if (action < 4) {
+                index.addTime(uuid, type, random.nextInt(100));
+            } else if (action < 7) {
+                // Sometimes so much time that the tree has to grow, or that it
+                // is not counted in the tree at all.
+                int bound = random.nextBoolean() ? 3000 : 4 * LeaderboardRanks.MAX_EXACT_MINUTES;
+                index.setTime(uuid, type, random.nextInt(bound));
+            } else if (action < 9) {
+                index.removeTime(uuid, type);
+            } else if (random.nextInt(50) == 0) {
+                index.clear(type);
+            }
+
+            // then
+            if (step % 250 == 0) {
+                for (TimeType checked : TimeType.values()) {
+                    assertMatches(index, ranks, checked, random);
+                }
+            }
+        }
+    }
+
+    private static void assertMatches(PlaytimeIndex index, LeaderboardRanks ranks, TimeType type, Random random) {
+        List<Entry<UUID, Integer>> sorted = sortedPlayers(index, type);
+
+        assertThat(ranks.getSize(type), equalTo(sorted.size()));
+
+        for (Entry<UUID, Integer> entry : sorted) {
+            int expected = 1;
+
+            for (Entry<UUID, Integer> other : sorted) {
+                if (other.getValue() > entry.getValue()) {
+                    expected++;
+                }
+            }
+
+            assertThat(ranks.getRank(entry.getKey(), type), equalTo(expected));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            int offset = random.nextInt(sorted.size() + 5);
+            int limit = 1 + random.nextInt(20);
+
+            List<Entry<UUID, Integer>> expected = sorted.subList(Math.min(offset, sorted.size()),
+                    Math.min(offset + limit, sorted.size()));
+
+            assertThat(ranks.getPage(type, offset, limit), equalTo(expected));
+        }
+    }
+
+    private static List<Entry<UUID, Integer>> sortedPlayers(PlaytimeIndex index, TimeType type) {
+        List<Entry<UUID, Integer>> players = new ArrayList<Entry<UUID, Integer>>();
+
+        for (UUID uuid : index.getUUIDs(type)) {
+            if (!EVEN_EXEMPTED.apply(uuid)) {
+                players.add(new SimpleImmutableEntry<UUID, Integer>(uuid, index.getTime(uuid, type)));
+            }
+        }
+
+        Collections.sort(players, new Comparator<Entry<UUID, Integer>>() {
+            @Override
+            public int compare(Entry<UUID, Integer> first, Entry<UUID, Integer> second) {
+                if (!first.getValue().equals(second.getValue())) {
+                    return second.getValue().compareTo(first.getValue());
+                }
+
+                return first.getKey().compareTo(second.getKey());
+            }
+        });
+
+        return players;
+    }
+}
@@ -0,0 +1,204 @@
+package me.armar.plugins.autorank.leaderboard;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import me.armar.plugins.autorank.data.PlaytimeIndex;
+import me.armar.plugins.autorank.data.flatfile.FlatFileManager.TimeType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link LeaderboardTracker}.
+ */
+public class LeaderboardTrackerTest {
+
+    @Test
+    public void shouldKeepTopPlayersWhenTimeIsAdded() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        LeaderboardTracker tracker = tracker(index, 3, Predicates.<UUID>alwaysFalse());
+        UUID first = new UUID(0, 1);
+        UUID second = new UUID(0, 2);
+        UUID third = new UUID(0, 3);
+        UUID fourth = new UUID(0, 4);
+
+        // when
+        index.setTime(first, TimeType.TOTAL_TIME, 10);
+        index.setTime(second, TimeType.TOTAL_TIME, 20);
+        index.setTime(third, TimeType.TOTAL_TIME, 30);
+        index.setTime(fourth, TimeType.TOTAL_TIME, 5);
+        index.addTime(fourth, TimeType.TOTAL_TIME, 100);
+
+        // then
+        assertThat(uuids(tracker.getTop(TimeType.TOTAL_TIME)), equalTo(list(fourth, third, second)));
+    }
+
+    @Test
+    public void shouldFindPlayerThatWasPassedWhenTopPlayerLosesTime() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        LeaderboardTracker tracker = tracker(index, 1, Predicates.<UUID>alwaysFalse());
+
+        for (int i = 1; i <= 10; i++) {
+            index.setTime(new UUID(0, i), TimeType.DAILY_TIME, i * 10);
+        }
+
+        tracker.getTop(TimeType.DAILY_TIME);
+
+        // when
+        index.setTime(new UUID(0, 10), TimeType.DAILY_TIME, 1);
+        index.setTime(new UUID(0, 9), TimeType.DAILY_TIME, 2);
+        index.removeTime(new UUID(0, 8), TimeType.DAILY_TIME);
+
+        // then
+        assertThat(uuids(tracker.getTop(TimeType.DAILY_TIME)), equalTo(list(new UUID(0, 7))));
+        assertThat(tracker.verify(TimeType.DAILY_TIME), equalTo(true));
+    }
+
+    @Test
+    public void shouldLeaveOutExemptedPlayers() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        final Set<UUID> exempted = new HashSet<UUID>();
+        LeaderboardTracker tracker = tracker(index, 2, new Predicate<UUID>() {
+            @Override
+            public boolean apply(UUID uuid) {
+                return exempted.contains(uuid);
+            }
+        });
+        UUID admin = new UUID(0, 1);
+        UUID player = new UUID(0, 2);
+
+        index.setTime(admin, TimeType.WEEKLY_TIME, 100);
+        index.setTime(player, TimeType.WEEKLY_TIME, 50);
+
+        // when
+        exempted.add(admin);
+        tracker.updateExemption(admin);
+
+        // then
+        assertThat(uuids(tracker.getTop(TimeType.WEEKLY_TIME)), equalTo(list(player)));
+    }
+
+    @Test
+    public void shouldStartOverInNewPeriod() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        LeaderboardTracker tracker = tracker(index, 2, Predicates.<UUID>alwaysFalse());
+        UUID player = new UUID(0, 1);
+
+        index.setTime(player, TimeType.MONTHLY_TIME, 100);
+        tracker.getTop(TimeType.MONTHLY_TIME);
+
+        // when
+        index.startPeriod(TimeType.MONTHLY_TIME, 1);
+
+        // then
+        assertThat(tracker.getTop(TimeType.MONTHLY_TIME).isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void shouldOnlyChangeVersionWhenTopPlayersChange() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        LeaderboardTracker tracker = tracker(index, 1, Predicates.<UUID>alwaysFalse());
+        UUID first = new UUID(0, 1);
+        UUID second = new UUID(0, 2);
+        UUID last = new UUID(0, 3);
+
+        index.setTime(first, TimeType.TOTAL_TIME, 100);
+        index.setTime(second, TimeType.TOTAL_TIME, 50);
+        index.setTime(last, TimeType.TOTAL_TIME, 1);
+        tracker.getTop(TimeType.TOTAL_TIME);
+
+        long version = tracker.getVersion(TimeType.TOTAL_TIME);
+
+        // when
+        index.addTime(last, TimeType.TOTAL_TIME, 1);
+        long afterLastChanged = tracker.getVersion(TimeType.TOTAL_TIME);
+
+        index.addTime(first, TimeType.TOTAL_TIME, 5);
+        long afterFirstChanged = tracker.getVersion(TimeType.TOTAL_TIME);
+
+        // then
+        assertThat(afterLastChanged, equalTo(version));
+        assertThat(afterFirstChanged == version, equalTo(false));
+    }
+
+    @Test
+    public void shouldChangeVersionInNewPeriod() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        LeaderboardTracker tracker = tracker(index, 2, Predicates.<UUID>alwaysFalse());
+
+        index.setTime(new UUID(0, 1), TimeType.WEEKLY_TIME, 100);
+        tracker.getTop(TimeType.WEEKLY_TIME);
+
+        long version = tracker.getVersion(TimeType.WEEKLY_TIME);
+
+        // when
+        index.startPeriod(TimeType.WEEKLY_TIME, 1);
+
+        // then
+        assertThat(tracker.getVersion(TimeType.WEEKLY_TIME) == version, equalTo(false));
+    }
+
+    @Test
+    public void shouldMatchFullSortAfterRandomChanges() {
+        // given
+        PlaytimeIndex index = new PlaytimeIndex();
+        LeaderboardTracker tracker = tracker(index, 10, Predicates.<UUID>alwaysFalse());
+        Random random = new Random(42);
+
+        // when / then
+        for (int i = 0; i < 20000; i++) {
+            UUID uuid = new UUID(0, random.nextInt(500));
+            int action = random.nextInt(10);
+
+            if (action < 7) {
+                index.addTime(uuid, TimeType.TOTAL_TIME, random.nextInt(30));
+            } else if (action < 9) {
+                index.setTime(uuid, TimeType.TOTAL_TIME, random.nextInt(1000));
+            } else {
+                index.removeTime(uuid, TimeType.TOTAL_TIME);
+            }
+
+            if (i % 100 == 0) {
+                assertThat(tracker.verify(TimeType.TOTAL_TIME), equalTo(true));
+            }
+        }
+    }
+
+    private static LeaderboardTracker tracker(PlaytimeIndex index, int length, Predicate<UUID> exempted) {
+        LeaderboardTracker tracker = new LeaderboardTracker(index, length, exempted);
+        index.addChangeListener(tracker);
+        return tracker;
+    }
+
+    private static List<UUID> uuids(List<Entry<UUID, Integer>> top) {
+        List<UUID> uuids = new ArrayList<UUID>();
+
+        for (Entry<UUID, Integer> entry : top) {
+            uuids.add(entry.getKey());
+        }
+
+        return uuids;
+    }
+
+    private static List<UUID> list(UUID... uuids) {
+        List<UUID> list = new ArrayList<UUID>();
+        Collections.addAll(list, uuids);
+        return list;
+    }
+}
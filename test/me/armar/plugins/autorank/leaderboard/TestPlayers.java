@@ -0,0 +1,22 @@
+package me.armar.plugins.autorank.leaderboard;
+
+import com.google.common.base.Predicate;
+
+import java.util.UUID;
+
+/**
+ * Players that are shared by the leaderboard tests.
+ */
+final class TestPlayers {
+
+    // Players with an even UUID are exempted.
+    static final Predicate<UUID> EVEN_EXEMPTED = new Predicate<UUID>() {
+        @Override
+        public boolean apply(UUID uuid) {
+            return uuid.getLeastSignificantBits() % 2 == 0;
+        }
+    };
+
+    private TestPlayers() {
+    }
+}
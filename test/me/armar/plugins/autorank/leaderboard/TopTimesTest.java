@@ -0,0 +1,106 @@
+package me.armar.plugins.autorank.leaderboard;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link TopTimes}.
+ */
+public class TopTimesTest {
+
+    @Test
+    public void shouldKeepPlayersWithMostTime() {
+        // given
+        TopTimes<String> top = new TopTimes<String>(3);
+
+        // when
+        top.offer("a", 5);
+        top.offer("b", 50);
+        top.offer("c", 20);
+        top.offer("d", 1);
+        top.offer("e", 30);
+
+        // then
+        assertThat(keys(top.toList()), equalTo(list("b", "e", "c")));
+        assertThat(top.getThreshold(), equalTo(20));
+    }
+
+    @Test
+    public void shouldKeepFirstPlayerWithSameTime() {
+        // given
+        TopTimes<String> top = new TopTimes<String>(1);
+
+        // when
+        top.offer("first", 10);
+        top.offer("second", 10);
+
+        // then
+        assertThat(keys(top.toList()), equalTo(list("first")));
+    }
+
+    @Test
+    public void shouldMatchFullSort() {
+        // given
+        Random random = new Random(7);
+        List<Integer> times = new ArrayList<Integer>();
+        TopTimes<Integer> top = new TopTimes<Integer>(25);
+
+        // when
+        for (int i = 0; i < 10000; i++) {
+            int time = random.nextInt(100000);
+            times.add(time);
+            top.offer(i, time);
+        }
+
+        // then
+        Collections.sort(times, Collections.reverseOrder());
+        List<Integer> kept = new ArrayList<Integer>();
+
+        for (Entry<Integer, Integer> entry : top.toList()) {
+            kept.add(entry.getValue());
+        }
+
+        assertThat(kept, equalTo(times.subList(0, 25)));
+    }
+
+    @Test
+    public void shouldMergePartialResults() {
+        // given
+        TopTimes<String> first = new TopTimes<String>(2);
+        TopTimes<String> second = new TopTimes<String>(2);
+        first.offer("a", 10);
+        first.offer("b", 40);
+        second.offer("c", 30);
+        second.offer("d", 20);
+
+        // when
+        first.offerAll(second);
+
+        // then
+        assertThat(keys(first.toList()), equalTo(list("b", "c")));
+    }
+
+    private static List<String> keys(List<Entry<String, Integer>> entries) {
+        List<String> keys = new ArrayList<String>();
+
+        for (Entry<String, Integer> entry : entries) {
+            keys.add(entry.getKey());
+        }
+
+        return keys;
+    }
+
+    private static List<String> list(String... values) {
+        List<String> list = new ArrayList<String>();
+        Collections.addAll(list, values);
+        return list;
+    }
+}
@@ -0,0 +1,64 @@
+package me.armar.plugins.autorank.pathbuilder;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link EvaluationOrder}.
+ */
+public class EvaluationOrderTest {
+
+    @Test
+    public void shouldCheckCheapestFirst() {
+        // given
+        List<String> checks = Arrays.asList("script", "world", "stats", "group");
+
+        // when
+        EvaluationOrder<String> order = new EvaluationOrder<String>(checks, new int[] { 100, 1, 100, 1 });
+
+        // then
+        assertThat(order.getOrder(), equalTo(Arrays.asList("world", "group", "script", "stats")));
+    }
+
+    @Test
+    public void shouldMoveChecksThatOftenFailToFront() {
+        // given
+        EvaluationOrder<String> order = new EvaluationOrder<String>(Arrays.asList("money", "items"),
+                new int[] { 10, 10 });
+
+        // when
+        for (int i = 0; i < EvaluationOrder.REORDER_INTERVAL; i++) {
+            order.record("money", true);
+            order.record("items", false);
+            order.finish(0);
+        }
+
+        // then
+        assertThat(order.getOrder(), equalTo(Arrays.asList("items", "money")));
+    }
+
+    @Test
+    public void shouldCountAvoidedEvaluations() {
+        // given
+        EvaluationOrder<String> order = new EvaluationOrder<String>(Arrays.asList("a", "b", "c"),
+                new int[] { 1, 1, 1 });
+
+        // when
+        order.record("a", false);
+        order.finish(2);
+        order.record("a", true);
+        order.record("b", true);
+        order.record("c", true);
+        order.finish(0);
+
+        // then
+        assertThat(order.getPasses(), equalTo(2L));
+        assertThat(order.getEvaluations(), equalTo(4L));
+        assertThat(order.getAvoidedEvaluations(), equalTo(2L));
+    }
+}
@@ -0,0 +1,64 @@
+package me.armar.plugins.autorank.pathbuilder.holders;
+
+import me.armar.plugins.autorank.Autorank;
+import me.armar.plugins.autorank.pathbuilder.requirement.Requirement;
+import me.armar.plugins.autorank.pathbuilder.requirement.Requirement.Trigger;
+import org.junit.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for the triggers of {@link RequirementsHolder}.
+ */
+public class RequirementsHolderTest {
+
+    @Test
+    public void shouldCombineTriggersOfAllRequirements() {
+        // given
+        RequirementsHolder holder = new RequirementsHolder(mock(Autorank.class));
+        holder.addRequirement(requirement(EnumSet.of(Trigger.INVENTORY), false));
+        holder.addRequirement(requirement(EnumSet.of(Trigger.ECONOMY, Trigger.PLAYTIME), false));
+
+        // when
+        Set<Trigger> triggers = holder.getTriggers();
+
+        // then
+        assertThat(triggers, equalTo((Set<Trigger>) EnumSet.of(Trigger.INVENTORY, Trigger.ECONOMY,
+                Trigger.PLAYTIME)));
+    }
+
+    @Test
+    public void shouldDependOnWorldForWorldSpecificRequirements() {
+        // given
+        RequirementsHolder holder = new RequirementsHolder(mock(Autorank.class));
+        holder.addRequirement(requirement(EnumSet.of(Trigger.INVENTORY), true));
+
+        // when
+        Set<Trigger> triggers = holder.getTriggers();
+
+        // then
+        assertThat(triggers, equalTo((Set<Trigger>) EnumSet.of(Trigger.INVENTORY, Trigger.WORLD)));
+    }
+
+    @Test
+    public void shouldHaveNoTriggersWithoutRequirements() {
+        // given
+        RequirementsHolder holder = new RequirementsHolder(mock(Autorank.class));
+
+        // when / then
+        assertThat(holder.getTriggers(), equalTo((Set<Trigger>) EnumSet.noneOf(Trigger.class)));
+    }
+
+    private static Requirement requirement(Set<Trigger> triggers, boolean worldSpecific) {
+        Requirement requirement = mock(Requirement.class);
+        when(requirement.getTriggers()).thenReturn(triggers);
+        when(requirement.isWorldSpecific()).thenReturn(worldSpecific);
+        return requirement;
+    }
+}
@@ -0,0 +1,132 @@
+package me.armar.plugins.autorank.playerchecker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link IntervalSchedule}.
+ */
+public class IntervalScheduleTest {
+
+    @Test
+    public void shouldSpreadOnlinePlayersOverInterval() {
+        // given
+        IntervalSchedule schedule = new IntervalSchedule(100);
+        List<UUID> online = new ArrayList<UUID>();
+
+        for (int i = 0; i < 4; i++) {
+            online.add(new UUID(0, i));
+        }
+
+        schedule.addSpread(online, 0);
+
+        // when / then
+        assertThat(schedule.poll(24), nullValue());
+        assertThat(schedule.poll(25), equalTo(new UUID(0, 0)));
+        assertThat(schedule.poll(49), nullValue());
+        assertThat(schedule.poll(50), equalTo(new UUID(0, 1)));
+        assertThat(schedule.poll(100), equalTo(new UUID(0, 2)));
+        assertThat(schedule.poll(100), equalTo(new UUID(0, 3)));
+        assertThat(schedule.poll(100), nullValue());
+    }
+
+    @Test
+    public void shouldMakeJoinedPlayerDueAfterOneInterval() {
+        // given
+        IntervalSchedule schedule = new IntervalSchedule(100);
+        schedule.add(new UUID(0, 1), 30);
+
+        // when / then
+        assertThat(schedule.poll(129), nullValue());
+        assertThat(schedule.poll(130), equalTo(new UUID(0, 1)));
+        assertThat(schedule.poll(229), nullValue());
+        assertThat(schedule.poll(230), equalTo(new UUID(0, 1)));
+    }
+
+    @Test
+    public void shouldNotDueRemovedPlayers() {
+        // given
+        IntervalSchedule schedule = new IntervalSchedule(100);
+        schedule.add(new UUID(0, 1), 0);
+        schedule.add(new UUID(0, 2), 0);
+
+        // when
+        schedule.remove(new UUID(0, 1));
+
+        // then
+        assertThat(schedule.size(), equalTo(1));
+        assertThat(schedule.poll(100), equalTo(new UUID(0, 2)));
+        assertThat(schedule.poll(100), nullValue());
+    }
+
+    @Test
+    public void shouldCreditLatePlayersOncePerInterval() {
+        // given
+        IntervalSchedule schedule = new IntervalSchedule(10);
+        List<UUID> online = new ArrayList<UUID>();
+
+        for (int i = 0; i < 50; i++) {
+            online.add(new UUID(0, i));
+        }
+
+        schedule.addSpread(online, 0);
+
+        Map<UUID, Integer> credited = new HashMap<UUID, Integer>();
+
+        // when
+        // Only three players fit in a tick, so players fall behind.
+        for (long tick = 1; tick <= 1000; tick++) {
+            for (int i = 0; i < 3; i++) {
+                UUID uuid = schedule.poll(tick);
+
+                if (uuid == null) {
+                    break;
+                }
+
+                Integer count = credited.get(uuid);
+                credited.put(uuid, count == null ? 1 : count + 1);
+            }
+        }
+
+        // Catch up, without time passing.
+        UUID uuid;
+
+        while ((uuid = schedule.poll(1000)) != null) {
+            Integer count = credited.get(uuid);
+            credited.put(uuid, count == null ? 1 : count + 1);
+        }
+
+        // then
+        assertThat(schedule.getBacklog(1000), equalTo(0));
+
+        for (int i = 0; i < online.size(); i++) {
+            // Due on the spread tick, and every ten ticks after that.
+            long firstDue = 10 * (i + 1) / online.size();
+
+            assertThat(credited.get(online.get(i)), equalTo((int) ((1000 - firstDue) / 10 + 1)));
+        }
+    }
+
+    @Test
+    public void shouldCountPlayersThatAreBehind() {
+        // given
+        IntervalSchedule schedule = new IntervalSchedule(100);
+        schedule.add(new UUID(0, 1), 0);
+        schedule.add(new UUID(0, 2), 10);
+        schedule.add(new UUID(0, 3), 20);
+
+        // when / then
+        assertThat(schedule.getBacklog(99), equalTo(0));
+        assertThat(schedule.getBacklog(110), equalTo(2));
+        assertThat(schedule.getBacklog(500), equalTo(3));
+    }
+}
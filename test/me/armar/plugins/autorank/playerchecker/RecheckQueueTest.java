@@ -0,0 +1,100 @@
+package me.armar.plugins.autorank.playerchecker;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link RecheckQueue}.
+ */
+public class RecheckQueueTest {
+
+    private static final UUID FIRST = new UUID(0, 1);
+    private static final UUID SECOND = new UUID(0, 2);
+
+    @Test
+    public void shouldCheckMarkedPlayerOnce() {
+        // given
+        RecheckQueue queue = new RecheckQueue();
+        queue.mark(FIRST, 100, 1000);
+        queue.mark(FIRST, 100, 1000);
+
+        // when / then
+        assertThat(queue.poll(100), equalTo(Collections.singletonList(FIRST)));
+        assertThat(queue.poll(100), empty());
+        assertThat(queue.size(), equalTo(0));
+    }
+
+    @Test
+    public void shouldWaitForGapSinceLastCheck() {
+        // given
+        RecheckQueue queue = new RecheckQueue();
+        queue.mark(FIRST, 0, 1000);
+        queue.poll(0);
+
+        // when
+        queue.mark(FIRST, 200, 1000);
+
+        // then
+        assertThat(queue.poll(999), empty());
+        assertThat(queue.poll(1000), equalTo(Collections.singletonList(FIRST)));
+    }
+
+    @Test
+    public void shouldUseSmallestGapOfMarks() {
+        // given
+        RecheckQueue queue = new RecheckQueue();
+        queue.mark(FIRST, 0, 0);
+        queue.poll(0);
+
+        // when
+        queue.mark(FIRST, 100, 5000);
+        queue.mark(FIRST, 100, 1000);
+
+        // then
+        assertThat(queue.poll(999), empty());
+        assertThat(queue.poll(1000), equalTo(Collections.singletonList(FIRST)));
+    }
+
+    @Test
+    public void shouldOnlyReturnPlayersThatAreDue() {
+        // given
+        RecheckQueue queue = new RecheckQueue();
+        queue.mark(FIRST, 0, 0);
+        queue.mark(SECOND, 0, 0);
+        queue.poll(0);
+
+        // when
+        queue.mark(FIRST, 10, 5000);
+        queue.mark(SECOND, 10, 1000);
+
+        // then
+        assertThat(queue.poll(1000), equalTo(Collections.singletonList(SECOND)));
+        assertThat(queue.poll(5000), equalTo(Collections.singletonList(FIRST)));
+    }
+
+    @Test
+    public void shouldForgetRemovedPlayers() {
+        // given
+        RecheckQueue queue = new RecheckQueue();
+        queue.mark(FIRST, 0, 0);
+        queue.poll(0);
+        queue.mark(FIRST, 10, 1000);
+
+        // when
+        queue.remove(FIRST);
+
+        // then
+        assertThat(queue.size(), equalTo(0));
+
+        // A player that joins again is checked right away.
+        queue.mark(FIRST, 20, 1000);
+        assertThat(queue.poll(20), equalTo(Arrays.asList(FIRST)));
+    }
+}
@@ -0,0 +1,148 @@
+package me.armar.plugins.autorank.playerchecker;
+
+import me.armar.plugins.autorank.Autorank;
+import me.armar.plugins.autorank.pathbuilder.requirement.Requirement;
+import org.bukkit.entity.Player;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for {@link RequirementCache}.
+ */
+public class RequirementCacheTest {
+
+    private static final UUID PLAYER_UUID = new UUID(0, 1);
+
+    private RequirementCache cache;
+    private Player player;
+    private Requirement requirement;
+
+    @Before
+    public void setUp() {
+        cache = new RequirementCache(mock(Autorank.class));
+
+        player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(PLAYER_UUID);
+
+        requirement = mock(Requirement.class);
+        when(requirement.meetsRequirement(player)).thenReturn(true);
+        when(requirement.getProgress(player)).thenReturn("1/2");
+    }
+
+    @Test
+    public void shouldEvaluateRequirementOncePerPass() {
+        // given
+        cache.startPass(PLAYER_UUID);
+
+        // when
+        boolean first = cache.meetsRequirement(requirement, player);
+        boolean second = cache.meetsRequirement(requirement, player);
+        String progress = cache.getProgress(requirement, player);
+        cache.getProgress(requirement, player);
+
+        cache.endPass(PLAYER_UUID);
+
+        // then
+        assertThat(first, equalTo(true));
+        assertThat(second, equalTo(true));
+        assertThat(progress, equalTo("1/2"));
+        verify(requirement, times(1)).meetsRequirement(player);
+        verify(requirement, times(1)).getProgress(player);
+    }
+
+    @Test
+    public void shouldShareResultsWithNestedPasses() {
+        // given
+        cache.startPass(PLAYER_UUID);
+        cache.startPass(PLAYER_UUID);
+
+        // when
+        cache.meetsRequirement(requirement, player);
+        cache.endPass(PLAYER_UUID);
+
+        // The outer pass still remembers the result of the inner pass.
+        cache.meetsRequirement(requirement, player);
+        cache.endPass(PLAYER_UUID);
+
+        // Nothing is remembered after the outer pass.
+        cache.meetsRequirement(requirement, player);
+
+        // then
+        verify(requirement, times(2)).meetsRequirement(player);
+    }
+
+    @Test
+    public void shouldNotRememberResultThatWasInvalidatedWhileEvaluating() {
+        // given
+        // The requirement changes while it is evaluated the first time.
+        when(requirement.meetsRequirement(player)).thenAnswer(new Answer<Boolean>() {
+
+            private int calls;
+
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                if (calls++ == 0) {
+                    cache.invalidate(PLAYER_UUID);
+                    return false;
+                }
+
+                return true;
+            }
+        });
+
+        cache.startPass(PLAYER_UUID);
+
+        // when
+        boolean stale = cache.meetsRequirement(requirement, player);
+        boolean fresh = cache.meetsRequirement(requirement, player);
+        boolean remembered = cache.meetsRequirement(requirement, player);
+
+        cache.endPass(PLAYER_UUID);
+
+        // then
+        assertThat(stale, equalTo(false));
+        assertThat(fresh, equalTo(true));
+        assertThat(remembered, equalTo(true));
+        verify(requirement, times(2)).meetsRequirement(player);
+    }
+
+    @Test
+    public void shouldForgetResultsWhenInvalidated() {
+        // given
+        cache.startPass(PLAYER_UUID);
+        cache.meetsRequirement(requirement, player);
+
+        // when
+        cache.invalidate(PLAYER_UUID);
+        cache.meetsRequirement(requirement, player);
+
+        cache.endPass(PLAYER_UUID);
+
+        // then
+        verify(requirement, times(2)).meetsRequirement(player);
+    }
+
+    @Test
+    public void shouldNotRememberOutsideOfPass() {
+        // when
+        cache.meetsRequirement(requirement, player);
+        cache.meetsRequirement(requirement, player);
+        cache.getProgress(requirement, player);
+        cache.getProgress(requirement, player);
+
+        // then
+        verify(requirement, times(2)).meetsRequirement(player);
+        verify(requirement, times(2)).getProgress(player);
+    }
+}
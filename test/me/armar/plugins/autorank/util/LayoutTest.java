@@ -0,0 +1,61 @@
+package me.armar.plugins.autorank.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link Layout}.
+ */
+public class LayoutTest {
+
+    @Test
+    public void shouldReplacePlaceholders() {
+        // given
+        Layout layout = new Layout("&r. &p has &tm minutes (&th hours)", "&p", "&r", "&tm", "&th");
+
+        // when
+        String result = layout.render("Notch", 1, 150, 2);
+
+        // then
+        assertThat(result, equalTo("1. Notch has 150 minutes (2 hours)"));
+    }
+
+    @Test
+    public void shouldMatchLongestPlaceholderFirst() {
+        // given
+        Layout layout = new Layout("&p is on &path", "&p", "&path");
+
+        // when
+        String result = layout.render("Notch", "Default");
+
+        // then
+        assertThat(result, equalTo("Notch is on Default"));
+    }
+
+    @Test
+    public void shouldKnowWhichPlaceholdersAreUsed() {
+        // given
+        Layout layout = new Layout("&p has played for &time", "&p", "&time", "&globaltime");
+
+        // when / then
+        assertThat(layout.contains("&time"), equalTo(true));
+        assertThat(layout.contains("&globaltime"), equalTo(false));
+    }
+
+    @Test
+    public void shouldRenderSamePlaceholderTwiceAndReuseBuilder() {
+        // given
+        Layout layout = new Layout("&p, &p!", "&p");
+        StringBuilder builder = new StringBuilder();
+
+        // when
+        layout.appendTo(builder, "Notch");
+        builder.setLength(0);
+        layout.appendTo(builder, "Jeb");
+
+        // then
+        assertThat(builder.toString(), equalTo("Jeb, Jeb!"));
+    }
+}
@@ -0,0 +1,279 @@
+package me.armar.plugins.autorank.util.uuid;
+
+import com.google.common.base.Ticker;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link UUIDResolver}, against a local server that answers like the
+ * Mojang API.
+ */
+public class UUIDResolverTest {
+
+    private static final Pattern NAME = Pattern.compile("\"([^\"]*)\"");
+
+    private final AtomicLong now = new AtomicLong();
+
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return now.get();
+        }
+    };
+
+    private HttpServer server;
+    private UUIDResolver resolver;
+
+    // Number of names in every request to the profile API.
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<Integer>();
+    private final AtomicInteger sessionRequests = new AtomicInteger();
+
+    // Number of requests that should fail before the server answers again.
+    private final AtomicInteger failures = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+        server.createContext("/profiles", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (failures.getAndDecrement() > 0) {
+                    respond(exchange, 500, "");
+                    return;
+                }
+
+                Matcher matcher = NAME.matcher(read(exchange.getRequestBody()));
+                StringBuilder profiles = new StringBuilder();
+                int names = 0;
+
+                while (matcher.find()) {
+                    String name = matcher.group(1);
+                    names++;
+
+                    // Only players whose name starts with "player" exist.
+                    if (!name.toLowerCase().startsWith("player")) {
+                        continue;
+                    }
+
+                    profiles.append(profiles.length() == 0 ? "" : ",").append("{\"id\":\"")
+                            .append(uuidOf(name).toString().replace("-", "")).append("\",\"name\":\"")
+                            .append(name.substring(0, 1).toUpperCase()).append(name.substring(1)).append("\"}");
+                }
+
+                batchSizes.add(names);
+                respond(exchange, 200, "[" + profiles + "]");
+            }
+        });
+
+        server.createContext("/session/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                sessionRequests.incrementAndGet();
+
+                String id = exchange.getRequestURI().getPath().substring("/session/".length());
+
+                if (id.startsWith("0000")) {
+                    respond(exchange, 204, null);
+                } else {
+                    respond(exchange, 200, "{\"id\":\"" + id + "\",\"name\":\"Player" + id.substring(0, 4) + "\"}");
+                }
+            }
+        });
+
+        server.start();
+
+        String url = "http://127.0.0.1:" + server.getAddress().getPort();
+        resolver = new UUIDResolver(Logger.getAnonymousLogger(), url + "/profiles", url + "/session/", 1000, ticker);
+    }
+
+    @After
+    public void stopServer() {
+        resolver.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldSendAtMostOneHundredNamesPerRequest() throws Exception {
+        // given
+        List<String> names = new ArrayList<String>();
+
+        for (int i = 0; i < 250; i++) {
+            names.add("player" + i);
+        }
+
+        // when
+        Map<String, UUID> uuids = resolver.resolveUUIDs(names).get(10, TimeUnit.SECONDS);
+
+        // then
+        assertThat(uuids.size(), equalTo(250));
+        assertThat(uuids.get("Player42"), equalTo(uuidOf("player42")));
+        assertThat(batchSizes.size(), equalTo(3));
+
+        for (int size : batchSizes) {
+            assertThat(size, lessThanOrEqualTo(UUIDFetcher.PROFILES_PER_REQUEST));
+        }
+    }
+
+    @Test
+    public void shouldRequestSameNameOnlyOnce() throws Exception {
+        // given
+        List<String> names = Arrays.asList("player1", "PLAYER1", "player2");
+
+        // when
+        Map<String, UUID> first = resolver.resolveUUIDs(names).get(10, TimeUnit.SECONDS);
+        Map<String, UUID> second = resolver.resolveUUIDs(Collections.singletonList("Player2"))
+                .get(10, TimeUnit.SECONDS);
+
+        // then
+        assertThat(first.size(), equalTo(2));
+        assertThat(second.get("Player2"), equalTo(uuidOf("player2")));
+
+        int requested = 0;
+
+        for (int size : batchSizes) {
+            requested += size;
+        }
+
+        // Player2 is requested again, as only unknown names are remembered.
+        assertThat(requested, equalTo(3));
+    }
+
+    @Test
+    public void shouldRememberUnknownNames() throws Exception {
+        // given
+        List<String> names = Collections.singletonList("Notch");
+
+        // when
+        Map<String, UUID> first = resolver.resolveUUIDs(names).get(10, TimeUnit.SECONDS);
+        Map<String, UUID> second = resolver.resolveUUIDs(names).get(10, TimeUnit.SECONDS);
+
+        // then
+        assertThat(first.isEmpty(), equalTo(true));
+        assertThat(second.isEmpty(), equalTo(true));
+        assertThat(batchSizes.size(), equalTo(1));
+    }
+
+    @Test
+    public void shouldRetryFailedRequestsAfterWaiting() throws Exception {
+        // given
+        failures.set(1);
+        List<String> names = Collections.singletonList("player7");
+
+        // when
+        Map<String, UUID> failed = resolver.resolveUUIDs(names).get(10, TimeUnit.SECONDS);
+        Map<String, UUID> waiting = resolver.resolveUUIDs(names).get(10, TimeUnit.SECONDS);
+        advanceMinutes(UUIDResolver.FAILED_MINUTES);
+        Map<String, UUID> retried = resolver.resolveUUIDs(names).get(10, TimeUnit.SECONDS);
+
+        // then
+        assertThat(failed.isEmpty(), equalTo(true));
+        assertThat(waiting.isEmpty(), equalTo(true));
+        assertThat(retried.get("Player7"), equalTo(uuidOf("player7")));
+        assertThat(batchSizes.size(), equalTo(1));
+    }
+
+    @Test
+    public void shouldDoubleWaitingTimeForEveryFailure() throws Exception {
+        // given
+        List<String> names = Collections.singletonList("Notch");
+        resolver.resolveUUIDs(names).get(10, TimeUnit.SECONDS);
+
+        // when
+        advanceMinutes(UUIDResolver.NOT_FOUND_MINUTES);
+        resolver.resolveUUIDs(names).get(10, TimeUnit.SECONDS);
+        int afterFirstWait = batchSizes.size();
+
+        advanceMinutes(UUIDResolver.NOT_FOUND_MINUTES);
+        resolver.resolveUUIDs(names).get(10, TimeUnit.SECONDS);
+        int afterSecondWait = batchSizes.size();
+
+        advanceMinutes(UUIDResolver.NOT_FOUND_MINUTES);
+        resolver.resolveUUIDs(names).get(10, TimeUnit.SECONDS);
+
+        // then
+        assertThat(afterFirstWait, equalTo(2));
+        assertThat(afterSecondWait, equalTo(2));
+        assertThat(batchSizes.size(), equalTo(3));
+    }
+
+    @Test
+    public void shouldLookUpNamesAndRememberUnknownUUIDs() throws Exception {
+        // given
+        UUID known = UUID.fromString("12345678-0000-0000-0000-000000000000");
+        UUID unknown = UUID.fromString("00001234-0000-0000-0000-000000000000");
+
+        // when
+        Map<UUID, String> first = resolver.resolveNames(Arrays.asList(known, unknown)).get(10, TimeUnit.SECONDS);
+        Map<UUID, String> second = resolver.resolveNames(Collections.singletonList(unknown))
+                .get(10, TimeUnit.SECONDS);
+
+        // then
+        assertThat(first.size(), equalTo(1));
+        assertThat(first.get(known), equalTo("Player1234"));
+        assertThat(second.isEmpty(), equalTo(true));
+        assertThat(sessionRequests.get(), equalTo(2));
+    }
+
+    private void advanceMinutes(int minutes) {
+        now.addAndGet(TimeUnit.MINUTES.toNanos(minutes));
+    }
+
+    private static UUID uuidOf(String name) {
+        return UUID.nameUUIDFromBytes(name.toLowerCase().getBytes());
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+
+        return out.toString("UTF-8");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+}